@@ -1,9 +1,11 @@
 package org.zalando.nakadi.repository.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.curator.CuratorZookeeperClient;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.common.PartitionInfo;
 import org.echocat.jomon.runtime.concurrent.RetryForSpecifiedTimeStrategy;
 import org.junit.Assert;
@@ -55,6 +57,7 @@ public class KafkaRepositoryAT extends BaseAT {
     private static final long TIMELINE_WAIT_TIMEOUT = 40000;
     private static final int NAKADI_SUBSCRIPTION_MAX_PARTITIONS = 8;
     private static final boolean KAFKA_ENABLE_AUTO_COMMIT = false;
+    private static final int KAFKA_PRODUCERS_COUNT = 1;
 
     private NakadiSettings nakadiSettings;
     private KafkaSettings kafkaSettings;
@@ -75,9 +78,11 @@ public class KafkaRepositoryAT extends BaseAT {
                 NAKADI_SEND_TIMEOUT,
                 TIMELINE_WAIT_TIMEOUT,
                 NAKADI_EVENT_MAX_BYTES,
-                NAKADI_SUBSCRIPTION_MAX_PARTITIONS);
+                NAKADI_SUBSCRIPTION_MAX_PARTITIONS,
+                0,
+                0);
         kafkaSettings = new KafkaSettings(KAFKA_REQUEST_TIMEOUT, KAFKA_BATCH_SIZE,
-                KAFKA_LINGER_MS, KAFKA_ENABLE_AUTO_COMMIT);
+                KAFKA_LINGER_MS, KAFKA_ENABLE_AUTO_COMMIT, KAFKA_PRODUCERS_COUNT, 0, 0, 0, 0);
         zookeeperSettings = new ZookeeperSettings(ZK_SESSION_TIMEOUT, ZK_CONNECTION_TIMEOUT);
         kafkaHelper = new KafkaTestHelper(KAFKA_URL);
         kafkaTopicRepository = createKafkaTopicRepository();
@@ -144,7 +149,7 @@ public class KafkaRepositoryAT extends BaseAT {
             items.add(item);
         }
 
-        kafkaTopicRepository.syncPostBatch(topicId, items);
+        kafkaTopicRepository.postBatch(topicId, items, TestUtils.buildDefaultEventType()).get();
 
         for (int i = 0; i < 10; i++) {
             assertThat(items.get(i).getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.SUBMITTED));
@@ -186,17 +191,17 @@ public class KafkaRepositoryAT extends BaseAT {
         final KafkaFactory factory = mock(KafkaFactory.class);
         when(factory.getConsumer()).thenReturn(consumer);
 
-        Mockito
-                .doReturn(kafkaHelper.createProducer())
-                .when(factory)
-                .takeProducer();
+        final Producer<String, byte[]> producer = kafkaHelper.createPublishingProducer();
+        Mockito.doReturn(producer).when(factory).takeProducer(any());
+        Mockito.doReturn(producer).when(factory).takeProducer(any(), any());
 
         return new KafkaTopicRepository(zooKeeperHolder,
                 factory,
                 nakadiSettings,
                 kafkaSettings,
                 zookeeperSettings,
-                new UUIDGenerator());
+                new UUIDGenerator(),
+                new MetricRegistry());
     }
 
 }
@@ -36,6 +36,12 @@ public class KafkaTestHelper {
         return new KafkaProducer<>(createKafkaProperties());
     }
 
+    public KafkaProducer<String, byte[]> createPublishingProducer() {
+        final Properties props = createKafkaProperties();
+        props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
+        return new KafkaProducer<>(props);
+    }
+
     private Properties createKafkaProperties() {
         final Properties props = new Properties();
         props.put("bootstrap.servers", kafkaUrl);
@@ -0,0 +1,110 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.webservice.BaseAT;
+import org.zalando.nakadi.webservice.utils.ZookeeperTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.zalando.nakadi.utils.TestUtils.randomUUID;
+
+public class ShardedTopologyAT extends BaseAT {
+
+    private static final CuratorFramework CURATOR = ZookeeperTestUtils.createCurator(ZOOKEEPER_URL);
+
+    private String sid;
+
+    @Before
+    public void before() throws Exception {
+        sid = randomUUID();
+        CURATOR.create().creatingParentsIfNeeded().forPath(path(""));
+    }
+
+    @After
+    public void after() throws Exception {
+        CURATOR.delete().deletingChildrenIfNeeded().forPath(path(""));
+    }
+
+    @Test
+    public void whenTopologyIsCreatedThenPartitionsAreSplitByEventTypeAndShardSize() throws Exception {
+        ShardedTopology.createNodes(CURATOR, MAPPER, path("/topology"), ShardedTopology.create(new Partition[]{
+                unassigned("et1", "0"), unassigned("et2", "0"), unassigned("et1", "1"), unassigned("et1", "2")}, 2));
+
+        assertThat(CURATOR.getChildren().forPath(path("/topology")), containsInAnyOrder("et1_0", "et1_1", "et2_0"));
+        final Partition[] partitions = read(null).getPartitions();
+        assertThat(partitions.length, equalTo(4));
+        assertThat(partitions[2].getPartition(), equalTo("2"));
+        assertThat(partitions[3].getEventType(), equalTo("et2"));
+    }
+
+    @Test
+    public void whenPartitionIsUpdatedThenOnlyItsShardIsWritten() throws Exception {
+        ShardedTopology.createNodes(CURATOR, MAPPER, path("/topology"), ShardedTopology.create(new Partition[]{
+                unassigned("et", "0"), unassigned("et", "1"), unassigned("et", "2")}, 2));
+        final NewZkSubscriptionClient.Topology initial = read(null);
+
+        final NewZkSubscriptionClient.Topology updated = initial.withUpdatedPartitions(new Partition[]{
+                new Partition("et", "2", "s1", null, Partition.State.ASSIGNED)});
+        ShardedTopology.writeChanges(CURATOR, MAPPER, path("/topology"), updated);
+
+        assertThat(CURATOR.checkExists().forPath(path("/topology/et_0")).getVersion(), equalTo(0));
+        assertThat(CURATOR.checkExists().forPath(path("/topology/et_1")).getVersion(), equalTo(1));
+        final NewZkSubscriptionClient.Topology read = read(initial);
+        assertThat(read.getVersion(), equalTo(1));
+        assertThat(read.getPartitions()[2].getSession(), equalTo("s1"));
+        assertThat(ShardedTopology.getChangedSessions(initial, read), containsInAnyOrder("s1"));
+    }
+
+    @Test(timeout = 10000)
+    public void whenPartitionsOfOtherSessionAreChangedThenSessionIsNotNotified() throws Exception {
+        ShardedTopology.createNodes(CURATOR, MAPPER, path("/topology"), ShardedTopology.create(new Partition[]{
+                unassigned("et", "0"), unassigned("et", "1")}, 1));
+        final ZooKeeperHolder zkHolder = mock(ZooKeeperHolder.class);
+        when(zkHolder.get()).thenReturn(CURATOR);
+        final SubscriptionTopologyCache cache = new SubscriptionTopologyCache(
+                zkHolder, MAPPER, TimeUnit.MINUTES.toMillis(1));
+        try {
+            final SubscriptionTopologyCache.Entry entry = cache.getEntry(sid);
+            final AtomicInteger s1Notifications = new AtomicInteger();
+            final CountDownLatch s2Notified = new CountDownLatch(1);
+            entry.addTopologyListener("s1", s1Notifications::incrementAndGet);
+            entry.addTopologyListener("s2", s2Notified::countDown);
+
+            ShardedTopology.writeChanges(CURATOR, MAPPER, path("/topology"), entry.getTopology()
+                    .withUpdatedPartitions(new Partition[]{
+                            new Partition("et", "1", "s2", null, Partition.State.ASSIGNED)}));
+
+            s2Notified.await();
+            assertThat(s1Notifications.get(), equalTo(0));
+            assertThat(entry.getTopology().getPartitions()[1].getSession(), equalTo("s2"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    private NewZkSubscriptionClient.Topology read(final NewZkSubscriptionClient.Topology previous)
+            throws Exception {
+        return ShardedTopology.read(
+                CURATOR, MAPPER, path("/topology"), CURATOR.getData().forPath(path("/topology")), previous);
+    }
+
+    private String path(final String value) {
+        return AbstractZkSubscriptionClient.getSubscriptionPath(sid, value);
+    }
+
+    private static Partition unassigned(final String eventType, final String partition) {
+        return new Partition(eventType, partition, null, null, Partition.State.UNASSIGNED);
+    }
+}
@@ -0,0 +1,101 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.service.subscription.model.Session;
+import org.zalando.nakadi.webservice.BaseAT;
+import org.zalando.nakadi.webservice.utils.ZookeeperTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.zalando.nakadi.utils.TestUtils.randomUUID;
+
+public class SubscriptionTopologyCacheAT extends BaseAT {
+
+    private static final CuratorFramework CURATOR = ZookeeperTestUtils.createCurator(ZOOKEEPER_URL);
+
+    private SubscriptionTopologyCache cache;
+    private String sid;
+
+    @Before
+    public void before() {
+        sid = randomUUID();
+        final ZooKeeperHolder zkHolder = mock(ZooKeeperHolder.class);
+        when(zkHolder.get()).thenReturn(CURATOR);
+        cache = new SubscriptionTopologyCache(zkHolder, MAPPER, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @After
+    public void after() throws Exception {
+        cache.close();
+        if (null != CURATOR.checkExists().forPath(path(""))) {
+            CURATOR.delete().deletingChildrenIfNeeded().forPath(path(""));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void whenTopologyChangesThenListenersSeeNewTopology() throws Exception {
+        final Partition p1 = new Partition("et", "0", "s1", null, Partition.State.ASSIGNED);
+        final Partition p2 = new Partition("et", "0", "s2", null, Partition.State.ASSIGNED);
+        CURATOR.create().creatingParentsIfNeeded().forPath(path("/topology"), topology(p1, 0));
+
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(sid);
+        assertThat(entry.getTopology().getPartitions()[0].getSession(), equalTo("s1"));
+
+        final CountDownLatch notified = new CountDownLatch(1);
+        final AtomicReference<String> seen = new AtomicReference<>();
+        entry.addTopologyListener(() -> {
+            seen.set(entry.getTopology().getPartitions()[0].getSession());
+            notified.countDown();
+        });
+        CURATOR.setData().forPath(path("/topology"), topology(p2, 1));
+
+        notified.await();
+        assertThat(seen.get(), equalTo("s2"));
+    }
+
+    @Test(timeout = 10000)
+    public void whenSessionIsRegisteredThenSessionsAreUpdated() throws Exception {
+        CURATOR.create().creatingParentsIfNeeded().forPath(path("/sessions"));
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(sid);
+        assertThat(entry.getSessions().length, equalTo(0));
+
+        final CountDownLatch notified = new CountDownLatch(1);
+        entry.addSessionsListener(notified::countDown);
+        CURATOR.create().forPath(path("/sessions/s1"), "2".getBytes(UTF_8));
+
+        notified.await();
+        assertThat(entry.getSessions(), arrayContaining(new Session("s1", 2)));
+    }
+
+    @Test
+    public void whenSubscriptionIsNotCreatedThenNothingIsCachedAndCreated() throws Exception {
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(sid);
+
+        assertThat(entry.getTopology(), nullValue());
+        assertThat(entry.getSessions(), nullValue());
+        assertThat(CURATOR.checkExists().forPath(path("")), is(nullValue()));
+    }
+
+    private String path(final String value) {
+        return AbstractZkSubscriptionClient.getSubscriptionPath(sid, value);
+    }
+
+    private static byte[] topology(final Partition partition, final int version) throws Exception {
+        return MAPPER.writeValueAsBytes(new NewZkSubscriptionClient.Topology(new Partition[]{partition}, version));
+    }
+}
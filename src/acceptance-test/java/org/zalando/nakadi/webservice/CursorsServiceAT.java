@@ -1,5 +1,6 @@
 package org.zalando.nakadi.webservice;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.apache.curator.framework.CuratorFramework;
@@ -24,6 +25,7 @@ import org.zalando.nakadi.service.CursorsService;
 import org.zalando.nakadi.service.subscription.model.Partition;
 import org.zalando.nakadi.service.subscription.zk.NewZkSubscriptionClient;
 import org.zalando.nakadi.service.subscription.zk.SubscriptionClientFactory;
+import org.zalando.nakadi.service.subscription.zk.SubscriptionTopologyCache;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 import org.zalando.nakadi.webservice.utils.ZookeeperTestUtils;
@@ -117,9 +119,11 @@ public class CursorsServiceAT extends BaseAT {
         when(subscription.getEventTypes()).thenReturn(ImmutableSet.of(etName));
         final SubscriptionDbRepository subscriptionRepo = mock(SubscriptionDbRepository.class);
         when(subscriptionRepo.getSubscription(sid)).thenReturn(subscription);
-        final SubscriptionClientFactory zkSubscriptionFactory = new SubscriptionClientFactory(zkHolder, MAPPER);
+        final SubscriptionClientFactory zkSubscriptionFactory = new SubscriptionClientFactory(
+                zkHolder, MAPPER, new MetricRegistry(), new SubscriptionTopologyCache(zkHolder, MAPPER, 0),
+                0);
         cursorsService = new CursorsService(timelineService, subscriptionRepo, eventTypeRepository,
-                mock(NakadiSettings.class), zkSubscriptionFactory, cursorConverter);
+                mock(NakadiSettings.class), zkSubscriptionFactory, cursorConverter, 0);
 
         // Register cursors in converter
         registerNakadiCursor(new NakadiCursor(createFakeTimeline(etName, topic), P1, NEW_OFFSET));
@@ -0,0 +1,71 @@
+package org.zalando.nakadi.domain;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares splitting of a published batch from the decoded request body and from the raw request bytes. Run with
+ * {@code ./gradlew jmh -PjmhInclude=BatchFactoryBenchmark} and add {@code -prof gc} to the arguments to see the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BatchFactoryBenchmark {
+
+    @Param({"10", "1000"})
+    public int eventsInBatch;
+
+    @Param({"200", "20000"})
+    public int payloadLength;
+
+    private byte[] batchAsBytes;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder payload = new StringBuilder();
+        while (payload.length() < payloadLength) {
+            payload.append("lorem \\\"ipsum\\\" {dolor} 香港 ");
+        }
+        final JSONArray batch = new JSONArray();
+        for (int i = 0; i < eventsInBatch; i++) {
+            final JSONObject metadata = new JSONObject()
+                    .put("eid", "d765de34-09c0-4bbb-8b1e-7160a33a0791")
+                    .put("occurred_at", "2017-06-20T11:33:10.000Z");
+            batch.put(new JSONObject()
+                    .put("metadata", metadata)
+                    .put("id", i)
+                    .put("payload", payload.toString()));
+        }
+        batchAsBytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<BatchItem> fromString() {
+        // Request body used to be decoded into a String before splitting
+        return BatchFactory.from(new String(batchAsBytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public List<BatchItem> fromBytes() {
+        return BatchFactory.from(batchAsBytes);
+    }
+}
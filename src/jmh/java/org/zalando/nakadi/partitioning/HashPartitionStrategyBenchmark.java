@@ -0,0 +1,113 @@
+package org.zalando.nakadi.partitioning;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.env.StandardEnvironment;
+import org.zalando.nakadi.domain.EventCategory;
+import org.zalando.nakadi.domain.EventType;
+import org.zalando.nakadi.exceptions.InvalidPartitionKeyFieldsException;
+import org.zalando.nakadi.repository.db.EventTypeCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares hash partitioning of a batch with the compiled partitioner and with the reference implementation that
+ * parses key paths and sorts partitions for every event. Setup fails if they choose different partitions for any of
+ * the events. Unit tests pin the same behaviour with fixed partitions, see
+ * {@code HashPartitionStrategyTest#whenPartitioningIsCompiledThenPartitionsAreSameAsBefore}. Run with
+ * {@code ./gradlew jmh -PjmhInclude=HashPartitionStrategyBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HashPartitionStrategyBenchmark {
+
+    private static final int EVENTS_IN_BATCH = 1000;
+
+    @Param({"8", "64"})
+    public int partitionsCount;
+
+    @Param({"1", "3"})
+    public int keyFieldsCount;
+
+    private EventType eventType;
+    private List<String> partitions;
+    private List<JSONObject> events;
+    private PartitionStrategy compiled;
+    private PartitionStrategy reference;
+
+    @Setup
+    public void setUp() throws InvalidPartitionKeyFieldsException {
+        final HashPartitionStrategyCrutch crutch = new HashPartitionStrategyCrutch(new StandardEnvironment(), 0);
+        compiled = new HashPartitionStrategy(crutch, new StringHash(), mock(EventTypeCache.class));
+        reference = new ReferenceHashPartitionStrategy(crutch, new StringHash());
+
+        final List<String> keyFields = new ArrayList<>();
+        for (int i = 0; i < keyFieldsCount; i++) {
+            keyFields.add("order.key_" + i);
+        }
+        eventType = new EventType();
+        eventType.setName("order.order_changed");
+        eventType.setCategory(EventCategory.DATA);
+        eventType.setPartitionKeyFields(keyFields);
+
+        partitions = new ArrayList<>();
+        for (int i = 0; i < partitionsCount; i++) {
+            partitions.add(String.valueOf(i));
+        }
+
+        final Random random = new Random(0);
+        events = new ArrayList<>(EVENTS_IN_BATCH);
+        for (int i = 0; i < EVENTS_IN_BATCH; i++) {
+            final JSONObject order = new JSONObject();
+            for (int k = 0; k < keyFieldsCount; k++) {
+                order.put("key_" + k, Long.toHexString(random.nextLong()));
+            }
+            order.put("items", Arrays.asList("a", "b", "c"));
+            events.add(new JSONObject().put("data", new JSONObject().put("order", order)));
+        }
+
+        for (final JSONObject event : events) {
+            final String expected = reference.calculatePartition(eventType, event, partitions);
+            final String actual = compiled.calculatePartition(eventType, event, partitions);
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Compiled partitioner chose partition " + actual + " instead of " +
+                        expected + " for " + event);
+            }
+        }
+    }
+
+    @Benchmark
+    public void reference(final Blackhole blackhole) throws InvalidPartitionKeyFieldsException {
+        for (final JSONObject event : events) {
+            blackhole.consume(reference.calculatePartition(eventType, event, partitions));
+        }
+    }
+
+    @Benchmark
+    public void compiled(final Blackhole blackhole) throws InvalidPartitionKeyFieldsException {
+        for (final JSONObject event : events) {
+            blackhole.consume(compiled.calculatePartition(eventType, event, partitions));
+        }
+    }
+}
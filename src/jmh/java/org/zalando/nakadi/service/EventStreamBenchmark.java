@@ -0,0 +1,129 @@
+package org.zalando.nakadi.service;
+
+import com.codahale.metrics.Meter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.exceptions.UnprocessableEntityException;
+import org.zalando.nakadi.repository.EventConsumer;
+import org.zalando.nakadi.repository.db.EventTypeCache;
+import org.zalando.nakadi.repository.kafka.KafkaCursor;
+import org.zalando.nakadi.service.converter.CursorConverterImpl;
+import org.zalando.nakadi.service.timeline.TimelineService;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.mock;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+/**
+ * Measures events per second streamed by one low-level stream. Consumer is returning the same poll result over and
+ * over, output is discarded, so only the streaming loop and batch serialization are measured. Run with
+ * {@code ./gradlew jmh -PjmhInclude=EventStreamBenchmark} on both revisions to compare changes of the streaming loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventStreamBenchmark {
+
+    private static final int EVENTS_IN_STREAM = 100000;
+    private static final byte[] EVENT = ("{\"metadata\":{\"eid\":\"d765de34-09c0-4bbb-8b1e-7160a33a0791\"," +
+            "\"occurred_at\":\"2017-06-20T11:33:10.000Z\"},\"id\":1}").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1", "8"})
+    public int partitions;
+
+    @Param({"10", "500"})
+    public int eventsInPoll;
+
+    private EventStreamConfig config;
+    private EventConsumer consumer;
+    private BlacklistService blacklistService;
+    private CursorConverter cursorConverter;
+    private EventStreamWriterProvider writerProvider;
+    private final Meter meter = new Meter();
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws UnprocessableEntityException {
+        final Timeline timeline = createFakeTimeline("topic");
+        final List<NakadiCursor> cursors = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            cursors.add(new NakadiCursor(timeline, String.valueOf(i), KafkaCursor.toNakadiOffset(0)));
+        }
+        config = EventStreamConfig.builder()
+                .withCursors(cursors)
+                .withBatchLimit(100)
+                .withBatchTimeout(30)
+                .withStreamLimit(EVENTS_IN_STREAM)
+                .build();
+
+        final List<ConsumedEvent> poll = new ArrayList<>(eventsInPoll);
+        for (int i = 0; i < eventsInPoll; i++) {
+            poll.add(new ConsumedEvent(EVENT, new NakadiCursor(
+                    timeline, String.valueOf(i % partitions), KafkaCursor.toNakadiOffset(i))));
+        }
+        consumer = new EventConsumer() {
+            @Override
+            public List<ConsumedEvent> readEvents() {
+                return new ArrayList<>(poll);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        // mocks are recording invocations, so they are used only where they are not called on every event
+        blacklistService = new BlacklistService(null, null) {
+            @Override
+            public boolean isConsumptionBlocked(final String etName, final String appId) {
+                return false;
+            }
+        };
+        cursorConverter = new CursorConverterImpl(mock(EventTypeCache.class), mock(TimelineService.class));
+        final EventStreamWriter writer = new EventStreamWriterBinary();
+        writerProvider = new EventStreamWriterProvider(null, writer, writer) {
+            @Override
+            public EventStreamWriter getWriter() {
+                return writer;
+            }
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_IN_STREAM)
+    public void streamEvents() {
+        new EventStream(consumer, outputStream, config, blacklistService, cursorConverter, meter,
+                writerProvider).streamEvents(new AtomicBoolean(true), () -> {
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package org.zalando.nakadi.service.subscription;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zalando.nakadi.service.subscription.model.Partition;
+import org.zalando.nakadi.service.subscription.model.Session;
+import org.zalando.nakadi.service.subscription.zk.NewZkSubscriptionClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rebalances per second, including the topology update, when a session joins a subscription that is
+ * balanced between the other sessions. Run with {@code ./gradlew jmh -PjmhInclude=RebalanceBenchmark} on both
+ * revisions to compare changes of the rebalancing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RebalanceBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int partitions;
+
+    @Param({"1", "10", "100", "500"})
+    public int sessions;
+
+    private Session[] activeSessions;
+    private Partition[] currentPartitions;
+    private NewZkSubscriptionClient.Topology topology;
+
+    @Setup
+    public void setUp() {
+        final int sessionCount = Math.min(sessions, partitions);
+        activeSessions = new Session[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            activeSessions[i] = new Session("session-" + i, 1);
+        }
+        // partitions are balanced between all the sessions except the last one, that is joining
+        currentPartitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            currentPartitions[i] = sessionCount == 1 ?
+                    new Partition("event-type", String.valueOf(i), null, null, Partition.State.UNASSIGNED) :
+                    new Partition("event-type", String.valueOf(i), activeSessions[i % (sessionCount - 1)].getId(),
+                            null, Partition.State.ASSIGNED);
+        }
+        topology = new NewZkSubscriptionClient.Topology(currentPartitions, 0);
+    }
+
+    @Benchmark
+    public NewZkSubscriptionClient.Topology rebalance() {
+        final Partition[] changeset = new ExactWeightRebalancer().apply(activeSessions, currentPartitions);
+        return topology.withUpdatedPartitions(changeset);
+    }
+}
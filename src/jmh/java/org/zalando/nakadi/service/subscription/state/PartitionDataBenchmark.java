@@ -0,0 +1,90 @@
+package org.zalando.nakadi.service.subscription.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.kafka.KafkaCursor;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+/**
+ * Measures streaming cycles of a subscription stream in steady state, where the number of uncommitted events is close
+ * to max_uncommitted_events. One cycle adds events to every partition, counts unconfirmed events the same way
+ * {@link StreamingState} does, sends one batch per partition and commits the same amount of events. Run with
+ * {@code ./gradlew jmh -PjmhInclude=PartitionDataBenchmark} on both revisions to compare changes of
+ * {@link PartitionData}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PartitionDataBenchmark {
+
+    private static final byte[] EVENT = "{\"metadata\":{\"eid\":\"d765de34-09c0-4bbb-8b1e-7160a33a0791\"}}".getBytes();
+    private static final int BATCH_SIZE = 10;
+
+    @Param({"64"})
+    public int partitions;
+
+    @Param({"10000"})
+    public int maxUncommittedEvents;
+
+    private final Timeline timeline = createFakeTimeline("topic");
+    private PartitionData[] data;
+    // next offset to read and last sent offset are the same for all the partitions
+    private long nextOffset;
+    private int uncommittedPerPartition;
+
+    @Setup
+    public void setUp() {
+        uncommittedPerPartition = maxUncommittedEvents / partitions - BATCH_SIZE;
+        data = new PartitionData[partitions];
+        for (int p = 0; p < partitions; p++) {
+            data[p] = new PartitionData(null, cursor(p, 0), 0);
+            for (long offset = 1; offset <= uncommittedPerPartition; offset++) {
+                data[p].addEvent(new ConsumedEvent(EVENT, cursor(p, offset)));
+            }
+            data[p].takeEventsToStream(0, uncommittedPerPartition, Long.MAX_VALUE);
+        }
+        nextOffset = uncommittedPerPartition + 1;
+    }
+
+    @Benchmark
+    public void streamingCycle(final Blackhole blackhole) {
+        for (int p = 0; p < partitions; p++) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                data[p].addEvent(new ConsumedEvent(EVENT, cursor(p, nextOffset + i)));
+            }
+        }
+        nextOffset += BATCH_SIZE;
+        long unconfirmed = 0;
+        for (final PartitionData partition : data) {
+            unconfirmed += partition.getUnconfirmed();
+        }
+        final int allowed = (int) Math.min(BATCH_SIZE, maxUncommittedEvents - unconfirmed);
+        for (int p = 0; p < partitions; p++) {
+            blackhole.consume(data[p].takeEventsToStream(0, allowed, Long.MAX_VALUE));
+            blackhole.consume(data[p].onCommitOffset(cursor(p, nextOffset - 1 - uncommittedPerPartition)));
+        }
+    }
+
+    private NakadiCursor cursor(final int partition, final long offset) {
+        return new NakadiCursor(timeline, String.valueOf(partition), KafkaCursor.toNakadiOffset(offset));
+    }
+}
@@ -18,6 +18,8 @@ public class NakadiSettings {
     private final long timelineWaitTimeoutMs;
     private final long eventMaxBytes;
     private final int maxSubscriptionPartitions;
+    private final int publishingParallelism;
+    private final int publishingParallelThreshold;
 
     @Autowired
     public NakadiSettings(@Value("${nakadi.topic.max.partitionNum}") final int maxTopicPartitionCount,
@@ -30,7 +32,9 @@ public class NakadiSettings {
                           @Value("${nakadi.kafka.send.timeoutMs}") final long kafkaSendTimeoutMs,
                           @Value("${nakadi.timeline.wait.timeoutMs}") final long timelineWaitTimeoutMs,
                           @Value("${nakadi.event.max.bytes}") final long eventMaxBytes,
-                          @Value("${nakadi.subscription.maxPartitions}") final int maxSubscriptionPartitions) {
+                          @Value("${nakadi.subscription.maxPartitions}") final int maxSubscriptionPartitions,
+                          @Value("${nakadi.publishing.parallelism}") final int publishingParallelism,
+                          @Value("${nakadi.publishing.parallelThreshold}") final int publishingParallelThreshold) {
         this.maxTopicPartitionCount = maxTopicPartitionCount;
         this.defaultTopicPartitionCount = defaultTopicPartitionCount;
         this.defaultTopicReplicaFactor = defaultTopicReplicaFactor;
@@ -42,6 +46,8 @@ public class NakadiSettings {
         this.eventMaxBytes = eventMaxBytes;
         this.timelineWaitTimeoutMs = timelineWaitTimeoutMs;
         this.maxSubscriptionPartitions = maxSubscriptionPartitions;
+        this.publishingParallelism = publishingParallelism;
+        this.publishingParallelThreshold = publishingParallelThreshold;
     }
 
     public int getDefaultTopicPartitionCount() {
@@ -87,4 +93,12 @@ public class NakadiSettings {
     public int getMaxSubscriptionPartitions() {
         return maxSubscriptionPartitions;
     }
+
+    public int getPublishingParallelism() {
+        return publishingParallelism;
+    }
+
+    public int getPublishingParallelThreshold() {
+        return publishingParallelThreshold;
+    }
 }
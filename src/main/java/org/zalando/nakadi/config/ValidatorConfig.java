@@ -55,8 +55,9 @@ public class ValidatorConfig {
     @Bean
     public EventTypeOptionsValidator eventTypeOptionsValidator(
             @Value("${nakadi.topic.min.retentionMs}") final long minTopicRetentionMs,
-            @Value("${nakadi.topic.max.retentionMs}") final long maxTopicRetentionMs) {
-        return new EventTypeOptionsValidator(minTopicRetentionMs, maxTopicRetentionMs);
+            @Value("${nakadi.topic.max.retentionMs}") final long maxTopicRetentionMs,
+            @Value("${nakadi.kafka.max.lingerMs}") final long maxLingerMs) {
+        return new EventTypeOptionsValidator(minTopicRetentionMs, maxTopicRetentionMs, maxLingerMs);
     }
 
     @Bean
@@ -1,6 +1,5 @@
 package org.zalando.nakadi.controller;
 
-import com.google.common.base.Charsets;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +11,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.zalando.nakadi.domain.EventPublishResult;
 import org.zalando.nakadi.domain.EventPublishingStatus;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -28,6 +28,9 @@ import org.zalando.problem.ThrowableProblem;
 import org.zalando.problem.spring.web.advice.Responses;
 
 import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -54,57 +57,75 @@ public class EventPublishingController {
     }
 
     @RequestMapping(value = "/event-types/{eventTypeName}/events", method = POST)
-    public ResponseEntity postEvent(@PathVariable final String eventTypeName,
-                                    @RequestBody final String eventsAsString,
-                                    final NativeWebRequest request,
-                                    final Client client) throws AccessDeniedException {
-        LOG.trace("Received event {} for event type {}", eventsAsString, eventTypeName);
+    public DeferredResult<ResponseEntity> postEvent(@PathVariable final String eventTypeName,
+                                                    @RequestBody final byte[] events,
+                                                    final NativeWebRequest request,
+                                                    final Client client) throws AccessDeniedException {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Received event {} for event type {}", new String(events, StandardCharsets.UTF_8), eventTypeName);
+        }
         final EventTypeMetrics eventTypeMetrics = eventTypeMetricRegistry.metricsFor(eventTypeName);
+        final DeferredResult<ResponseEntity> result = new DeferredResult<>();
 
         try {
             if (blacklistService.isProductionBlocked(eventTypeName, client.getClientId())) {
-                return Responses.create(
-                        Problem.valueOf(Response.Status.FORBIDDEN, "Application or event type is blocked"), request);
+                result.setResult(Responses.create(
+                        Problem.valueOf(Response.Status.FORBIDDEN, "Application or event type is blocked"), request));
+                return result;
             }
 
-            final ResponseEntity response = postEventInternal(eventTypeName, eventsAsString,
-                    request, eventTypeMetrics, client);
-            eventTypeMetrics.incrementResponseCount(response.getStatusCode().value());
-            return response;
+            postEventInternal(eventTypeName, events, request, eventTypeMetrics, client)
+                    .whenComplete((response, ex) -> {
+                        if (null != ex) {
+                            eventTypeMetrics.incrementResponseCount(
+                                    Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+                            result.setErrorResult(ex instanceof CompletionException ? ex.getCause() : ex);
+                        } else {
+                            eventTypeMetrics.incrementResponseCount(response.getStatusCode().value());
+                            result.setResult(response);
+                        }
+                    });
+            return result;
         } catch (RuntimeException ex) {
             eventTypeMetrics.incrementResponseCount(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
             throw ex;
         }
     }
 
-    private ResponseEntity postEventInternal(final String eventTypeName,
-                                             final String eventsAsString,
-                                             final NativeWebRequest nativeWebRequest,
-                                             final EventTypeMetrics eventTypeMetrics,
-                                             final Client client)
+    private CompletableFuture<ResponseEntity> postEventInternal(final String eventTypeName,
+                                                                final byte[] events,
+                                                                final NativeWebRequest nativeWebRequest,
+                                                                final EventTypeMetrics eventTypeMetrics,
+                                                                final Client client)
             throws AccessDeniedException, ServiceTemporarilyUnavailableException {
         final long startingNanos = System.nanoTime();
         try {
-            final EventPublishResult result = publisher.publish(eventsAsString, eventTypeName, client);
-
-            final int eventCount = result.getResponses().size();
-            final int totalSizeBytes = eventsAsString.getBytes(Charsets.UTF_8).length;
+            return publisher.publishAsync(events, eventTypeName, client)
+                    .whenComplete((ignore, ex) -> eventTypeMetrics.updateTiming(startingNanos, System.nanoTime()))
+                    .thenApply(result -> {
+                        final int eventCount = result.getResponses().size();
+                        final int totalSizeBytes = events.length;
 
-            reportMetrics(eventTypeMetrics, result, totalSizeBytes, eventCount);
-            reportSLOs(startingNanos, totalSizeBytes, eventCount, result);
+                        reportMetrics(eventTypeMetrics, result, totalSizeBytes, eventCount);
+                        reportSLOs(startingNanos, totalSizeBytes, eventCount, result);
 
-            return response(result);
+                        return response(result);
+                    });
         } catch (final JSONException e) {
             LOG.debug("Problem parsing event", e);
-            return processJSONException(e, nativeWebRequest);
+            eventTypeMetrics.updateTiming(startingNanos, System.nanoTime());
+            return CompletableFuture.completedFuture(processJSONException(e, nativeWebRequest));
         } catch (final NoSuchEventTypeException e) {
             LOG.debug("Event type not found.", e);
-            return create(e.asProblem(), nativeWebRequest);
+            eventTypeMetrics.updateTiming(startingNanos, System.nanoTime());
+            return CompletableFuture.completedFuture(create(e.asProblem(), nativeWebRequest));
         } catch (final NakadiException e) {
             LOG.debug("Failed to publish batch", e);
-            return create(e.asProblem(), nativeWebRequest);
-        } finally {
             eventTypeMetrics.updateTiming(startingNanos, System.nanoTime());
+            return CompletableFuture.completedFuture(create(e.asProblem(), nativeWebRequest));
+        } catch (final RuntimeException e) {
+            eventTypeMetrics.updateTiming(startingNanos, System.nanoTime());
+            throw e;
         }
     }
 
@@ -34,6 +34,7 @@ import org.zalando.nakadi.exceptions.UnparseableCursorException;
 import org.zalando.nakadi.exceptions.runtime.AccessDeniedException;
 import org.zalando.nakadi.exceptions.runtime.ServiceTemporarilyUnavailableException;
 import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.repository.ConsumerTuning;
 import org.zalando.nakadi.repository.EventConsumer;
 import org.zalando.nakadi.repository.EventTypeRepository;
 import org.zalando.nakadi.repository.TopicRepository;
@@ -65,6 +66,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -250,8 +252,10 @@ public class EventStreamController {
 
                 response.setStatus(HttpStatus.OK.value());
                 response.setContentType("application/x-json-stream");
+                final ConsumerTuning tuning = ConsumerTuning.forLowLevelStream(
+                        streamConfig.getBatchLimit(), TimeUnit.SECONDS.toMillis(streamConfig.getBatchTimeout()));
                 final EventConsumer eventConsumer = timelineService.createEventConsumer(
-                        kafkaQuotaClientId, streamConfig.getCursors());
+                        kafkaQuotaClientId, streamConfig.getCursors(), tuning);
 
                 final String bytesFlushedMetricName = MetricUtils.metricNameForLoLAStream(
                         client.getClientId(),
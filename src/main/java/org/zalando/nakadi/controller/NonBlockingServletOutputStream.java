@@ -0,0 +1,121 @@
+package org.zalando.nakadi.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Output of the streams processed on the event loop. Data is written with non-blocking servlet writes, data that
+ * can't be written at the moment is kept in memory until the container reports that the client is able to receive
+ * it. Stream is completed only after all the data is sent.
+ */
+class NonBlockingServletOutputStream extends OutputStream implements WriteListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NonBlockingServletOutputStream.class);
+
+    private final ServletOutputStream out;
+    private final AtomicBoolean connectionReady;
+    private final Runnable onCompleted;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private boolean flushPending;
+    private boolean closing;
+    private boolean completed;
+
+    NonBlockingServletOutputStream(final ServletOutputStream out, final AtomicBoolean connectionReady,
+                                   final Runnable onCompleted) {
+        this.out = out;
+        this.connectionReady = connectionReady;
+        this.onCompleted = onCompleted;
+        out.setWriteListener(this);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        if (closing) {
+            throw new IOException("Stream is closed");
+        }
+        if (pending.size() == 0 && !flushPending && out.isReady()) {
+            out.write(b, off, len);
+        } else {
+            pending.write(b, off, len);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        flushPending = true;
+        sendPending();
+    }
+
+    /**
+     * Closes the stream when all the pending data is sent.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closing = true;
+        sendPending();
+    }
+
+    synchronized boolean isWritePending() {
+        return pending.size() > 0 || flushPending;
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        sendPending();
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        LOG.info("Failed to write to client: {}", t.getMessage());
+        connectionReady.set(false);
+        synchronized (this) {
+            pending.reset();
+            flushPending = false;
+            closing = true;
+        }
+        complete();
+    }
+
+    private void sendPending() throws IOException {
+        if (pending.size() > 0) {
+            if (!out.isReady()) {
+                return;
+            }
+            final byte[] data = pending.toByteArray();
+            pending.reset();
+            out.write(data);
+        }
+        if (flushPending) {
+            if (!out.isReady()) {
+                return;
+            }
+            flushPending = false;
+            out.flush();
+        }
+        if (closing && out.isReady()) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+        }
+        onCompleted.run();
+    }
+}
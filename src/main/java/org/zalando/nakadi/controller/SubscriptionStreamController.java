@@ -30,6 +30,7 @@ import org.zalando.nakadi.util.FeatureToggleService;
 import org.zalando.problem.Problem;
 
 import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Response;
@@ -124,6 +125,12 @@ public class SubscriptionStreamController {
         public OutputStream getOutputStream() {
             return this.out;
         }
+
+        @Override
+        public boolean isWritePending() {
+            return out instanceof NonBlockingServletOutputStream
+                    && ((NonBlockingServletOutputStream) out).isWritePending();
+        }
     }
 
     @RequestMapping(value = "/subscriptions/{subscription_id}/events", method = RequestMethod.GET)
@@ -140,6 +147,13 @@ public class SubscriptionStreamController {
             final HttpServletRequest request, final HttpServletResponse response, final Client client)
             throws IOException {
 
+        if (subscriptionStreamerFactory.isEventLoopEnabled()) {
+            streamOnEventLoop(subscriptionId, maxUncommittedSize, batchLimit, streamLimit, batchTimeout, streamTimeout,
+                    streamKeepAliveLimit, request, response, client);
+            // response is completed asynchronously when the stream is finished
+            return null;
+        }
+
         return outputStream -> {
             if (!featureToggleService.isFeatureEnabled(HIGH_LEVEL_API)) {
                 response.setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
@@ -182,6 +196,61 @@ public class SubscriptionStreamController {
         };
     }
 
+    private void streamOnEventLoop(final String subscriptionId, final int maxUncommittedSize, final int batchLimit,
+                                   @Nullable final Long streamLimit, final int batchTimeout,
+                                   @Nullable final Long streamTimeout, @Nullable final Integer streamKeepAliveLimit,
+                                   final HttpServletRequest request, final HttpServletResponse response,
+                                   final Client client) throws IOException {
+        final AsyncContext asyncContext = request.startAsync();
+        // stream is finished by nakadi, according to stream parameters
+        asyncContext.setTimeout(0);
+
+        final String metricName = metricNameForSubscription(subscriptionId, CONSUMERS_COUNT_METRIC_NAME);
+        final Counter consumerCounter = metricRegistry.counter(metricName);
+        consumerCounter.inc();
+
+        final AtomicBoolean connectionReady = closedConnectionsCrutch.listenForConnectionClose(request);
+        final NonBlockingServletOutputStream outputStream = new NonBlockingServletOutputStream(
+                response.getOutputStream(), connectionReady, () -> {
+                    consumerCounter.dec();
+                    asyncContext.complete();
+                });
+        final SubscriptionOutputImpl output = new SubscriptionOutputImpl(response, outputStream);
+        try {
+            if (!featureToggleService.isFeatureEnabled(HIGH_LEVEL_API)) {
+                response.setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
+                outputStream.close();
+                return;
+            }
+            if (blacklistService.isSubscriptionConsumptionBlocked(subscriptionId, client.getClientId())) {
+                writeProblemResponse(response, outputStream,
+                        Problem.valueOf(Response.Status.FORBIDDEN, "Application or event type is blocked"));
+                outputStream.close();
+                return;
+            }
+
+            final StreamParameters streamParameters = StreamParameters.of(batchLimit, streamLimit, batchTimeout,
+                    streamTimeout, streamKeepAliveLimit, maxUncommittedSize,
+                    nakadiSettings.getDefaultCommitTimeoutSeconds(), client.getClientId());
+            final Subscription subscription = subscriptionDbRepository.getSubscription(subscriptionId);
+
+            final SubscriptionStreamer streamer = subscriptionStreamerFactory.build(subscription, streamParameters,
+                    output, connectionReady, blacklistService);
+            streamer.streamAsync().whenComplete((ignore, ex) -> closeQuietly(outputStream));
+        } catch (final Exception e) {
+            output.onException(e);
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static void closeQuietly(final OutputStream outputStream) {
+        try {
+            outputStream.close();
+        } catch (final IOException e) {
+            LOG.error("Failed to close output stream", e);
+        }
+    }
+
     private void writeProblemResponse(final HttpServletResponse response,
                                       final OutputStream outputStream,
                                       final Problem problem) throws IOException {
@@ -76,6 +76,81 @@ public class BatchFactory {
         return batch;
     }
 
+    /**
+     * Splits a batch of events encoded in UTF-8 without decoding it into a String. Every structural character of
+     * JSON is a single byte in UTF-8 and can never be a part of a multi-byte sequence, so event boundaries are
+     * searched directly on bytes and every event is handed over to {@link BatchItem} as a slice of the original
+     * array.
+     */
+    public static List<BatchItem> from(final byte[] events) {
+        final List<BatchItem> batch = new ArrayList<>();
+        int start = 0;
+        int end = events.length - 1;
+
+        while (start < end && isEmptyCharacter(events[start])) {
+            start++;
+        }
+        while (end > start && isEmptyCharacter(events[end])) {
+            end--;
+        }
+        if (events.length == 0 || events[start] != '[') {
+            throw unexpectedCharacter(events, start, "expected '['");
+        }
+        if (end == start || events[end] != ']') {
+            throw unexpectedCharacter(events, end, "expected ']'");
+        }
+
+        int brackets = 0;
+        boolean insideQuote = false;
+        boolean escaped = false;
+        int eventStart = 0;
+
+        for (int i = start + 1; i < end; i++) {
+            final byte current = events[i];
+            if (insideQuote) {
+                if (escaped) {
+                    escaped = false;
+                } else if (current == '\\') {
+                    escaped = true;
+                } else if (current == '"') {
+                    insideQuote = false;
+                }
+            } else if (current == '"' && brackets > 0) {
+                insideQuote = true;
+            } else if (current == '{') {
+                if (brackets == 0) {
+                    eventStart = i;
+                }
+                brackets++;
+            } else if (current == '}' && brackets > 0) {
+                brackets--;
+                if (brackets == 0) {
+                    batch.add(new BatchItem(events, eventStart, i - eventStart + 1));
+                }
+            } else if (brackets == 0 && current != ',' && !isEmptyCharacter(current)) {
+                throw unexpectedCharacter(events, i, "expected '{'");
+            }
+        }
+
+        if (brackets != 0) {
+            throw new JSONException(String.format("Unexpected end of event started in position %d", eventStart));
+        }
+
+        return batch;
+    }
+
+    private static JSONException unexpectedCharacter(final byte[] events, final int position, final String expected) {
+        if (events.length == 0) {
+            return new JSONException("Unexpected end of input, " + expected);
+        }
+        return new JSONException(String.format("Unexpected character %s in position %d, %s",
+                (char) (events[position] & 0xFF), position, expected));
+    }
+
+    private static boolean isEmptyCharacter(final byte b) {
+        return (b == ' ' || b == '\t' || b == '\n' || b == '\r');
+    }
+
     private static boolean isEmptyCharacter(final char c) {
         return (c == ' ' || c == '\t' || c == '\n' || c == '\r');
     }
@@ -1,21 +1,63 @@
 package org.zalando.nakadi.domain;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Optional;
 
 public class BatchItem {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final BatchItemResponse response;
     private final JSONObject event;
     private String partition;
     private String brokerId;
     private int eventSize;
+    @Nullable
+    private byte[] rawEvent;
+    private int rawEventOffset;
+    private int rawEventLength;
 
     public BatchItem(final String event) {
-        this.event = new JSONObject(event);
-        this.eventSize = event.getBytes(StandardCharsets.UTF_8).length;
+        this(new JSONObject(event), event.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Creates batch item from the UTF-8 encoded event located in {@code data} starting from {@code offset}. The
+     * event is parsed directly from the slice, without creating an intermediate copy of it. The slice is kept
+     * in order to publish original event bytes instead of serializing parsed event again, but only if it is a strict
+     * JSON object: org.json parser accepts single quotes, unquoted strings and trailing content, that must not be
+     * published as is. Strictness is checked by the parsing itself: the event is parsed by strict parser and only
+     * the events rejected by it are parsed again by org.json parser.
+     */
+    public BatchItem(final byte[] data, final int offset, final int length) {
+        this(parseStrictJsonObject(data, offset, length), data, offset, length);
+    }
+
+    private BatchItem(@Nullable final JSONObject strictEvent, final byte[] data, final int offset, final int length) {
+        this(null != strictEvent ? strictEvent : new JSONObject(new JSONTokener(new InputStreamReader(
+                new ByteArrayInputStream(data, offset, length), StandardCharsets.UTF_8))), length);
+        if (null != strictEvent) {
+            this.rawEvent = data;
+            this.rawEventOffset = offset;
+            this.rawEventLength = length;
+        }
+    }
+
+    private BatchItem(final JSONObject event, final int eventSize) {
+        this.event = event;
+        this.eventSize = eventSize;
         this.response = new BatchItemResponse();
 
         Optional.ofNullable(this.event.optJSONObject("metadata"))
@@ -23,10 +65,110 @@ public class BatchItem {
                 .ifPresent(this.response::setEid);
     }
 
+    /**
+     * Parses strict JSON object to the same {@link JSONObject} as org.json parser does (numbers are converted by
+     * org.json itself, duplicate keys are rejected), or returns null if the slice is not a strict JSON object.
+     */
+    @Nullable
+    static JSONObject parseStrictJsonObject(final byte[] data, final int offset, final int length) {
+        try (JsonParser parser = JSON_FACTORY.createParser(data, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            final JSONObject result = readObject(parser);
+            return null == parser.nextToken() ? result : null;
+        } catch (final IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    private static JSONObject readObject(final JsonParser parser) throws IOException {
+        final JSONObject result = new JSONObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            parser.nextToken();
+            result.putOnce(key, readValue(parser));
+        }
+        return result;
+    }
+
+    private static JSONArray readArray(final JsonParser parser) throws IOException {
+        final JSONArray result = new JSONArray();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.put(readValue(parser));
+        }
+        return result;
+    }
+
+    private static Object readValue(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                return readObject(parser);
+            case START_ARRAY:
+                return readArray(parser);
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return JSONObject.stringToValue(parser.getText());
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected token " + parser.getCurrentToken());
+        }
+    }
+
     public JSONObject getEvent() {
         return this.event;
     }
 
+    /**
+     * Array containing original (or already enriched) UTF-8 representation of the event, which is consistent with
+     * {@link #getEvent()}. Null if batch item was created from parsed event or if raw representation was dropped.
+     */
+    @Nullable
+    public byte[] getRawEvent() {
+        return rawEvent;
+    }
+
+    public int getRawEventOffset() {
+        return rawEventOffset;
+    }
+
+    public int getRawEventLength() {
+        return rawEventLength;
+    }
+
+    /**
+     * Replaces raw representation of the event, it is up to caller to keep it consistent with {@link #getEvent()}.
+     * Passing null drops raw representation, so the event will be published by serializing {@link #getEvent()}.
+     */
+    public void setRawEvent(@Nullable final byte[] rawEvent) {
+        this.rawEvent = rawEvent;
+        this.rawEventOffset = 0;
+        this.rawEventLength = null == rawEvent ? 0 : rawEvent.length;
+    }
+
+    public byte[] dumpEventToBytes() {
+        if (null == rawEvent) {
+            return event.toString().getBytes(StandardCharsets.UTF_8);
+        } else if (rawEventOffset == 0 && rawEventLength == rawEvent.length) {
+            return rawEvent;
+        }
+        return Arrays.copyOfRange(rawEvent, rawEventOffset, rawEventOffset + rawEventLength);
+    }
+
+    public String dumpEventToString() {
+        if (null == rawEvent) {
+            return event.toString();
+        }
+        return new String(rawEvent, rawEventOffset, rawEventLength, StandardCharsets.UTF_8);
+    }
+
     public void setPartition(final String partition) {
         this.partition = partition;
     }
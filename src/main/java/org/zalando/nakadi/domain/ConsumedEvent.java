@@ -1,25 +1,53 @@
 package org.zalando.nakadi.domain;
 
-import javax.annotation.concurrent.Immutable;
 import java.util.Objects;
 
-@Immutable
+/**
+ * Event read from the storage together with its position. Storage specific subclasses may keep the position in a
+ * compact form and create the cursor only when it is requested, so consumers that only need the partition of the
+ * event should use {@link #getTimeline()} and {@link #getPartition()}.
+ * <p>
+ * Event is not immutable, as the position is set when it is requested for the first time. Events are handed over
+ * between the reading and the streaming threads, so the position is published through a volatile field, and two
+ * threads requesting it at the same time may both create equal cursors.
+ */
 public class ConsumedEvent {
 
     private final byte[] event;
-    private final NakadiCursor position;
+    private volatile NakadiCursor position;
 
     public ConsumedEvent(final byte[] event, final NakadiCursor position) {
         this.event = event;
         this.position = position;
     }
 
+    protected ConsumedEvent(final byte[] event) {
+        this.event = event;
+    }
+
     public byte[] getEvent() {
         return event;
     }
 
     public NakadiCursor getPosition() {
-        return position;
+        NakadiCursor result = position;
+        if (null == result) {
+            result = createPosition();
+            position = result;
+        }
+        return result;
+    }
+
+    public Timeline getTimeline() {
+        return getPosition().getTimeline();
+    }
+
+    public String getPartition() {
+        return getPosition().getPartition();
+    }
+
+    protected NakadiCursor createPosition() {
+        throw new IllegalStateException("Position of consumed event is not defined");
     }
 
     @Override
@@ -33,11 +61,11 @@ public class ConsumedEvent {
 
         final ConsumedEvent that = (ConsumedEvent) o;
         return Objects.equals(this.event, that.event)
-                && Objects.equals(this.position, that.position);
+                && Objects.equals(this.getPosition(), that.getPosition());
     }
 
     @Override
     public int hashCode() {
-        return position.hashCode();
+        return getPosition().hashCode();
     }
 }
@@ -1,11 +1,19 @@
 package org.zalando.nakadi.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import javax.annotation.Nullable;
 
 public class EventTypeOptions {
 
     private Long retentionTime;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String compressionType;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long lingerTime;
+
     @Nullable
     public Long getRetentionTime() {
         return retentionTime;
@@ -14,4 +22,29 @@ public class EventTypeOptions {
     public void setRetentionTime(@Nullable final Long retentionTime) {
         this.retentionTime = retentionTime;
     }
+
+    /**
+     * Compression of the batches that producer sends to the storage, storage default is used when not set.
+     */
+    @Nullable
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(@Nullable final String compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    /**
+     * Time in milliseconds that producer waits for more events to be batched together, storage default is used when
+     * not set.
+     */
+    @Nullable
+    public Long getLingerTime() {
+        return lingerTime;
+    }
+
+    public void setLingerTime(@Nullable final Long lingerTime) {
+        this.lingerTime = lingerTime;
+    }
 }
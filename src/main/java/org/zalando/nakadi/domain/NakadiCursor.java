@@ -23,10 +23,19 @@ public class NakadiCursor implements Comparable<NakadiCursor> {
         }
     }
 
+    // offsets with more digits are compared as strings, in order not to overflow long
+    private static final int MAX_NUMERIC_OFFSET_DIGITS = 18;
+
     private final Timeline timeline;
     private final String partition;
     // NO BEGIN HERE - only real offset!
     private final String offset;
+    // offset parsed once, so that cursors of the same partition are compared without comparing strings
+    private final boolean numericOffset;
+    private final long offsetValue;
+    // created on first request, objects are immutable, so racy initialization is safe
+    private EventTypePartition eventTypePartition;
+    private TopicPartition topicPartition;
 
     public NakadiCursor(
             final Timeline timeline,
@@ -35,6 +44,8 @@ public class NakadiCursor implements Comparable<NakadiCursor> {
         this.timeline = timeline;
         this.partition = partition;
         this.offset = offset;
+        this.numericOffset = isNumeric(offset);
+        this.offsetValue = numericOffset ? Long.parseLong(offset) : 0L;
     }
 
     public Timeline getTimeline() {
@@ -58,11 +69,21 @@ public class NakadiCursor implements Comparable<NakadiCursor> {
     }
 
     public EventTypePartition getEventTypePartition() {
-        return new EventTypePartition(timeline.getEventType(), partition);
+        EventTypePartition result = eventTypePartition;
+        if (null == result) {
+            result = new EventTypePartition(timeline.getEventType(), partition);
+            eventTypePartition = result;
+        }
+        return result;
     }
 
     public TopicPartition getTopicPartition() {
-        return new TopicPartition(timeline.getTopic(), partition);
+        TopicPartition result = topicPartition;
+        if (null == result) {
+            result = new TopicPartition(timeline.getTopic(), partition);
+            topicPartition = result;
+        }
+        return result;
     }
 
     @Override
@@ -82,22 +103,52 @@ public class NakadiCursor implements Comparable<NakadiCursor> {
 
     @Override
     public int compareTo(final NakadiCursor other) {
+        // cursors of the same timeline are the most common case
+        if (this.timeline == other.timeline) {
+            return compareOffsets(other);
+        }
         if ((other.getTimeline().isFake() && this.getTimeline().isFirstAfterFake())
                 || (this.getTimeline().isFake() && other.getTimeline().isFirstAfterFake())) {
-            return this.getOffset().compareTo(other.getOffset());
+            return compareOffsets(other);
         }
         final int orderDiffers = Integer.compare(this.getTimeline().getOrder(), other.getTimeline().getOrder());
         if (0 != orderDiffers) {
             return orderDiffers;
         }
+        return compareOffsets(other);
+    }
+
+    private int compareOffsets(final NakadiCursor other) {
+        if (this.numericOffset && other.numericOffset) {
+            return Long.compare(this.offsetValue, other.offsetValue);
+        }
         return this.getOffset().compareTo(other.getOffset());
     }
 
+    private static boolean isNumeric(final String offset) {
+        if (null == offset) {
+            return false;
+        }
+        final int start = offset.startsWith("-") ? 1 : 0;
+        final int digits = offset.length() - start;
+        if (digits == 0 || digits > MAX_NUMERIC_OFFSET_DIGITS) {
+            return false;
+        }
+        for (int i = start; i < offset.length(); i++) {
+            final char c = offset.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int hashCode() {
         int result = timeline.hashCode();
         result = 31 * result + partition.hashCode();
-        result = 31 * result + offset.hashCode();
+        // equal offsets are always parsed to the same value
+        result = 31 * result + (numericOffset ? Long.hashCode(offsetValue) : offset.hashCode());
         return result;
     }
 
@@ -9,42 +9,52 @@ import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.exceptions.EnrichmentException;
 import org.zalando.nakadi.util.FlowIdUtils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class MetadataEnrichmentStrategy implements EnrichmentStrategy {
     @Override
     public void enrich(final BatchItem batchItem, final EventType eventType) throws EnrichmentException {
         try {
             final JSONObject metadata = batchItem.getEvent().getJSONObject("metadata");
-
-            setReceivedAt(metadata);
-            setEventTypeName(metadata, eventType);
-            setFlowId(metadata);
-            setPartition(metadata, batchItem);
-            setVersion(metadata, eventType);
+            final Map<String, String> fields = new LinkedHashMap<>();
+
+            setReceivedAt(fields);
+            setEventTypeName(fields, eventType);
+            setFlowId(fields, metadata);
+            setPartition(fields, batchItem);
+            setVersion(fields, eventType);
+
+            fields.forEach(metadata::put);
+            if (null != batchItem.getRawEvent()) {
+                batchItem.setRawEvent(MetadataSplicer.splice(batchItem.getRawEvent(), batchItem.getRawEventOffset(),
+                        batchItem.getRawEventLength(), fields));
+            }
         } catch (final JSONException e) {
             throw new EnrichmentException("enrichment error", e);
         }
     }
 
-    private void setVersion(final JSONObject metadata, final EventType eventType) {
-        metadata.put("version", eventType.getSchema().getVersion().toString());
+    private void setVersion(final Map<String, String> fields, final EventType eventType) {
+        fields.put("version", eventType.getSchema().getVersion().toString());
     }
 
-    private void setFlowId(final JSONObject metadata) {
+    private void setFlowId(final Map<String, String> fields, final JSONObject metadata) {
         if ("".equals(metadata.optString("flow_id"))) {
-            metadata.put("flow_id", FlowIdUtils.peek());
+            fields.put("flow_id", FlowIdUtils.peek());
         }
     }
 
-    private void setEventTypeName(final JSONObject metadata, final EventType eventType) {
-        metadata.put("event_type", eventType.getName());
+    private void setEventTypeName(final Map<String, String> fields, final EventType eventType) {
+        fields.put("event_type", eventType.getName());
     }
 
-    private void setReceivedAt(final JSONObject metadata) {
+    private void setReceivedAt(final Map<String, String> fields) {
         final DateTime dateTime = new DateTime(DateTimeZone.UTC);
-        metadata.put("received_at", dateTime.toString());
+        fields.put("received_at", dateTime.toString());
     }
 
-    public void setPartition(final JSONObject metadata, final BatchItem batchItem) {
-        metadata.put("partition", batchItem.getPartition());
+    private void setPartition(final Map<String, String> fields, final BatchItem batchItem) {
+        fields.put("partition", batchItem.getPartition());
     }
 }
@@ -0,0 +1,279 @@
+package org.zalando.nakadi.enrichment;
+
+import org.json.JSONObject;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Replaces fields of the top level "metadata" object directly in the UTF-8 representation of an event, so that the
+ * enriched event doesn't have to be serialized from {@link JSONObject} again.
+ *
+ * The event is expected to be strict JSON (raw events are kept by {@link org.zalando.nakadi.domain.BatchItem} only
+ * after a strict check), the splicer is only checking the structure it has to walk through and gives up on anything
+ * that is not strict JSON (unquoted strings, single quotes, '=' as key separator and so on) by returning null. In that
+ * case caller should fall back to serialization of the parsed event.
+ */
+final class MetadataSplicer {
+
+    private static final byte[] METADATA_KEY = "\"metadata\"".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+
+    private MetadataSplicer(final byte[] data, final int offset, final int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Creates copy of the event with {@code fields} put to the metadata object. Existing fields with the same names
+     * are removed, fields with null value are just removed.
+     *
+     * @return enriched event or null if event can not be processed by the splicer.
+     */
+    @Nullable
+    static byte[] splice(final byte[] data, final int offset, final int length, final Map<String, String> fields) {
+        return new MetadataSplicer(data, offset, length).splice(offset, fields);
+    }
+
+    @Nullable
+    private byte[] splice(final int offset, final Map<String, String> fields) {
+        skipWhitespaces();
+        if (!skip('{')) {
+            return null;
+        }
+        while (true) {
+            skipWhitespaces();
+            final int keyStart = pos;
+            if (!skipString()) {
+                return null;
+            }
+            final boolean isMetadata = isMetadataKey(keyStart, pos);
+            skipWhitespaces();
+            if (!skip(':')) {
+                return null;
+            }
+            skipWhitespaces();
+            if (isMetadata) {
+                return spliceMetadata(offset, fields);
+            }
+            if (!skipValue()) {
+                return null;
+            }
+            skipWhitespaces();
+            if (!skip(',')) {
+                return null;
+            }
+        }
+    }
+
+    @Nullable
+    private byte[] spliceMetadata(final int offset, final Map<String, String> fields) {
+        final int metadataStart = pos;
+        if (!skip('{')) {
+            return null;
+        }
+        // start and end positions of the members that are kept
+        int[] members = new int[16];
+        int keptCount = 0;
+        int keptBytes = 0;
+        skipWhitespaces();
+        while (pos < end && data[pos] != '}') {
+            final int memberStart = pos;
+            if (!skipString()) {
+                return null;
+            }
+            final int keyEnd = pos;
+            skipWhitespaces();
+            if (!skip(':')) {
+                return null;
+            }
+            skipWhitespaces();
+            if (!skipValue()) {
+                return null;
+            }
+            final String key = readKey(memberStart, keyEnd);
+            if (key == null) {
+                return null;
+            }
+            if (!fields.containsKey(key)) {
+                if (keptCount * 2 == members.length) {
+                    final int[] extended = new int[members.length * 2];
+                    System.arraycopy(members, 0, extended, 0, members.length);
+                    members = extended;
+                }
+                members[keptCount * 2] = memberStart;
+                members[keptCount * 2 + 1] = pos;
+                keptBytes += pos - memberStart;
+                keptCount++;
+            }
+            skipWhitespaces();
+            if (skip(',')) {
+                skipWhitespaces();
+            } else if (pos >= end || data[pos] != '}') {
+                return null;
+            }
+        }
+        if (pos >= end) {
+            return null;
+        }
+        final int metadataEnd = pos;
+
+        final StringBuilder added = new StringBuilder();
+        for (final Map.Entry<String, String> field : fields.entrySet()) {
+            if (field.getValue() != null) {
+                if (keptCount > 0 || added.length() > 0) {
+                    added.append(',');
+                }
+                added.append(JSONObject.quote(field.getKey())).append(':').append(JSONObject.quote(field.getValue()));
+            }
+        }
+        final byte[] addedBytes = added.toString().getBytes(StandardCharsets.UTF_8);
+
+        final int prefixLength = metadataStart - offset + 1;
+        final int suffixLength = end - metadataEnd;
+        final int metadataLength = keptBytes + Math.max(keptCount - 1, 0) + addedBytes.length;
+        final byte[] result = new byte[prefixLength + metadataLength + suffixLength];
+
+        System.arraycopy(data, offset, result, 0, prefixLength);
+        int resultPos = prefixLength;
+        for (int i = 0; i < keptCount; i++) {
+            if (i > 0) {
+                result[resultPos++] = ',';
+            }
+            final int memberLength = members[i * 2 + 1] - members[i * 2];
+            System.arraycopy(data, members[i * 2], result, resultPos, memberLength);
+            resultPos += memberLength;
+        }
+        System.arraycopy(addedBytes, 0, result, resultPos, addedBytes.length);
+        resultPos += addedBytes.length;
+        System.arraycopy(data, metadataEnd, result, resultPos, suffixLength);
+        return result;
+    }
+
+    private boolean isMetadataKey(final int keyStart, final int keyEnd) {
+        if (keyEnd - keyStart != METADATA_KEY.length) {
+            return false;
+        }
+        for (int i = 0; i < METADATA_KEY.length; i++) {
+            if (data[keyStart + i] != METADATA_KEY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private String readKey(final int keyStart, final int keyEnd) {
+        for (int i = keyStart + 1; i < keyEnd - 1; i++) {
+            if (data[i] == '\\') {
+                // Escaped keys are too rare to bother with unescaping
+                return null;
+            }
+        }
+        return new String(data, keyStart + 1, keyEnd - keyStart - 2, StandardCharsets.UTF_8);
+    }
+
+    private boolean skipValue() {
+        if (pos >= end) {
+            return false;
+        }
+        switch (data[pos]) {
+            case '"':
+                return skipString();
+            case '{':
+            case '[':
+                return skipStructure();
+            default:
+                return skipLiteral();
+        }
+    }
+
+    private boolean skipString() {
+        if (!skip('"')) {
+            return false;
+        }
+        boolean escaped = false;
+        while (pos < end) {
+            final byte current = data[pos++];
+            if (escaped) {
+                escaped = false;
+            } else if (current == '\\') {
+                escaped = true;
+            } else if (current == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipStructure() {
+        int depth = 0;
+        while (pos < end) {
+            final byte current = data[pos];
+            if (current == '"') {
+                if (!skipString()) {
+                    return false;
+                }
+                continue;
+            } else if (current == '{' || current == '[') {
+                depth++;
+            } else if (current == '}' || current == ']') {
+                depth--;
+            } else if (current == '\'') {
+                return false;
+            }
+            pos++;
+            if (depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipLiteral() {
+        if (skipKeyword("true") || skipKeyword("false") || skipKeyword("null")) {
+            return true;
+        }
+        final int start = pos;
+        while (pos < end && isNumberCharacter(data[pos])) {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private boolean skipKeyword(final String keyword) {
+        if (end - pos < keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (data[pos + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        pos += keyword.length();
+        return true;
+    }
+
+    private boolean skip(final char expected) {
+        if (pos < end && data[pos] == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespaces() {
+        while (pos < end && (data[pos] == ' ' || data[pos] == '\t' || data[pos] == '\n' || data[pos] == '\r')) {
+            pos++;
+        }
+    }
+
+    private static boolean isNumberCharacter(final byte b) {
+        return (b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E';
+    }
+}
@@ -0,0 +1,68 @@
+package org.zalando.nakadi.partitioning;
+
+import org.json.JSONObject;
+import org.zalando.nakadi.domain.EventCategory;
+import org.zalando.nakadi.domain.EventType;
+import org.zalando.nakadi.exceptions.InvalidPartitionKeyFieldsException;
+import org.zalando.nakadi.util.JsonPathAccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash partitioning prepared for one event type and one partition count: partition key paths are tokenized and the
+ * partition for every hash bucket (sorted partitions with the order adjusted by {@link HashPartitionStrategyCrutch})
+ * is resolved once, so that only the hash of the key fields is calculated for each event.
+ */
+class CompiledHashPartitioner {
+
+    private final EventType eventType;
+    private final List<String> partitionKeyFields;
+    private final EventCategory category;
+    private final String[][] keyPaths;
+    private final String[] routes;
+
+    CompiledHashPartitioner(final EventType eventType, final List<String> partitions,
+                            final HashPartitionStrategyCrutch hashPartitioningCrutch, final String dataPathPrefix) {
+        this.eventType = eventType;
+        this.partitionKeyFields = new ArrayList<>(eventType.getPartitionKeyFields());
+        this.category = eventType.getCategory();
+
+        final String prefix = EventCategory.DATA.equals(category) ? dataPathPrefix : "";
+        this.keyPaths = new String[partitionKeyFields.size()][];
+        for (int i = 0; i < keyPaths.length; i++) {
+            keyPaths[i] = JsonPathAccess.tokenize(prefix + partitionKeyFields.get(i));
+        }
+
+        final String[] sortedPartitions = partitions.toArray(new String[partitions.size()]);
+        Arrays.sort(sortedPartitions);
+        this.routes = new String[sortedPartitions.length];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = sortedPartitions[hashPartitioningCrutch.adjustPartitionIndex(i, routes.length)];
+        }
+    }
+
+    /**
+     * Event type instances are replaced in the cache when they are changed, key fields and category are compared as
+     * well because event types are mutable.
+     */
+    boolean isCompiledFor(final EventType eventType, final int partitionsCount) {
+        return this.eventType == eventType
+                && partitionKeyFields.equals(eventType.getPartitionKeyFields())
+                && category == eventType.getCategory()
+                && routes.length == partitionsCount;
+    }
+
+    String calculatePartition(final JSONObject event, final StringHash stringHash)
+            throws InvalidPartitionKeyFieldsException {
+        final JsonPathAccess traversableJsonEvent = new JsonPathAccess(event);
+        int hashValue = 0;
+        for (final String[] keyPath : keyPaths) {
+            // The problem is that JSONObject doesn't override hashCode(). Therefore convert it to
+            // a string first and then use hashCode()
+            hashValue += stringHash.hashCode(traversableJsonEvent.get(keyPath).toString());
+        }
+        return routes[Math.abs(hashValue) % routes.length];
+    }
+}
@@ -3,18 +3,14 @@ package org.zalando.nakadi.partitioning;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.zalando.nakadi.domain.EventCategory;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.exceptions.InvalidPartitionKeyFieldsException;
-import org.zalando.nakadi.exceptions.NakadiRuntimeException;
-import org.zalando.nakadi.exceptions.Try;
-import org.zalando.nakadi.util.JsonPathAccess;
+import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.validation.JsonSchemaEnrichment;
 
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static java.lang.Math.abs;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Component
 public class HashPartitionStrategy implements PartitionStrategy {
@@ -23,54 +19,39 @@ public class HashPartitionStrategy implements PartitionStrategy {
 
     private final HashPartitionStrategyCrutch hashPartitioningCrutch;
     private final StringHash stringHash;
+    private final ConcurrentMap<String, CompiledHashPartitioner> partitioners = new ConcurrentHashMap<>();
 
     @Autowired
     public HashPartitionStrategy(final HashPartitionStrategyCrutch hashPartitioningCrutch,
-                                 final StringHash stringHash) {
+                                 final StringHash stringHash,
+                                 final EventTypeCache eventTypeCache) {
         this.hashPartitioningCrutch = hashPartitioningCrutch;
         this.stringHash = stringHash;
+        eventTypeCache.addInvalidationListener(partitioners::remove);
     }
 
     @Override
     public String calculatePartition(final EventType eventType, final JSONObject event, final List<String> partitions)
             throws InvalidPartitionKeyFieldsException {
-        final List<String> partitionKeyFields = eventType.getPartitionKeyFields();
-        if (partitionKeyFields.isEmpty()) {
+        if (eventType.getPartitionKeyFields().isEmpty()) {
             throw new RuntimeException("Applying " + this.getClass().getSimpleName() + " although event type " +
                     "has no partition key fields configured.");
         }
+        return getPartitioner(eventType, partitions).calculatePartition(event, stringHash);
+    }
 
-        try {
-
-            final JsonPathAccess traversableJsonEvent = new JsonPathAccess(event);
-
-            final int hashValue = partitionKeyFields.stream()
-                    // The problem is that JSONObject doesn't override hashCode(). Therefore convert it to
-                    // a string first and then use hashCode()
-                    .map(pkf -> EventCategory.DATA.equals(eventType.getCategory()) ? DATA_PATH_PREFIX + pkf : pkf)
-                    .map(Try.wrap(okf -> {
-                        final String fieldValue = traversableJsonEvent.get(okf).toString();
-                        return stringHash.hashCode(fieldValue);
-                    }))
-                    .map(Try::getOrThrow)
-                    .mapToInt(hc -> hc)
-                    .sum();
-
-
-            int partitionIndex = abs(hashValue) % partitions.size();
-            partitionIndex = hashPartitioningCrutch.adjustPartitionIndex(partitionIndex, partitions.size());
-
-            final List<String> sortedPartitions = partitions.stream().sorted().collect(Collectors.toList());
-            return sortedPartitions.get(partitionIndex);
-
-        } catch (NakadiRuntimeException e) {
-            final Exception original = e.getException();
-            if (original instanceof InvalidPartitionKeyFieldsException) {
-                throw (InvalidPartitionKeyFieldsException) original;
-            } else {
-                throw e;
-            }
+    private CompiledHashPartitioner getPartitioner(final EventType eventType, final List<String> partitions) {
+        final String name = eventType.getName();
+        final CompiledHashPartitioner cached = null == name ? null : partitioners.get(name);
+        if (null != cached && cached.isCompiledFor(eventType, partitions.size())) {
+            return cached;
+        }
+        final CompiledHashPartitioner compiled =
+                new CompiledHashPartitioner(eventType, partitions, hashPartitioningCrutch, DATA_PATH_PREFIX);
+        if (null != name) {
+            partitioners.put(name, compiled);
         }
+        return compiled;
     }
 
 }
@@ -0,0 +1,105 @@
+package org.zalando.nakadi.repository;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Fetch configuration of the consumer of one stream, derived from the stream parameters. Stream with small batches
+ * gets events as soon as they appear, stream with big batches lets kafka collect more data in one fetch, but never
+ * waits for the data longer than a fraction of the batch flush timeout.
+ */
+public class ConsumerTuning {
+
+    public static final ConsumerTuning DEFAULT = new ConsumerTuning(null, null, null);
+
+    static final int MIN_POLL_RECORDS = 100;
+    static final int MAX_POLL_RECORDS = 10000;
+    // number of batches of the stream that are fetched in one poll
+    private static final int BATCHES_PER_POLL = 4;
+    private static final int ESTIMATED_EVENT_BYTES = 256;
+    private static final int MAX_FETCH_MIN_BYTES = 1024 * 1024;
+    private static final int MIN_FETCH_WAIT_MS = 10;
+    private static final int MAX_FETCH_WAIT_MS = 500;
+
+    private final Integer maxPollRecords;
+    private final Integer fetchMinBytes;
+    private final Integer fetchMaxWaitMs;
+
+    ConsumerTuning(final Integer maxPollRecords, final Integer fetchMinBytes, final Integer fetchMaxWaitMs) {
+        this.maxPollRecords = maxPollRecords;
+        this.fetchMinBytes = fetchMinBytes;
+        this.fetchMaxWaitMs = fetchMaxWaitMs;
+    }
+
+    public static ConsumerTuning forLowLevelStream(final int batchLimit, final long batchTimeoutMs) {
+        return of(batchLimit, Integer.MAX_VALUE, batchTimeoutMs);
+    }
+
+    /**
+     * Subscription stream can't have more events in flight than max_uncommitted_events, so it doesn't need to poll
+     * more events at once.
+     */
+    public static ConsumerTuning forSubscriptionStream(final int batchLimit, final int maxUncommittedEvents,
+                                                       final long batchTimeoutMs) {
+        return of(batchLimit, maxUncommittedEvents, batchTimeoutMs);
+    }
+
+    private static ConsumerTuning of(final int batchLimit, final int maxInFlightEvents, final long batchTimeoutMs) {
+        final int batch = Math.max(batchLimit, 1);
+        final long pollRecords = Math.min(
+                clamp((long) batch * BATCHES_PER_POLL, MIN_POLL_RECORDS, MAX_POLL_RECORDS),
+                Math.max(maxInFlightEvents, batch));
+        final int fetchMinBytes = batch == 1 ? 1 :
+                (int) clamp((long) batch * ESTIMATED_EVENT_BYTES, 1, MAX_FETCH_MIN_BYTES);
+        final int fetchMaxWaitMs = (int) clamp(batchTimeoutMs / 10, MIN_FETCH_WAIT_MS, MAX_FETCH_WAIT_MS);
+        return new ConsumerTuning((int) pollRecords, fetchMinBytes, fetchMaxWaitMs);
+    }
+
+    private static long clamp(final long value, final long min, final long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Maximal number of records returned by one poll, or default of the consumer if it is not tuned.
+     */
+    public int getMaxPollRecords(final int defaultValue) {
+        return null == maxPollRecords ? defaultValue : maxPollRecords;
+    }
+
+    public void applyTo(final Properties consumerProperties) {
+        if (null != maxPollRecords) {
+            consumerProperties.put("max.poll.records", maxPollRecords);
+        }
+        if (null != fetchMinBytes) {
+            consumerProperties.put("fetch.min.bytes", fetchMinBytes);
+        }
+        if (null != fetchMaxWaitMs) {
+            consumerProperties.put("fetch.max.wait.ms", fetchMaxWaitMs);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ConsumerTuning that = (ConsumerTuning) o;
+        return Objects.equals(maxPollRecords, that.maxPollRecords)
+                && Objects.equals(fetchMinBytes, that.fetchMinBytes)
+                && Objects.equals(fetchMaxWaitMs, that.fetchMaxWaitMs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxPollRecords, fetchMinBytes, fetchMaxWaitMs);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumerTuning{maxPollRecords=" + maxPollRecords + ", fetchMinBytes=" + fetchMinBytes +
+                ", fetchMaxWaitMs=" + fetchMaxWaitMs + "}";
+    }
+}
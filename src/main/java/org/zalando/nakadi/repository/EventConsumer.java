@@ -16,6 +16,21 @@ public interface EventConsumer extends Closeable {
 
     List<ConsumedEvent> readEvents();
 
+    /**
+     * Reads events that are already available without waiting for new data. Consumers that are not able to do it
+     * are reading as {@link #readEvents()} does.
+     */
+    default List<ConsumedEvent> readAvailableEvents() {
+        return readEvents();
+    }
+
+    /**
+     * Limits the number of events returned by one read, events that were already fetched over the limit are returned
+     * by the next reads. Consumers that are not able to limit reads are ignoring the limit.
+     */
+    default void setReadLimit(final int maxEvents) {
+    }
+
     interface LowLevelConsumer extends EventConsumer {
         Set<TopicPartition> getAssignment();
     }
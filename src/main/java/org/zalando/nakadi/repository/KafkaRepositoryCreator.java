@@ -53,9 +53,10 @@ public class KafkaRepositoryCreator implements TopicRepositoryCreator {
                     kafkaConfiguration.getExhibitorAddress(),
                     kafkaConfiguration.getExhibitorPort());
             final KafkaFactory kafkaFactory =
-                    new KafkaFactory(new KafkaLocationManager(zooKeeperHolder, kafkaSettings), metricRegistry);
+                    new KafkaFactory(new KafkaLocationManager(zooKeeperHolder, kafkaSettings), metricRegistry,
+                            kafkaSettings.getProducersCount());
             final KafkaTopicRepository kafkaTopicRepository = new KafkaTopicRepository(zooKeeperHolder,
-                    kafkaFactory, nakadiSettings, kafkaSettings, zookeeperSettings, uuidGenerator);
+                    kafkaFactory, nakadiSettings, kafkaSettings, zookeeperSettings, uuidGenerator, metricRegistry);
             // check that it does work
             kafkaTopicRepository.listTopics();
             return kafkaTopicRepository;
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -36,6 +37,7 @@ import java.util.stream.Collectors;
 
 public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEventConsumer {
     private final String clientId;
+    private final ConsumerTuning tuning;
     /**
      * Contains latest offsets that were sent to client of this class
      */
@@ -60,13 +62,16 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
     private final TimelineService timelineService;
     private final TimelineSync timelineSync;
     private final AtomicBoolean timelinesChanged = new AtomicBoolean(false);
+    private int readLimit = Integer.MAX_VALUE;
     private static final Logger LOG = LoggerFactory.getLogger(MultiTimelineEventConsumer.class);
 
     public MultiTimelineEventConsumer(
             final String clientId,
+            final ConsumerTuning tuning,
             final TimelineService timelineService,
             final TimelineSync timelineSync) {
         this.clientId = clientId;
+        this.tuning = tuning;
         this.timelineService = timelineService;
         this.timelineSync = timelineSync;
     }
@@ -78,6 +83,15 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
 
     @Override
     public List<ConsumedEvent> readEvents() {
+        return readEvents(true);
+    }
+
+    @Override
+    public List<ConsumedEvent> readAvailableEvents() {
+        return readEvents(false);
+    }
+
+    private List<ConsumedEvent> readEvents(final boolean waitForData) {
         if (timelinesChanged.compareAndSet(true, false)) {
             try {
                 onTimelinesChanged();
@@ -85,8 +99,14 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
                 throw new NakadiRuntimeException(ex);
             }
         }
-        final List<ConsumedEvent> result = poll();
-        for (final ConsumedEvent event : result) {
+        final List<ConsumedEvent> result = poll(waitForData);
+        for (int i = 0; i < result.size(); ++i) {
+            final ConsumedEvent event = result.get(i);
+            // events of the same partition are going one after another, offsets within partition are growing, so it
+            // is enough to check only the last event of the partition, in order not to create all the positions
+            if (i + 1 < result.size() && isSamePartition(event, result.get(i + 1))) {
+                continue;
+            }
             final EventTypePartition etp = event.getPosition().getEventTypePartition();
             latestOffsets.put(etp, event.getPosition());
             final String border = borderOffsets.get(etp);
@@ -99,16 +119,30 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
         return result;
     }
 
+    @Override
+    public void setReadLimit(final int maxEvents) {
+        if (readLimit != maxEvents) {
+            readLimit = maxEvents;
+            eventConsumers.values().forEach(consumer -> consumer.setReadLimit(maxEvents));
+        }
+    }
+
+    private static boolean isSamePartition(final ConsumedEvent first, final ConsumedEvent second) {
+        return first.getTimeline() == second.getTimeline()
+                && Objects.equals(first.getPartition(), second.getPartition());
+    }
+
     /**
      * Gets data from current event consumers. It tries to use as less list allocations as it is possible.
      *
      * @return List of consumed events.
      */
-    private List<ConsumedEvent> poll() {
+    private List<ConsumedEvent> poll(final boolean waitForData) {
         List<ConsumedEvent> result = null;
         boolean newCollectionCreated = false;
         for (final EventConsumer consumer : eventConsumers.values()) {
-            final List<ConsumedEvent> partialResult = consumer.readEvents();
+            final List<ConsumedEvent> partialResult =
+                    waitForData ? consumer.readEvents() : consumer.readAvailableEvents();
             if (null == result) {
                 result = partialResult;
             } else {
@@ -230,7 +264,11 @@ public class MultiTimelineEventConsumer implements EventConsumer.ReassignableEve
                 final TopicRepository repo = entry.getKey();
                 LOG.info("Creating underlying consumer for client id {} and cursors {}",
                         clientId, Arrays.deepToString(entry.getValue().toArray()));
-                final EventConsumer.LowLevelConsumer consumer = repo.createEventConsumer(clientId, entry.getValue());
+                final EventConsumer.LowLevelConsumer consumer =
+                        repo.createEventConsumer(clientId, entry.getValue(), tuning);
+                if (readLimit != Integer.MAX_VALUE) {
+                    consumer.setReadLimit(readLimit);
+                }
                 eventConsumers.put(repo, consumer);
             }
         }
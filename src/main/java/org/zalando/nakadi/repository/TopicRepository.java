@@ -1,6 +1,7 @@
 package org.zalando.nakadi.repository;
 
 import org.zalando.nakadi.domain.BatchItem;
+import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.PartitionEndStatistics;
 import org.zalando.nakadi.domain.PartitionStatistics;
@@ -17,6 +18,7 @@ import org.zalando.nakadi.exceptions.runtime.TopicRepositoryException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface TopicRepository {
 
@@ -44,7 +46,16 @@ public interface TopicRepository {
 
     boolean topicExists(String topic) throws TopicRepositoryException;
 
-    void syncPostBatch(String topicId, List<BatchItem> batch) throws EventPublishingException;
+    /**
+     * Publishes batch without blocking the calling thread.
+     * @param topicId Topic to publish batch to
+     * @param batch Batch items with resolved partitions
+     * @param eventType Event type that the batch is published to, its options may define how batch is published
+     * @return Future that is completed with the batch when all the items are submitted, or completed exceptionally
+     * with {@link EventPublishingException} when at least one of the items failed. Items statuses are updated in
+     * both cases.
+     */
+    CompletableFuture<List<BatchItem>> postBatch(String topicId, List<BatchItem> batch, EventType eventType);
 
     Optional<PartitionStatistics> loadPartitionStatistics(Timeline timeline, String partition)
             throws ServiceUnavailableException;
@@ -65,7 +76,8 @@ public interface TopicRepository {
 
     List<String> listPartitionNames(String topicId);
 
-    EventConsumer.LowLevelConsumer createEventConsumer(String clientId, List<NakadiCursor> positions)
+    EventConsumer.LowLevelConsumer createEventConsumer(String clientId, List<NakadiCursor> positions,
+                                                       ConsumerTuning tuning)
             throws NakadiException, InvalidCursorException;
 
     int compareOffsets(NakadiCursor first, NakadiCursor second) throws InvalidCursorException;
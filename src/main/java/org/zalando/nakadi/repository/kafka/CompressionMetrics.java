@@ -0,0 +1,132 @@
+package org.zalando.nakadi.repository.kafka;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reports compression of the events published with compressing producers. Compression rate is taken from the
+ * topic metrics of kafka producer (average ratio of compressed to uncompressed batch size over the sampling window
+ * of the producer) and is exported per event type as it is, together with the estimation of bytes saved by the
+ * compression.
+ */
+class CompressionMetrics {
+
+    private static final String TOPIC_METRICS_GROUP = "producer-topic-metrics";
+    private static final String COMPRESSION_RATE = "compression-rate";
+
+    private final MetricRegistry metricRegistry;
+    private final ConcurrentMap<String, TopicCompressionRate> rates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompressionRatioGauge> gauges = new ConcurrentHashMap<>();
+
+    CompressionMetrics(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    private static class TopicCompressionRate {
+        private final Producer<?, ?> producer;
+        private final Metric metric;
+
+        private TopicCompressionRate(final Producer<?, ?> producer, final Metric metric) {
+            this.producer = producer;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * Compression ratio in percent, reported by the producer that was used for the event type last time. The rate is
+     * unknown after that producer was closed and until the event type is published with another one.
+     */
+    private static class CompressionRatioGauge implements Gauge<Long> {
+        private volatile TopicCompressionRate rate;
+
+        private CompressionRatioGauge(final TopicCompressionRate rate) {
+            this.rate = rate;
+        }
+
+        @Override
+        public Long getValue() {
+            final TopicCompressionRate current = rate;
+            if (null == current) {
+                return null;
+            }
+            final double value = current.metric.value();
+            return isKnown(value) ? Math.round(value * 100) : null;
+        }
+    }
+
+    void record(final String eventType, final String topic, final Producer<?, ?> producer,
+                final long uncompressedBytes) {
+        final TopicCompressionRate compressionRate = getCompressionRate(topic, producer);
+        if (null == compressionRate) {
+            return;
+        }
+        final double rate = compressionRate.metric.value();
+        // rate is not known until producer sent the first batch to the topic
+        if (!isKnown(rate)) {
+            return;
+        }
+        setGaugeRate(eventType, compressionRate);
+        metricRegistry.counter(MetricRegistry.name("nakadi.publishing", eventType, "compression_bytes_saved"))
+                .inc(Math.round(uncompressedBytes * (1 - rate)));
+    }
+
+    /**
+     * Forgets the metrics of the closed producer, so that neither the producer nor its metrics are kept referenced.
+     */
+    void onProducerClosed(final Producer<?, ?> producer) {
+        rates.values().removeIf(rate -> rate.producer == producer);
+        for (final CompressionRatioGauge gauge : gauges.values()) {
+            final TopicCompressionRate rate = gauge.rate;
+            if (null != rate && rate.producer == producer) {
+                gauge.rate = null;
+            }
+        }
+    }
+
+    private static boolean isKnown(final double rate) {
+        return rate > 0 && rate <= 1;
+    }
+
+    private void setGaugeRate(final String eventType, final TopicCompressionRate rate) {
+        final CompressionRatioGauge gauge = gauges.get(eventType);
+        if (null == gauge) {
+            // gauge is registered with the rate already set, so that reporters never see it without one
+            gauges.computeIfAbsent(eventType, et -> metricRegistry.register(
+                    MetricRegistry.name("nakadi.publishing", et, "compression_ratio"),
+                    new CompressionRatioGauge(rate))).rate = rate;
+        } else {
+            gauge.rate = rate;
+        }
+    }
+
+    private TopicCompressionRate getCompressionRate(final String topic, final Producer<?, ?> producer) {
+        TopicCompressionRate rate = rates.get(topic);
+        if (null == rate || rate.producer != producer) {
+            final Metric metric = findMetric(topic, producer);
+            if (null == metric) {
+                return null;
+            }
+            rate = new TopicCompressionRate(producer, metric);
+            rates.put(topic, rate);
+        }
+        return rate;
+    }
+
+    private static Metric findMetric(final String topic, final Producer<?, ?> producer) {
+        for (final Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            if (COMPRESSION_RATE.equals(name.name()) && TOPIC_METRICS_GROUP.equals(name.group())
+                    && topic.equals(name.tags().get("topic"))) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
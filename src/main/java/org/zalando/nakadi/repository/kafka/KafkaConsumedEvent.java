@@ -0,0 +1,37 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+
+/**
+ * Event read from kafka. Partition is shared by all the events of the same partition and the offset is kept as a
+ * number, cursor with the formatted offset is created only when the position of the event is requested.
+ */
+class KafkaConsumedEvent extends ConsumedEvent {
+
+    private final NakadiKafkaConsumer.TimelinePartition partition;
+    private final long offset;
+
+    KafkaConsumedEvent(final byte[] event, final NakadiKafkaConsumer.TimelinePartition partition,
+                       final long offset) {
+        super(event);
+        this.partition = partition;
+        this.offset = offset;
+    }
+
+    @Override
+    public Timeline getTimeline() {
+        return partition.getTimeline();
+    }
+
+    @Override
+    public String getPartition() {
+        return partition.getPartition();
+    }
+
+    @Override
+    protected NakadiCursor createPosition() {
+        return new NakadiCursor(partition.getTimeline(), partition.getPartition(), KafkaCursor.toNakadiOffset(offset));
+    }
+}
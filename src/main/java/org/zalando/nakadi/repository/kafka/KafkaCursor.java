@@ -4,12 +4,15 @@ import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.InvalidCursorException;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import static org.zalando.nakadi.domain.CursorError.INVALID_FORMAT;
 import static org.zalando.nakadi.domain.CursorError.PARTITION_NOT_FOUND;
 
 public class KafkaCursor implements Comparable<KafkaCursor> {
+    private static final int NAKADI_OFFSET_LENGTH = 18;
+
     private final String topic;
     private final int partition;
     private final long offset;
@@ -43,7 +46,16 @@ public class KafkaCursor implements Comparable<KafkaCursor> {
     }
 
     public static String toNakadiOffset(final long offset) {
-        return offset >= 0 ? String.format("%018d", offset) : String.valueOf(offset);
+        final String value = String.valueOf(offset);
+        if (offset < 0 || value.length() >= NAKADI_OFFSET_LENGTH) {
+            return value;
+        }
+        // same as String.format("%018d", offset), but without parsing of the format on every call
+        final char[] padded = new char[NAKADI_OFFSET_LENGTH];
+        final int padding = NAKADI_OFFSET_LENGTH - value.length();
+        Arrays.fill(padded, 0, padding, '0');
+        value.getChars(0, value.length(), padded, padding);
+        return new String(padded);
     }
 
     public static String toNakadiPartition(final int partition) {
@@ -2,133 +2,285 @@ package org.zalando.nakadi.repository.kafka;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zalando.nakadi.repository.ConsumerTuning;
 
 import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class KafkaFactory {
 
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaFactory.class);
+    static final long POOL_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long POOL_CHECK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
     private final KafkaLocationManager kafkaLocationManager;
+    private final MetricRegistry metricRegistry;
     private final Counter useCountMetric;
     private final Counter producerTerminations;
-    @Nullable
-    private Producer<String, String> activeProducer;
-    private final Map<Producer<String, String>, AtomicInteger> useCount = new ConcurrentHashMap<>();
-    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final int producersCount;
+    private final ConcurrentMap<ProducerOptions, ProducerPool> pools = new ConcurrentHashMap<>();
+    private final Map<Producer<String, byte[]>, ProducerHolder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong lastPoolsCheck = new AtomicLong();
+    private final List<ProducerCloseListener> closeListeners = new CopyOnWriteArrayList<>();
 
-    private static final Logger LOG = LoggerFactory.getLogger(KafkaFactory.class);
+    public interface ProducerCloseListener {
+        void onProducerClosed(Producer<String, byte[]> producer);
+    }
 
-    public KafkaFactory(final KafkaLocationManager kafkaLocationManager, final MetricRegistry metricRegistry) {
+    /**
+     * Producer instance with the number of its users. Slot that the producer is active in is counted as a user as
+     * well, so producer is closed when it is not active anymore and all the users released it.
+     */
+    private static class ProducerHolder {
+        private final Producer<String, byte[]> producer;
+        private final AtomicInteger useCount = new AtomicInteger(1);
+        private final AtomicBoolean terminated = new AtomicBoolean(false);
+        private final ProducerSlot slot;
+
+        private ProducerHolder(final Producer<String, byte[]> producer, final ProducerSlot slot) {
+            this.producer = producer;
+            this.slot = slot;
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = useCount.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!useCount.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+
+    private static class ProducerSlot {
+        private final AtomicReference<ProducerHolder> active = new AtomicReference<>();
+        private final ProducerPool pool;
+        private final Counter useCount;
+        private final Counter terminations;
+
+        private ProducerSlot(final ProducerPool pool, final Counter useCount, final Counter terminations) {
+            this.pool = pool;
+            this.useCount = useCount;
+            this.terminations = terminations;
+        }
+    }
+
+    /**
+     * Producers created with the same options. Pools of options other than default are closed when they were not
+     * used for {@link #POOL_IDLE_TIMEOUT_MS}, e.g. because event types using them were changed or deleted.
+     */
+    private static class ProducerPool {
+        private final ProducerOptions options;
+        private final ProducerSlot[] slots;
+        private final AtomicInteger users = new AtomicInteger();
+        private volatile long lastUsedMs;
+        private volatile boolean closed;
+
+        private ProducerPool(final ProducerOptions options, final int producersCount, final long now) {
+            this.options = options;
+            this.slots = new ProducerSlot[producersCount];
+            this.lastUsedMs = now;
+        }
+    }
+
+    public KafkaFactory(final KafkaLocationManager kafkaLocationManager, final MetricRegistry metricRegistry,
+                        final int producersCount) {
+        Preconditions.checkArgument(producersCount > 0, "At least one kafka producer is required");
         this.kafkaLocationManager = kafkaLocationManager;
+        this.metricRegistry = metricRegistry;
         this.useCountMetric = metricRegistry.counter("kafka.producer.use_count");
         this.producerTerminations = metricRegistry.counter("kafka.producer.termination_count");
+        this.producersCount = producersCount;
+        pools.put(ProducerOptions.DEFAULT, createPool(ProducerOptions.DEFAULT));
     }
 
-    @Nullable
-    private Producer<String, String> takeUnderLock(final boolean canCreate) {
-        final Lock lock = canCreate ? rwLock.writeLock() : rwLock.readLock();
-        lock.lock();
-        try {
-            if (null != activeProducer) {
-                useCount.get(activeProducer).incrementAndGet();
-                return activeProducer;
-            } else if (canCreate) {
-                activeProducer = createProducerInstance();
-                useCount.put(activeProducer, new AtomicInteger(1));
-                LOG.info("New producer instance created: " + activeProducer);
-                return activeProducer;
-            } else {
-                return null;
-            }
-        } finally {
-            lock.unlock();
+    private ProducerPool createPool(final ProducerOptions options) {
+        // metric names of the default pool are kept as they were before producers were pooled by options
+        final String prefix = ProducerOptions.DEFAULT.equals(options) ?
+                "kafka.producer" : MetricRegistry.name("kafka.producer", options.getName());
+        final ProducerPool pool = new ProducerPool(options, producersCount, currentTimeMillis());
+        for (int i = 0; i < producersCount; ++i) {
+            pool.slots[i] = new ProducerSlot(
+                    pool,
+                    metricRegistry.counter(MetricRegistry.name(prefix, String.valueOf(i), "use_count")),
+                    metricRegistry.counter(MetricRegistry.name(prefix, String.valueOf(i), "termination_count")));
         }
+        return pool;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
     }
 
-    protected Producer<String, String> createProducerInstance() {
-        return new KafkaProducer<>(kafkaLocationManager.getKafkaProducerProperties());
+    protected Producer<String, byte[]> createProducerInstance(final ProducerOptions options) {
+        final Properties properties = kafkaLocationManager.getKafkaProducerProperties();
+        options.applyTo(properties);
+        return new KafkaProducer<>(properties);
     }
 
     /**
-     * Takes producer from producer cache. Every producer, that was received by this method must be released with
-     * {@link #releaseProducer(Producer)} method.
+     * Takes producer with default options from producer pool, see {@link #takeProducer(String, ProducerOptions)}.
+     */
+    public Producer<String, byte[]> takeProducer(final String topic) {
+        return takeProducer(topic, ProducerOptions.DEFAULT);
+    }
+
+    /**
+     * Takes producer from producer pool. All the publishing to the same topic with the same options is done with the
+     * same producer, that is chosen by topic hash from the producers created with these options. Every producer, that
+     * was received by this method must be released with {@link #releaseProducer(Producer)} method.
      *
+     * @param topic Topic that producer is going to be used for.
+     * @param options Options that producer should be configured with.
      * @return Initialized kafka producer instance.
      */
-    public Producer<String, String> takeProducer() {
-        Producer<String, String> result = takeUnderLock(false);
-        if (null == result) {
-            result = takeUnderLock(true);
+    public Producer<String, byte[]> takeProducer(final String topic, final ProducerOptions options) {
+        closeIdlePoolsIfNeeded();
+        ProducerPool pool;
+        while (true) {
+            pool = pools.get(options);
+            if (null == pool) {
+                pool = pools.computeIfAbsent(options, this::createPool);
+            }
+            pool.users.incrementAndGet();
+            if (!pool.closed) {
+                break;
+            }
+            // pool was closed right before it was taken, the next attempt will get or create another one
+            pool.users.decrementAndGet();
+        }
+        final ProducerSlot slot = pool.slots[(topic.hashCode() & Integer.MAX_VALUE) % pool.slots.length];
+        while (true) {
+            final ProducerHolder holder = slot.active.get();
+            if (null == holder) {
+                createProducer(slot);
+            } else if (holder.tryAcquire()) {
+                if (holder.terminated.get()) {
+                    // producer was terminated right before it was acquired
+                    release(holder);
+                    continue;
+                }
+                useCountMetric.inc();
+                slot.useCount.inc();
+                return holder.producer;
+            }
+        }
+    }
+
+    private void createProducer(final ProducerSlot slot) {
+        // Creation is rare and expensive, so it is done under the lock to avoid creating several instances at once
+        synchronized (slot) {
+            if (null == slot.active.get()) {
+                final ProducerHolder holder = new ProducerHolder(createProducerInstance(slot.pool.options), slot);
+                holders.put(holder.producer, holder);
+                slot.active.set(holder);
+                LOG.info("New producer instance created: " + holder.producer);
+            }
         }
-        useCountMetric.inc();
-        return result;
     }
 
     /**
-     * Release kafka producer that was obtained by {@link #takeProducer()} method. If producer was not obtained by
-     * {@link #takeProducer()} call - method will throw {@link NullPointerException}
+     * Release kafka producer that was obtained by {@link #takeProducer(String)} method. If producer was not obtained
+     * by {@link #takeProducer(String)} call - method will throw {@link NullPointerException}
      *
      * @param producer Producer to release.
      */
-    public void releaseProducer(final Producer<String, String> producer) {
+    public void releaseProducer(final Producer<String, byte[]> producer) {
+        final ProducerHolder holder = holders.get(producer);
         useCountMetric.dec();
-        final AtomicInteger counter = useCount.get(producer);
-        if (counter != null && 0 == counter.decrementAndGet()) {
-            final boolean deleteProducer;
-            rwLock.readLock().lock();
-            try {
-                deleteProducer = producer != activeProducer;
-            } finally {
-                rwLock.readLock().unlock();
-            }
-            if (deleteProducer) {
-                rwLock.writeLock().lock();
-                try {
-                    if (counter.get() == 0 && null != useCount.remove(producer)) {
-                        LOG.info("Stopping producer instance - It was reported that instance should be refreshed " +
-                                "and it is not used anymore: " + producer);
-                        producer.close();
-                    }
-                } finally {
-                    rwLock.writeLock().unlock();
-                }
-            }
+        holder.slot.useCount.dec();
+        holder.slot.pool.lastUsedMs = currentTimeMillis();
+        holder.slot.pool.users.decrementAndGet();
+        release(holder);
+    }
+
+    private void release(final ProducerHolder holder) {
+        if (0 == holder.useCount.decrementAndGet()) {
+            holders.remove(holder.producer);
+            LOG.info("Stopping producer instance - It was reported that instance should be refreshed " +
+                    "and it is not used anymore: " + holder.producer);
+            holder.producer.close();
+            closeListeners.forEach(listener -> listener.onProducerClosed(holder.producer));
         }
     }
 
     /**
-     * Notifies producer cache, that this producer should be marked as obsolete. All methods, that are using this
-     * producer instance right now can continue using it, but new calls to {@link #takeProducer()} will use some other
-     * producers.
-     * It is allowed to call this method only between {@link #takeProducer()} and {@link #releaseProducer(Producer)}
-     * method calls. (You can not terminate something that you do not own)
+     * Registers listener that is called after a producer was closed, e.g. to release the resources bound to it.
+     */
+    public void addProducerCloseListener(final ProducerCloseListener listener) {
+        closeListeners.add(listener);
+    }
+
+    /**
+     * Notifies producer pool, that this producer should be marked as obsolete. All methods, that are using this
+     * producer instance right now can continue using it, but new calls to {@link #takeProducer(String)} will use
+     * some other producers.
+     * It is allowed to call this method only between {@link #takeProducer(String)} and
+     * {@link #releaseProducer(Producer)} method calls. (You can not terminate something that you do not own)
      *
      * @param producer Producer instance to terminate.
      */
-    public void terminateProducer(final Producer<String, String> producer) {
+    public void terminateProducer(final Producer<String, byte[]> producer) {
         LOG.info("Received signal to terminate producer " + producer);
-        rwLock.writeLock().lock();
-        try {
-            if (producer == this.activeProducer) {
-                producerTerminations.inc();
-                this.activeProducer = null;
-            } else {
-                LOG.info("Signal for producer termination already received: " + producer);
+        final ProducerHolder holder = holders.get(producer);
+        if (holder.terminated.compareAndSet(false, true)) {
+            producerTerminations.inc();
+            holder.slot.terminations.inc();
+            holder.slot.active.compareAndSet(holder, null);
+            // the slot is not using the producer anymore
+            release(holder);
+        } else {
+            LOG.info("Signal for producer termination already received: " + producer);
+        }
+    }
+
+    private void closeIdlePoolsIfNeeded() {
+        final long now = currentTimeMillis();
+        final long lastCheck = lastPoolsCheck.get();
+        if (now - lastCheck >= POOL_CHECK_INTERVAL_MS && lastPoolsCheck.compareAndSet(lastCheck, now)) {
+            closeIdlePools(now);
+        }
+    }
+
+    void closeIdlePools(final long now) {
+        for (final ProducerPool pool : pools.values()) {
+            if (ProducerOptions.DEFAULT.equals(pool.options) || now - pool.lastUsedMs < POOL_IDLE_TIMEOUT_MS
+                    || pool.users.get() != 0) {
+                continue;
+            }
+            pool.closed = true;
+            if (pool.users.get() != 0) {
+                // pool was taken while it was being closed
+                pool.closed = false;
+                continue;
+            }
+            pools.remove(pool.options, pool);
+            LOG.info("Closing producers with options that were not used for a while: " + pool.options);
+            for (final ProducerSlot slot : pool.slots) {
+                final ProducerHolder holder = slot.active.getAndSet(null);
+                if (null != holder && holder.terminated.compareAndSet(false, true)) {
+                    release(holder);
+                }
             }
-        } finally {
-            rwLock.writeLock().unlock();
         }
     }
 
@@ -140,8 +292,9 @@ public class KafkaFactory {
         return getConsumer(kafkaLocationManager.getKafkaConsumerProperties());
     }
 
-    public Consumer<byte[], byte[]> getConsumer(@Nullable final String clientId) {
+    public Consumer<byte[], byte[]> getConsumer(@Nullable final String clientId, final ConsumerTuning tuning) {
         final Properties properties = kafkaLocationManager.getKafkaConsumerProperties();
+        tuning.applyTo(properties);
         // TODO: the line bellow has been commented after a bug in Kafka's 0.9.x throttling feature has been detected.
         // once Kafka is upgraded, we are going to enable it back. More on how it works can be found at
         // https://docs.google.com/document/d/1JDgsBemNqS0SrNpWUL90205u0MFmSMnOqrC-ENAb6TM/edit
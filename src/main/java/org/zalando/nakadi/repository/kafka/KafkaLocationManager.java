@@ -102,7 +102,7 @@ public class KafkaLocationManager {
 
     public Properties getKafkaProducerProperties() {
         final Properties producerProps = getKafkaConsumerProperties();
-        producerProps.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        producerProps.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
         producerProps.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
         producerProps.put("acks", "all");
         producerProps.put("request.timeout.ms", kafkaSettings.getRequestTimeoutMs());
@@ -17,16 +17,33 @@ public class KafkaSettings {
     private final int batchSize;
     private final long lingerMs;
     private final boolean enableAutoCommit;
+    private final int producersCount;
+    private final int publishingThreads;
+    // bytes kept in memory per partition by shared reader of low-level streams, 0 disables shared reading
+    private final long sharedReaderWindowBytes;
+    private final long sharedReaderWindowAgeMs;
+    // bytes kept in memory by all the windows of shared reader, 0 - not limited
+    private final long sharedReaderNodeBytes;
 
     @Autowired
     public KafkaSettings(@Value("${nakadi.kafka.request.timeout.ms}") final int requestTimeoutMs,
                          @Value("${nakadi.kafka.batch.size}") final int batchSize,
                          @Value("${nakadi.kafka.linger.ms}") final long lingerMs,
-                         @Value("${nakadi.kafka.enable.auto.commit}") final boolean enableAutoCommit) {
+                         @Value("${nakadi.kafka.enable.auto.commit}") final boolean enableAutoCommit,
+                         @Value("${nakadi.kafka.producers.count}") final int producersCount,
+                         @Value("${nakadi.kafka.publishing.threads}") final int publishingThreads,
+                         @Value("${nakadi.kafka.sharedReader.windowBytes}") final long sharedReaderWindowBytes,
+                         @Value("${nakadi.kafka.sharedReader.windowAgeMs}") final long sharedReaderWindowAgeMs,
+                         @Value("${nakadi.kafka.sharedReader.nodeBytes}") final long sharedReaderNodeBytes) {
         this.requestTimeoutMs = requestTimeoutMs;
         this.batchSize = batchSize;
         this.lingerMs = lingerMs;
         this.enableAutoCommit = enableAutoCommit;
+        this.producersCount = producersCount;
+        this.publishingThreads = publishingThreads;
+        this.sharedReaderWindowBytes = sharedReaderWindowBytes;
+        this.sharedReaderWindowAgeMs = sharedReaderWindowAgeMs;
+        this.sharedReaderNodeBytes = sharedReaderNodeBytes;
     }
 
     public int getRequestTimeoutMs() {
@@ -44,4 +61,24 @@ public class KafkaSettings {
     public boolean getEnableAutoCommit() {
         return enableAutoCommit;
     }
+
+    public int getProducersCount() {
+        return producersCount;
+    }
+
+    public int getPublishingThreads() {
+        return publishingThreads;
+    }
+
+    public long getSharedReaderWindowBytes() {
+        return sharedReaderWindowBytes;
+    }
+
+    public long getSharedReaderWindowAgeMs() {
+        return sharedReaderWindowAgeMs;
+    }
+
+    public long getSharedReaderNodeBytes() {
+        return sharedReaderNodeBytes;
+    }
 }
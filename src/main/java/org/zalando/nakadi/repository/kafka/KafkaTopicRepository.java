@@ -1,6 +1,8 @@
 package org.zalando.nakadi.repository.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import kafka.admin.AdminUtils;
 import kafka.admin.RackAwareMode;
 import kafka.server.ConfigType;
@@ -24,6 +26,7 @@ import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.BatchItem;
 import org.zalando.nakadi.domain.EventPublishingStatus;
 import org.zalando.nakadi.domain.EventPublishingStep;
+import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.PartitionEndStatistics;
 import org.zalando.nakadi.domain.PartitionStatistics;
@@ -36,6 +39,7 @@ import org.zalando.nakadi.exceptions.TopicDeletionException;
 import org.zalando.nakadi.exceptions.runtime.InvalidCursorOperation;
 import org.zalando.nakadi.exceptions.runtime.TopicConfigException;
 import org.zalando.nakadi.exceptions.runtime.TopicRepositoryException;
+import org.zalando.nakadi.repository.ConsumerTuning;
 import org.zalando.nakadi.repository.EventConsumer;
 import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
@@ -56,7 +60,10 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -74,6 +81,7 @@ import static org.zalando.nakadi.domain.CursorError.UNAVAILABLE;
 public class KafkaTopicRepository implements TopicRepository {
 
     private static final Logger LOG = LoggerFactory.getLogger(KafkaTopicRepository.class);
+    private static final long TOPIC_METADATA_MAX_AGE_MS = TimeUnit.SECONDS.toMillis(30);
 
     private final ZooKeeperHolder zkFactory;
     private final KafkaFactory kafkaFactory;
@@ -81,14 +89,21 @@ public class KafkaTopicRepository implements TopicRepository {
     private final KafkaSettings kafkaSettings;
     private final ZookeeperSettings zookeeperSettings;
     private final ConcurrentMap<String, HystrixKafkaCircuitBreaker> circuitBreakers;
+    private final TopicMetadataCache topicMetadataCache;
     private final UUIDGenerator uuidGenerator;
+    private final ScheduledExecutorService timeoutExecutor;
+    private final ExecutorService publishingExecutor;
+    private final CompressionMetrics compressionMetrics;
+    @Nullable
+    private final SharedKafkaReader sharedReader;
 
     public KafkaTopicRepository(final ZooKeeperHolder zkFactory,
                                 final KafkaFactory kafkaFactory,
                                 final NakadiSettings nakadiSettings,
                                 final KafkaSettings kafkaSettings,
                                 final ZookeeperSettings zookeeperSettings,
-                                final UUIDGenerator uuidGenerator) {
+                                final UUIDGenerator uuidGenerator,
+                                final MetricRegistry metricRegistry) {
         this.zkFactory = zkFactory;
         this.kafkaFactory = kafkaFactory;
         this.nakadiSettings = nakadiSettings;
@@ -96,6 +111,22 @@ public class KafkaTopicRepository implements TopicRepository {
         this.zookeeperSettings = zookeeperSettings;
         this.uuidGenerator = uuidGenerator;
         this.circuitBreakers = new ConcurrentHashMap<>();
+        this.topicMetadataCache = new TopicMetadataCache(
+                brokerId -> circuitBreakers.computeIfAbsent(brokerId, HystrixKafkaCircuitBreaker::new),
+                TOPIC_METADATA_MAX_AGE_MS);
+        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("kafka-publishing-timeout-%d").setDaemon(true).build());
+        // timeouts are only completing the futures, results are completed and producers are released by the pool
+        this.publishingExecutor = Executors.newFixedThreadPool(kafkaSettings.getPublishingThreads() > 0 ?
+                        kafkaSettings.getPublishingThreads() : Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder().setNameFormat("kafka-publishing-%d").setDaemon(true).build());
+        this.compressionMetrics = new CompressionMetrics(metricRegistry);
+        kafkaFactory.addProducerCloseListener(compressionMetrics::onProducerClosed);
+        this.sharedReader = kafkaSettings.getSharedReaderWindowBytes() > 0 ?
+                new SharedKafkaReader(kafkaFactory::getConsumer, kafkaSettings.getSharedReaderWindowBytes(),
+                        kafkaSettings.getSharedReaderWindowAgeMs(), kafkaSettings.getSharedReaderNodeBytes(),
+                        nakadiSettings.getKafkaPollTimeoutMs(), metricRegistry) :
+                null;
     }
 
     public List<String> listTopics() throws TopicRepositoryException {
@@ -175,17 +206,18 @@ public class KafkaTopicRepository implements TopicRepository {
     }
 
     private static CompletableFuture<Exception> publishItem(
-            final Producer<String, String> producer,
+            final Producer<String, byte[]> producer,
             final String topicId,
             final BatchItem item,
-            final HystrixKafkaCircuitBreaker circuitBreaker) throws EventPublishingException {
+            final HystrixKafkaCircuitBreaker circuitBreaker,
+            @Nullable final SharedKafkaReader sharedReader) throws EventPublishingException {
         try {
             final CompletableFuture<Exception> result = new CompletableFuture<>();
-            final ProducerRecord<String, String> kafkaRecord = new ProducerRecord<>(
+            final ProducerRecord<String, byte[]> kafkaRecord = new ProducerRecord<>(
                     topicId,
                     KafkaCursor.toKafkaPartition(item.getPartition()),
                     item.getPartition(),
-                    item.getEvent().toString());
+                    item.dumpEventToBytes());
 
             circuitBreaker.markStart();
             producer.send(kafkaRecord, ((metadata, exception) -> {
@@ -201,6 +233,10 @@ public class KafkaTopicRepository implements TopicRepository {
                 } else {
                     item.updateStatusAndDetail(EventPublishingStatus.SUBMITTED, "");
                     circuitBreaker.markSuccessfully();
+                    if (null != sharedReader) {
+                        sharedReader.onPublished(new TopicPartition(metadata.topic(), metadata.partition()),
+                                metadata.offset(), kafkaRecord.value());
+                    }
                     result.complete(null);
                 }
             }));
@@ -232,67 +268,119 @@ public class KafkaTopicRepository implements TopicRepository {
     }
 
     @Override
-    public void syncPostBatch(final String topicId, final List<BatchItem> batch) throws EventPublishingException {
-        final Producer<String, String> producer = kafkaFactory.takeProducer();
+    public CompletableFuture<List<BatchItem>> postBatch(final String topicId, final List<BatchItem> batch,
+                                                        final EventType eventType) {
+        final CompletableFuture<List<BatchItem>> result = new CompletableFuture<>();
+        final ProducerOptions producerOptions = ProducerOptions.of(eventType.getOptions());
+        final Producer<String, byte[]> producer = kafkaFactory.takeProducer(topicId, producerOptions);
+        final Map<BatchItem, CompletableFuture<Exception>> sendFutures;
         try {
-            final Map<String, String> partitionToBroker = producer.partitionsFor(topicId).stream().collect(
-                    Collectors.toMap(p -> String.valueOf(p.partition()), p -> String.valueOf(p.leader().id())));
-            batch.forEach(item -> {
-                Preconditions.checkNotNull(
-                        item.getPartition(), "BatchItem partition can't be null at the moment of publishing!");
-                item.setBrokerId(partitionToBroker.get(item.getPartition()));
-            });
+            sendFutures = sendBatch(producer, topicId, batch);
+        } catch (final EventPublishingException ex) {
+            kafkaFactory.releaseProducer(producer);
+            result.completeExceptionally(ex);
+            return result;
+        } catch (final RuntimeException ex) {
+            kafkaFactory.releaseProducer(producer);
+            throw ex;
+        }
 
-            int shortCircuited = 0;
-            final Map<BatchItem, CompletableFuture<Exception>> sendFutures = new HashMap<>();
-            for (final BatchItem item : batch) {
-                item.setStep(EventPublishingStep.PUBLISHING);
-                final HystrixKafkaCircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(
-                        item.getBrokerId(), brokerId -> new HystrixKafkaCircuitBreaker(brokerId));
-                if (circuitBreaker.allowRequest()) {
-                    sendFutures.put(item, publishItem(producer, topicId, item, circuitBreaker));
-                } else {
-                    shortCircuited++;
-                    item.updateStatusAndDetail(EventPublishingStatus.FAILED, "short circuited");
+        final CompletableFuture<Void> multiFuture = CompletableFuture.allOf(
+                sendFutures.values().toArray(new CompletableFuture<?>[sendFutures.size()]));
+        final ScheduledFuture<?> timeout = timeoutExecutor.schedule(
+                () -> multiFuture.completeExceptionally(new TimeoutException()),
+                createSendTimeout(), TimeUnit.MILLISECONDS);
+        // Producer callbacks are executed on kafka io thread, that should not be used for producer termination
+        multiFuture.whenCompleteAsync((ignore, ex) -> {
+            timeout.cancel(false);
+            try {
+                if (null == ex) {
+                    resetProducerIfNeeded(producer, topicId, sendFutures);
+                    if (producerOptions.isCompressed()) {
+                        compressionMetrics.record(eventType.getName(), topicId, producer, getEventsSize(batch));
+                    }
                 }
+            } finally {
+                kafkaFactory.releaseProducer(producer);
+            }
+            if (ex instanceof TimeoutException) {
+                failUnpublished(batch, "timed out");
+                result.completeExceptionally(new EventPublishingException("Error publishing message to kafka", ex));
+            } else if (null != ex) {
+                failUnpublished(batch, "internal error");
+                result.completeExceptionally(new EventPublishingException("Error publishing message to kafka", ex));
+            } else if (batch.stream()
+                    .anyMatch(item -> item.getResponse().getPublishingStatus() == EventPublishingStatus.FAILED)) {
+                failUnpublished(batch, "internal error");
+                result.completeExceptionally(new EventPublishingException("Error publishing message to kafka"));
+            } else {
+                result.complete(batch);
             }
-            if (shortCircuited > 0) {
-                LOG.warn("Short circuiting request to Kafka {} time(s) due to timeout for topic {}",
-                        shortCircuited, topicId);
+        }, publishingExecutor);
+        return result;
+    }
+
+    private Map<BatchItem, CompletableFuture<Exception>> sendBatch(
+            final Producer<String, byte[]> producer, final String topicId, final List<BatchItem> batch)
+            throws EventPublishingException {
+        TopicMetadataCache.TopicMetadata metadata = topicMetadataCache.get(topicId, producer);
+        final int[] partitions = new int[batch.size()];
+        for (int i = 0; i < batch.size(); ++i) {
+            final BatchItem item = batch.get(i);
+            Preconditions.checkNotNull(
+                    item.getPartition(), "BatchItem partition can't be null at the moment of publishing!");
+            partitions[i] = KafkaCursor.toKafkaPartition(item.getPartition());
+            if (!metadata.hasPartition(partitions[i])) {
+                metadata = topicMetadataCache.get(topicId, partitions[i], producer);
+                if (!metadata.hasPartition(partitions[i])) {
+                    item.updateStatusAndDetail(EventPublishingStatus.FAILED, "internal error");
+                    throw new EventPublishingException("Partition " + item.getPartition() + " of topic " + topicId +
+                            " is not known to kafka producer");
+                }
             }
-            final CompletableFuture<Void> multiFuture = CompletableFuture.allOf(
-                    sendFutures.values().toArray(new CompletableFuture<?>[sendFutures.size()]));
-            multiFuture.get(createSendTimeout(), TimeUnit.MILLISECONDS);
-
-            // Now lets check for errors
-            final Optional<Exception> needReset = sendFutures.entrySet().stream()
-                    .filter(entry -> isExceptionShouldLeadToReset(entry.getValue().getNow(null)))
-                    .map(entry -> entry.getValue().getNow(null))
-                    .findAny();
-            if (needReset.isPresent()) {
-                LOG.info("Terminating producer while publishing to topic {} because of unrecoverable exception",
-                        topicId, needReset.get());
-                kafkaFactory.terminateProducer(producer);
+            item.setBrokerId(metadata.getBrokerId(partitions[i]));
+        }
+
+        int shortCircuited = 0;
+        final Map<BatchItem, CompletableFuture<Exception>> sendFutures = new HashMap<>();
+        for (int i = 0; i < batch.size(); ++i) {
+            final BatchItem item = batch.get(i);
+            item.setStep(EventPublishingStep.PUBLISHING);
+            final HystrixKafkaCircuitBreaker circuitBreaker = metadata.getCircuitBreaker(partitions[i]);
+            if (circuitBreaker.allowRequest()) {
+                sendFutures.put(item, publishItem(producer, topicId, item, circuitBreaker, sharedReader));
+            } else {
+                shortCircuited++;
+                item.updateStatusAndDetail(EventPublishingStatus.FAILED, "short circuited");
             }
-        } catch (final TimeoutException ex) {
-            failUnpublished(batch, "timed out");
-            throw new EventPublishingException("Error publishing message to kafka", ex);
-        } catch (final ExecutionException ex) {
-            failUnpublished(batch, "internal error");
-            throw new EventPublishingException("Error publishing message to kafka", ex);
-        } catch (final InterruptedException ex) {
-            Thread.currentThread().interrupt();
-            failUnpublished(batch, "interrupted");
-            throw new EventPublishingException("Error publishing message to kafka", ex);
-        } finally {
-            kafkaFactory.releaseProducer(producer);
         }
-        final boolean atLeastOneFailed = batch.stream()
-                .anyMatch(item -> item.getResponse().getPublishingStatus() == EventPublishingStatus.FAILED);
-        if (atLeastOneFailed) {
-            failUnpublished(batch, "internal error");
-            throw new EventPublishingException("Error publishing message to kafka");
+        if (shortCircuited > 0) {
+            LOG.warn("Short circuiting request to Kafka {} time(s) due to timeout for topic {}",
+                    shortCircuited, topicId);
         }
+        return sendFutures;
+    }
+
+    private void resetProducerIfNeeded(final Producer<String, byte[]> producer, final String topicId,
+                                       final Map<BatchItem, CompletableFuture<Exception>> sendFutures) {
+        final Optional<Exception> needReset = sendFutures.entrySet().stream()
+                .filter(entry -> isExceptionShouldLeadToReset(entry.getValue().getNow(null)))
+                .map(entry -> entry.getValue().getNow(null))
+                .findAny();
+        if (needReset.isPresent()) {
+            LOG.info("Terminating producer while publishing to topic {} because of unrecoverable exception",
+                    topicId, needReset.get());
+            topicMetadataCache.invalidate(topicId);
+            kafkaFactory.terminateProducer(producer);
+        }
+    }
+
+    private static long getEventsSize(final List<BatchItem> batch) {
+        long size = 0;
+        for (final BatchItem item : batch) {
+            size += item.getEventSize();
+        }
+        return size;
     }
 
     private long createSendTimeout() {
@@ -418,7 +506,7 @@ public class KafkaTopicRepository implements TopicRepository {
 
     @Override
     public List<String> listPartitionNames(final String topicId) {
-        final Producer<String, String> producer = kafkaFactory.takeProducer();
+        final Producer<String, byte[]> producer = kafkaFactory.takeProducer(topicId);
         try {
             return unmodifiableList(producer.partitionsFor(topicId)
                     .stream()
@@ -431,7 +519,7 @@ public class KafkaTopicRepository implements TopicRepository {
 
     @Override
     public EventConsumer.LowLevelConsumer createEventConsumer(
-            @Nullable final String clientId, final List<NakadiCursor> cursors)
+            @Nullable final String clientId, final List<NakadiCursor> cursors, final ConsumerTuning tuning)
             throws ServiceUnavailableException, InvalidCursorException {
 
         final Map<NakadiCursor, KafkaCursor> cursorMapping = this.convertToKafkaCursors(cursors);
@@ -444,8 +532,15 @@ public class KafkaTopicRepository implements TopicRepository {
                 .map(kafkaCursor -> kafkaCursor.addOffset(1))
                 .collect(toList());
 
+        // streams of the same partitions are served by one shared consumer of the node
+        if (null != sharedReader) {
+            return SharedKafkaEventConsumer.create(sharedReader, kafkaCursors, timelineMap,
+                    ownCursors -> new NakadiKafkaConsumer(kafkaFactory.getConsumer(clientId, tuning), ownCursors,
+                            timelineMap, nakadiSettings.getKafkaPollTimeoutMs()),
+                    nakadiSettings.getKafkaPollTimeoutMs());
+        }
         return new NakadiKafkaConsumer(
-                kafkaFactory.getConsumer(clientId),
+                kafkaFactory.getConsumer(clientId, tuning),
                 kafkaCursors,
                 timelineMap,
                 nakadiSettings.getKafkaPollTimeoutMs());
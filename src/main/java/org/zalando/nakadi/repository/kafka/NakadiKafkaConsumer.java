@@ -19,7 +19,12 @@ public class NakadiKafkaConsumer implements EventConsumer.LowLevelConsumer {
 
     private final Consumer<byte[], byte[]> kafkaConsumer;
     private final long pollTimeout;
-    private final Map<TopicPartition, Timeline> timelineMap;
+    private final String[] topics;
+    private final TimelinePartition[][] topicPartitions;
+    private int readLimit = Integer.MAX_VALUE;
+    // events of the last poll that were over the read limit, kafka is not polled until they are returned
+    private List<ConsumedEvent> overLimit = Collections.emptyList();
+    private int overLimitStart;
 
     public NakadiKafkaConsumer(
             final Consumer<byte[], byte[]> kafkaConsumer,
@@ -28,7 +33,20 @@ public class NakadiKafkaConsumer implements EventConsumer.LowLevelConsumer {
             final long pollTimeout) {
         this.kafkaConsumer = kafkaConsumer;
         this.pollTimeout = pollTimeout;
-        this.timelineMap = timelineMap;
+        // kafka partitions are numbered from zero, so timelines are resolved by the index of topic and the partition
+        final Map<String, List<Map.Entry<TopicPartition, Timeline>>> byTopic = timelineMap.entrySet().stream()
+                .collect(Collectors.groupingBy(entry -> entry.getKey().topic()));
+        this.topics = byTopic.keySet().toArray(new String[byTopic.size()]);
+        this.topicPartitions = new TimelinePartition[topics.length][];
+        for (int i = 0; i < topics.length; i++) {
+            final List<Map.Entry<TopicPartition, Timeline>> entries = byTopic.get(topics[i]);
+            final int maxPartition = entries.stream().mapToInt(entry -> entry.getKey().partition()).max().orElse(-1);
+            topicPartitions[i] = new TimelinePartition[maxPartition + 1];
+            for (final Map.Entry<TopicPartition, Timeline> entry : entries) {
+                topicPartitions[i][entry.getKey().partition()] = new TimelinePartition(
+                        entry.getValue(), KafkaCursor.toNakadiPartition(entry.getKey().partition()));
+            }
+        }
         // define topic/partitions to consume from
         final Map<TopicPartition, KafkaCursor> topicCursors = kafkaCursors.stream().collect(
                 Collectors.toMap(
@@ -51,22 +69,83 @@ public class NakadiKafkaConsumer implements EventConsumer.LowLevelConsumer {
 
     @Override
     public List<ConsumedEvent> readEvents() {
-        final ConsumerRecords<byte[], byte[]> records = kafkaConsumer.poll(pollTimeout);
+        return poll(pollTimeout);
+    }
+
+    @Override
+    public List<ConsumedEvent> readAvailableEvents() {
+        return poll(0);
+    }
+
+    @Override
+    public void setReadLimit(final int maxEvents) {
+        this.readLimit = Math.max(maxEvents, 1);
+    }
+
+    private List<ConsumedEvent> poll(final long timeoutMs) {
+        if (overLimitStart < overLimit.size()) {
+            return takeOverLimit();
+        }
+        final ConsumerRecords<byte[], byte[]> records = kafkaConsumer.poll(timeoutMs);
         if (records.isEmpty()) {
             return Collections.emptyList();
         }
         final ArrayList<ConsumedEvent> result = new ArrayList<>(records.count());
         for (final ConsumerRecord<byte[], byte[]> record : records) {
-            final KafkaCursor cursor = new KafkaCursor(record.topic(), record.partition(), record.offset());
-            final Timeline timeline = timelineMap.get(new TopicPartition(record.topic(), record.partition()));
-            result.add(new ConsumedEvent(record.value(), cursor.toNakadiCursor(timeline)));
+            result.add(new KafkaConsumedEvent(
+                    record.value(), getTimelinePartition(record.topic(), record.partition()), record.offset()));
+        }
+        if (result.size() > readLimit) {
+            overLimit = result;
+            overLimitStart = 0;
+            return takeOverLimit();
         }
         return result;
     }
 
+    private List<ConsumedEvent> takeOverLimit() {
+        final int end = (int) Math.min((long) overLimitStart + readLimit, overLimit.size());
+        final List<ConsumedEvent> result = new ArrayList<>(overLimit.subList(overLimitStart, end));
+        overLimitStart = end;
+        if (overLimitStart == overLimit.size()) {
+            overLimit = Collections.emptyList();
+            overLimitStart = 0;
+        }
+        return result;
+    }
+
+    private TimelinePartition getTimelinePartition(final String topic, final int partition) {
+        for (int i = 0; i < topics.length; i++) {
+            if (topics[i].equals(topic)) {
+                if (partition < topicPartitions[i].length && null != topicPartitions[i][partition]) {
+                    return topicPartitions[i][partition];
+                }
+                break;
+            }
+        }
+        throw new IllegalStateException("Timeline is not known for topic " + topic + " partition " + partition);
+    }
+
     @Override
     public void close() {
         kafkaConsumer.close();
     }
 
+    static class TimelinePartition {
+        private final Timeline timeline;
+        private final String partition;
+
+        TimelinePartition(final Timeline timeline, final String partition) {
+            this.timeline = timeline;
+            this.partition = partition;
+        }
+
+        Timeline getTimeline() {
+            return timeline;
+        }
+
+        String getPartition() {
+            return partition;
+        }
+    }
 }
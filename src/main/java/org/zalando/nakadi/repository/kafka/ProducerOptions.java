@@ -0,0 +1,93 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.zalando.nakadi.domain.EventTypeOptions;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Producer configuration that can be chosen per event type. Producers are pooled separately for every distinct
+ * configuration, so event types with the same options are sharing producers. Linger time of event types is rounded
+ * down to one of {@link #LINGER_BUCKETS_MS}, that limits the number of the pools to a few per compression type.
+ */
+public class ProducerOptions {
+
+    public static final ProducerOptions DEFAULT = new ProducerOptions(null, null);
+    static final long[] LINGER_BUCKETS_MS = {0, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+    @Nullable
+    private final String compressionType;
+    @Nullable
+    private final Long lingerMs;
+
+    public ProducerOptions(@Nullable final String compressionType, @Nullable final Long lingerMs) {
+        this.compressionType = compressionType;
+        this.lingerMs = lingerMs;
+    }
+
+    public static ProducerOptions of(@Nullable final EventTypeOptions options) {
+        if (null == options || (null == options.getCompressionType() && null == options.getLingerTime())) {
+            return DEFAULT;
+        }
+        return new ProducerOptions(options.getCompressionType(), toLingerBucket(options.getLingerTime()));
+    }
+
+    @Nullable
+    static Long toLingerBucket(@Nullable final Long lingerMs) {
+        if (null == lingerMs) {
+            return null;
+        }
+        long bucket = LINGER_BUCKETS_MS[0];
+        for (final long value : LINGER_BUCKETS_MS) {
+            if (value > lingerMs) {
+                break;
+            }
+            bucket = value;
+        }
+        return bucket;
+    }
+
+    public boolean isCompressed() {
+        return null != compressionType && !"none".equals(compressionType);
+    }
+
+    /**
+     * Name of the configuration that is used in the metric names of the producers.
+     */
+    public String getName() {
+        return (null == compressionType ? "default" : compressionType) +
+                (null == lingerMs ? "" : "_linger_" + lingerMs);
+    }
+
+    void applyTo(final Properties producerProperties) {
+        if (null != compressionType) {
+            producerProperties.put("compression.type", compressionType);
+        }
+        if (null != lingerMs) {
+            producerProperties.put("linger.ms", lingerMs);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ProducerOptions that = (ProducerOptions) o;
+        return Objects.equals(compressionType, that.compressionType) && Objects.equals(lingerMs, that.lingerMs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(compressionType, lingerMs);
+    }
+
+    @Override
+    public String toString() {
+        return "ProducerOptions{compressionType=" + compressionType + ", lingerMs=" + lingerMs + "}";
+    }
+}
@@ -0,0 +1,187 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.EventConsumer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Consumer that is reading events from the windows of {@link SharedKafkaReader}. When the stream is too
+ * slow and the events it needs are already evicted from a window, consumer is switching to its own kafka consumer
+ * starting from the current positions of the stream.
+ */
+class SharedKafkaEventConsumer implements EventConsumer.LowLevelConsumer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedKafkaEventConsumer.class);
+    private static final int MAX_RECORDS_PER_PARTITION = 500;
+
+    private final SharedKafkaReader reader;
+    private final List<PartitionReader> partitions;
+    private final Function<List<KafkaCursor>, EventConsumer.LowLevelConsumer> ownConsumerFactory;
+    private final long pollTimeoutMs;
+    private EventConsumer.LowLevelConsumer ownConsumer;
+    private int readLimit = Integer.MAX_VALUE;
+    // partitions are read starting from different partition every time, so that the limit is shared fairly
+    private int firstPartition;
+
+    private static class PartitionReader {
+        private final TopicPartition topicPartition;
+        private final NakadiKafkaConsumer.TimelinePartition timelinePartition;
+        private TailWindow window;
+        private long nextOffset;
+
+        private PartitionReader(final TopicPartition topicPartition, final Timeline timeline, final long nextOffset) {
+            this.topicPartition = topicPartition;
+            this.timelinePartition = new NakadiKafkaConsumer.TimelinePartition(
+                    timeline, KafkaCursor.toNakadiPartition(topicPartition.partition()));
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    private SharedKafkaEventConsumer(
+            final SharedKafkaReader reader,
+            final List<PartitionReader> partitions,
+            final Function<List<KafkaCursor>, EventConsumer.LowLevelConsumer> ownConsumerFactory,
+            final long pollTimeoutMs) {
+        this.reader = reader;
+        this.partitions = partitions;
+        this.ownConsumerFactory = ownConsumerFactory;
+        this.pollTimeoutMs = pollTimeoutMs;
+    }
+
+    /**
+     * Creates consumer reading from the shared windows, consumer is reading kafka by itself from the beginning if
+     * some of the offsets are already evicted from the windows.
+     *
+     * @param kafkaCursors offsets of the next events to read
+     */
+    static EventConsumer.LowLevelConsumer create(
+            final SharedKafkaReader reader,
+            final List<KafkaCursor> kafkaCursors,
+            final Map<TopicPartition, Timeline> timelineMap,
+            final Function<List<KafkaCursor>, EventConsumer.LowLevelConsumer> ownConsumerFactory,
+            final long pollTimeoutMs) {
+        final List<PartitionReader> partitions = new ArrayList<>(kafkaCursors.size());
+        for (final KafkaCursor cursor : kafkaCursors) {
+            final TopicPartition topicPartition = new TopicPartition(cursor.getTopic(), cursor.getPartition());
+            final PartitionReader partition = new PartitionReader(
+                    topicPartition, timelineMap.get(topicPartition), cursor.getOffset());
+            partitions.add(partition);
+            partition.window = reader.acquire(topicPartition, cursor.getOffset());
+            if (null == partition.window) {
+                final SharedKafkaEventConsumer consumer =
+                        new SharedKafkaEventConsumer(reader, partitions, ownConsumerFactory, pollTimeoutMs);
+                consumer.releaseWindows();
+                consumer.ownConsumer = ownConsumerFactory.apply(kafkaCursors);
+                return consumer;
+            }
+        }
+        return new SharedKafkaEventConsumer(reader, partitions, ownConsumerFactory, pollTimeoutMs);
+    }
+
+    @Override
+    public Set<org.zalando.nakadi.domain.TopicPartition> getAssignment() {
+        if (null != ownConsumer) {
+            return ownConsumer.getAssignment();
+        }
+        return partitions.stream()
+                .map(p -> new org.zalando.nakadi.domain.TopicPartition(
+                        p.topicPartition.topic(), p.timelinePartition.getPartition()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<ConsumedEvent> readEvents() {
+        return read(true);
+    }
+
+    @Override
+    public List<ConsumedEvent> readAvailableEvents() {
+        return read(false);
+    }
+
+    private List<ConsumedEvent> read(final boolean waitForData) {
+        if (null != ownConsumer) {
+            final List<ConsumedEvent> events =
+                    waitForData ? ownConsumer.readEvents() : ownConsumer.readAvailableEvents();
+            reader.getMisses().mark(events.size());
+            return events;
+        }
+        if (partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final long version = reader.getVersion();
+        final List<ConsumedEvent> result = new ArrayList<>();
+        firstPartition = (firstPartition + 1) % partitions.size();
+        for (int i = 0; i < partitions.size() && result.size() < readLimit; i++) {
+            final PartitionReader partition = partitions.get((firstPartition + i) % partitions.size());
+            final int maxRecords = Math.min(MAX_RECORDS_PER_PARTITION, readLimit - result.size());
+            final long nextOffset = partition.window.read(
+                    partition.nextOffset, maxRecords, partition.timelinePartition, result);
+            if (nextOffset == TailWindow.BEHIND_WINDOW) {
+                // events that are already read are returned, the rest is read by own consumer on the next call
+                switchToOwnConsumer();
+                reader.getHits().mark(result.size());
+                return result;
+            }
+            partition.nextOffset = nextOffset;
+        }
+        if (result.isEmpty()) {
+            if (waitForData) {
+                reader.awaitData(version, pollTimeoutMs);
+            }
+            return Collections.emptyList();
+        }
+        reader.getHits().mark(result.size());
+        return result;
+    }
+
+    @Override
+    public void setReadLimit(final int maxEvents) {
+        this.readLimit = Math.max(maxEvents, 1);
+        if (null != ownConsumer) {
+            ownConsumer.setReadLimit(maxEvents);
+        }
+    }
+
+    private void switchToOwnConsumer() {
+        final List<KafkaCursor> cursors = partitions.stream()
+                .map(p -> new KafkaCursor(p.topicPartition.topic(), p.topicPartition.partition(), p.nextOffset))
+                .collect(Collectors.toList());
+        LOG.info("Stream is behind the shared kafka reader, switching to own consumer at {}", cursors);
+        releaseWindows();
+        ownConsumer = ownConsumerFactory.apply(cursors);
+        if (readLimit != Integer.MAX_VALUE) {
+            ownConsumer.setReadLimit(readLimit);
+        }
+    }
+
+    private void releaseWindows() {
+        for (final PartitionReader partition : partitions) {
+            if (null != partition.window) {
+                reader.release(partition.topicPartition, partition.window);
+                partition.window = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != ownConsumer) {
+            ownConsumer.close();
+        } else {
+            releaseWindows();
+        }
+    }
+}
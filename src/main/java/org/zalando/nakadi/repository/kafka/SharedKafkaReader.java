@@ -0,0 +1,282 @@
+package org.zalando.nakadi.repository.kafka;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Reads the tails of kafka partitions with one consumer for all the streams of the node. Records are kept in a
+ * {@link TailWindow} per partition while there is at least one stream reading the partition, so that streams
+ * reading the same partition are served from memory instead of fetching the same data from kafka one more time.
+ * Events published by the node are added to the windows by the reader thread after kafka acknowledges them. When
+ * reading of a partition fails, only its window is closed and the streams reading it switch to their own consumers.
+ */
+class SharedKafkaReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedKafkaReader.class);
+    // published records are also read from kafka, so they are dropped when the reader thread can't keep up
+    private static final int MAX_PENDING_PUBLISHED = 10000;
+
+    private final Supplier<Consumer<byte[], byte[]>> consumerSupplier;
+    private final long windowBytes;
+    private final long windowAgeMs;
+    private final long maxNodeBytes;
+    private final AtomicLong nodeBytes = new AtomicLong();
+    private final long pollTimeoutMs;
+    private final Meter hits;
+    private final Meter misses;
+    // modified only while holding the lock of the reader, publishing is looking up windows without locking
+    private final Map<TopicPartition, TailWindow> windows = new ConcurrentHashMap<>();
+    private final Object dataMonitor = new Object();
+    private final Queue<PublishedRecord> published = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingPublished = new AtomicInteger();
+    private boolean assignmentChanged;
+    private Thread thread;
+    private volatile long version;
+
+    private static class PublishedRecord {
+        private final TopicPartition topicPartition;
+        private final long offset;
+        private final byte[] value;
+
+        private PublishedRecord(final TopicPartition topicPartition, final long offset, final byte[] value) {
+            this.topicPartition = topicPartition;
+            this.offset = offset;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param maxNodeBytes limit of the size of all the windows, 0 - not limited
+     */
+    SharedKafkaReader(final Supplier<Consumer<byte[], byte[]>> consumerSupplier, final long windowBytes,
+                      final long windowAgeMs, final long maxNodeBytes, final long pollTimeoutMs,
+                      final MetricRegistry metricRegistry) {
+        this.consumerSupplier = consumerSupplier;
+        this.windowBytes = windowBytes;
+        this.windowAgeMs = windowAgeMs;
+        this.maxNodeBytes = maxNodeBytes > 0 ? maxNodeBytes : Long.MAX_VALUE;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.hits = metricRegistry.meter("nakadi.kafka.tail_cache.hits");
+        this.misses = metricRegistry.meter("nakadi.kafka.tail_cache.misses");
+    }
+
+    /**
+     * Starts reading of the partition for a stream that is going to read it from the offset.
+     *
+     * @return window of the partition, or null if the offset is already evicted from the window, in which case the
+     * stream should read kafka by itself.
+     */
+    synchronized TailWindow acquire(final TopicPartition topicPartition, final long offset) {
+        TailWindow window = windows.get(topicPartition);
+        if (null == window) {
+            window = new TailWindow(offset, windowBytes, windowAgeMs, nodeBytes, maxNodeBytes);
+            windows.put(topicPartition, window);
+            assignmentChanged = true;
+            if (null == thread) {
+                thread = new ThreadFactoryBuilder().setNameFormat("kafka-shared-reader-%d").setDaemon(true).build()
+                        .newThread(this::run);
+                thread.start();
+            }
+            notifyAll();
+        } else if (!window.covers(offset)) {
+            return null;
+        }
+        window.acquire();
+        return window;
+    }
+
+    synchronized void release(final TopicPartition topicPartition, final TailWindow window) {
+        if (window.release() == 0 && windows.get(topicPartition) == window) {
+            windows.remove(topicPartition);
+            window.close();
+            assignmentChanged = true;
+        }
+    }
+
+    /**
+     * Queues event published by the node for the window of the partition, if the partition is read by some stream.
+     * Called by the io thread of the producer, so it doesn't take the locks of the windows that streams are reading.
+     */
+    void onPublished(final TopicPartition topicPartition, final long offset, final byte[] value) {
+        if (!windows.containsKey(topicPartition)) {
+            return;
+        }
+        if (pendingPublished.incrementAndGet() > MAX_PENDING_PUBLISHED) {
+            pendingPublished.decrementAndGet();
+            return;
+        }
+        published.add(new PublishedRecord(topicPartition, offset, value));
+    }
+
+    /**
+     * Size of the values kept in all the windows.
+     */
+    long getNodeBytes() {
+        return nodeBytes.get();
+    }
+
+    /**
+     * Number of events served from the windows.
+     */
+    Meter getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of events that streams read from kafka by themselves because they were behind the windows.
+     */
+    Meter getMisses() {
+        return misses;
+    }
+
+    /**
+     * Version is changed every time new records are added to the windows.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    void awaitData(final long lastSeenVersion, final long timeoutMs) {
+        synchronized (dataMonitor) {
+            if (version != lastSeenVersion) {
+                return;
+            }
+            try {
+                dataMonitor.wait(timeoutMs);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try (Consumer<byte[], byte[]> consumer = consumerSupplier.get()) {
+            Map<TopicPartition, TailWindow> assigned = new HashMap<>();
+            while (true) {
+                synchronized (this) {
+                    if (assignmentChanged) {
+                        assignmentChanged = false;
+                        assigned = new HashMap<>(windows);
+                        consumer.assign(new ArrayList<>(assigned.keySet()));
+                        // positions are reset by the assignment, windows know where the reading has stopped
+                        assigned.forEach((tp, window) -> consumer.seek(tp, window.getNextOffset()));
+                    }
+                    if (assigned.isEmpty()) {
+                        wait();
+                        continue;
+                    }
+                }
+                final ConsumerRecords<byte[], byte[]> records;
+                try {
+                    records = consumer.poll(pollTimeoutMs);
+                } catch (final OffsetOutOfRangeException e) {
+                    for (final TopicPartition topicPartition : e.offsetOutOfRangePartitions().keySet()) {
+                        closeWindow(topicPartition, assigned.get(topicPartition), e);
+                    }
+                    continue;
+                }
+                final long now = System.currentTimeMillis();
+                boolean appended = false;
+                for (final TopicPartition topicPartition : records.partitions()) {
+                    final TailWindow window = assigned.get(topicPartition);
+                    try {
+                        for (final ConsumerRecord<byte[], byte[]> record : records.records(topicPartition)) {
+                            appended |= window.append(record.offset(), record.value(), now);
+                        }
+                    } catch (final RuntimeException e) {
+                        closeWindow(topicPartition, window, e);
+                    }
+                }
+                appended |= appendPublished(assigned, now);
+                assigned.values().forEach(window -> window.evictExpired(now));
+                if (appended) {
+                    notifyReaders();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+        } catch (final RuntimeException e) {
+            LOG.error("Shared kafka reader failed, streams are switching to their own consumers", e);
+            stop();
+        }
+    }
+
+    private boolean appendPublished(final Map<TopicPartition, TailWindow> assigned, final long now) {
+        boolean appended = false;
+        PublishedRecord record;
+        while (null != (record = published.poll())) {
+            pendingPublished.decrementAndGet();
+            final TailWindow window = assigned.get(record.topicPartition);
+            if (null == window) {
+                continue;
+            }
+            try {
+                appended |= window.appendPublished(record.offset, record.value, now);
+            } catch (final RuntimeException e) {
+                closeWindow(record.topicPartition, window, e);
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Stops reading of the partition, closed window is reported as passed, so the streams are reading the partition
+     * with their own consumers. Window is created again for the next stream that starts reading the partition.
+     */
+    private void closeWindow(final TopicPartition topicPartition, @Nullable final TailWindow window,
+                             final RuntimeException cause) {
+        if (null == window) {
+            return;
+        }
+        LOG.error("Shared kafka reader failed to read {}, streams are switching to their own consumers",
+                topicPartition, cause);
+        synchronized (this) {
+            if (windows.get(topicPartition) == window) {
+                windows.remove(topicPartition);
+                assignmentChanged = true;
+            }
+        }
+        window.close();
+        notifyReaders();
+    }
+
+    private void stop() {
+        synchronized (this) {
+            // closed windows are reported as passed, so the streams are reading kafka by themselves
+            windows.values().forEach(TailWindow::close);
+            windows.clear();
+            while (null != published.poll()) {
+                pendingPublished.decrementAndGet();
+            }
+            thread = null;
+        }
+        notifyReaders();
+    }
+
+    private void notifyReaders() {
+        synchronized (dataMonitor) {
+            version++;
+            dataMonitor.notifyAll();
+        }
+    }
+}
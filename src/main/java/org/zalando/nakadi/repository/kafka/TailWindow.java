@@ -0,0 +1,173 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.zalando.nakadi.domain.ConsumedEvent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent records of one kafka partition, read by {@link SharedKafkaReader}. Window covers offsets from
+ * {@code firstOffset} (inclusive) to {@code nextOffset} (exclusive), the oldest records are evicted when the size
+ * of the values exceeds the limit of the window or the limit of all the windows of the node, or when they are older
+ * than the maximal age. Records are appended by the reader thread and are read by the streams.
+ */
+class TailWindow {
+
+    static final long BEHIND_WINDOW = -1L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long maxBytes;
+    private final long maxAgeMs;
+    // size of the values of all the windows of the node
+    private final AtomicLong nodeBytes;
+    private final long maxNodeBytes;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private long[] appendedAt = new long[INITIAL_CAPACITY];
+    private byte[][] values = new byte[INITIAL_CAPACITY][];
+    private int head;
+    private int size;
+    private long bytes;
+    private long firstOffset;
+    private long nextOffset;
+    private boolean closed;
+    // guarded by SharedKafkaReader
+    private int references;
+
+    TailWindow(final long startOffset, final long maxBytes, final long maxAgeMs, final AtomicLong nodeBytes,
+               final long maxNodeBytes) {
+        this.firstOffset = startOffset;
+        this.nextOffset = startOffset;
+        this.maxBytes = maxBytes;
+        this.maxAgeMs = maxAgeMs;
+        this.nodeBytes = nodeBytes;
+        this.maxNodeBytes = maxNodeBytes;
+    }
+
+    /**
+     * Appends record read from kafka, records that are already in the window are ignored.
+     *
+     * @return true if the record was added to the window
+     */
+    synchronized boolean append(final long offset, final byte[] value, final long now) {
+        if (closed || offset < nextOffset) {
+            return false;
+        }
+        if (size == offsets.length) {
+            grow();
+        }
+        final int index = (head + size) % offsets.length;
+        offsets[index] = offset;
+        appendedAt[index] = now;
+        values[index] = value;
+        size++;
+        bytes += value.length;
+        nodeBytes.addAndGet(value.length);
+        nextOffset = offset + 1;
+        // window that is growing gives the memory back when the node is over the limit, idle windows are expiring
+        while ((bytes > maxBytes || nodeBytes.get() > maxNodeBytes) && size > 1) {
+            evictFirst();
+        }
+        evictExpired(now);
+        return true;
+    }
+
+    /**
+     * Appends published record if it directly follows the last record of the window. Published records are not
+     * added after a gap, because the events published to the partition by the other nodes are not known.
+     *
+     * @return true if the record was added to the window
+     */
+    synchronized boolean appendPublished(final long offset, final byte[] value, final long now) {
+        return offset == nextOffset && append(offset, value, now);
+    }
+
+    synchronized void evictExpired(final long now) {
+        while (size > 0 && appendedAt[head] < now - maxAgeMs) {
+            evictFirst();
+        }
+    }
+
+    synchronized long getNextOffset() {
+        return nextOffset;
+    }
+
+    synchronized boolean covers(final long offset) {
+        return !closed && offset >= firstOffset && offset <= nextOffset;
+    }
+
+    /**
+     * Reads records starting from the offset.
+     *
+     * @return offset to read next time, or {@link #BEHIND_WINDOW} if records were already evicted from the window or
+     * the window is closed.
+     */
+    synchronized long read(final long fromOffset, final int maxRecords,
+                           final NakadiKafkaConsumer.TimelinePartition partition, final List<ConsumedEvent> result) {
+        if (closed || fromOffset < firstOffset) {
+            return BEHIND_WINDOW;
+        }
+        long next = fromOffset;
+        int read = 0;
+        for (int i = findFirstNotLess(fromOffset); i < size && read < maxRecords; i++, read++) {
+            final int index = (head + i) % offsets.length;
+            result.add(new KafkaConsumedEvent(values[index], partition, offsets[index]));
+            next = offsets[index] + 1;
+        }
+        return next;
+    }
+
+    synchronized void close() {
+        closed = true;
+        nodeBytes.addAndGet(-bytes);
+        Arrays.fill(values, null);
+        size = 0;
+        bytes = 0;
+    }
+
+    int acquire() {
+        return ++references;
+    }
+
+    int release() {
+        return --references;
+    }
+
+    private int findFirstNotLess(final long offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (offsets[(head + middle) % offsets.length] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void evictFirst() {
+        bytes -= values[head].length;
+        nodeBytes.addAndGet(-values[head].length);
+        firstOffset = offsets[head] + 1;
+        values[head] = null;
+        head = (head + 1) % offsets.length;
+        size--;
+    }
+
+    private void grow() {
+        final long[] newOffsets = new long[offsets.length * 2];
+        final long[] newAppendedAt = new long[offsets.length * 2];
+        final byte[][] newValues = new byte[offsets.length * 2][];
+        for (int i = 0; i < size; i++) {
+            newOffsets[i] = offsets[(head + i) % offsets.length];
+            newAppendedAt[i] = appendedAt[(head + i) % offsets.length];
+            newValues[i] = values[(head + i) % offsets.length];
+        }
+        offsets = newOffsets;
+        appendedAt = newAppendedAt;
+        values = newValues;
+        head = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Cache of partition leaders of the topics that events are published to, so that partition leader and circuit
+ * breaker can be found with array lookup instead of building partitions map on every publishing.
+ *
+ * Metadata is reloaded from the producer when it is older than max age, when it doesn't contain requested partition
+ * or when it was invalidated because kafka reported that leader has changed.
+ */
+class TopicMetadataCache {
+
+    private final ConcurrentMap<String, TopicMetadata> topics = new ConcurrentHashMap<>();
+    private final Function<String, HystrixKafkaCircuitBreaker> circuitBreakers;
+    private final long maxAgeMs;
+
+    TopicMetadataCache(final Function<String, HystrixKafkaCircuitBreaker> circuitBreakers, final long maxAgeMs) {
+        this.circuitBreakers = circuitBreakers;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    static class TopicMetadata {
+        private final String[] brokerIds;
+        private final HystrixKafkaCircuitBreaker[] circuitBreakers;
+        private final long createdAt;
+
+        private TopicMetadata(final String[] brokerIds, final HystrixKafkaCircuitBreaker[] circuitBreakers,
+                              final long createdAt) {
+            this.brokerIds = brokerIds;
+            this.circuitBreakers = circuitBreakers;
+            this.createdAt = createdAt;
+        }
+
+        boolean hasPartition(final int partition) {
+            return partition >= 0 && partition < brokerIds.length && null != brokerIds[partition];
+        }
+
+        String getBrokerId(final int partition) {
+            return brokerIds[partition];
+        }
+
+        HystrixKafkaCircuitBreaker getCircuitBreaker(final int partition) {
+            return circuitBreakers[partition];
+        }
+    }
+
+    TopicMetadata get(final String topic, final Producer<?, ?> producer) {
+        final TopicMetadata cached = topics.get(topic);
+        if (null != cached && System.currentTimeMillis() - cached.createdAt < maxAgeMs) {
+            return cached;
+        }
+        return refresh(topic, producer);
+    }
+
+    /**
+     * Returns metadata that contains the partition, if there is no such partition in cached metadata it is loaded
+     * from the producer again.
+     */
+    TopicMetadata get(final String topic, final int partition, final Producer<?, ?> producer) {
+        final TopicMetadata metadata = get(topic, producer);
+        return metadata.hasPartition(partition) ? metadata : refresh(topic, producer);
+    }
+
+    void invalidate(final String topic) {
+        topics.remove(topic);
+    }
+
+    private TopicMetadata refresh(final String topic, final Producer<?, ?> producer) {
+        final List<PartitionInfo> partitions = producer.partitionsFor(topic);
+        final int size = partitions.stream().mapToInt(PartitionInfo::partition).max().orElse(-1) + 1;
+        final String[] brokerIds = new String[size];
+        final HystrixKafkaCircuitBreaker[] breakers = new HystrixKafkaCircuitBreaker[size];
+        for (final PartitionInfo partition : partitions) {
+            final Node leader = null == partition.leader() ? Node.noNode() : partition.leader();
+            brokerIds[partition.partition()] = String.valueOf(leader.id());
+            breakers[partition.partition()] = circuitBreakers.apply(brokerIds[partition.partition()]);
+        }
+        final TopicMetadata metadata = new TopicMetadata(brokerIds, breakers, System.currentTimeMillis());
+        topics.put(topic, metadata);
+        return metadata;
+    }
+}
@@ -0,0 +1,82 @@
+package org.zalando.nakadi.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Growable buffer that is used to assemble the whole batch before writing it to the client stream with one call.
+ * Buffers are reused through a small pool shared by the streaming threads, so the retained memory doesn't grow with
+ * the number of streams. Buffers that have grown too much are not kept in order not to hold the memory of one big
+ * batch forever.
+ */
+class BatchBuffer {
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    private static final BlockingQueue<BatchBuffer> POOL =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Takes a buffer from the pool or creates a new one if the pool is empty. Buffer has to be released with
+     * {@link #release()} and must not be used after that.
+     */
+    static BatchBuffer take() {
+        final BatchBuffer buffer = POOL.poll();
+        return null != buffer ? buffer : new BatchBuffer();
+    }
+
+    void release() {
+        size = 0;
+        if (buffer.length <= MAX_POOLED_CAPACITY) {
+            POOL.offer(this);
+        }
+    }
+
+    void write(final byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    void write(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    void write(final String value) {
+        // cursors are ascii in most cases, so characters are copied without encoding
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0x7F) {
+                write(value.getBytes(UTF_8));
+                return;
+            }
+        }
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void writeTo(final OutputStream os) throws IOException {
+        os.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(final int toAdd) {
+        if (size + toAdd > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + toAdd));
+        }
+    }
+}
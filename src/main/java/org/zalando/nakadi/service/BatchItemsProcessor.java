@@ -0,0 +1,137 @@
+package org.zalando.nakadi.service;
+
+import org.zalando.nakadi.domain.BatchItem;
+import org.zalando.nakadi.domain.EventPublishingStatus;
+import org.zalando.nakadi.domain.EventPublishingStep;
+import org.zalando.nakadi.util.FlowIdUtils;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one step of event publishing (validation, partitioning or enrichment) for every item of the batch.
+ *
+ * Batches smaller than the threshold are processed on the calling thread. Larger ones are split into chunks that are
+ * processed on the bounded fork-join pool. In both cases the outcome is the same as for sequential processing: items
+ * up to the first failed one are moved to the step, only the first failed item is marked as failed and the exception
+ * it failed with is rethrown. Items following the failed one are left untouched in the responses.
+ */
+class BatchItemsProcessor {
+
+    private static final int MIN_CHUNK_SIZE = 32;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    @Nullable
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int threshold;
+
+    BatchItemsProcessor(final int parallelism, final int threshold) {
+        this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    @FunctionalInterface
+    interface ItemTask<E extends Exception> {
+        void process(BatchItem item) throws E;
+    }
+
+    <E extends Exception> void process(final List<BatchItem> batch, final EventPublishingStep step,
+                                       final Class<E> failureType, final ItemTask<E> task) throws E {
+        final Exception[] failures = new Exception[batch.size()];
+        if (null == pool || batch.size() < Math.max(threshold, 2)) {
+            processChunk(batch, 0, batch.size(), task, failures, new AtomicInteger(Integer.MAX_VALUE));
+        } else {
+            final int chunkSize = Math.max(MIN_CHUNK_SIZE, batch.size() / (parallelism * CHUNKS_PER_THREAD));
+            pool.invoke(new ChunkAction<>(batch, 0, batch.size(), chunkSize, task, failures, FlowIdUtils.peek()));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            final BatchItem item = batch.get(i);
+            item.setStep(step);
+            final Exception failure = failures[i];
+            if (null != failure) {
+                if (failureType.isInstance(failure)) {
+                    item.updateStatusAndDetail(EventPublishingStatus.FAILED, failure.getMessage());
+                    throw failureType.cast(failure);
+                }
+                // task is not able to throw other checked exceptions
+                throw (RuntimeException) failure;
+            }
+        }
+    }
+
+    void shutdown() {
+        if (null != pool) {
+            pool.shutdown();
+        }
+    }
+
+    private static <E extends Exception> void processChunk(
+            final List<BatchItem> batch, final int from, final int to, final ItemTask<E> task,
+            final Exception[] failures, final AtomicInteger firstFailure) {
+        for (int i = from; i < to; i++) {
+            if (i > firstFailure.get()) {
+                return;
+            }
+            try {
+                task.process(batch.get(i));
+            } catch (final Exception e) {
+                failures[i] = e;
+                firstFailure.accumulateAndGet(i, Math::min);
+                return;
+            }
+        }
+    }
+
+    private static class ChunkAction<E extends Exception> extends RecursiveAction {
+        private final List<BatchItem> batch;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final ItemTask<E> task;
+        private final Exception[] failures;
+        private final String flowId;
+        private final AtomicInteger firstFailure;
+
+        private ChunkAction(final List<BatchItem> batch, final int from, final int to, final int chunkSize,
+                            final ItemTask<E> task, final Exception[] failures, final String flowId) {
+            this(batch, from, to, chunkSize, task, failures, flowId, new AtomicInteger(Integer.MAX_VALUE));
+        }
+
+        private ChunkAction(final List<BatchItem> batch, final int from, final int to, final int chunkSize,
+                            final ItemTask<E> task, final Exception[] failures, final String flowId,
+                            final AtomicInteger firstFailure) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.task = task;
+            this.failures = failures;
+            this.flowId = flowId;
+            this.firstFailure = firstFailure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                        new ChunkAction<>(batch, from, middle, chunkSize, task, failures, flowId, firstFailure),
+                        new ChunkAction<>(batch, middle, to, chunkSize, task, failures, flowId, firstFailure));
+                return;
+            }
+            // flow id is kept in thread local context, enrichment is reading it from there
+            FlowIdUtils.push(flowId);
+            try {
+                processChunk(batch, from, to, task, failures, firstFailure);
+            } finally {
+                FlowIdUtils.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.zalando.nakadi.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Output stream that flushes not more often than once per coalescing window, so that small batches of different
+ * partitions written within the window are sent to the client together. Postponed flush has to be triggered with
+ * {@link #flushIfDue(long)} by the streaming loop.
+ */
+public class CoalescingOutputStream extends FilterOutputStream {
+
+    private final long windowMs;
+    private long lastFlush;
+    private boolean flushPending;
+
+    public CoalescingOutputStream(final OutputStream out, final long windowMs) {
+        super(out);
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushPending = true;
+        flushIfDue(currentTimeMillis());
+    }
+
+    public void flushIfDue(final long now) throws IOException {
+        if (flushPending && now - lastFlush >= windowMs) {
+            flushPending = false;
+            lastFlush = now;
+            out.flush();
+        }
+    }
+
+    public boolean isFlushPending() {
+        return flushPending;
+    }
+
+    /**
+     * Flushes postponed flush right away, without closing the underlying stream.
+     */
+    public void flushPending() throws IOException {
+        if (flushPending) {
+            flushPending = false;
+            lastFlush = currentTimeMillis();
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushPending = false;
+        try {
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.util.TimeLogger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Merges cursor commits to one subscription that are coming to the node within a short window. The first commit of
+ * the window schedules the batch to be committed when the window passes, cursors of all the merged commits are
+ * committed at once on the scheduler thread, and every commit is waiting for its result for a limited time.
+ */
+class CommitCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommitCoalescer.class);
+
+    static class PendingCommit {
+        private final String streamId;
+        private final List<NakadiCursor> cursors;
+        private final CompletableFuture<List<Boolean>> result = new CompletableFuture<>();
+
+        PendingCommit(final String streamId, final List<NakadiCursor> cursors) {
+            this.streamId = streamId;
+            this.cursors = cursors;
+        }
+
+        String getStreamId() {
+            return streamId;
+        }
+
+        List<NakadiCursor> getCursors() {
+            return cursors;
+        }
+
+        void complete(final List<Boolean> committed) {
+            result.complete(committed);
+        }
+
+        void fail(final Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        boolean isDone() {
+            return result.isDone();
+        }
+
+        List<Boolean> get() throws ExecutionException, InterruptedException {
+            return result.get();
+        }
+
+        List<Boolean> get(final long timeoutMs) throws ExecutionException, InterruptedException, TimeoutException {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final long windowMs;
+    private final long timeoutMs;
+    private final BiConsumer<String, List<PendingCommit>> batchCommitter;
+    private final ConcurrentMap<String, List<PendingCommit>> openBatches = new ConcurrentHashMap<>();
+    @Nullable
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param timeoutMs      time to wait for the batch to be committed after the window passed
+     * @param batchCommitter commits cursors of the subscription and completes every pending commit of the batch
+     */
+    CommitCoalescer(final long windowMs, final long timeoutMs,
+                    final BiConsumer<String, List<PendingCommit>> batchCommitter) {
+        this.windowMs = windowMs;
+        this.timeoutMs = timeoutMs;
+        this.batchCommitter = batchCommitter;
+        this.scheduler = windowMs > 0 ?
+                Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(),
+                        new ThreadFactoryBuilder().setNameFormat("commit-coalescer-%d").setDaemon(true).build()) :
+                null;
+    }
+
+    /**
+     * @throws TimeoutException if the batch of the commit was not committed within the timeout after the window
+     */
+    List<Boolean> commit(final String subscriptionId, final String streamId, final List<NakadiCursor> cursors)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        final PendingCommit commit = new PendingCommit(streamId, cursors);
+        if (windowMs <= 0) {
+            commitBatch(subscriptionId, Collections.singletonList(commit));
+            return commit.get();
+        }
+        final boolean[] opened = {false};
+        openBatches.compute(subscriptionId, (key, batch) -> {
+            final List<PendingCommit> result = null == batch ? new ArrayList<>() : batch;
+            opened[0] = null == batch;
+            result.add(commit);
+            return result;
+        });
+        if (opened[0]) {
+            scheduler.schedule(() -> commitScheduledBatch(subscriptionId), windowMs, TimeUnit.MILLISECONDS);
+        }
+        return commit.get(windowMs + timeoutMs);
+    }
+
+    private void commitScheduledBatch(final String subscriptionId) {
+        final List<PendingCommit> batch = openBatches.remove(subscriptionId);
+        // time of the merged commits is logged once per batch, as they are committed on the scheduler thread
+        TimeLogger.startMeasure("COMMIT_BATCH sid:" + subscriptionId + ", commits=" + batch.size(), "commitBatch");
+        try {
+            commitBatch(subscriptionId, batch);
+        } finally {
+            LOG.info(TimeLogger.finishMeasure());
+        }
+    }
+
+    private void commitBatch(final String subscriptionId, final List<PendingCommit> batch) {
+        try {
+            batchCommitter.accept(subscriptionId, batch);
+        } catch (final RuntimeException ex) {
+            batch.forEach(commit -> commit.fail(ex));
+        } finally {
+            for (final PendingCommit commit : batch) {
+                if (!commit.isDone()) {
+                    commit.fail(new IllegalStateException("Commit was not completed"));
+                }
+            }
+        }
+    }
+}
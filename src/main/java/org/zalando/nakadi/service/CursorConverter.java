@@ -24,6 +24,18 @@ public interface CursorConverter {
 
     SubscriptionCursorWithoutToken convertToNoToken(NakadiCursor cursor);
 
+    /**
+     * Returns length of the offset of the cursor, as it is formatted by {@link #convert(NakadiCursor)}.
+     */
+    int getOffsetLength(NakadiCursor cursor);
+
+    /**
+     * Writes offset of the cursor, as it is formatted by {@link #convert(NakadiCursor)}, to the array without
+     * creating intermediate objects. Array should have {@link #getOffsetLength(NakadiCursor)} bytes starting from
+     * the position.
+     */
+    void writeOffset(NakadiCursor cursor, byte[] target, int position);
+
     // Convert from view to model
     NakadiCursor convert(String eventTypeName, Cursor cursor) throws
             InternalNakadiException, NoSuchEventTypeException, InvalidCursorException, ServiceUnavailableException;
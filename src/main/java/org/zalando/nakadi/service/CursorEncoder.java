@@ -0,0 +1,39 @@
+package org.zalando.nakadi.service;
+
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.domain.NakadiCursor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes cursors of the batches of one subscription stream. Constant parts of the cursor (partition and event type)
+ * are encoded once per partition, for every batch only offset and a new cursor token are written. Offset is formatted
+ * from the position itself, without converting it to a view cursor. Not thread safe, should be used by the thread of
+ * the stream only.
+ */
+public class CursorEncoder {
+
+    private final CursorConverter cursorConverter;
+    private final CursorTokenService cursorTokenService;
+    private final Map<EventTypePartition, EncodedCursor> cursors = new HashMap<>();
+
+    public CursorEncoder(final CursorConverter cursorConverter, final CursorTokenService cursorTokenService) {
+        this.cursorConverter = cursorConverter;
+        this.cursorTokenService = cursorTokenService;
+    }
+
+    public EncodedCursor encode(final EventTypePartition key, final NakadiCursor position) {
+        EncodedCursor cursor = cursors.get(key);
+        if (null == cursor) {
+            cursor = new EncodedCursor(key.getEventType(), key.getPartition());
+            cursors.put(key, cursor);
+        }
+        cursor.update(cursorConverter, position, cursorTokenService.generateToken());
+        return cursor;
+    }
+
+    public void remove(final EventTypePartition key) {
+        cursors.remove(key);
+    }
+}
@@ -3,11 +3,20 @@ package org.zalando.nakadi.service;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class CursorTokenService {
 
+    /**
+     * Tokens are used only to distinguish batches, so they are generated with thread local random instead of
+     * {@link UUID#randomUUID()}, that is using shared SecureRandom.
+     */
     public String generateToken() {
-        return UUID.randomUUID().toString();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        // version 4 and IETF variant bits, the same as in random UUID
+        final long mostSigBits = (random.nextLong() & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        final long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
     }
 }
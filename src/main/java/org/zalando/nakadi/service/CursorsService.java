@@ -2,6 +2,7 @@ package org.zalando.nakadi.service;
 
 import com.google.common.collect.ImmutableList;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.CursorError;
@@ -32,11 +33,14 @@ import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.util.TimeLogger;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -49,6 +53,7 @@ public class CursorsService {
     private final NakadiSettings nakadiSettings;
     private final SubscriptionClientFactory zkSubscriptionFactory;
     private final CursorConverter cursorConverter;
+    private final CommitCoalescer commitCoalescer;
 
     @Autowired
     public CursorsService(final TimelineService timelineService,
@@ -56,13 +61,16 @@ public class CursorsService {
                           final EventTypeRepository eventTypeRepository,
                           final NakadiSettings nakadiSettings,
                           final SubscriptionClientFactory zkSubscriptionFactory,
-                          final CursorConverter cursorConverter) {
+                          final CursorConverter cursorConverter,
+                          @Value("${nakadi.subscription.commitCoalescingMs}") final long commitCoalescingMs) {
         this.timelineService = timelineService;
         this.subscriptionRepository = subscriptionRepository;
         this.eventTypeRepository = eventTypeRepository;
         this.nakadiSettings = nakadiSettings;
         this.zkSubscriptionFactory = zkSubscriptionFactory;
         this.cursorConverter = cursorConverter;
+        this.commitCoalescer = new CommitCoalescer(commitCoalescingMs,
+                TimeUnit.SECONDS.toMillis(nakadiSettings.getDefaultCommitTimeoutSeconds()), this::commitBatch);
     }
 
     /**
@@ -75,36 +83,95 @@ public class CursorsService {
         if (cursors.isEmpty()) {
             throw new UnableProcessException("Cursors are absent");
         }
-        TimeLogger.addMeasure("getSubscription");
-        final Subscription subscription = subscriptionRepository.getSubscription(subscriptionId);
+        try {
+            return commitCoalescer.commit(subscriptionId, streamId, cursors);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while committing cursors", ex);
+        } catch (final TimeoutException ex) {
+            throw new ServiceUnavailableException("Timed out while committing cursors", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof ServiceUnavailableException) {
+                throw (ServiceUnavailableException) cause;
+            } else if (cause instanceof InvalidCursorException) {
+                throw (InvalidCursorException) cause;
+            } else if (cause instanceof NoSuchEventTypeException) {
+                throw (NoSuchEventTypeException) cause;
+            } else if (cause instanceof InternalNakadiException) {
+                throw (InternalNakadiException) cause;
+            } else if (cause instanceof NoSuchSubscriptionException) {
+                throw (NoSuchSubscriptionException) cause;
+            }
+            throw new NakadiRuntimeException(ex);
+        }
+    }
 
-        TimeLogger.addMeasure("validateSubscriptionCursors");
-        validateSubscriptionCommitCursors(subscription, cursors);
+    /**
+     * Commits cursors of several commits to the same subscription with one write to zookeeper. Subscription and
+     * sessions are read once for all the commits, commits that are not valid are failed separately.
+     */
+    private void commitBatch(final String subscriptionId, final List<CommitCoalescer.PendingCommit> commits) {
+        try {
+            TimeLogger.addMeasure("getSubscription");
+            final Subscription subscription = subscriptionRepository.getSubscription(subscriptionId);
 
-        TimeLogger.addMeasure("createSubscriptionClient");
-        final ZkSubscriptionClient zkClient = zkSubscriptionFactory.createClient(
-                subscription, "subscription." + subscriptionId + "." + streamId + ".offsets");
+            TimeLogger.addMeasure("createSubscriptionClient");
+            final ZkSubscriptionClient zkClient = zkSubscriptionFactory.createClient(subscription,
+                    "subscription." + subscriptionId + "." +
+                            (commits.size() == 1 ? commits.get(0).getStreamId() + "." : "") + "offsets");
 
-        TimeLogger.addMeasure("validateStreamId");
-        validateStreamId(cursors, streamId, zkClient);
+            TimeLogger.addMeasure("validateCursors");
+            final Map<String, Boolean> activeSessions = new HashMap<>();
+            Map<EventTypePartition, String> partitionSessions = null;
+            final List<CommitCoalescer.PendingCommit> validCommits = new ArrayList<>(commits.size());
+            final List<SubscriptionCursorWithoutToken> cursors = new ArrayList<>();
+            for (final CommitCoalescer.PendingCommit commit : commits) {
+                try {
+                    validateSubscriptionCommitCursors(subscription, commit.getCursors());
+                    Boolean activeSession = activeSessions.get(commit.getStreamId());
+                    if (null == activeSession) {
+                        activeSession = zkClient.isActiveSession(commit.getStreamId());
+                        activeSessions.put(commit.getStreamId(), activeSession);
+                    }
+                    if (!activeSession) {
+                        throw new InvalidStreamIdException(
+                                "Session with stream id " + commit.getStreamId() + " not found", commit.getStreamId());
+                    }
+                    if (null == partitionSessions) {
+                        partitionSessions = Stream.of(zkClient.listPartitions())
+                                .collect(Collectors.toMap(Partition::getKey, Partition::getSession));
+                    }
+                    validateStreamId(commit.getCursors(), commit.getStreamId(), partitionSessions);
+                } catch (final Exception ex) {
+                    commit.fail(ex);
+                    continue;
+                }
+                validCommits.add(commit);
+                commit.getCursors().forEach(cursor -> cursors.add(cursorConverter.convertToNoToken(cursor)));
+            }
+            if (validCommits.isEmpty()) {
+                return;
+            }
 
-        TimeLogger.addMeasure("writeToZK");
-        return zkClient.commitOffsets(
-                cursors.stream().map(cursorConverter::convertToNoToken).collect(Collectors.toList()),
-                new SubscriptionCursorComparator());
+            TimeLogger.addMeasure("writeToZK");
+            final List<Boolean> committed = zkClient.commitOffsets(cursors, new SubscriptionCursorComparator());
+            int offset = 0;
+            for (final CommitCoalescer.PendingCommit commit : validCommits) {
+                final int size = commit.getCursors().size();
+                commit.complete(committed.subList(offset, offset + size));
+                offset += size;
+            }
+        } catch (final Exception ex) {
+            commits.forEach(commit -> commit.fail(ex));
+        }
     }
 
     private void validateStreamId(final List<NakadiCursor> cursors, final String streamId,
-                                  final ZkSubscriptionClient subscriptionClient)
-            throws ServiceUnavailableException, InvalidCursorException, InvalidStreamIdException,
-            NoSuchEventTypeException, InternalNakadiException {
-
-        if (!subscriptionClient.isActiveSession(streamId)) {
-            throw new InvalidStreamIdException("Session with stream id " + streamId + " not found", streamId);
-        }
-
-        final Map<EventTypePartition, String> partitionSessions = Stream.of(subscriptionClient.listPartitions())
-                .collect(Collectors.toMap(Partition::getKey, Partition::getSession));
+                                  final Map<EventTypePartition, String> partitionSessions)
+            throws InvalidCursorException, InvalidStreamIdException {
         for (final NakadiCursor cursor : cursors) {
             final EventTypePartition etPartition = cursor.getEventTypePartition();
             final String partitionSession = partitionSessions.get(etPartition);
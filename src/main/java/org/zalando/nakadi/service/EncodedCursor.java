@@ -0,0 +1,75 @@
+package org.zalando.nakadi.service;
+
+import org.zalando.nakadi.domain.NakadiCursor;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Beginning of the subscription batch up to the end of the cursor object (partition, offset, event type and cursor
+ * token). Bytes are reused for every batch of the partition, only offset and cursor token are overwritten when they
+ * have the same length as before. Offset is written by the converter directly from {@link NakadiCursor}.
+ */
+public class EncodedCursor {
+
+    private static final byte[] CURSOR_PARTITION_BEGIN = "{\"cursor\":{\"partition\":\"".getBytes(UTF_8);
+    private static final byte[] OFFSET_BEGIN = "\",\"offset\":\"".getBytes(UTF_8);
+    private static final byte[] EVENT_TYPE_BEGIN = "\",\"event_type\":\"".getBytes(UTF_8);
+    private static final byte[] CURSOR_TOKEN_BEGIN = "\",\"cursor_token\":\"".getBytes(UTF_8);
+    private static final byte[] CURSOR_END = "\"}".getBytes(UTF_8);
+
+    private final byte[] prefix;
+    private final byte[] middle;
+    private byte[] bytes = new byte[0];
+    private int offsetLength = -1;
+    private int tokenLength = -1;
+
+    EncodedCursor(final String eventType, final String partition) {
+        this.prefix = concat(CURSOR_PARTITION_BEGIN, partition.getBytes(UTF_8), OFFSET_BEGIN);
+        this.middle = concat(EVENT_TYPE_BEGIN, eventType.getBytes(UTF_8), CURSOR_TOKEN_BEGIN);
+    }
+
+    void update(final CursorConverter cursorConverter, final NakadiCursor position, final String token) {
+        final int newOffsetLength = cursorConverter.getOffsetLength(position);
+        if (newOffsetLength != offsetLength || token.length() != tokenLength) {
+            offsetLength = newOffsetLength;
+            tokenLength = token.length();
+            bytes = new byte[prefix.length + offsetLength + middle.length + tokenLength + CURSOR_END.length];
+            System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+            System.arraycopy(middle, 0, bytes, prefix.length + offsetLength, middle.length);
+            System.arraycopy(CURSOR_END, 0, bytes, bytes.length - CURSOR_END.length, CURSOR_END.length);
+        }
+        cursorConverter.writeOffset(position, bytes, prefix.length);
+        writeAscii(token, prefix.length + offsetLength + middle.length);
+    }
+
+    /**
+     * Returns bytes of the cursor. Array is overwritten by the next update, so it should be used right away.
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, UTF_8);
+    }
+
+    // tokens are made of hex digits and dashes
+    private void writeAscii(final String value, final int position) {
+        for (int i = 0; i < value.length(); i++) {
+            bytes[position + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static byte[] concat(final byte[]... parts) {
+        final byte[] result = Arrays.copyOf(parts[0], Arrays.stream(parts).mapToInt(part -> part.length).sum());
+        int position = parts[0].length;
+        for (int i = 1; i < parts.length; i++) {
+            System.arraycopy(parts[i], 0, result, position, parts[i].length);
+            position += parts[i].length;
+        }
+        return result;
+    }
+}
@@ -32,10 +32,14 @@ import org.zalando.nakadi.service.timeline.TimelineSync;
 import org.zalando.nakadi.validation.EventTypeValidator;
 import org.zalando.nakadi.validation.ValidationError;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -52,6 +56,7 @@ public class EventPublisher {
     private final Enrichment enrichment;
     private final TimelineSync timelineSync;
     private final AuthorizationValidator authValidator;
+    private final BatchItemsProcessor itemsProcessor;
 
     @Autowired
     public EventPublisher(final TimelineService timelineService,
@@ -68,38 +73,81 @@ public class EventPublisher {
         this.nakadiSettings = nakadiSettings;
         this.timelineSync = timelineSync;
         this.authValidator = authValidator;
+        this.itemsProcessor = new BatchItemsProcessor(nakadiSettings.getPublishingParallelism(),
+                nakadiSettings.getPublishingParallelThreshold());
     }
 
-    public EventPublishResult publish(final String events, final String eventTypeName, final Client client)
+    @PreDestroy
+    public void shutdown() {
+        itemsProcessor.shutdown();
+    }
+
+    /**
+     * Publishes the batch without waiting for the storage to acknowledge it. Validation, partitioning and enrichment
+     * are done on the calling thread.
+     *
+     * @return future that is completed with the result of publishing. It is completed exceptionally only in case of
+     * unexpected errors.
+     */
+    public CompletableFuture<EventPublishResult> publishAsync(final byte[] events, final String eventTypeName,
+                                                              final Client client)
             throws NoSuchEventTypeException, InternalNakadiException, EventTypeTimeoutException,
             AccessDeniedException, ServiceTemporarilyUnavailableException {
 
-        Closeable publishingCloser = null;
         final List<BatchItem> batch = BatchFactory.from(events);
+        final Closeable publishingCloser = startPublishing(eventTypeName);
+        boolean finishOnCompletion = false;
         try {
-            publishingCloser = timelineSync.workWithEventType(eventTypeName, nakadiSettings.getTimelineWaitTimeoutMs());
-
-            final EventType eventType = eventTypeCache.getEventType(eventTypeName);
-            authValidator.authorizeEventTypeWrite(eventType);
-
-            validate(batch, eventType);
-            partition(batch, eventType);
-            enrich(batch, eventType);
-            submit(batch, eventType);
-
-            return ok(batch);
+            final EventType eventType = prepare(batch, eventTypeName);
+            final Timeline activeTimeline = timelineService.getTimeline(eventType);
+
+            final CompletableFuture<EventPublishResult> result = new CompletableFuture<>();
+            timelineService.getTopicRepository(eventType).postBatch(activeTimeline.getTopic(), batch, eventType)
+                    .whenComplete((ignore, ex) -> {
+                        finishPublishing(publishingCloser);
+                        final Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        if (null == cause) {
+                            result.complete(ok(batch));
+                        } else if (cause instanceof EventPublishingException) {
+                            LOG.error("error publishing event", cause);
+                            result.complete(failed(batch));
+                        } else {
+                            result.completeExceptionally(cause);
+                        }
+                    });
+            finishOnCompletion = true;
+            return result;
         } catch (final EventValidationException e) {
             LOG.debug("Event validation error: {}", e.getMessage());
-            return aborted(EventPublishingStep.VALIDATING, batch);
+            return CompletableFuture.completedFuture(aborted(EventPublishingStep.VALIDATING, batch));
         } catch (final PartitioningException e) {
             LOG.debug("Event partition error: {}", e.getMessage());
-            return aborted(EventPublishingStep.PARTITIONING, batch);
+            return CompletableFuture.completedFuture(aborted(EventPublishingStep.PARTITIONING, batch));
         } catch (final EnrichmentException e) {
             LOG.debug("Event enrichment error: {}", e.getMessage());
-            return aborted(EventPublishingStep.ENRICHING, batch);
-        } catch (final EventPublishingException e) {
-            LOG.error("error publishing event", e);
-            return failed(batch);
+            return CompletableFuture.completedFuture(aborted(EventPublishingStep.ENRICHING, batch));
+        } finally {
+            if (!finishOnCompletion) {
+                finishPublishing(publishingCloser);
+            }
+        }
+    }
+
+    private EventType prepare(final List<BatchItem> batch, final String eventTypeName)
+            throws NoSuchEventTypeException, InternalNakadiException, AccessDeniedException,
+            EventValidationException, PartitioningException, EnrichmentException {
+        final EventType eventType = eventTypeCache.getEventType(eventTypeName);
+        authValidator.authorizeEventTypeWrite(eventType);
+
+        validate(batch, eventType);
+        partition(batch, eventType);
+        enrich(batch, eventType);
+        return eventType;
+    }
+
+    private Closeable startPublishing(final String eventTypeName) throws EventTypeTimeoutException {
+        try {
+            return timelineSync.workWithEventType(eventTypeName, nakadiSettings.getTimelineWaitTimeoutMs());
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
             LOG.error("Failed to wait for timeline switch", e);
@@ -107,29 +155,24 @@ public class EventPublisher {
         } catch (final TimeoutException e) {
             LOG.error("Failed to wait for timeline switch", e);
             throw new EventTypeTimeoutException("Event type is currently in maintenance, please repeat request");
-        } finally {
-            try {
-                if (publishingCloser != null) {
-                    publishingCloser.close();
-                }
-            } catch (final IOException e) {
-                LOG.error("Exception occurred when releasing usage of event-type", e);
-            }
         }
     }
 
-    private void enrich(final List<BatchItem> batch, final EventType eventType) throws EnrichmentException {
-        for (final BatchItem batchItem : batch) {
-            try {
-                batchItem.setStep(EventPublishingStep.ENRICHING);
-                enrichment.enrich(batchItem, eventType);
-            } catch (EnrichmentException e) {
-                batchItem.updateStatusAndDetail(EventPublishingStatus.FAILED, e.getMessage());
-                throw e;
+    private void finishPublishing(@Nullable final Closeable publishingCloser) {
+        try {
+            if (publishingCloser != null) {
+                publishingCloser.close();
             }
+        } catch (final IOException e) {
+            LOG.error("Exception occurred when releasing usage of event-type", e);
         }
     }
 
+    private void enrich(final List<BatchItem> batch, final EventType eventType) throws EnrichmentException {
+        itemsProcessor.process(batch, EventPublishingStep.ENRICHING, EnrichmentException.class,
+                item -> enrichment.enrich(item, eventType));
+    }
+
     private List<BatchItemResponse> responses(final List<BatchItem> batch) {
         return batch.stream()
                 .map(BatchItem::getResponse)
@@ -137,40 +180,21 @@ public class EventPublisher {
     }
 
     private void partition(final List<BatchItem> batch, final EventType eventType) throws PartitioningException {
-        for (final BatchItem item : batch) {
-            item.setStep(EventPublishingStep.PARTITIONING);
-            try {
-                final String partitionId = partitionResolver.resolvePartition(eventType, item.getEvent());
-                item.setPartition(partitionId);
-            } catch (final PartitioningException e) {
-                item.updateStatusAndDetail(EventPublishingStatus.FAILED, e.getMessage());
-                throw e;
-            }
-        }
+        itemsProcessor.process(batch, EventPublishingStep.PARTITIONING, PartitioningException.class,
+                item -> item.setPartition(partitionResolver.resolvePartition(eventType, item.getEvent())));
     }
 
     private void validate(final List<BatchItem> batch, final EventType eventType) throws EventValidationException,
             InternalNakadiException, NoSuchEventTypeException {
-        for (final BatchItem item : batch) {
-            item.setStep(EventPublishingStep.VALIDATING);
-            try {
-                validateSchema(item.getEvent(), eventType);
-                validateEventSize(item);
-            } catch (final EventValidationException e) {
-                item.updateStatusAndDetail(EventPublishingStatus.FAILED, e.getMessage());
-                throw e;
-            }
-        }
-    }
-
-    private void submit(final List<BatchItem> batch, final EventType eventType) throws EventPublishingException {
-        final Timeline activeTimeline = timelineService.getTimeline(eventType);
-        timelineService.getTopicRepository(eventType).syncPostBatch(activeTimeline.getTopic(), batch);
+        final EventTypeValidator validator = eventTypeCache.getValidator(eventType.getName());
+        itemsProcessor.process(batch, EventPublishingStep.VALIDATING, EventValidationException.class, item -> {
+            validateSchema(item.getEvent(), validator);
+            validateEventSize(item);
+        });
     }
 
-    private void validateSchema(final JSONObject event, final EventType eventType) throws EventValidationException,
-            InternalNakadiException, NoSuchEventTypeException {
-        final EventTypeValidator validator = eventTypeCache.getValidator(eventType.getName());
+    private void validateSchema(final JSONObject event, final EventTypeValidator validator)
+            throws EventValidationException {
         final Optional<ValidationError> validationError = validator.validate(event);
 
         if (validationError.isPresent()) {
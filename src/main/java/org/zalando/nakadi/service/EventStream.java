@@ -1,7 +1,6 @@
 package org.zalando.nakadi.service;
 
 import com.codahale.metrics.Meter;
-import com.google.common.collect.Lists;
 import org.apache.kafka.common.KafkaException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,18 +8,17 @@ import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.repository.EventConsumer;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static java.lang.System.currentTimeMillis;
-import static java.util.function.Function.identity;
 
 public class EventStream {
 
@@ -33,6 +31,8 @@ public class EventStream {
     private final CursorConverter cursorConverter;
     private final Meter bytesFlushedMeter;
     private final EventStreamWriterProvider writer;
+    @Nullable
+    private final CoalescingOutputStream coalescingOutputStream;
 
     public EventStream(final EventConsumer eventConsumer,
                        final OutputStream outputStream,
@@ -40,8 +40,24 @@ public class EventStream {
                        final BlacklistService blacklistService,
                        final CursorConverter cursorConverter, final Meter bytesFlushedMeter,
                        final EventStreamWriterProvider writer) {
+        this(eventConsumer, outputStream, config, blacklistService, cursorConverter, bytesFlushedMeter, writer, 0);
+    }
+
+    /**
+     * @param flushCoalescingMs minimal interval between flushes of the output stream, batches written within the
+     *                          interval are flushed together. Zero disables coalescing.
+     */
+    public EventStream(final EventConsumer eventConsumer,
+                       final OutputStream outputStream,
+                       final EventStreamConfig config,
+                       final BlacklistService blacklistService,
+                       final CursorConverter cursorConverter, final Meter bytesFlushedMeter,
+                       final EventStreamWriterProvider writer,
+                       final long flushCoalescingMs) {
         this.eventConsumer = eventConsumer;
-        this.outputStream = outputStream;
+        this.coalescingOutputStream = flushCoalescingMs > 0 ?
+                new CoalescingOutputStream(outputStream, flushCoalescingMs) : null;
+        this.outputStream = null != coalescingOutputStream ? coalescingOutputStream : outputStream;
         this.config = config;
         this.blacklistService = blacklistService;
         this.cursorConverter = cursorConverter;
@@ -51,87 +67,44 @@ public class EventStream {
 
     public void streamEvents(final AtomicBoolean connectionReady, final Runnable checkAuthorization) {
         try {
-            int messagesRead = 0;
-            final Map<String, Integer> keepAliveInARow = createMapWithPartitionKeys(partition -> 0);
-
-            final Map<String, List<byte[]>> currentBatches =
-                    createMapWithPartitionKeys(partition -> Lists.newArrayList());
-            // Partition to NakadiCursor.
-            final Map<String, NakadiCursor> latestOffsets = config.getCursors().stream().collect(
-                    Collectors.toMap(NakadiCursor::getPartition, c -> c));
-
             final long start = currentTimeMillis();
-            final Map<String, Long> batchStartTimes = createMapWithPartitionKeys(partition -> start);
-            final List<ConsumedEvent> consumedEvents = new LinkedList<>();
+            final PartitionBatches batches = new PartitionBatches(config.getCursors(), start);
+            final long streamDeadline = config.getStreamTimeout() == 0 ?
+                    Long.MAX_VALUE : start + config.getStreamTimeout() * 1000L;
+            int messagesRead = 0;
             while (connectionReady.get() &&
                     !blacklistService.isConsumptionBlocked(config.getEtName(), config.getConsumingAppId())) {
 
                 checkAuthorization.run();
 
-                if (consumedEvents.isEmpty()) {
-                    // TODO: There are a lot of optimizations here, one can significantly improve code by processing
-                    // all events at the same time, instead of processing one by one.
-                    consumedEvents.addAll(eventConsumer.readEvents());
-                }
-                final Optional<ConsumedEvent> eventOrEmpty = consumedEvents.isEmpty() ?
-                        Optional.empty() : Optional.of(consumedEvents.remove(0));
-
-                if (eventOrEmpty.isPresent()) {
-                    final ConsumedEvent event = eventOrEmpty.get();
-
-                    // update offset for the partition of event that was read
-                    latestOffsets.put(event.getPosition().getPartition(), event.getPosition());
-
-                    // put message to batch
-                    currentBatches.get(event.getPosition().getPartition()).add(event.getEvent());
+                // the whole poll result is processed at once, time is checked once per poll and not per event
+                for (final ConsumedEvent event : eventConsumer.readEvents()) {
+                    final int index = batches.add(event);
                     messagesRead++;
-
-                    // if we read the message - reset keep alive counter for this partition
-                    keepAliveInARow.put(event.getPosition().getPartition(), 0);
+                    if (batches.size(index) >= config.getBatchLimit()) {
+                        batches.send(index);
+                    }
+                    if (config.getStreamLimit() != 0 && messagesRead >= config.getStreamLimit()) {
+                        batches.sendNotEmpty();
+                        return;
+                    }
                 }
 
-                // for each partition check if it's time to send the batch
-                for (final String partition : latestOffsets.keySet()) {
-                    final long timeSinceBatchStart = currentTimeMillis() - batchStartTimes.get(partition);
-                    if (config.getBatchTimeout() * 1000 <= timeSinceBatchStart
-                            || currentBatches.get(partition).size() >= config.getBatchLimit()) {
-
-                        sendBatch(latestOffsets.get(partition), currentBatches.get(partition));
-
-                        // if we hit keep alive count limit - close the stream
-                        if (currentBatches.get(partition).size() == 0) {
-                            keepAliveInARow.put(partition, keepAliveInARow.get(partition) + 1);
-                        }
-
-                        // init new batch for partition
-                        currentBatches.get(partition).clear();
-                        batchStartTimes.put(partition, currentTimeMillis());
-                    }
+                final long now = currentTimeMillis();
+                batches.sendExpired(now);
+                if (null != coalescingOutputStream) {
+                    coalescingOutputStream.flushIfDue(now);
                 }
 
                 // check if we reached keepAliveInARow for all the partitions; if yes - then close stream
-                if (config.getStreamKeepAliveLimit() != 0) {
-                    final boolean keepAliveLimitReachedForAllPartitions = keepAliveInARow
-                            .values()
-                            .stream()
-                            .allMatch(keepAlives -> keepAlives >= config.getStreamKeepAliveLimit());
-
-                    if (keepAliveLimitReachedForAllPartitions) {
-                        break;
-                    }
+                if (config.getStreamKeepAliveLimit() != 0
+                        && batches.isKeepAliveLimitReached(config.getStreamKeepAliveLimit())) {
+                    break;
                 }
 
-                // check if we reached the stream timeout or message count limit
-                final long timeSinceStart = currentTimeMillis() - start;
-                if (config.getStreamTimeout() != 0 && timeSinceStart >= config.getStreamTimeout() * 1000
-                        || config.getStreamLimit() != 0 && messagesRead >= config.getStreamLimit()) {
-
-                    for (final String partition : latestOffsets.keySet()) {
-                        if (currentBatches.get(partition).size() > 0) {
-                            sendBatch(latestOffsets.get(partition), currentBatches.get(partition));
-                        }
-                    }
-
+                // check if we reached the stream timeout
+                if (now >= streamDeadline) {
+                    batches.sendNotEmpty();
                     break;
                 }
             }
@@ -145,10 +118,101 @@ public class EventStream {
         }
     }
 
-    private <T> Map<String, T> createMapWithPartitionKeys(final Function<String, T> valueFunction) {
-        return config
-                .getCursors().stream().map(NakadiCursor::getPartition)
-                .collect(Collectors.toMap(identity(), valueFunction));
+    /**
+     * Batches of the stream partitions. Partition state is kept in arrays by the index of the partition in the
+     * stream cursors, so that the partition name is looked up only once per event. Next batch deadline is tracked
+     * in order to check the partitions only when the batch of at least one of them is expired.
+     */
+    private class PartitionBatches {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final NakadiCursor[] latestOffsets;
+        // position of the event is created only when the batch is sent
+        private final ConsumedEvent[] latestEvents;
+        private final List<List<byte[]>> currentBatches;
+        private final int[] keepAliveInARow;
+        private final long[] batchDeadlines;
+        private final long batchTimeoutMs;
+        private long nextDeadline;
+
+        private PartitionBatches(final List<NakadiCursor> cursors, final long start) {
+            latestOffsets = cursors.toArray(new NakadiCursor[cursors.size()]);
+            currentBatches = new ArrayList<>(latestOffsets.length);
+            for (int i = 0; i < latestOffsets.length; i++) {
+                if (null != indexes.put(latestOffsets[i].getPartition(), i)) {
+                    throw new IllegalStateException("Duplicate partition " + latestOffsets[i].getPartition());
+                }
+                currentBatches.add(new ArrayList<>());
+            }
+            latestEvents = new ConsumedEvent[latestOffsets.length];
+            keepAliveInARow = new int[latestOffsets.length];
+            batchTimeoutMs = config.getBatchTimeout() * 1000L;
+            batchDeadlines = new long[latestOffsets.length];
+            Arrays.fill(batchDeadlines, start + batchTimeoutMs);
+            nextDeadline = start + batchTimeoutMs;
+        }
+
+        private int add(final ConsumedEvent event) {
+            final int index = indexes.get(event.getPartition());
+            // update offset for the partition of event that was read
+            latestEvents[index] = event;
+            currentBatches.get(index).add(event.getEvent());
+            // if we read the message - reset keep alive counter for this partition
+            keepAliveInARow[index] = 0;
+            return index;
+        }
+
+        private int size(final int index) {
+            return currentBatches.get(index).size();
+        }
+
+        private void send(final int index) throws IOException {
+            final List<byte[]> batch = currentBatches.get(index);
+            sendBatch(getLatestOffset(index), batch);
+            if (batch.isEmpty()) {
+                keepAliveInARow[index]++;
+            }
+            // init new batch for partition
+            batch.clear();
+            batchDeadlines[index] = currentTimeMillis() + batchTimeoutMs;
+        }
+
+        private void sendExpired(final long now) throws IOException {
+            if (now < nextDeadline) {
+                return;
+            }
+            nextDeadline = Long.MAX_VALUE;
+            for (int i = 0; i < latestOffsets.length; i++) {
+                if (batchDeadlines[i] <= now) {
+                    send(i);
+                }
+                nextDeadline = Math.min(nextDeadline, batchDeadlines[i]);
+            }
+        }
+
+        private void sendNotEmpty() throws IOException {
+            for (int i = 0; i < latestOffsets.length; i++) {
+                if (!currentBatches.get(i).isEmpty()) {
+                    sendBatch(getLatestOffset(i), currentBatches.get(i));
+                }
+            }
+        }
+
+        private NakadiCursor getLatestOffset(final int index) {
+            if (null != latestEvents[index]) {
+                latestOffsets[index] = latestEvents[index].getPosition();
+                latestEvents[index] = null;
+            }
+            return latestOffsets[index];
+        }
+
+        private boolean isKeepAliveLimitReached(final int keepAliveLimit) {
+            for (final int keepAlives : keepAliveInARow) {
+                if (keepAlives < keepAliveLimit) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     private void sendBatch(final NakadiCursor topicPosition, final List<byte[]> currentBatch)
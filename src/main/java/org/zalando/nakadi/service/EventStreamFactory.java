@@ -2,6 +2,7 @@ package org.zalando.nakadi.service;
 
 import com.codahale.metrics.Meter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.zalando.nakadi.exceptions.InvalidCursorException;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -15,15 +16,18 @@ public class EventStreamFactory {
     private final CursorConverter cursorConverter;
     private final EventStreamWriterProvider writerProvider;
     private final BlacklistService blacklistService;
+    private final long flushCoalescingMs;
 
     @Autowired
     public EventStreamFactory(
             final CursorConverter cursorConverter,
             final EventStreamWriterProvider writerProvider,
-            final BlacklistService blacklistService) {
+            final BlacklistService blacklistService,
+            @Value("${nakadi.stream.flushCoalescingMs}") final long flushCoalescingMs) {
         this.cursorConverter = cursorConverter;
         this.writerProvider = writerProvider;
         this.blacklistService = blacklistService;
+        this.flushCoalescingMs = flushCoalescingMs;
     }
 
 
@@ -37,6 +41,7 @@ public class EventStreamFactory {
                 blacklistService,
                 cursorConverter,
                 bytesFlushedMeter,
-                writerProvider);
+                writerProvider,
+                flushCoalescingMs);
     }
 }
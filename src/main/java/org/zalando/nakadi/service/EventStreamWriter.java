@@ -2,7 +2,6 @@ package org.zalando.nakadi.service;
 
 import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.view.Cursor;
-import org.zalando.nakadi.view.SubscriptionCursor;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -23,6 +22,15 @@ public interface EventStreamWriter {
      */
     int writeBatch(OutputStream os, Cursor cursor, List<byte[]> events) throws IOException;
 
-    int writeSubscriptionBatch(OutputStream os, SubscriptionCursor cursor, List<ConsumedEvent> events,
+    /**
+     * Writes subscription batch to stream
+     *
+     * @param os       Stream to write to
+     * @param cursor   Cursor of the batch encoded by the stream {@link CursorEncoder}
+     * @param events   Events in batch
+     * @param metadata Debug information to add to the batch
+     * @return count of bytes written
+     */
+    int writeSubscriptionBatch(OutputStream os, EncodedCursor cursor, List<ConsumedEvent> events,
                                Optional<String> metadata) throws IOException;
 }
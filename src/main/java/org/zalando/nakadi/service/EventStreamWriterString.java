@@ -4,7 +4,6 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.zalando.nakadi.domain.ConsumedEvent;
 import org.zalando.nakadi.view.Cursor;
-import org.zalando.nakadi.view.SubscriptionCursor;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -18,15 +17,11 @@ import static com.google.common.base.Charsets.UTF_8;
 public class EventStreamWriterString implements EventStreamWriter {
 
     @Override
-    public int writeSubscriptionBatch(final OutputStream os, final SubscriptionCursor cursor,
+    public int writeSubscriptionBatch(final OutputStream os, final EncodedCursor cursor,
                                       final List<ConsumedEvent> events,
                                       final Optional<String> metadata) throws IOException {
         final StringBuilder builder = new StringBuilder()
-                .append("{\"cursor\":{\"partition\":\"").append(cursor.getPartition())
-                .append("\",\"offset\":\"").append(cursor.getOffset())
-                .append("\",\"event_type\":\"").append(cursor.getEventType())
-                .append("\",\"cursor_token\":\"").append(cursor.getCursorToken())
-                .append("\"}");
+                .append(cursor.toString());
         if (!events.isEmpty()) {
             builder.append(",\"events\":[");
             events.forEach(event -> builder.append(new String(event.getEvent())).append(","));
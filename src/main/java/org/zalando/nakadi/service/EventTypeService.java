@@ -17,6 +17,7 @@ import org.zalando.nakadi.domain.CompatibilityMode;
 import org.zalando.nakadi.domain.EventCategory;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.EventTypeBase;
+import org.zalando.nakadi.domain.EventTypeOptions;
 import org.zalando.nakadi.domain.EventTypeStatistics;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.domain.Timeline;
@@ -231,6 +232,7 @@ public class EventTypeService {
             final EventType eventType = schemaEvolutionService.evolve(original, eventTypeBase);
             eventType.setDefaultStatistic(
                     validateStatisticsUpdate(original.getDefaultStatistic(), eventType.getDefaultStatistic()));
+            keepProducerOptions(original, eventType);
             updateRetentionTime(original, eventType);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -254,6 +256,16 @@ public class EventTypeService {
         }
     }
 
+    private void keepProducerOptions(final EventType original, final EventType eventType) {
+        final EventTypeOptions options = eventType.getOptions();
+        if (options.getCompressionType() == null) {
+            options.setCompressionType(original.getOptions().getCompressionType());
+        }
+        if (options.getLingerTime() == null) {
+            options.setLingerTime(original.getOptions().getLingerTime());
+        }
+    }
+
     private void updateRetentionTime(final EventType original, final EventType eventType) throws NakadiException {
         final Long newRetentionTime = eventType.getOptions().getRetentionTime();
         final Long oldRetentionTime = original.getOptions().getRetentionTime();
@@ -266,7 +278,8 @@ public class EventTypeService {
             if (newRetentionTime != null && !newRetentionTime.equals(oldRetentionTime)) {
                 updateTopicRetentionTime(original.getName(), newRetentionTime);
             } else {
-                eventType.setOptions(original.getOptions());
+                // keep producer options, that could be updated without retention time
+                eventType.getOptions().setRetentionTime(oldRetentionTime);
             }
             updateEventTypeInDB(eventType, newRetentionTime, oldRetentionTime);
             retentionTimeUpdated = true;
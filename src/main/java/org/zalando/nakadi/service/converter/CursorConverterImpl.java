@@ -93,11 +93,25 @@ public class CursorConverterImpl implements CursorConverter {
     }
 
     public Cursor convert(final NakadiCursor nakadiCursor) {
-        final Version version = nakadiCursor.getTimeline().isFake() ? CursorConverter.Version.ZERO
-                : CursorConverter.Version.ONE;
         return new Cursor(
                 nakadiCursor.getPartition(),
-                converters.get(version).formatOffset(nakadiCursor));
+                getConverter(nakadiCursor).formatOffset(nakadiCursor));
+    }
+
+    @Override
+    public int getOffsetLength(final NakadiCursor cursor) {
+        return getConverter(cursor).getOffsetLength(cursor);
+    }
+
+    @Override
+    public void writeOffset(final NakadiCursor cursor, final byte[] target, final int position) {
+        getConverter(cursor).writeOffset(cursor, target, position);
+    }
+
+    private VersionedConverter getConverter(final NakadiCursor nakadiCursor) {
+        final Version version = nakadiCursor.getTimeline().isFake() ? CursorConverter.Version.ZERO
+                : CursorConverter.Version.ONE;
+        return converters.get(version);
     }
 
     public SubscriptionCursor convert(final NakadiCursor position, final String token) {
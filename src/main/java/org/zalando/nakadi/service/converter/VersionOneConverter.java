@@ -101,10 +101,52 @@ class VersionOneConverter implements VersionedConverter {
         // version - 3 symbols
         // order - 4 symbols
         // offset data - everything else
-        return String.format(
-                "%s-%04x-%s",
-                CursorConverter.Version.ONE.code,
-                nakadiCursor.getTimeline().getOrder(),
-                nakadiCursor.getOffset());
+        final String order = Integer.toHexString(nakadiCursor.getTimeline().getOrder());
+        final StringBuilder result = new StringBuilder(
+                CursorConverter.VERSION_LENGTH + TIMELINE_ORDER_LENGTH + 2 + nakadiCursor.getOffset().length())
+                .append(CursorConverter.Version.ONE.code)
+                .append('-');
+        // same as %04x
+        for (int i = order.length(); i < TIMELINE_ORDER_LENGTH; i++) {
+            result.append('0');
+        }
+        return result.append(order)
+                .append('-')
+                .append(nakadiCursor.getOffset())
+                .toString();
+    }
+
+    @Override
+    public int getOffsetLength(final NakadiCursor nakadiCursor) {
+        return CursorConverter.VERSION_LENGTH + getOrderLength(nakadiCursor.getTimeline().getOrder()) + 2 +
+                nakadiCursor.getOffset().length();
+    }
+
+    @Override
+    public void writeOffset(final NakadiCursor nakadiCursor, final byte[] target, final int position) {
+        int idx = position;
+        final String version = CursorConverter.Version.ONE.code;
+        for (int i = 0; i < version.length(); i++) {
+            target[idx++] = (byte) version.charAt(i);
+        }
+        target[idx++] = '-';
+        final int order = nakadiCursor.getTimeline().getOrder();
+        final int orderLength = getOrderLength(order);
+        for (int i = orderLength - 1; i >= 0; i--) {
+            target[idx + i] = (byte) Character.forDigit((order >>> (4 * (orderLength - 1 - i))) & 0xF,
+                    TIMELINE_ORDER_BASE);
+        }
+        idx += orderLength;
+        target[idx++] = '-';
+        final String offset = nakadiCursor.getOffset();
+        for (int i = 0; i < offset.length(); i++) {
+            target[idx++] = (byte) offset.charAt(i);
+        }
+    }
+
+    // number of hex digits in order padded to TIMELINE_ORDER_LENGTH, the same as %04x
+    private static int getOrderLength(final int order) {
+        final int digits = (Integer.SIZE - Integer.numberOfLeadingZeros(order) + 3) / 4;
+        return Math.max(digits, TIMELINE_ORDER_LENGTH);
     }
 }
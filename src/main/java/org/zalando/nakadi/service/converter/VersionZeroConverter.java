@@ -146,5 +146,27 @@ public class VersionZeroConverter implements VersionedConverter {
         }
     }
 
+    @Override
+    public int getOffsetLength(final NakadiCursor nakadiCursor) {
+        if (nakadiCursor.getOffset().equals("-1")) {
+            return Cursor.BEFORE_OLDEST_OFFSET.length();
+        } else {
+            return Math.max(nakadiCursor.getOffset().length(), VERSION_ZERO_MIN_OFFSET_LENGTH);
+        }
+    }
+
+    @Override
+    public void writeOffset(final NakadiCursor nakadiCursor, final byte[] target, final int position) {
+        final String offset = nakadiCursor.getOffset().equals("-1") ?
+                Cursor.BEFORE_OLDEST_OFFSET : nakadiCursor.getOffset();
+        int idx = position;
+        for (int i = offset.length(); i < VERSION_ZERO_MIN_OFFSET_LENGTH; i++) {
+            target[idx++] = '0';
+        }
+        for (int i = 0; i < offset.length(); i++) {
+            target[idx++] = (byte) offset.charAt(i);
+        }
+    }
+
 
 }
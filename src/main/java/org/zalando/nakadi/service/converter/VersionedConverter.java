@@ -29,4 +29,14 @@ interface VersionedConverter {
             InternalNakadiException, NoSuchEventTypeException, ServiceUnavailableException, InvalidCursorException;
 
     String formatOffset(NakadiCursor nakadiCursor);
+
+    /**
+     * Length of the offset returned by {@link #formatOffset(NakadiCursor)}.
+     */
+    int getOffsetLength(NakadiCursor nakadiCursor);
+
+    /**
+     * Writes the same offset as {@link #formatOffset(NakadiCursor)} returns to the array, offsets are ascii only.
+     */
+    void writeOffset(NakadiCursor nakadiCursor, byte[] target, int position);
 }
@@ -3,76 +3,100 @@ package org.zalando.nakadi.service.subscription;
 import org.zalando.nakadi.service.subscription.model.Partition;
 import org.zalando.nakadi.service.subscription.model.Session;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+/**
+ * Splits partitions between sessions proportionally to their weights with the minimal number of movements: partition
+ * is moved only if its session is gone or the session has more partitions than it should have, and the partitions
+ * that can't be split evenly are left to the sessions that already have them. Rebalancing takes linear time in the
+ * number of partitions and sessions.
+ */
 class ExactWeightRebalancer implements BiFunction<Session[], Partition[], Partition[]> {
     @Override
     public Partition[] apply(final Session[] sessions, final Partition[] currentPartitions) {
-        final Map<String, Integer> activeSessionWeights = Stream.of(sessions)
-                .collect(Collectors.toMap(Session::getId, Session::getWeight));
         // sorted session ids.
-        final List<String> activeSessionIds = activeSessionWeights.keySet().stream().sorted()
-                .collect(Collectors.toList());
+        final Session[] sortedSessions = Stream.of(sessions)
+                .sorted(Comparator.comparing(Session::getId))
+                .toArray(Session[]::new);
+        final Map<String, Integer> sessionIndex = new HashMap<>(sortedSessions.length * 2);
+        for (int idx = 0; idx < sortedSessions.length; ++idx) {
+            sessionIndex.put(sortedSessions[idx].getId(), idx);
+        }
+        final Set<String> activeSessionIds = sessionIndex.keySet();
+
+        // Stage 1. Select partitions that are not assigned to any EXISTING session, group the rest by session.
+        final Deque<Partition> toRebalance = new ArrayDeque<>();
+        final List<List<Partition>> assigned = new ArrayList<>(sortedSessions.length);
+        final List<List<Partition>> reassigning = new ArrayList<>(sortedSessions.length);
+        for (int idx = 0; idx < sortedSessions.length; ++idx) {
+            assigned.add(new ArrayList<>());
+            reassigning.add(new ArrayList<>());
+        }
+        for (final Partition partition : currentPartitions) {
+            if (partition.mustBeRebalanced(activeSessionIds)) {
+                toRebalance.add(partition);
+            } else {
+                final int idx = sessionIndex.get(partition.getSessionOrNextSession());
+                (partition.getState() == Partition.State.REASSIGNING ? reassigning : assigned).get(idx).add(partition);
+            }
+        }
+        final int[] currentCounts = IntStream.range(0, sortedSessions.length)
+                .map(idx -> assigned.get(idx).size() + reassigning.get(idx).size())
+                .toArray();
+
         // the main part of rebalance - calculate count for each partition.
         final int[] partitionsPerSession = splitByWeight(
                 currentPartitions.length,
-                activeSessionIds.stream().mapToInt(activeSessionWeights::get).toArray());
-
-        // Stage 1. Select partitions that are not assigned to any EXISTING session.
-        final Set<Partition> toRebalance = Stream.of(currentPartitions)
-                .filter(p -> p.mustBeRebalanced(activeSessionIds))
-                .collect(Collectors.toSet());
+                Stream.of(sortedSessions).mapToInt(Session::getWeight).toArray(),
+                currentCounts);
 
-        // State 2. Remove partitions from sessions that have too many of them.
-        // 2.1. collect information per session.
-        final Map<String, List<Partition>> partitions = Stream.of(currentPartitions)
-                .filter(p -> !toRebalance.contains(p))
-                .collect(Collectors.groupingBy(Partition::getSessionOrNextSession));
-        // 2.2. Remove
-        for (int idx = 0; idx < activeSessionIds.size(); ++idx) {
-            final String sessionId = activeSessionIds.get(idx);
-            final int suggestedCount = partitionsPerSession[idx];
-            int toTake = (partitions.containsKey(sessionId) ? partitions.get(sessionId).size() : 0) - suggestedCount;
-            while (toTake > 0) {
-                final List<Partition> candidates = partitions.get(sessionId);
-                final Partition toTakeItem = candidates.stream()
-                        .filter(p -> p.getState() == Partition.State.REASSIGNING).findAny().orElse(
-                        candidates.get(candidates.size() - 1));
-                candidates.remove(toTakeItem);
-                toRebalance.add(toTakeItem);
-                toTake -= 1;
+        // Stage 2. Remove partitions from sessions that have too many of them, reassigning ones are taken first.
+        for (int idx = 0; idx < sortedSessions.length; ++idx) {
+            final List<Partition> sessionReassigning = reassigning.get(idx);
+            final List<Partition> sessionAssigned = assigned.get(idx);
+            for (int toTake = currentCounts[idx] - partitionsPerSession[idx]; toTake > 0; --toTake) {
+                final List<Partition> candidates = sessionReassigning.isEmpty() ? sessionAssigned : sessionReassigning;
+                toRebalance.add(candidates.remove(candidates.size() - 1));
             }
         }
 
-        if (!toRebalance.isEmpty()) {
-            // 3. Assign partitions to any nodes who are waiting for it.
-            final List<Partition> result = new ArrayList<>();
-            for (int idx = 0; idx < activeSessionIds.size(); ++idx) {
-                final String sessionId = activeSessionIds.get(idx);
-
-                final int suggestedCount = partitionsPerSession[idx];
-                final int currentCount = partitions.containsKey(sessionId) ? partitions.get(sessionId).size() : 0;
-                for (int i = 0; i < suggestedCount - currentCount; ++i) {
-                    final Partition toMove = toRebalance.iterator().next();
-                    toRebalance.remove(toMove);
-                    result.add(toMove.moveToSessionId(sessionId, activeSessionIds));
-                }
-            }
-            return result.toArray(new Partition[result.size()]);
-        } else {
+        if (toRebalance.isEmpty()) {
             return new Partition[0];
         }
+        // Stage 3. Assign partitions to any nodes who are waiting for it.
+        final Partition[] result = new Partition[toRebalance.size()];
+        int resultIdx = 0;
+        for (int idx = 0; idx < sortedSessions.length; ++idx) {
+            final String sessionId = sortedSessions[idx].getId();
+            for (int i = currentCounts[idx]; i < partitionsPerSession[idx]; ++i) {
+                result[resultIdx++] = toRebalance.poll().moveToSessionId(sessionId, activeSessionIds);
+            }
+        }
+        return result;
     }
 
     static int[] splitByWeight(final int itemCount, final int[] weigths) {
+        return splitByWeight(itemCount, weigths, null);
+    }
+
+    /**
+     * Splits items proportionally to weights. Items that are left after the proportional split are given to the
+     * sessions in the order of the number of items they already have above the proportional part, so that the
+     * sessions keep as many items as possible. Without current counts they are given in the order of sessions.
+     */
+    static int[] splitByWeight(final int itemCount, final int[] weigths, @Nullable final int[] currentCounts) {
         if (itemCount < weigths.length) {
             throw new IllegalArgumentException("Can not rebalance " + itemCount + " onto " + weigths.length);
         }
@@ -87,14 +111,15 @@ class ExactWeightRebalancer implements BiFunction<Session[], Partition[], Partit
         }
 
         int left = itemCount - IntStream.of(result).sum();
-
-        // Yes, it's bad way, I know. But failed to figure out other simple way for exact case.
-        while (left > 0) {
-            for (int i = 0; i < result.length && left > 0; ++i) {
-                final int v = Math.min(left, weigths[i]);
-                result[i] += v;
-                left -= v;
-            }
+        // less items than the total weight are left, so one pass is enough to give them away
+        final Integer[] order = IntStream.range(0, weigths.length).boxed().toArray(Integer[]::new);
+        if (null != currentCounts) {
+            Arrays.sort(order, Comparator.comparingInt(i -> result[i] - currentCounts[i]));
+        }
+        for (int i = 0; i < order.length && left > 0; ++i) {
+            final int v = Math.min(left, weigths[order[i]]);
+            result[order[i]] += v;
+            left -= v;
         }
         return result;
     }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.zalando.nakadi.ShutdownHooks;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.exceptions.NakadiRuntimeException;
@@ -28,6 +30,8 @@ import org.zalando.nakadi.service.timeline.TimelineService;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +41,8 @@ import java.util.function.BiFunction;
 public class StreamingContext implements SubscriptionStreamer {
 
     public static final State DEAD_STATE = new DummyState();
+    // number of tasks processed at once on the event loop, before the thread is given to other streams
+    private static final int EVENT_LOOP_TASKS_IN_ROW = 64;
 
     private final StreamParameters parameters;
     private final Session session;
@@ -58,10 +64,18 @@ public class StreamingContext implements SubscriptionStreamer {
     private final EventStreamWriter writer;
     private final AuthorizationValidator authorizationValidator;
     private final EventTypeChangeListener eventTypeChangeListener;
+    private final Executor eventLoop;
+    private final Executor blockingExecutor;
+    private final long eventLoopIdlePollMs;
+    private final long flushCoalescingMs;
+    private final AtomicBoolean eventLoopScheduled = new AtomicBoolean(false);
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
 
     private State currentState = new DummyState();
     private ZKSubscription clientListChanges;
     private Closeable authorizationCheckSubscription;
+    private Closeable shutdownHook;
+    private SecurityContext securityContext;
 
     private final Logger log;
 
@@ -86,6 +100,10 @@ public class StreamingContext implements SubscriptionStreamer {
         this.writer = builder.writer;
         this.authorizationValidator = builder.authorizationValidator;
         this.eventTypeChangeListener = builder.eventTypeChangeListener;
+        this.eventLoop = builder.eventLoop;
+        this.blockingExecutor = builder.blockingExecutor;
+        this.eventLoopIdlePollMs = builder.eventLoopIdlePollMs;
+        this.flushCoalescingMs = builder.flushCoalescingMs;
     }
 
     public TimelineService getTimelineService() {
@@ -128,6 +146,24 @@ public class StreamingContext implements SubscriptionStreamer {
         return this.writer;
     }
 
+    /**
+     * Whether the stream is processed on the shared event loop, in which case tasks should not block.
+     */
+    public boolean isOnEventLoop() {
+        return null != eventLoop;
+    }
+
+    public long getEventLoopIdlePollMs() {
+        return eventLoopIdlePollMs;
+    }
+
+    /**
+     * Minimal interval between flushes of the output, zero if every batch is flushed.
+     */
+    public long getFlushCoalescingMs() {
+        return flushCoalescingMs;
+    }
+
     @Override
     public void stream() throws InterruptedException {
         try (Closeable ignore = ShutdownHooks.addHook(this::onNodeShutdown)) { // bugfix ARUHA-485
@@ -140,6 +176,20 @@ public class StreamingContext implements SubscriptionStreamer {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> streamAsync() {
+        shutdownHook = ShutdownHooks.addHook(this::onNodeShutdown);
+        return streamAsyncInternal(new StartingState());
+    }
+
+    CompletableFuture<Void> streamAsyncInternal(final State firstState) {
+        Preconditions.checkState(isOnEventLoop(), "Event loop is not configured for the stream");
+        // tasks are executed on the threads of the event loop, that don't own security context of the request
+        securityContext = SecurityContextHolder.getContext();
+        switchState(firstState);
+        return finished;
+    }
+
     void onNodeShutdown() {
         log.info("Shutdown hook called. Trying to terminate subscription gracefully");
         switchState(new CleanupState(null));
@@ -152,22 +202,82 @@ public class StreamingContext implements SubscriptionStreamer {
         while (currentState != DEAD_STATE) {
             // Wait forever
             final Runnable task = taskQueue.poll(1, TimeUnit.HOURS);
-            try {
-                if (task != null) {
-                    task.run();
+            if (task != null) {
+                runTask(task);
+            }
+        }
+    }
+
+    private void runTask(final Runnable task) {
+        try {
+            task.run();
+        } catch (final NakadiRuntimeException ex) {
+            log.error("Failed to process task " + task + ", will rethrow original error", ex);
+            switchState(new CleanupState(ex.getException()));
+        } catch (final RuntimeException ex) {
+            log.error("Failed to process task " + task + ", code carefully!", ex);
+            switchState(new CleanupState(ex));
+        }
+    }
+
+    /**
+     * Processes queued tasks on the event loop. Only one drain of the stream is scheduled at a time, so tasks of one
+     * stream are still executed one by one. Blocking tasks are executed by the drain that is moved to the blocking
+     * executor, so that waits of one stream (zookeeper locks, creation of consumers) don't stall the event loop
+     * threads that are shared by all the streams.
+     */
+    private void drainTasks(final boolean blocking) {
+        SecurityContextHolder.setContext(securityContext);
+        try {
+            for (int i = 0; i < EVENT_LOOP_TASKS_IN_ROW && currentState != DEAD_STATE; i++) {
+                final Runnable task = taskQueue.peek();
+                if (null == task) {
+                    break;
+                }
+                if ((task instanceof BlockingTask) != blocking) {
+                    // drain stays scheduled and continues on the executor that fits the task
+                    (blocking ? eventLoop : blockingExecutor).execute(() -> drainTasks(!blocking));
+                    return;
                 }
-            } catch (final NakadiRuntimeException ex) {
-                log.error("Failed to process task " + task + ", will rethrow original error", ex);
-                switchState(new CleanupState(ex.getException()));
-            } catch (final RuntimeException ex) {
-                log.error("Failed to process task " + task + ", code carefully!", ex);
-                switchState(new CleanupState(ex));
+                taskQueue.poll();
+                runTask(task);
+            }
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        if (currentState == DEAD_STATE) {
+            // drain is left scheduled, so that tasks added by timers after the end of the stream are not executed
+            finishStreaming();
+            return;
+        }
+        eventLoopScheduled.set(false);
+        if (!taskQueue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (eventLoopScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(() -> drainTasks(false));
+        }
+    }
+
+    private void finishStreaming() {
+        taskQueue.clear();
+        if (null != shutdownHook) {
+            try {
+                shutdownHook.close();
+            } catch (final IOException ex) {
+                log.error("Failed to delete shutdown hook for subscription {}. " +
+                        "This method should not throw any exception", getSubscription(), ex);
             }
         }
+        finished.complete(null);
     }
 
     public void switchState(final State newState) {
-        this.addTask(() -> {
+        // states are talking to zookeeper and kafka when they are entered and exited
+        this.addBlockingTask(() -> {
             log.info("Switching state from " + currentState.getClass().getSimpleName());
             // There is a problem with onExit call - it can not throw exceptions, otherwise it won't be possible
             // to finish state correctly. In order to avoid it in future state will be switched even in case of
@@ -187,7 +297,7 @@ public class StreamingContext implements SubscriptionStreamer {
     public void registerSession() {
         log.info("Registering session {}", session);
         // Install rebalance hook on client list change.
-        clientListChanges = zkClient.subscribeForSessionListChanges(() -> addTask(this::rebalance));
+        clientListChanges = zkClient.subscribeForSessionListChanges(() -> addBlockingTask(this::rebalance));
         zkClient.registerSession(session);
     }
 
@@ -209,6 +319,17 @@ public class StreamingContext implements SubscriptionStreamer {
 
     public void addTask(final Runnable task) {
         taskQueue.offer(task);
+        if (null != eventLoop) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Adds task that may block, for example on zookeeper lock. On the event loop such tasks are executed by the
+     * blocking executor, otherwise it is the same as {@link #addTask(Runnable)}.
+     */
+    public void addBlockingTask(final Runnable task) {
+        addTask(null == eventLoop ? task : new BlockingTask(task));
     }
 
     public void scheduleTask(final Runnable task, final long timeout, final TimeUnit unit) {
@@ -271,6 +392,24 @@ public class StreamingContext implements SubscriptionStreamer {
         this.authorizationValidator.authorizeSubscriptionRead(subscription);
     }
 
+    private static class BlockingTask implements Runnable {
+        private final Runnable task;
+
+        private BlockingTask(final Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
     public static final class Builder {
         private SubscriptionOutput out;
         private StreamParameters parameters;
@@ -291,6 +430,10 @@ public class StreamingContext implements SubscriptionStreamer {
         private EventStreamWriter writer;
         private AuthorizationValidator authorizationValidator;
         private EventTypeChangeListener eventTypeChangeListener;
+        private Executor eventLoop;
+        private Executor blockingExecutor;
+        private long eventLoopIdlePollMs;
+        private long flushCoalescingMs;
 
         public Builder setOut(final SubscriptionOutput out) {
             this.out = out;
@@ -387,6 +530,19 @@ public class StreamingContext implements SubscriptionStreamer {
             return this;
         }
 
+        public Builder setEventLoop(final Executor eventLoop, final Executor blockingExecutor,
+                                    final long eventLoopIdlePollMs) {
+            this.eventLoop = eventLoop;
+            this.blockingExecutor = blockingExecutor;
+            this.eventLoopIdlePollMs = eventLoopIdlePollMs;
+            return this;
+        }
+
+        public Builder setFlushCoalescingMs(final long flushCoalescingMs) {
+            this.flushCoalescingMs = flushCoalescingMs;
+            return this;
+        }
+
         public StreamingContext build() {
             return new StreamingContext(this);
         }
@@ -9,4 +9,12 @@ public interface SubscriptionOutput {
     void onException(Exception ex);
 
     OutputStream getOutputStream();
+
+    /**
+     * Whether the output is still sending previously written data to the client, in which case reading of new events
+     * should be postponed.
+     */
+    default boolean isWritePending() {
+        return false;
+    }
 }
@@ -1,6 +1,15 @@
 package org.zalando.nakadi.service.subscription;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface SubscriptionStreamer {
 
     void stream() throws InterruptedException;
+
+    /**
+     * Starts streaming on the event loop without blocking the calling thread.
+     *
+     * @return future that is completed when streaming is finished
+     */
+    CompletableFuture<Void> streamAsync();
 }
@@ -2,6 +2,8 @@ package org.zalando.nakadi.service.subscription;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +13,7 @@ import org.zalando.nakadi.exceptions.InternalNakadiException;
 import org.zalando.nakadi.exceptions.NoSuchEventTypeException;
 import org.zalando.nakadi.exceptions.NoSuchSubscriptionException;
 import org.zalando.nakadi.exceptions.ServiceUnavailableException;
+import org.zalando.nakadi.repository.kafka.KafkaSettings;
 import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.BlacklistService;
 import org.zalando.nakadi.service.CursorConverter;
@@ -21,6 +24,7 @@ import org.zalando.nakadi.service.subscription.model.Session;
 import org.zalando.nakadi.service.subscription.zk.SubscriptionClientFactory;
 import org.zalando.nakadi.service.timeline.TimelineService;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -39,6 +43,10 @@ public class SubscriptionStreamerFactory {
     private final EventStreamWriterProvider eventStreamWriterProvider;
     private final AuthorizationValidator authorizationValidator;
     private final EventTypeChangeListener eventTypeChangeListener;
+    private final ExecutorService eventLoop;
+    private final ExecutorService blockingExecutor;
+    private final long eventLoopIdlePollMs;
+    private final long flushCoalescingMs;
 
     @Autowired
     public SubscriptionStreamerFactory(
@@ -50,7 +58,11 @@ public class SubscriptionStreamerFactory {
             final SubscriptionClientFactory zkClientFactory,
             final EventStreamWriterProvider eventStreamWriterProvider,
             final AuthorizationValidator authorizationValidator,
-            final EventTypeChangeListener eventTypeChangeListener) {
+            final EventTypeChangeListener eventTypeChangeListener,
+            final KafkaSettings kafkaSettings,
+            @Value("${nakadi.stream.eventLoop.threads}") final int eventLoopThreads,
+            @Value("${nakadi.stream.eventLoop.idlePollMs}") final long eventLoopIdlePollMs,
+            @Value("${nakadi.stream.flushCoalescingMs}") final long flushCoalescingMs) {
         this.timelineService = timelineService;
         this.cursorTokenService = cursorTokenService;
         this.objectMapper = objectMapper;
@@ -60,6 +72,26 @@ public class SubscriptionStreamerFactory {
         this.eventStreamWriterProvider = eventStreamWriterProvider;
         this.authorizationValidator = authorizationValidator;
         this.eventTypeChangeListener = eventTypeChangeListener;
+        // streams on the event loop only check for available events, that is cheap only with the shared reader
+        Preconditions.checkArgument(eventLoopThreads <= 0 || kafkaSettings.getSharedReaderWindowBytes() > 0,
+                "nakadi.stream.eventLoop.threads requires nakadi.kafka.sharedReader.windowBytes to be set");
+        // without event loop every stream is processed by its own thread
+        if (eventLoopThreads > 0) {
+            this.eventLoop = Executors.newFixedThreadPool(eventLoopThreads,
+                    new ThreadFactoryBuilder().setNameFormat("subscription-loop-%d").setDaemon(true).build());
+            // at most one blocking task of each stream is executed at a time, so the pool is bounded by the streams
+            this.blockingExecutor = Executors.newCachedThreadPool(
+                    new ThreadFactoryBuilder().setNameFormat("subscription-blocking-%d").setDaemon(true).build());
+        } else {
+            this.eventLoop = null;
+            this.blockingExecutor = null;
+        }
+        this.eventLoopIdlePollMs = eventLoopIdlePollMs;
+        this.flushCoalescingMs = flushCoalescingMs;
+    }
+
+    public boolean isEventLoopEnabled() {
+        return null != eventLoop;
     }
 
     public SubscriptionStreamer build(
@@ -93,6 +125,8 @@ public class SubscriptionStreamerFactory {
                 .setWriter(eventStreamWriterProvider.getWriter())
                 .setAuthorizationValidator(authorizationValidator)
                 .setEventTypeChangeListener(eventTypeChangeListener)
+                .setEventLoop(eventLoop, blockingExecutor, eventLoopIdlePollMs)
+                .setFlushCoalescingMs(flushCoalescingMs)
                 .build();
     }
 
@@ -56,7 +56,8 @@ class ClosingState extends State {
         uncommittedOffsets = uncommittedOffsetsSupplier.get();
         if (!uncommittedOffsets.isEmpty() && timeToWaitMillis > 0) {
             scheduleTask(() -> switchState(new CleanupState()), timeToWaitMillis, TimeUnit.MILLISECONDS);
-            topologyListener = getZk().subscribeForTopologyChanges(() -> addTask(this::onTopologyChanged));
+            topologyListener = getZk().subscribeForTopologyChanges(
+                    getSessionId(), () -> addBlockingTask(this::onTopologyChanged));
             reactOnTopologyChange();
         } else {
             switchState(new CleanupState());
@@ -108,7 +109,7 @@ class ClosingState extends State {
         listeners.put(
                 key,
                 getZk().subscribeForOffsetChanges(
-                        key, () -> addTask(() -> this.offsetChanged(key))));
+                        key, () -> addBlockingTask(() -> this.offsetChanged(key))));
         reactOnOffset(key);
     }
 
@@ -8,17 +8,16 @@ import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.service.subscription.zk.ZKSubscription;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.Set;
-import java.util.TreeSet;
 
 class PartitionData {
     private final ZKSubscription subscription;
-    private final List<ConsumedEvent> nakadiEvents = new LinkedList<>();
-    private final NavigableSet<NakadiCursor> allCursorsOrdered = new TreeSet<>();
+    // events that were read, but not sent yet
+    private final RingBuffer<ConsumedEvent> nakadiEvents = new RingBuffer<>();
+    // cursors of the events that were sent, but not committed yet. Offsets within partition are growing, so both
+    // buffers are ordered and commits are removing elements from the head only
+    private final RingBuffer<NakadiCursor> sentCursors = new RingBuffer<>();
     private final Logger log;
 
     private NakadiCursor commitOffset;
@@ -70,9 +69,9 @@ class PartitionData {
     }
 
     private List<ConsumedEvent> extract(final int count) {
-        final List<ConsumedEvent> result = new ArrayList<>(count);
-        for (int i = 0; i < count && !nakadiEvents.isEmpty(); ++i) {
-            result.add(nakadiEvents.remove(0));
+        final List<ConsumedEvent> result = nakadiEvents.removeFirst(count);
+        for (final ConsumedEvent event : result) {
+            sentCursors.add(event.getPosition());
         }
         if (!result.isEmpty()) {
             this.sentOffset = result.get(result.size() - 1).getPosition();
@@ -125,32 +124,35 @@ class PartitionData {
             seekKafka = true;
             sentOffset = offset;
         }
-        final long committed;
+        long committed;
         if (offset.compareTo(commitOffset) >= 0) {
-            final Set<NakadiCursor> committedCursors = allCursorsOrdered.headSet(offset, true);
-            committed = committedCursors.size();
+            final int committedSent = sentCursors.countNotGreaterThan(offset, Comparator.naturalOrder());
+            sentCursors.discardFirst(committedSent);
+            committed = committedSent;
             commitOffset = offset;
-            // Operation is cascaded to allCursorsOrdered set.
-            committedCursors.clear();
         } else {
             log.error("Commits in past are evil!: Committing in {} while current commit is {}", offset, commitOffset);
             // Commit in past occurred. One should move storage pointer to sentOffset.
             seekKafka = true;
             commitOffset = offset;
             sentOffset = commitOffset;
-            allCursorsOrdered.clear();
+            sentCursors.clear();
             nakadiEvents.clear();
             committed = 0;
         }
-        while (!nakadiEvents.isEmpty() && nakadiEvents.get(0).getPosition().compareTo(commitOffset) <= 0) {
-            nakadiEvents.remove(0);
+        // events that were not sent yet could be committed as well in case of commit in future
+        int committedNotSent = 0;
+        while (committedNotSent < nakadiEvents.size()
+                && nakadiEvents.get(committedNotSent).getPosition().compareTo(commitOffset) <= 0) {
+            committedNotSent++;
         }
+        nakadiEvents.discardFirst(committedNotSent);
+        committed += committedNotSent;
         return new CommitResult(seekKafka, committed);
     }
 
     void addEvent(final ConsumedEvent event) {
         nakadiEvents.add(event);
-        allCursorsOrdered.add(event.getPosition());
     }
 
     boolean isCommitted() {
@@ -158,7 +160,7 @@ class PartitionData {
     }
 
     int getUnconfirmed() {
-        return allCursorsOrdered.headSet(sentOffset, true).size();
+        return sentCursors.size();
     }
 
     public ZKSubscription getSubscription() {
@@ -0,0 +1,35 @@
+package org.zalando.nakadi.service.subscription.state;
+
+/**
+ * Adapts the number of events the stream takes from kafka in one read. The limit grows while reads are using the
+ * whole limit, and is halved every time the stream can't send more events because max_uncommitted_events is
+ * reached, so that events waiting for the commits are not piling up in memory.
+ */
+class ReadLimitController {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private int limit;
+
+    ReadLimitController(final int minLimit, final int maxLimit) {
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = this.minLimit;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int onRead(final int eventsRead) {
+        if (eventsRead >= limit) {
+            limit = (int) Math.min((long) limit * 2, maxLimit);
+        }
+        return limit;
+    }
+
+    int onBackpressure() {
+        limit = Math.max(limit / 2, minLimit);
+        return limit;
+    }
+}
@@ -0,0 +1,104 @@
+package org.zalando.nakadi.service.subscription.state;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Growable FIFO queue on top of an array. Elements are added to the tail and removed from the head, so that queue of
+ * in-flight events does not allocate a node per element, and elements can be accessed by index.
+ */
+class RingBuffer<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    void add(final T element) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = element;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return (T) elements[(head + index) & (elements.length - 1)];
+    }
+
+    T getFirst() {
+        return get(0);
+    }
+
+    T getLast() {
+        return get(size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes up to count elements from the head of the buffer and returns them in the order of adding.
+     */
+    List<T> removeFirst(final int count) {
+        final int toRemove = Math.min(count, size);
+        final List<T> result = new ArrayList<>(toRemove);
+        for (int i = 0; i < toRemove; i++) {
+            result.add(get(i));
+        }
+        discardFirst(toRemove);
+        return result;
+    }
+
+    void discardFirst(final int count) {
+        final int toDiscard = Math.min(count, size);
+        for (int i = 0; i < toDiscard; i++) {
+            elements[(head + i) & (elements.length - 1)] = null;
+        }
+        head = (head + toDiscard) & (elements.length - 1);
+        size -= toDiscard;
+    }
+
+    void clear() {
+        discardFirst(size);
+        head = 0;
+    }
+
+    /**
+     * Counts elements that are less or equal to the value, elements have to be sorted in the order of the comparator.
+     * Complexity is O(log(n)).
+     */
+    int countNotGreaterThan(final T value, final Comparator<? super T> comparator) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (comparator.compare(get(middle), value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void grow() {
+        final Object[] newElements = new Object[elements.length * 2];
+        for (int i = 0; i < size; i++) {
+            newElements[i] = elements[(head + i) & (elements.length - 1)];
+        }
+        elements = newElements;
+        head = 0;
+    }
+}
@@ -71,6 +71,13 @@ public abstract class State {
         context.addTask(linkTaskToState(task));
     }
 
+    /**
+     * Adds task that talks to zookeeper or changes kafka consumer, see {@link StreamingContext#addBlockingTask}.
+     */
+    public void addBlockingTask(final Runnable task) {
+        context.addBlockingTask(linkTaskToState(task));
+    }
+
     private Runnable linkTaskToState(final Runnable task) {
         return () -> {
             if (!isCurrent()) {
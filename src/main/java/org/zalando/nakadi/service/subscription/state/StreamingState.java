@@ -15,13 +15,18 @@ import org.zalando.nakadi.exceptions.NakadiRuntimeException;
 import org.zalando.nakadi.exceptions.NoSuchEventTypeException;
 import org.zalando.nakadi.exceptions.ServiceUnavailableException;
 import org.zalando.nakadi.metrics.MetricUtils;
+import org.zalando.nakadi.repository.ConsumerTuning;
 import org.zalando.nakadi.repository.EventConsumer;
+import org.zalando.nakadi.service.CoalescingOutputStream;
+import org.zalando.nakadi.service.CursorEncoder;
+import org.zalando.nakadi.service.EncodedCursor;
 import org.zalando.nakadi.service.subscription.model.Partition;
 import org.zalando.nakadi.service.subscription.zk.ZKSubscription;
-import org.zalando.nakadi.view.SubscriptionCursor;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -46,6 +51,7 @@ class StreamingState extends State {
     private ZKSubscription topologyChangeSubscription;
     private EventConsumer.ReassignableEventConsumer eventConsumer;
     private boolean pollPaused;
+    private ReadLimitController readLimit;
     private long committedEvents;
     private long sentEvents;
     private long batchesSent;
@@ -53,6 +59,11 @@ class StreamingState extends State {
     // Uncommitted offsets are calculated right on exiting from Streaming state.
     private Map<EventTypePartition, NakadiCursor> uncommittedOffsets;
     private ZKSubscription cursorResetSubscription;
+    private CursorEncoder cursorEncoder;
+    // Output that postpones flushes when flush coalescing is enabled
+    @Nullable
+    private CoalescingOutputStream coalescingOutput;
+    private boolean coalescedFlushScheduled;
 
     /**
      * Time that is used for commit timeout check. Commit timeout check is working only in case when there is something
@@ -70,11 +81,22 @@ class StreamingState extends State {
                 this.getContext().getSubscription().getId()
         );
         bytesSentMeter = this.getContext().getMetricRegistry().meter(kafkaFlushedBytesMetricName);
+        cursorEncoder = new CursorEncoder(getContext().getCursorConverter(), getContext().getCursorTokenService());
+        if (getContext().getFlushCoalescingMs() > 0) {
+            coalescingOutput = new CoalescingOutputStream(
+                    getOut().getOutputStream(), getContext().getFlushCoalescingMs());
+        }
 
-        this.eventConsumer = getContext().getTimelineService().createEventConsumer(null);
+        final ConsumerTuning tuning = ConsumerTuning.forSubscriptionStream(getParameters().batchLimitEvents,
+                getParameters().maxUncommittedMessages, getParameters().batchTimeoutMillis);
+        this.eventConsumer = getContext().getTimelineService().createEventConsumer(null, tuning);
+        this.readLimit = new ReadLimitController(
+                getParameters().batchLimitEvents, tuning.getMaxPollRecords(getParameters().maxUncommittedMessages));
+        this.eventConsumer.setReadLimit(readLimit.getLimit());
 
         // Subscribe for topology changes.
-        this.topologyChangeSubscription = getZk().subscribeForTopologyChanges(() -> addTask(this::topologyChanged));
+        this.topologyChangeSubscription = getZk().subscribeForTopologyChanges(
+                getSessionId(), () -> addBlockingTask(this::topologyChanged));
         // and call directly
         reactOnTopologyChange();
         addTask(this::pollDataFromKafka);
@@ -158,17 +180,28 @@ class StreamingState extends State {
             return;
         }
 
-        if (eventConsumer.getAssignment().isEmpty() || pollPaused) {
+        if (eventConsumer.getAssignment().isEmpty() || pollPaused || getOut().isWritePending()) {
+            if (pollPaused) {
+                eventConsumer.setReadLimit(readLimit.onBackpressure());
+            }
             // Small optimization not to waste CPU while not yet assigned to any partitions
             scheduleTask(this::pollDataFromKafka, getKafkaPollTimeout(), TimeUnit.MILLISECONDS);
             return;
         }
-        final List<ConsumedEvent> events = eventConsumer.readEvents();
+        final boolean onEventLoop = getContext().isOnEventLoop();
+        final List<ConsumedEvent> events = onEventLoop ?
+                eventConsumer.readAvailableEvents() : eventConsumer.readEvents();
         events.forEach(this::rememberEvent);
         if (!events.isEmpty()) {
             addTask(this::streamToOutput);
         }
+        eventConsumer.setReadLimit(readLimit.onRead(events.size()));
 
+        if (onEventLoop && events.isEmpty()) {
+            // event loop threads are shared by the streams, so idle stream is checking for new events periodically
+            scheduleTask(this::pollDataFromKafka, getContext().getEventLoopIdlePollMs(), TimeUnit.MILLISECONDS);
+            return;
+        }
         // Yep, no timeout. All waits are in kafka.
         // It works because only one pollDataFromKafka task is present in queue each time. Poll process will stop
         // when this state will be changed to any other state.
@@ -223,6 +256,7 @@ class StreamingState extends State {
         if (wasCommitted && sentSomething) {
             this.lastCommitMillis = System.currentTimeMillis();
         }
+        flushCoalesced();
         pollPaused = getMessagesAllowedToSend() <= 0;
         if (!offsets.isEmpty() &&
                 getParameters().isKeepAliveLimitReached(offsets.values().stream()
@@ -235,12 +269,12 @@ class StreamingState extends State {
                            final Optional<String> metadata) {
         try {
             final NakadiCursor sentOffset = offsets.get(pk).getSentOffset();
-            final SubscriptionCursor cursor = getContext().getCursorConverter().convert(
-                    sentOffset,
-                    getContext().getCursorTokenService().generateToken());
+            final EncodedCursor cursor = cursorEncoder.encode(pk, sentOffset);
 
+            final OutputStream outputStream = null != coalescingOutput ?
+                    coalescingOutput : getOut().getOutputStream();
             final int batchSize = getContext().getWriter().writeSubscriptionBatch(
-                    getOut().getOutputStream(),
+                    outputStream,
                     cursor,
                     data,
                     metadata);
@@ -253,8 +287,38 @@ class StreamingState extends State {
         }
     }
 
+    /**
+     * Completes postponed flush if the coalescing window has passed, otherwise schedules it to the end of the window.
+     */
+    private void flushCoalesced() {
+        if (null == coalescingOutput || !coalescingOutput.isFlushPending()) {
+            return;
+        }
+        try {
+            coalescingOutput.flushIfDue(System.currentTimeMillis());
+        } catch (final IOException e) {
+            getLog().error("Failed to flush data to output.", e);
+            shutdownGracefully("Failed to write data to output");
+            return;
+        }
+        if (coalescingOutput.isFlushPending() && !coalescedFlushScheduled) {
+            coalescedFlushScheduled = true;
+            scheduleTask(() -> {
+                coalescedFlushScheduled = false;
+                flushCoalesced();
+            }, getContext().getFlushCoalescingMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Override
     public void onExit() {
+        if (null != coalescingOutput) {
+            try {
+                coalescingOutput.flushPending();
+            } catch (final IOException e) {
+                getLog().warn("Failed to flush data to output.", e);
+            }
+        }
         uncommittedOffsets = offsets.entrySet().stream()
                 .filter(e -> !e.getValue().isCommitted())
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getSentOffset()));
@@ -293,12 +357,12 @@ class StreamingState extends State {
     }
 
     private void reactOnTopologyChange() {
-        getZk().runLocked(() -> {
-            final Partition[] assignedPartitions = Stream.of(getZk().listPartitions())
-                    .filter(p -> getSessionId().equals(p.getSession()))
-                    .toArray(Partition[]::new);
-            addTask(() -> refreshTopologyUnlocked(assignedPartitions));
-        });
+        // topology is written atomically and shards are checked against the summary, so it is read consistently
+        // without locking the subscription
+        final Partition[] assignedPartitions = Stream.of(getZk().listPartitions())
+                .filter(p -> getSessionId().equals(p.getSession()))
+                .toArray(Partition[]::new);
+        addBlockingTask(() -> refreshTopologyUnlocked(assignedPartitions));
     }
 
     void refreshTopologyUnlocked(final Partition[] assignedPartitions) {
@@ -441,7 +505,7 @@ class StreamingState extends State {
         getLog().info("Adding to streaming {} with start position {}", partition.getKey(), cursor);
         final ZKSubscription subscription = getZk().subscribeForOffsetChanges(
                 partition.getKey(),
-                () -> addTask(() -> offsetChanged(partition.getKey())));
+                () -> addBlockingTask(() -> offsetChanged(partition.getKey())));
         final PartitionData pd = new PartitionData(
                 subscription,
                 cursor,
@@ -497,6 +561,7 @@ class StreamingState extends State {
         getLog().info("Removing partition {} from streaming", key);
         releasingPartitions.remove(key);
         final PartitionData data = offsets.remove(key);
+        cursorEncoder.remove(key);
         if (null != data) {
             try {
                 if (data.getUnconfirmed() > 0) {
@@ -1,14 +1,15 @@
 package org.zalando.nakadi.service.subscription.zk;
 
-import com.google.common.base.Charsets;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.recipes.cache.NodeCache;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
-import org.apache.zookeeper.data.Stat;
-import org.echocat.jomon.runtime.concurrent.RetryForSpecifiedCountStrategy;
+import org.apache.zookeeper.OpResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zalando.nakadi.domain.EventTypePartition;
@@ -23,39 +24,55 @@ import org.zalando.nakadi.exceptions.runtime.ZookeeperException;
 import org.zalando.nakadi.service.subscription.model.Session;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.google.common.base.Charsets.UTF_8;
-import static org.echocat.jomon.runtime.concurrent.Retryer.executeWithRetry;
 
 public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClient {
     private static final String STATE_INITIALIZED = "INITIALIZED";
     private static final int COMMIT_CONFLICT_RETRY_TIMES = 5;
+    private static final long OFFSETS_READ_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
     protected static final String NODE_TOPOLOGY = "/topology";
 
     private final String subscriptionId;
     private final CuratorFramework curatorFramework;
+    private final MetricRegistry metricRegistry;
+    @Nullable
+    private final SubscriptionTopologyCache topologyCache;
     private InterProcessSemaphoreMutex lock;
+    // data read while the subscription is locked is taken from zookeeper, as it is used to change the topology
+    private boolean locked;
     private final String resetCursorPath;
     private final Logger log;
 
     public AbstractZkSubscriptionClient(
             final String subscriptionId,
             final CuratorFramework curatorFramework,
-            final String loggingPath) {
+            final String loggingPath,
+            final MetricRegistry metricRegistry,
+            @Nullable final SubscriptionTopologyCache topologyCache) {
         this.subscriptionId = subscriptionId;
         this.curatorFramework = curatorFramework;
+        this.metricRegistry = metricRegistry;
+        this.topologyCache = topologyCache;
         this.resetCursorPath = getSubscriptionPath("/cursor_reset");
         this.log = LoggerFactory.getLogger(loggingPath + ".zk");
     }
@@ -69,9 +86,24 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
     }
 
     protected String getSubscriptionPath(final String value) {
+        return getSubscriptionPath(subscriptionId, value);
+    }
+
+    static String getSubscriptionPath(final String subscriptionId, final String value) {
         return "/nakadi/subscriptions/" + subscriptionId + value;
     }
 
+    /**
+     * Cache entry of the subscription, or null if cache is disabled or the subscription is locked.
+     */
+    @Nullable
+    protected SubscriptionTopologyCache.Entry getCacheEntry() {
+        if (null == topologyCache || !topologyCache.isEnabled() || locked) {
+            return null;
+        }
+        return topologyCache.getEntry(subscriptionId);
+    }
+
     protected Logger getLog() {
         return log;
     }
@@ -85,9 +117,12 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
             }
 
             lock.acquire();
+            final boolean wasLocked = locked;
+            locked = true;
             try {
                 function.run();
             } finally {
+                locked = wasLocked;
                 try {
                     lock.release();
                 } catch (final Exception e) {
@@ -146,10 +181,7 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
                     .withMode(CreateMode.PERSISTENT)
                     .forPath(getSubscriptionPath("/sessions"));
 
-            final byte[] topologyData = createTopologyAndOffsets(cursors);
-            getCurator().create()
-                    .withMode(CreateMode.PERSISTENT)
-                    .forPath(getSubscriptionPath(NODE_TOPOLOGY), topologyData);
+            createTopologyAndOffsets(cursors);
 
             getLog().info("updating state");
             getCurator().create().forPath(getSubscriptionPath("/state"), STATE_INITIALIZED.getBytes(UTF_8));
@@ -181,6 +213,13 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
 
     @Override
     public final Session[] listSessions() {
+        final SubscriptionTopologyCache.Entry cacheEntry = getCacheEntry();
+        if (null != cacheEntry) {
+            final Session[] sessions = cacheEntry.getSessions();
+            if (null != sessions) {
+                return Arrays.copyOf(sessions, sessions.length);
+            }
+        }
         getLog().info("fetching sessions information");
         final List<Session> sessions = new ArrayList<>();
         final List<String> zkSessions;
@@ -206,6 +245,14 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
 
     @Override
     public boolean isActiveSession(final String streamId) throws ServiceUnavailableException {
+        final SubscriptionTopologyCache.Entry cacheEntry = getCacheEntry();
+        if (null != cacheEntry) {
+            final Session[] sessions = cacheEntry.getSessions();
+            // session that is not in cache could be just registered, so it is checked in zookeeper
+            if (null != sessions && Stream.of(sessions).anyMatch(s -> s.getId().equals(streamId))) {
+                return true;
+            }
+        }
         try {
             return getCurator().checkExists().forPath(getSubscriptionPath("/sessions/" + streamId)) != null;
         } catch (final Exception ex) {
@@ -323,12 +370,32 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
     @Override
     public final ZKSubscription subscribeForSessionListChanges(final Runnable listener) {
         getLog().info("subscribeForSessionListChanges: " + listener.hashCode());
+        final SubscriptionTopologyCache.Entry cacheEntry = getCacheEntry();
+        if (null != cacheEntry) {
+            final ZKSubscription subscription = cacheEntry.addSessionsListener(listener);
+            if (null != subscription) {
+                return subscription;
+            }
+        }
         return ChangeListener.forChildren(getCurator(), getSubscriptionPath("/sessions"), listener);
     }
 
     @Override
     public final ZKSubscription subscribeForTopologyChanges(final Runnable onTopologyChanged) {
+        return subscribeForTopologyChanges(null, onTopologyChanged);
+    }
+
+    @Override
+    public final ZKSubscription subscribeForTopologyChanges(
+            @Nullable final String sessionId, final Runnable onTopologyChanged) {
         getLog().info("subscribeForTopologyChanges");
+        final SubscriptionTopologyCache.Entry cacheEntry = getCacheEntry();
+        if (null != cacheEntry) {
+            final ZKSubscription subscription = cacheEntry.addTopologyListener(sessionId, onTopologyChanged);
+            if (null != subscription) {
+                return subscription;
+            }
+        }
         return ChangeListener.forData(getCurator(), getSubscriptionPath(NODE_TOPOLOGY), onTopologyChanged);
     }
 
@@ -365,65 +432,193 @@ public abstract class AbstractZkSubscriptionClient implements ZkSubscriptionClie
         }
     }
 
+    /**
+     * Offsets of all the partitions are read in parallel and are written in one zookeeper transaction with version
+     * checks. If some offsets were changed concurrently, only these offsets are read again before the next attempt.
+     * Cursors of a partition which offset was changed concurrently on each of the attempts are reported as not
+     * committed, while the offsets of other partitions are still committed.
+     */
     @Override
     public List<Boolean> commitOffsets(
             final List<SubscriptionCursorWithoutToken> cursors,
             final Comparator<SubscriptionCursorWithoutToken> comparator) {
-        final Map<EventTypePartition, List<SubscriptionCursorWithoutToken>> grouped =
-                cursors.stream().collect(Collectors.groupingBy(SubscriptionCursorWithoutToken::getEventTypePartition));
+        final Map<EventTypePartition, List<SubscriptionCursorWithoutToken>> grouped = cursors.stream().collect(
+                Collectors.groupingBy(SubscriptionCursorWithoutToken::getEventTypePartition, LinkedHashMap::new,
+                        Collectors.toList()));
+        final long start = System.nanoTime();
         try {
-            final Map<EventTypePartition, Iterator<Boolean>> committedOverall = new HashMap<>();
-            for (final Map.Entry<EventTypePartition, List<SubscriptionCursorWithoutToken>> entry : grouped.entrySet()) {
-                final String offsetPath = getOffsetPath(entry.getKey());
-                final List<Boolean> committed;
-                committed = executeWithRetry(() -> {
-                            final Stat stat = new Stat();
-                            final byte[] currentOffsetData = getCurator().getData().storingStatIn(stat)
-                                    .forPath(offsetPath);
-                            final String currentMaxOffset = new String(currentOffsetData, UTF_8);
-                            SubscriptionCursorWithoutToken currentMaxCursor = new SubscriptionCursorWithoutToken(
-                                    entry.getKey().getEventType(),
-                                    entry.getKey().getPartition(),
-                                    currentMaxOffset
-                            );
-                            final List<Boolean> commits = Lists.newArrayList();
-
-                            for (final SubscriptionCursorWithoutToken cursor : entry.getValue()) {
-                                if (comparator.compare(cursor, currentMaxCursor) > 0) {
-                                    currentMaxCursor = cursor;
-                                    commits.add(true);
-                                } else {
-                                    commits.add(false);
-                                }
-                            }
-                            if (!currentMaxCursor.getOffset().equals(currentMaxOffset)) {
-                                getLog().info("Committing {} to {}", currentMaxCursor.getOffset(), offsetPath);
-                                getCurator()
-                                        .setData()
-                                        .withVersion(stat.getVersion())
-                                        .forPath(offsetPath, currentMaxCursor.getOffset().getBytes(Charsets.UTF_8));
-                            }
-                            return commits;
-                        },
-                        new RetryForSpecifiedCountStrategy<List<Boolean>>(COMMIT_CONFLICT_RETRY_TIMES)
-                                .withExceptionsThatForceRetry(KeeperException.BadVersionException.class));
-                committedOverall.put(
-                        entry.getKey(),
-                        Optional.ofNullable(committed)
-                                .orElse(Collections.nCopies(entry.getValue().size(), false))
-                                .iterator());
-
+            final Map<EventTypePartition, OffsetNode> nodes = readOffsets(grouped.keySet());
+            final Map<EventTypePartition, List<Boolean>> committed = new HashMap<>();
+            final Map<EventTypePartition, Integer> conflictCounts = new HashMap<>();
+            while (true) {
+                final List<OffsetNode> toWrite = new ArrayList<>();
+                for (final Map.Entry<EventTypePartition, List<SubscriptionCursorWithoutToken>> entry :
+                        grouped.entrySet()) {
+                    if (conflictCounts.getOrDefault(entry.getKey(), 0) >= COMMIT_CONFLICT_RETRY_TIMES) {
+                        committed.put(entry.getKey(), Collections.nCopies(entry.getValue().size(), false));
+                        continue;
+                    }
+                    final OffsetNode node = nodes.get(entry.getKey());
+                    SubscriptionCursorWithoutToken currentMaxCursor = new SubscriptionCursorWithoutToken(
+                            entry.getKey().getEventType(), entry.getKey().getPartition(), node.offset);
+                    final List<Boolean> commits = Lists.newArrayList();
+                    for (final SubscriptionCursorWithoutToken cursor : entry.getValue()) {
+                        if (comparator.compare(cursor, currentMaxCursor) > 0) {
+                            currentMaxCursor = cursor;
+                            commits.add(true);
+                        } else {
+                            commits.add(false);
+                        }
+                    }
+                    committed.put(entry.getKey(), commits);
+                    if (!currentMaxCursor.getOffset().equals(node.offset)) {
+                        toWrite.add(node.withNewOffset(currentMaxCursor.getOffset()));
+                    }
+                }
+                try {
+                    writeOffsets(toWrite);
+                    break;
+                } catch (final KeeperException ex) {
+                    final List<EventTypePartition> conflicts = getConflicts(ex, toWrite);
+                    if (conflicts.isEmpty()) {
+                        throw ex;
+                    }
+                    final List<EventTypePartition> toRead = new ArrayList<>();
+                    for (final EventTypePartition etp : conflicts) {
+                        if (conflictCounts.merge(etp, 1, Integer::sum) < COMMIT_CONFLICT_RETRY_TIMES) {
+                            toRead.add(etp);
+                        } else {
+                            getLog().warn("Offset of {} was changed concurrently {} times, giving up commit",
+                                    etp, COMMIT_CONFLICT_RETRY_TIMES);
+                        }
+                    }
+                    getLog().info("Offsets of {} were changed concurrently, retrying commit", conflicts);
+                    nodes.putAll(readOffsets(toRead));
+                }
             }
+            final Map<EventTypePartition, Iterator<Boolean>> committedOverall = new HashMap<>();
+            committed.forEach((etp, commits) -> committedOverall.put(etp, commits.iterator()));
             return cursors.stream()
                     .map(cursor -> committedOverall.get(cursor.getEventTypePartition()).next())
                     .collect(Collectors.toList());
-
         } catch (final Exception ex) {
             throw new NakadiRuntimeException(ex);
+        } finally {
+            metricRegistry.timer(getCommitTimerName(grouped.size()))
+                    .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String getCommitTimerName(final int partitions) {
+        final String bucket;
+        if (partitions <= 1) {
+            bucket = "1";
+        } else if (partitions <= 10) {
+            bucket = "2_10";
+        } else if (partitions <= 100) {
+            bucket = "11_100";
+        } else {
+            bucket = "over_100";
+        }
+        return MetricRegistry.name("nakadi.subscriptions.offsets_commit", "partitions_" + bucket);
+    }
+
+    private static class OffsetNode {
+        private final EventTypePartition key;
+        private final String path;
+        private final String offset;
+        private final int version;
+        private final String newOffset;
+
+        private OffsetNode(final EventTypePartition key, final String path, final String offset, final int version,
+                           final String newOffset) {
+            this.key = key;
+            this.path = path;
+            this.offset = offset;
+            this.version = version;
+            this.newOffset = newOffset;
+        }
+
+        private OffsetNode withNewOffset(final String newOffset) {
+            return new OffsetNode(key, path, offset, version, newOffset);
+        }
+    }
+
+    private Map<EventTypePartition, OffsetNode> readOffsets(final Collection<EventTypePartition> keys)
+            throws Exception {
+        final Map<EventTypePartition, OffsetNode> result = new ConcurrentHashMap<>();
+        final AtomicReference<KeeperException> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(keys.size());
+        for (final EventTypePartition key : keys) {
+            final String path = getOffsetPath(key);
+            getCurator().getData().inBackground((client, event) -> {
+                try {
+                    final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                    if (code == KeeperException.Code.OK) {
+                        result.put(key, new OffsetNode(key, path, new String(event.getData(), UTF_8),
+                                event.getStat().getVersion(), null));
+                    } else {
+                        error.compareAndSet(null, KeeperException.create(code, path));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }).forPath(path);
+        }
+        if (!latch.await(OFFSETS_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new OperationTimeoutException("Timeout reading offsets of " + keys);
+        }
+        if (null != error.get()) {
+            throw error.get();
+        }
+        return result;
+    }
+
+    private void writeOffsets(final List<OffsetNode> nodes) throws Exception {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        CuratorTransaction transaction = getCurator().inTransaction();
+        for (final OffsetNode node : nodes) {
+            getLog().info("Committing {} to {}", node.newOffset, node.path);
+            transaction = transaction.setData().withVersion(node.version)
+                    .forPath(node.path, node.newOffset.getBytes(UTF_8)).and();
+        }
+        ((CuratorTransactionFinal) transaction).commit();
+    }
+
+    /**
+     * Zookeeper stops processing of the transaction on the first failed operation, so the offsets after the
+     * conflicting one are not checked. Their versions are still valid and they are written again on the next attempt.
+     *
+     * @return partitions which offsets were changed concurrently, or an empty list if the transaction failed for
+     * another reason
+     */
+    private static List<EventTypePartition> getConflicts(final KeeperException ex, final List<OffsetNode> nodes) {
+        final List<OpResult> results = ex.getResults();
+        if (null == results || results.size() != nodes.size()) {
+            return Collections.emptyList();
+        }
+        final List<EventTypePartition> conflicts = new ArrayList<>();
+        for (int i = 0; i < results.size(); ++i) {
+            final OpResult result = results.get(i);
+            if (result instanceof OpResult.ErrorResult) {
+                final int err = ((OpResult.ErrorResult) result).getErr();
+                if (err == KeeperException.Code.BADVERSION.intValue()) {
+                    conflicts.add(nodes.get(i).key);
+                } else if (err != KeeperException.Code.OK.intValue()
+                        && err != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+                    return Collections.emptyList();
+                }
+            }
         }
+        return conflicts;
     }
 
-    protected abstract byte[] createTopologyAndOffsets(Collection<SubscriptionCursorWithoutToken> cursors)
+    /**
+     * Creates offset nodes and topology node {@link #NODE_TOPOLOGY} of the subscription.
+     */
+    protected abstract void createTopologyAndOffsets(Collection<SubscriptionCursorWithoutToken> cursors)
             throws Exception;
 
     protected abstract String getOffsetPath(EventTypePartition etp);
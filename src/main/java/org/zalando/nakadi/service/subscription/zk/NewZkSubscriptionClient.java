@@ -1,8 +1,11 @@
 package org.zalando.nakadi.service.subscription.zk;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.exceptions.NakadiRuntimeException;
@@ -10,10 +13,13 @@ import org.zalando.nakadi.exceptions.runtime.MyNakadiRuntimeException1;
 import org.zalando.nakadi.service.subscription.model.Partition;
 import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Charsets.UTF_8;
@@ -38,7 +44,9 @@ import static com.google.common.base.Charsets.UTF_8;
  *     | |- {session_N}                     // Ephemeral node of session_N
  *     |
  *     |- topology                          // Persistent node that holds all assignment information about partitions
- *     |                                    // Content is json serialized {@link Topology} object.
+ *     |                                    // Content is json serialized {@link Topology} object. Topology of
+ *     |                                    // subscriptions created with topology shards enabled is kept in
+ *     |                                    // children nodes, see {@link ShardedTopology}.
  *     |
  *     |- offsets                           // Node that holds up all the dynamic data for this subscription (offsets)
  *       |- {event_type_1}
@@ -58,38 +66,84 @@ import static com.google.common.base.Charsets.UTF_8;
 public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
 
     private final ObjectMapper objectMapper;
+    private final int topologyShardSize;
+    // last topology read by the client, unchanged shards of sharded topology are taken from it
+    private volatile Topology lastTopology;
 
     public static class Topology {
         private final Partition[] partitions;
         private final int version;
+        // shards of the topology in the order of partitions, null if the topology is kept in one node
+        @JsonIgnore
+        @Nullable
+        private final List<ShardedTopology.Shard> shards;
+        // positions of partitions by key, shared by the topologies created with updated partitions
+        @JsonIgnore
+        private volatile Map<EventTypePartition, Integer> index;
 
         public Topology(
                 @JsonProperty("partitions") final Partition[] partitions,
                 @JsonProperty("version") final int version) {
+            this(partitions, version, null);
+        }
+
+        Topology(final Partition[] partitions, final int version,
+                 @Nullable final List<ShardedTopology.Shard> shards) {
             this.partitions = partitions;
             this.version = version;
+            this.shards = shards;
+        }
+
+        private Topology(final Partition[] partitions, final int version,
+                         @Nullable final List<ShardedTopology.Shard> shards,
+                         final Map<EventTypePartition, Integer> index) {
+            this(partitions, version, shards);
+            this.index = index;
         }
 
         public Partition[] getPartitions() {
             return partitions;
         }
 
+        public int getVersion() {
+            return version;
+        }
+
+        @JsonIgnore
+        @Nullable
+        List<ShardedTopology.Shard> getShards() {
+            return shards;
+        }
+
         public Topology withUpdatedPartitions(final Partition[] partitions) {
+            final Map<EventTypePartition, Integer> index = getIndex();
             final Partition[] resultPartitions = Arrays.copyOf(this.partitions, this.partitions.length);
+            final List<ShardedTopology.Shard> resultShards = null == shards ? null : new ArrayList<>(shards);
             for (final Partition newValue : partitions) {
-                int selectedIdx = -1;
-                for (int idx = 0; idx < resultPartitions.length; ++idx) {
-                    if (resultPartitions[idx].getKey().equals(newValue.getKey())) {
-                        selectedIdx = idx;
-                    }
-                }
-                if (selectedIdx < 0) {
+                final Integer selectedIdx = index.get(newValue.getKey());
+                if (null == selectedIdx) {
                     throw new MyNakadiRuntimeException1(
                             "Failed to find partition " + newValue.getKey() + " in " + this);
                 }
                 resultPartitions[selectedIdx] = newValue;
+                if (null != resultShards) {
+                    final int shardIdx = ShardedTopology.findShard(resultShards, selectedIdx);
+                    resultShards.set(shardIdx, resultShards.get(shardIdx).withVersion(version + 1));
+                }
             }
-            return new Topology(resultPartitions, version + 1);
+            return new Topology(resultPartitions, version + 1, resultShards, index);
+        }
+
+        private Map<EventTypePartition, Integer> getIndex() {
+            Map<EventTypePartition, Integer> result = index;
+            if (null == result) {
+                result = new HashMap<>(partitions.length * 2);
+                for (int idx = 0; idx < partitions.length; ++idx) {
+                    result.put(partitions[idx].getKey(), idx);
+                }
+                index = result;
+            }
+            return result;
         }
 
         @Override
@@ -105,13 +159,17 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
             final String subscriptionId,
             final CuratorFramework curatorFramework,
             final String loggingPath,
-            final ObjectMapper objectMapper) {
-        super(subscriptionId, curatorFramework, loggingPath);
+            final ObjectMapper objectMapper,
+            final MetricRegistry metricRegistry,
+            @Nullable final SubscriptionTopologyCache topologyCache,
+            final int topologyShardSize) {
+        super(subscriptionId, curatorFramework, loggingPath, metricRegistry, topologyCache);
         this.objectMapper = objectMapper;
+        this.topologyShardSize = topologyShardSize;
     }
 
     @Override
-    protected byte[] createTopologyAndOffsets(final Collection<SubscriptionCursorWithoutToken> cursors)
+    protected void createTopologyAndOffsets(final Collection<SubscriptionCursorWithoutToken> cursors)
             throws Exception {
         for (final SubscriptionCursorWithoutToken cursor : cursors) {
             getCurator().create().creatingParentsIfNeeded().forPath(
@@ -125,8 +183,13 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
                 null,
                 Partition.State.UNASSIGNED
         )).toArray(Partition[]::new);
-        final Topology topology = new Topology(partitions, 0);
-        return objectMapper.writeValueAsBytes(topology);
+        if (topologyShardSize > 0) {
+            ShardedTopology.createNodes(getCurator(), objectMapper, getSubscriptionPath(NODE_TOPOLOGY),
+                    ShardedTopology.create(partitions, topologyShardSize));
+        } else {
+            getCurator().create().withMode(CreateMode.PERSISTENT).forPath(
+                    getSubscriptionPath(NODE_TOPOLOGY), objectMapper.writeValueAsBytes(new Topology(partitions, 0)));
+        }
     }
 
     @Override
@@ -134,9 +197,15 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
             SubscriptionNotInitializedException {
         final Topology newTopology = readTopology().withUpdatedPartitions(partitions);
         try {
-            getCurator().setData().forPath(
-                    getSubscriptionPath(NODE_TOPOLOGY),
-                    objectMapper.writeValueAsBytes(newTopology));
+            if (null != newTopology.getShards()) {
+                ShardedTopology.writeChanges(
+                        getCurator(), objectMapper, getSubscriptionPath(NODE_TOPOLOGY), newTopology);
+            } else {
+                getCurator().setData().forPath(
+                        getSubscriptionPath(NODE_TOPOLOGY),
+                        objectMapper.writeValueAsBytes(newTopology));
+            }
+            lastTopology = newTopology;
         } catch (final Exception ex) {
             throw new NakadiRuntimeException(ex);
         }
@@ -146,7 +215,9 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
             SubscriptionNotInitializedException {
         try {
             final byte[] data = getCurator().getData().forPath(getSubscriptionPath(NODE_TOPOLOGY));
-            final Topology result = objectMapper.readValue(data, Topology.class);
+            final Topology result = ShardedTopology.read(
+                    getCurator(), objectMapper, getSubscriptionPath(NODE_TOPOLOGY), data, lastTopology);
+            lastTopology = result;
             getLog().info("Topology is {}", result);
             return result;
         } catch (KeeperException.NoNodeException ex) {
@@ -158,6 +229,13 @@ public class NewZkSubscriptionClient extends AbstractZkSubscriptionClient {
 
     @Override
     public Partition[] listPartitions() throws NakadiRuntimeException, SubscriptionNotInitializedException {
+        final SubscriptionTopologyCache.Entry cacheEntry = getCacheEntry();
+        if (null != cacheEntry) {
+            final Topology topology = cacheEntry.getTopology();
+            if (null != topology) {
+                return Arrays.copyOf(topology.getPartitions(), topology.getPartitions().length);
+            }
+        }
         return readTopology().getPartitions();
     }
 
@@ -0,0 +1,289 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.zookeeper.CreateMode;
+import org.zalando.nakadi.exceptions.runtime.MyNakadiRuntimeException1;
+import org.zalando.nakadi.service.subscription.model.Partition;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Layout of the topology of large subscriptions, where topology is split into shards of partitions of one event
+ * type, so that a change of the topology doesn't rewrite (and doesn't make every session read) all the partitions:
+ * <pre>
+ * - topology            // Summary: version of the topology and versions of the shards in the order of partitions,
+ *   |                   // {"version": 12, "shards": {"et_0": 12, "et_1": 3}}
+ *   |- et_0             // Shard: json serialized {@link NewZkSubscriptionClient.Topology} with the partitions of
+ *   |- et_1             // the shard and the version of the topology that changed the shard last time.
+ * </pre>
+ * Summary and the changed shards are written in one transaction. Readers that already have the previous topology
+ * read only the summary and the shards with new versions.
+ */
+final class ShardedTopology {
+
+    private static final String FIELD_SHARDS = "shards";
+    private static final int READ_ATTEMPTS = 5;
+
+    static class Summary {
+        private final int version;
+        private final LinkedHashMap<String, Integer> shards;
+
+        public Summary(
+                @JsonProperty("version") final int version,
+                @JsonProperty(FIELD_SHARDS) final LinkedHashMap<String, Integer> shards) {
+            this.version = version;
+            this.shards = shards;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public LinkedHashMap<String, Integer> getShards() {
+            return shards;
+        }
+    }
+
+    /**
+     * Range of partitions of the topology that is kept in one shard.
+     */
+    static class Shard {
+        private final String name;
+        private final int version;
+        private final int from;
+        private final int to;
+
+        Shard(final String name, final int version, final int from, final int to) {
+            this.name = name;
+            this.version = version;
+            this.from = from;
+            this.to = to;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+        Shard withVersion(final int version) {
+            return new Shard(name, version, from, to);
+        }
+    }
+
+    private ShardedTopology() {
+    }
+
+    /**
+     * Splits partitions into shards of at most {@code shardSize} partitions of the same event type.
+     */
+    static NewZkSubscriptionClient.Topology create(final Partition[] partitions, final int shardSize) {
+        final Map<String, List<Partition>> byEventType = Arrays.stream(partitions).collect(
+                Collectors.groupingBy(Partition::getEventType, LinkedHashMap::new, Collectors.toList()));
+        final List<Partition> ordered = new ArrayList<>(partitions.length);
+        final List<Shard> shards = new ArrayList<>();
+        for (final Map.Entry<String, List<Partition>> entry : byEventType.entrySet()) {
+            final List<Partition> eventTypePartitions = entry.getValue();
+            for (int from = 0; from < eventTypePartitions.size(); from += shardSize) {
+                final int to = Math.min(from + shardSize, eventTypePartitions.size());
+                shards.add(new Shard(entry.getKey() + "_" + (from / shardSize), 0, ordered.size(),
+                        ordered.size() + to - from));
+                ordered.addAll(eventTypePartitions.subList(from, to));
+            }
+        }
+        return new NewZkSubscriptionClient.Topology(ordered.toArray(new Partition[ordered.size()]), 0, shards);
+    }
+
+    static void createNodes(
+            final CuratorFramework curator,
+            final ObjectMapper objectMapper,
+            final String topologyPath,
+            final NewZkSubscriptionClient.Topology topology) throws Exception {
+        // subscription is not initialized until its state is written, so shards are not created in a transaction
+        curator.create().withMode(CreateMode.PERSISTENT)
+                .forPath(topologyPath, objectMapper.writeValueAsBytes(createSummary(topology)));
+        for (final Shard shard : topology.getShards()) {
+            curator.create().withMode(CreateMode.PERSISTENT)
+                    .forPath(topologyPath + "/" + shard.getName(), serializeShard(objectMapper, topology, shard));
+        }
+    }
+
+    /**
+     * Writes the summary and the shards that were changed by the last update of the topology.
+     */
+    static void writeChanges(
+            final CuratorFramework curator,
+            final ObjectMapper objectMapper,
+            final String topologyPath,
+            final NewZkSubscriptionClient.Topology topology) throws Exception {
+        CuratorTransaction transaction = curator.inTransaction()
+                .setData().forPath(topologyPath, objectMapper.writeValueAsBytes(createSummary(topology))).and();
+        for (final Shard shard : topology.getShards()) {
+            if (shard.getVersion() == topology.getVersion()) {
+                transaction = transaction.setData().forPath(
+                        topologyPath + "/" + shard.getName(), serializeShard(objectMapper, topology, shard)).and();
+            }
+        }
+        ((CuratorTransactionFinal) transaction).commit();
+    }
+
+    /**
+     * Reads topology from the data of topology node, that may contain either the whole topology or the summary of
+     * sharded topology. Shards that have the same versions in the {@code previous} topology are taken from it.
+     */
+    static NewZkSubscriptionClient.Topology read(
+            final CuratorFramework curator,
+            final ObjectMapper objectMapper,
+            final String topologyPath,
+            final byte[] data,
+            @Nullable final NewZkSubscriptionClient.Topology previous) throws Exception {
+        byte[] current = data;
+        for (int attempt = 1; ; ++attempt) {
+            final JsonNode node = objectMapper.readTree(current);
+            if (!node.has(FIELD_SHARDS)) {
+                return objectMapper.treeToValue(node, NewZkSubscriptionClient.Topology.class);
+            }
+            final NewZkSubscriptionClient.Topology result = readShards(curator, objectMapper, topologyPath,
+                    objectMapper.treeToValue(node, Summary.class), previous);
+            if (null != result) {
+                return result;
+            }
+            if (attempt >= READ_ATTEMPTS) {
+                throw new MyNakadiRuntimeException1("Topology " + topologyPath + " was changing while it was read");
+            }
+            current = curator.getData().forPath(topologyPath);
+        }
+    }
+
+    /**
+     * @return topology, or null if the summary was changed while the shards were read
+     */
+    @Nullable
+    private static NewZkSubscriptionClient.Topology readShards(
+            final CuratorFramework curator,
+            final ObjectMapper objectMapper,
+            final String topologyPath,
+            final Summary summary,
+            @Nullable final NewZkSubscriptionClient.Topology previous) throws Exception {
+        final Map<String, Shard> previousShards = null == previous || null == previous.getShards() ?
+                Collections.emptyMap() :
+                previous.getShards().stream().collect(Collectors.toMap(Shard::getName, Function.identity()));
+        final List<Partition> partitions = new ArrayList<>();
+        final List<Shard> shards = new ArrayList<>(summary.getShards().size());
+        for (final Map.Entry<String, Integer> entry : summary.getShards().entrySet()) {
+            final Shard previousShard = previousShards.get(entry.getKey());
+            final Partition[] shardPartitions;
+            if (null != previousShard && previousShard.getVersion() == entry.getValue()) {
+                shardPartitions = Arrays.copyOfRange(
+                        previous.getPartitions(), previousShard.from, previousShard.to);
+            } else {
+                final NewZkSubscriptionClient.Topology shard = objectMapper.readValue(
+                        curator.getData().forPath(topologyPath + "/" + entry.getKey()),
+                        NewZkSubscriptionClient.Topology.class);
+                if (shard.getVersion() != entry.getValue()) {
+                    return null;
+                }
+                shardPartitions = shard.getPartitions();
+            }
+            shards.add(new Shard(entry.getKey(), entry.getValue(), partitions.size(),
+                    partitions.size() + shardPartitions.length));
+            partitions.addAll(Arrays.asList(shardPartitions));
+        }
+        return new NewZkSubscriptionClient.Topology(
+                partitions.toArray(new Partition[partitions.size()]), summary.getVersion(), shards);
+    }
+
+    /**
+     * Index of the shard that contains partition with index {@code partitionIdx}.
+     */
+    static int findShard(final List<Shard> shards, final int partitionIdx) {
+        int low = 0;
+        int high = shards.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (shards.get(mid).from <= partitionIdx) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sessions that had or got partitions that are different in the topologies, or null if the topologies can't be
+     * compared. Only the shards with different versions are compared when both topologies are sharded.
+     */
+    @Nullable
+    static Set<String> getChangedSessions(
+            @Nullable final NewZkSubscriptionClient.Topology previous,
+            final NewZkSubscriptionClient.Topology current) {
+        if (null == previous || previous.getPartitions().length != current.getPartitions().length) {
+            return null;
+        }
+        final Set<String> result = new HashSet<>();
+        if (null != previous.getShards() && null != current.getShards()
+                && previous.getShards().size() == current.getShards().size()) {
+            for (int i = 0; i < current.getShards().size(); ++i) {
+                final Shard shard = current.getShards().get(i);
+                if (shard.getVersion() != previous.getShards().get(i).getVersion()) {
+                    addChangedSessions(previous.getPartitions(), current.getPartitions(), shard.from, shard.to,
+                            result);
+                }
+            }
+        } else {
+            addChangedSessions(previous.getPartitions(), current.getPartitions(), 0,
+                    current.getPartitions().length, result);
+        }
+        return result;
+    }
+
+    private static void addChangedSessions(final Partition[] previous, final Partition[] current, final int from,
+                                           final int to, final Set<String> result) {
+        for (int i = from; i < to; ++i) {
+            final Partition before = previous[i];
+            final Partition after = current[i];
+            if (!Objects.equals(before.getSession(), after.getSession())
+                    || !Objects.equals(before.getNextSession(), after.getNextSession())
+                    || before.getState() != after.getState()) {
+                if (null != before.getSession()) {
+                    result.add(before.getSession());
+                }
+                if (null != after.getSession()) {
+                    result.add(after.getSession());
+                }
+            }
+        }
+    }
+
+    private static Summary createSummary(final NewZkSubscriptionClient.Topology topology) {
+        final LinkedHashMap<String, Integer> shards = new LinkedHashMap<>();
+        topology.getShards().forEach(shard -> shards.put(shard.getName(), shard.getVersion()));
+        return new Summary(topology.getVersion(), shards);
+    }
+
+    private static byte[] serializeShard(final ObjectMapper objectMapper,
+                                         final NewZkSubscriptionClient.Topology topology,
+                                         final Shard shard) throws Exception {
+        return objectMapper.writeValueAsBytes(new NewZkSubscriptionClient.Topology(
+                Arrays.copyOfRange(topology.getPartitions(), shard.from, shard.to), shard.getVersion()));
+    }
+}
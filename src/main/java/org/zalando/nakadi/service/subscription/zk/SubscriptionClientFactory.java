@@ -1,8 +1,10 @@
 package org.zalando.nakadi.service.subscription.zk;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.zalando.nakadi.domain.Subscription;
 import org.zalando.nakadi.exceptions.InternalNakadiException;
@@ -13,13 +15,22 @@ import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
 public class SubscriptionClientFactory {
     private final ZooKeeperHolder zkHolder;
     private final ObjectMapper objectMapper;
+    private final MetricRegistry metricRegistry;
+    private final SubscriptionTopologyCache topologyCache;
+    private final int topologyShardSize;
 
     @Autowired
     public SubscriptionClientFactory(
             final ZooKeeperHolder zkHolder,
-            final ObjectMapper objectMapper) {
+            final ObjectMapper objectMapper,
+            final MetricRegistry metricRegistry,
+            final SubscriptionTopologyCache topologyCache,
+            @Value("${nakadi.subscription.topologyShardSize}") final int topologyShardSize) {
         this.zkHolder = zkHolder;
         this.objectMapper = objectMapper;
+        this.metricRegistry = metricRegistry;
+        this.topologyCache = topologyCache;
+        this.topologyShardSize = topologyShardSize;
     }
 
     public ZkSubscriptionClient createClient(final Subscription subscription, final String loggingPath)
@@ -29,6 +40,9 @@ public class SubscriptionClientFactory {
                 subscription.getId(),
                 zkHolder.get(),
                 loggingPath,
-                objectMapper);
+                objectMapper,
+                metricRegistry,
+                topologyCache,
+                topologyShardSize);
     }
 }
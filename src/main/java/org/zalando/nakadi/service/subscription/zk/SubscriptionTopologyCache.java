@@ -0,0 +1,365 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.subscription.model.Session;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * Node-wide cache of subscription topologies and sessions. Entry of a subscription is created on the first access,
+ * keeps deserialized topology and sessions up to date with zookeeper watches and notifies the listeners of the node
+ * only after the cached data is updated. Entry is closed when it has no listeners and was not accessed for the idle
+ * time. Only the changed shards of {@link ShardedTopology} are read, listeners of a session are notified only when
+ * partitions of the session are changed.
+ * <p>
+ * Sessions are not cached with {@code PathChildrenCache}, because it creates the watched node if it doesn't exist,
+ * and it would recreate sessions node of the deleted subscriptions.
+ */
+@Component
+public class SubscriptionTopologyCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SubscriptionTopologyCache.class);
+    private static final long SESSIONS_RETRY_MS = 1000;
+
+    private final ZooKeeperHolder zkHolder;
+    private final ObjectMapper objectMapper;
+    private final long idleMs;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    @Nullable
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public SubscriptionTopologyCache(
+            final ZooKeeperHolder zkHolder,
+            final ObjectMapper objectMapper,
+            @Value("${nakadi.subscription.topologyCacheIdleMs}") final long idleMs) {
+        this.zkHolder = zkHolder;
+        this.objectMapper = objectMapper;
+        this.idleMs = idleMs;
+        if (idleMs > 0) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("topology-cache-%d").setDaemon(true).build());
+            this.executor.scheduleWithFixedDelay(
+                    () -> closeIdleEntries(System.currentTimeMillis()), idleMs, idleMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return null != executor;
+    }
+
+    Entry getEntry(final String subscriptionId) {
+        while (true) {
+            final Entry entry = entries.computeIfAbsent(subscriptionId, Entry::new);
+            if (entry.start()) {
+                entry.lastAccess = System.currentTimeMillis();
+                return entry;
+            }
+            // entry was closed as idle concurrently
+            entries.remove(subscriptionId, entry);
+        }
+    }
+
+    void closeIdleEntries(final long now) {
+        final long idleSince = now - idleMs;
+        for (final Entry entry : entries.values()) {
+            if (entry.closeIfIdle(idleSince)) {
+                entries.remove(entry.subscriptionId, entry);
+            }
+        }
+    }
+
+    NodeCache createTopologyCache(final String topologyPath) {
+        return new NodeCache(getCurator(), topologyPath);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (null != executor) {
+            executor.shutdownNow();
+        }
+        entries.values().forEach(Entry::close);
+        entries.clear();
+    }
+
+    class Entry {
+        private final String subscriptionId;
+        private final String topologyPath;
+        private final String sessionsPath;
+        private final Set<TopologyListener> topologyListeners = new CopyOnWriteArraySet<>();
+        private final Set<Runnable> sessionListeners = new CopyOnWriteArraySet<>();
+        private final Map<String, Integer> sessionWeights = new ConcurrentHashMap<>();
+        private final Watcher sessionsWatcher = event -> refreshSessions();
+        private volatile NewZkSubscriptionClient.Topology topology;
+        private volatile Session[] sessions;
+        private volatile long lastAccess;
+        private volatile boolean closed;
+        private int topologyVersion = -1;
+        private int sessionsVersion = -1;
+        private boolean started;
+        private NodeCache topologyCache;
+
+        private Entry(final String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+            this.topologyPath = AbstractZkSubscriptionClient.getSubscriptionPath(
+                    subscriptionId, AbstractZkSubscriptionClient.NODE_TOPOLOGY);
+            this.sessionsPath = AbstractZkSubscriptionClient.getSubscriptionPath(subscriptionId, "/sessions");
+        }
+
+        private synchronized boolean start() {
+            if (closed) {
+                return false;
+            }
+            if (!started) {
+                started = true;
+                topologyCache = createTopologyCache(topologyPath);
+                topologyCache.getListenable().addListener(this::onTopologyChanged);
+                try {
+                    topologyCache.start(true);
+                    updateTopology(topologyCache.getCurrentData());
+                } catch (final Exception e) {
+                    LOG.warn("Failed to load topology of subscription {} to cache", subscriptionId, e);
+                }
+                refreshSessions();
+            }
+            return true;
+        }
+
+        /**
+         * Cached topology or null if it is not known, for example while the subscription is not initialized.
+         */
+        @Nullable
+        NewZkSubscriptionClient.Topology getTopology() {
+            lastAccess = System.currentTimeMillis();
+            return topology;
+        }
+
+        /**
+         * Cached sessions or null if they are not known.
+         */
+        @Nullable
+        Session[] getSessions() {
+            lastAccess = System.currentTimeMillis();
+            return sessions;
+        }
+
+        @Nullable
+        ZKSubscription addTopologyListener(final Runnable listener) {
+            return addTopologyListener(null, listener);
+        }
+
+        /**
+         * @param sessionId if set, listener is called only when partitions that were or are assigned to the session
+         *                  are changed
+         */
+        @Nullable
+        ZKSubscription addTopologyListener(@Nullable final String sessionId, final Runnable listener) {
+            return addListener(topologyListeners, new TopologyListener(sessionId, listener));
+        }
+
+        @Nullable
+        ZKSubscription addSessionsListener(final Runnable listener) {
+            // wrapper makes registrations of the same runnable distinct
+            return addListener(sessionListeners, listener::run);
+        }
+
+        private synchronized <T> ZKSubscription addListener(final Set<T> listeners, final T registration) {
+            if (closed) {
+                return null;
+            }
+            listeners.add(registration);
+            return new ZKSubscription() {
+                @Override
+                public void refresh() {
+                    // listener stays registered until it is cancelled
+                }
+
+                @Override
+                public void cancel() {
+                    listeners.remove(registration);
+                    lastAccess = System.currentTimeMillis();
+                }
+            };
+        }
+
+        private void onTopologyChanged() {
+            final Set<String> changedSessions = updateTopology(topologyCache.getCurrentData());
+            for (final TopologyListener listener : topologyListeners) {
+                if (null == listener.sessionId || null == changedSessions
+                        || changedSessions.contains(listener.sessionId)) {
+                    notifyListener(listener.listener);
+                }
+            }
+        }
+
+        /**
+         * @return sessions that had or got changed partitions, or null if all the listeners must be notified
+         */
+        @Nullable
+        private synchronized Set<String> updateTopology(@Nullable final ChildData data) {
+            if (null == data) {
+                topology = null;
+                topologyVersion = -1;
+                return null;
+            }
+            if (data.getStat().getVersion() <= topologyVersion) {
+                return Collections.emptySet();
+            }
+            try {
+                // only the changed shards of sharded topology are read
+                final NewZkSubscriptionClient.Topology previous = topology;
+                topology = ShardedTopology.read(getCurator(), objectMapper, topologyPath, data.getData(), previous);
+                topologyVersion = data.getStat().getVersion();
+                return ShardedTopology.getChangedSessions(previous, topology);
+            } catch (final Exception e) {
+                LOG.error("Failed to read topology of subscription {}", subscriptionId, e);
+                topology = null;
+                topologyVersion = -1;
+                return null;
+            }
+        }
+
+        private void refreshSessions() {
+            if (closed) {
+                return;
+            }
+            try {
+                final Stat stat = new Stat();
+                final List<String> children = getCurator().getChildren().storingStatIn(stat)
+                        .usingWatcher(sessionsWatcher).forPath(sessionsPath);
+                sessionWeights.keySet().retainAll(children);
+                final Session[] result = children.stream()
+                        .map(this::readSession)
+                        .filter(session -> null != session)
+                        .toArray(Session[]::new);
+                synchronized (this) {
+                    if (stat.getCversion() >= sessionsVersion) {
+                        sessions = result;
+                        sessionsVersion = stat.getCversion();
+                    }
+                }
+            } catch (final KeeperException.NoNodeException e) {
+                setSessionsUnknown();
+                watchSessionsCreation();
+            } catch (final Exception e) {
+                LOG.warn("Failed to load sessions of subscription {} to cache", subscriptionId, e);
+                setSessionsUnknown();
+                if (null != executor && !executor.isShutdown()) {
+                    executor.schedule(this::refreshSessions, SESSIONS_RETRY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+            notifyListeners(sessionListeners);
+        }
+
+        @Nullable
+        private Session readSession(final String sessionId) {
+            Integer weight = sessionWeights.get(sessionId);
+            if (null == weight) {
+                try {
+                    weight = Integer.parseInt(new String(
+                            getCurator().getData().forPath(sessionsPath + "/" + sessionId), UTF_8));
+                } catch (final KeeperException.NoNodeException e) {
+                    // session is already gone, sessions watcher will be triggered
+                    return null;
+                } catch (final Exception e) {
+                    throw new IllegalStateException("Failed to read session " + sessionId, e);
+                }
+                sessionWeights.put(sessionId, weight);
+            }
+            return new Session(sessionId, weight);
+        }
+
+        private synchronized void setSessionsUnknown() {
+            sessions = null;
+            sessionsVersion = -1;
+            sessionWeights.clear();
+        }
+
+        private void watchSessionsCreation() {
+            try {
+                if (null != getCurator().checkExists().usingWatcher(sessionsWatcher).forPath(sessionsPath)) {
+                    refreshSessions();
+                }
+            } catch (final Exception e) {
+                LOG.warn("Failed to watch sessions of subscription {}", subscriptionId, e);
+            }
+        }
+
+        private void notifyListeners(final Set<Runnable> listeners) {
+            listeners.forEach(this::notifyListener);
+        }
+
+        private void notifyListener(final Runnable listener) {
+            try {
+                listener.run();
+            } catch (final RuntimeException e) {
+                LOG.error("Listener of subscription {} failed", subscriptionId, e);
+            }
+        }
+
+        private synchronized boolean closeIfIdle(final long idleSince) {
+            if (topologyListeners.isEmpty() && sessionListeners.isEmpty() && lastAccess < idleSince) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            topology = null;
+            sessions = null;
+            if (null != topologyCache) {
+                try {
+                    topologyCache.close();
+                } catch (final IOException e) {
+                    LOG.error("Failed to close topology cache of subscription {}", subscriptionId, e);
+                }
+            }
+        }
+    }
+
+    private static class TopologyListener {
+        @Nullable
+        private final String sessionId;
+        private final Runnable listener;
+
+        private TopologyListener(@Nullable final String sessionId, final Runnable listener) {
+            this.sessionId = sessionId;
+            this.listener = listener;
+        }
+    }
+
+    private CuratorFramework getCurator() {
+        return zkHolder.get();
+    }
+}
@@ -85,6 +85,17 @@ public interface ZkSubscriptionClient {
      */
     ZKSubscription subscribeForTopologyChanges(Runnable listener);
 
+    /**
+     * Subscribe for topology changes that are relevant to the session. When topology cache is enabled, listener is
+     * called only if partitions that were or are assigned to the session are changed, otherwise it is called on any
+     * change of the topology.
+     *
+     * @param sessionId session to subscribe for changes of its partitions
+     * @param listener  called when the topology is changed
+     * @return Subscription instance
+     */
+    ZKSubscription subscribeForTopologyChanges(String sessionId, Runnable listener);
+
     ZKSubscription subscribeForOffsetChanges(EventTypePartition key, Runnable commitListener);
 
     /**
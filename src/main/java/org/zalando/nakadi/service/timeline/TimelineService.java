@@ -35,6 +35,7 @@ import org.zalando.nakadi.exceptions.runtime.RepositoryProblemException;
 import org.zalando.nakadi.exceptions.runtime.TopicRepositoryException;
 import org.zalando.nakadi.plugin.api.authz.AuthorizationService;
 import org.zalando.nakadi.plugin.api.authz.Resource;
+import org.zalando.nakadi.repository.ConsumerTuning;
 import org.zalando.nakadi.repository.EventConsumer;
 import org.zalando.nakadi.repository.MultiTimelineEventConsumer;
 import org.zalando.nakadi.repository.TopicRepository;
@@ -201,15 +202,18 @@ public class TimelineService {
         return topicRepositoryHolder.getTopicRepository(defaultStorage);
     }
 
-    public EventConsumer createEventConsumer(@Nullable final String clientId, final List<NakadiCursor> positions)
+    public EventConsumer createEventConsumer(@Nullable final String clientId, final List<NakadiCursor> positions,
+                                             final ConsumerTuning tuning)
             throws NakadiException, InvalidCursorException {
-        final MultiTimelineEventConsumer result = new MultiTimelineEventConsumer(clientId, this, timelineSync);
+        final MultiTimelineEventConsumer result = new MultiTimelineEventConsumer(
+                clientId, tuning, this, timelineSync);
         result.reassign(positions);
         return result;
     }
 
-    public EventConsumer.ReassignableEventConsumer createEventConsumer(@Nullable final String clientId) {
-        return new MultiTimelineEventConsumer(clientId, this, timelineSync);
+    public EventConsumer.ReassignableEventConsumer createEventConsumer(@Nullable final String clientId,
+                                                                       final ConsumerTuning tuning) {
+        return new MultiTimelineEventConsumer(clientId, tuning, this, timelineSync);
     }
 
     private void switchTimelines(final Timeline activeTimeline, final Timeline nextTimeline)
@@ -4,6 +4,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.zalando.nakadi.exceptions.InvalidPartitionKeyFieldsException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /*
  One could use JsonPath Lib instead: https://github.com/jayway/JsonPath
 
@@ -19,13 +22,16 @@ public class JsonPathAccess {
     }
 
     public Object get(final String path) throws InvalidPartitionKeyFieldsException {
+        return get(tokenize(path));
+    }
 
-        final JsonPathTokenizer pathTokenizer = new JsonPathTokenizer(path);
-
+    /**
+     * Returns value by the path that was split with {@link #tokenize(String)}, so that the path that is used for a
+     * lot of objects is parsed only once.
+     */
+    public Object get(final String[] pathTokens) throws InvalidPartitionKeyFieldsException {
         Object curr = this.jsonObject;
-        String field;
-
-        while ((field = pathTokenizer.nextToken()) != null) {
+        for (final String field : pathTokens) {
             if (!(curr instanceof JSONObject)) {
                 throw new InvalidPartitionKeyFieldsException("field " + field + " doesn't exist.");
             }
@@ -38,6 +44,16 @@ public class JsonPathAccess {
         return curr;
     }
 
+    public static String[] tokenize(final String path) {
+        final JsonPathTokenizer pathTokenizer = new JsonPathTokenizer(path);
+        final List<String> tokens = new ArrayList<>();
+        String field;
+        while ((field = pathTokenizer.nextToken()) != null) {
+            tokens.add(field);
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
     private static class JsonPathTokenizer {
         private final char[] path;
         private int pos = 0;
@@ -48,7 +64,7 @@ public class JsonPathAccess {
             tokenBuilder = new StringBuilder(this.path.length);
         }
 
-        public synchronized String nextToken() {
+        public String nextToken() {
             if (pos >= path.length) {
                 return null;
             }
@@ -0,0 +1,415 @@
+package org.zalando.nakadi.validation;
+
+import com.google.common.collect.ImmutableSet;
+import org.everit.json.schema.FormatValidator;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Validator tree compiled from the effective schema of an event type, with dedicated checks for the most common
+ * shapes of JSON schema: objects with properties, primitive types, string enums, patterns and date-time format.
+ *
+ * Compiled schema is only able to confirm that a value is valid. When it returns false the value must be validated
+ * with everit schema, which stays the only source of truth and of error messages. That is why every check here is
+ * at least as strict as the everit one, and keywords that are not supported (oneOf, not, dependencies, ...) always
+ * fail, leaving the decision to everit.
+ */
+final class CompiledSchema {
+
+    private static final int OBJECT = 1;
+    private static final int ARRAY = 1 << 1;
+    private static final int STRING = 1 << 2;
+    private static final int INTEGER = 1 << 3;
+    private static final int NUMBER = 1 << 4;
+    private static final int BOOLEAN = 1 << 5;
+    private static final int NULL = 1 << 6;
+    private static final int ANY = OBJECT | ARRAY | STRING | INTEGER | NUMBER | BOOLEAN | NULL;
+
+    private static final Set<String> UNSUPPORTED_KEYWORDS = ImmutableSet.of("multipleOf", "patternProperties",
+            "dependencies", "oneOf", "not", "id", "const", "contains", "propertyNames");
+    private static final Set<String> REFERENCE_ANNOTATIONS = ImmutableSet.of("$ref", "title", "description",
+            "definitions");
+
+    private static final FormatValidator DATE_TIME_VALIDATOR = new RFC3339DateTimeValidator();
+
+    private boolean unsupported;
+    private CompiledSchema reference;
+    private int types = ANY;
+    private Set<String> enumValues;
+    private final List<CompiledSchema> allOf = new ArrayList<>();
+    private final List<CompiledSchema> anyOf = new ArrayList<>();
+
+    private final Map<String, CompiledSchema> properties = new HashMap<>();
+    private final List<String> required = new ArrayList<>();
+    private boolean additionalPropertiesAllowed = true;
+    private CompiledSchema additionalProperties;
+    private int minProperties = -1;
+    private int maxProperties = -1;
+
+    private CompiledSchema items;
+    private int minItems = -1;
+    private int maxItems = -1;
+
+    private int minLength = -1;
+    private int maxLength = -1;
+    private Pattern pattern;
+    private FormatValidator format;
+
+    private Double minimum;
+    private boolean exclusiveMinimum;
+    private Double maximum;
+    private boolean exclusiveMaximum;
+
+    private CompiledSchema() {
+    }
+
+    /**
+     * @return compiled schema or null if there is no point in compiling it, because it's root can't be checked.
+     */
+    @Nullable
+    static CompiledSchema compile(final JSONObject effectiveSchema) {
+        try {
+            final CompiledSchema compiled = new Compiler(effectiveSchema).compile(effectiveSchema);
+            return compiled.unsupported ? null : compiled;
+        } catch (final JSONException | PatternSyntaxException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    boolean isValid(final Object value) {
+        if (unsupported) {
+            return false;
+        } else if (null != reference) {
+            return reference.isValid(value);
+        }
+
+        final int type = typeOf(value);
+        if ((types & type) == 0 && !(type == INTEGER && (types & NUMBER) != 0)) {
+            return false;
+        }
+        if (null != enumValues && !enumValues.contains(value)) {
+            return false;
+        }
+        switch (type) {
+            case OBJECT:
+                if (!isValidObject((JSONObject) value)) {
+                    return false;
+                }
+                break;
+            case ARRAY:
+                if (!isValidArray((JSONArray) value)) {
+                    return false;
+                }
+                break;
+            case STRING:
+                if (!isValidString((String) value)) {
+                    return false;
+                }
+                break;
+            case INTEGER:
+            case NUMBER:
+                if (!isValidNumber(((Number) value).doubleValue())) {
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        for (final CompiledSchema schema : allOf) {
+            if (!schema.isValid(value)) {
+                return false;
+            }
+        }
+        if (anyOf.isEmpty()) {
+            return true;
+        }
+        for (final CompiledSchema schema : anyOf) {
+            if (schema.isValid(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isValidObject(final JSONObject object) {
+        if ((minProperties >= 0 && object.length() < minProperties)
+                || (maxProperties >= 0 && object.length() > maxProperties)) {
+            return false;
+        }
+        for (final String name : required) {
+            if (!object.has(name)) {
+                return false;
+            }
+        }
+        for (final String name : object.keySet()) {
+            final CompiledSchema property = properties.get(name);
+            if (null != property) {
+                if (!property.isValid(object.get(name))) {
+                    return false;
+                }
+            } else if (null != additionalProperties) {
+                if (!additionalProperties.isValid(object.get(name))) {
+                    return false;
+                }
+            } else if (!additionalPropertiesAllowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidArray(final JSONArray array) {
+        if ((minItems >= 0 && array.length() < minItems) || (maxItems >= 0 && array.length() > maxItems)) {
+            return false;
+        }
+        if (null != items) {
+            for (int i = 0; i < array.length(); i++) {
+                if (!items.isValid(array.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidString(final String value) {
+        // Length is checked both in chars and in code points, so that it is not less strict than everit
+        if ((maxLength >= 0 && value.length() > maxLength)
+                || (minLength > 0 && value.codePointCount(0, value.length()) < minLength)) {
+            return false;
+        }
+        if (null != pattern && !pattern.matcher(value).find()) {
+            return false;
+        }
+        return null == format || !format.validate(value).isPresent();
+    }
+
+    private boolean isValidNumber(final double value) {
+        if (null != minimum && (exclusiveMinimum ? value <= minimum : value < minimum)) {
+            return false;
+        }
+        return null == maximum || (exclusiveMaximum ? value < maximum : value <= maximum);
+    }
+
+    private static int typeOf(final Object value) {
+        if (value instanceof JSONObject) {
+            return OBJECT;
+        } else if (value instanceof JSONArray) {
+            return ARRAY;
+        } else if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Integer || value instanceof Long) {
+            return INTEGER;
+        } else if (value instanceof Double) {
+            return NUMBER;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN;
+        } else if (null == value || JSONObject.NULL.equals(value)) {
+            return NULL;
+        }
+        return 0;
+    }
+
+    private static int parseType(final String type) {
+        switch (type) {
+            case "object":
+                return OBJECT;
+            case "array":
+                return ARRAY;
+            case "string":
+                return STRING;
+            case "integer":
+                return INTEGER;
+            case "number":
+                return NUMBER;
+            case "boolean":
+                return BOOLEAN;
+            case "null":
+                return NULL;
+            default:
+                return 0;
+        }
+    }
+
+    private static class Compiler {
+        private final JSONObject root;
+        private final Map<String, CompiledSchema> references = new HashMap<>();
+
+        private Compiler(final JSONObject root) {
+            this.root = root;
+        }
+
+        private CompiledSchema compile(final JSONObject schema) {
+            final CompiledSchema result = new CompiledSchema();
+            fill(result, schema);
+            return result;
+        }
+
+        private void fill(final CompiledSchema result, final JSONObject schema) {
+            if (schema.has("$ref")) {
+                if (REFERENCE_ANNOTATIONS.containsAll(schema.keySet())) {
+                    result.reference = resolve(schema.getString("$ref"));
+                }
+                result.unsupported = null == result.reference || result == result.reference;
+                return;
+            }
+            for (final String keyword : schema.keySet()) {
+                if (UNSUPPORTED_KEYWORDS.contains(keyword)) {
+                    result.unsupported = true;
+                    return;
+                }
+                switch (keyword) {
+                    case "type":
+                        result.types = compileTypes(schema.get(keyword));
+                        break;
+                    case "enum":
+                        result.enumValues = compileEnum(schema.getJSONArray(keyword));
+                        break;
+                    case "allOf":
+                        compileAll(schema.getJSONArray(keyword), result.allOf);
+                        break;
+                    case "anyOf":
+                        compileAll(schema.getJSONArray(keyword), result.anyOf);
+                        break;
+                    case "properties":
+                        final JSONObject properties = schema.getJSONObject(keyword);
+                        for (final String property : properties.keySet()) {
+                            result.properties.put(property, compile(properties.getJSONObject(property)));
+                        }
+                        break;
+                    case "required":
+                        final JSONArray required = schema.getJSONArray(keyword);
+                        for (int i = 0; i < required.length(); i++) {
+                            result.required.add(required.getString(i));
+                        }
+                        break;
+                    case "additionalProperties":
+                        final Object additionalProperties = schema.get(keyword);
+                        if (additionalProperties instanceof Boolean) {
+                            result.additionalPropertiesAllowed = (Boolean) additionalProperties;
+                        } else {
+                            result.additionalProperties = compile((JSONObject) additionalProperties);
+                        }
+                        break;
+                    case "minProperties":
+                        result.minProperties = schema.getInt(keyword);
+                        break;
+                    case "maxProperties":
+                        result.maxProperties = schema.getInt(keyword);
+                        break;
+                    case "items":
+                        final Object items = schema.get(keyword);
+                        if (items instanceof JSONObject) {
+                            result.items = compile((JSONObject) items);
+                        } else {
+                            result.unsupported = true;
+                        }
+                        break;
+                    case "uniqueItems":
+                        result.unsupported |= schema.getBoolean(keyword);
+                        break;
+                    case "minItems":
+                        result.minItems = schema.getInt(keyword);
+                        break;
+                    case "maxItems":
+                        result.maxItems = schema.getInt(keyword);
+                        break;
+                    case "minLength":
+                        result.minLength = schema.getInt(keyword);
+                        break;
+                    case "maxLength":
+                        result.maxLength = schema.getInt(keyword);
+                        break;
+                    case "pattern":
+                        result.pattern = Pattern.compile(schema.getString(keyword));
+                        break;
+                    case "format":
+                        if ("date-time".equals(schema.getString(keyword))) {
+                            result.format = DATE_TIME_VALIDATOR;
+                        } else {
+                            result.unsupported = true;
+                        }
+                        break;
+                    case "minimum":
+                        result.minimum = schema.getDouble(keyword);
+                        break;
+                    case "exclusiveMinimum":
+                        result.exclusiveMinimum = schema.getBoolean(keyword);
+                        break;
+                    case "maximum":
+                        result.maximum = schema.getDouble(keyword);
+                        break;
+                    case "exclusiveMaximum":
+                        result.exclusiveMaximum = schema.getBoolean(keyword);
+                        break;
+                    default:
+                        // additionalItems is meaningless without array of item schemas, annotations and unknown
+                        // keywords are ignored by everit as well
+                        break;
+                }
+            }
+        }
+
+        private void compileAll(final JSONArray schemas, final List<CompiledSchema> target) {
+            for (int i = 0; i < schemas.length(); i++) {
+                target.add(compile(schemas.getJSONObject(i)));
+            }
+        }
+
+        private CompiledSchema resolve(final String pointer) {
+            final CompiledSchema existing = references.get(pointer);
+            if (null != existing) {
+                return existing;
+            }
+            // Reference is registered before it is filled, so that recursive schemas are supported
+            final CompiledSchema result = new CompiledSchema();
+            references.put(pointer, result);
+            if (!pointer.startsWith("#") || pointer.contains("~") || pointer.contains("%")) {
+                result.unsupported = true;
+                return result;
+            }
+            JSONObject target = root;
+            for (final String name : pointer.substring(1).split("/")) {
+                if (!name.isEmpty()) {
+                    target = target.getJSONObject(name);
+                }
+            }
+            fill(result, target);
+            return result;
+        }
+
+        private static int compileTypes(final Object type) {
+            if (type instanceof JSONArray) {
+                int result = 0;
+                for (final Object item : (JSONArray) type) {
+                    result |= parseType((String) item);
+                }
+                return result;
+            }
+            return parseType((String) type);
+        }
+
+        private static Set<String> compileEnum(final JSONArray values) {
+            final Set<String> result = new HashSet<>();
+            for (final Object value : values) {
+                if (!(value instanceof String)) {
+                    // Only strings are supported, event will be always validated by everit
+                    return ImmutableSet.of();
+                }
+                result.add((String) value);
+            }
+            return result;
+        }
+    }
+}
@@ -34,6 +34,7 @@ public class EventBodyMustRespectSchema extends ValidationStrategy {
 class JSONSchemaValidator implements EventValidator {
 
     private final Schema schema;
+    private final CompiledSchema compiledSchema;
 
     private static final FormatValidator DATE_TIME_VALIDATOR = new RFC3339DateTimeValidator();
 
@@ -45,10 +46,14 @@ class JSONSchemaValidator implements EventValidator {
                 .build()
                 .load()
                 .build();
+        compiledSchema = CompiledSchema.compile(effectiveSchema);
     }
 
     @Override
     public Optional<ValidationError> accepts(final JSONObject event) {
+        if (null != compiledSchema && compiledSchema.isValid(event)) {
+            return Optional.empty();
+        }
         try {
             schema.validate(event);
 
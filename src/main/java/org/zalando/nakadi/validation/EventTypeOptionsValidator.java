@@ -1,18 +1,26 @@
 package org.zalando.nakadi.validation;
 
+import com.google.common.collect.ImmutableSet;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
 import org.zalando.nakadi.domain.EventTypeOptions;
 
+import java.util.Set;
+
 public final class EventTypeOptionsValidator implements Validator {
 
+    public static final Set<String> COMPRESSION_TYPES = ImmutableSet.of("none", "gzip", "snappy", "lz4");
+
     private final long minTopicRetentionMs;
     private final long maxTopicRetentionMs;
+    private final long maxLingerMs;
 
     public EventTypeOptionsValidator(final long minTopicRetentionMs,
-                                     final long maxTopicRetentionMs) {
+                                     final long maxTopicRetentionMs,
+                                     final long maxLingerMs) {
         this.minTopicRetentionMs = minTopicRetentionMs;
         this.maxTopicRetentionMs = maxTopicRetentionMs;
+        this.maxLingerMs = maxLingerMs;
     }
 
     @Override
@@ -24,6 +32,7 @@ public final class EventTypeOptionsValidator implements Validator {
     public void validate(final Object target, final Errors errors) {
         final EventTypeOptions options = (EventTypeOptions) target;
         checkRetentionTime(errors, options);
+        checkProducerOptions(errors, options);
     }
 
     private void checkRetentionTime(final Errors errors, final EventTypeOptions options) {
@@ -41,6 +50,26 @@ public final class EventTypeOptionsValidator implements Validator {
         }
     }
 
+    private void checkProducerOptions(final Errors errors, final EventTypeOptions options) {
+        if (options == null) {
+            return;
+        }
+
+        final String compressionType = options.getCompressionType();
+        if (compressionType != null && !COMPRESSION_TYPES.contains(compressionType)) {
+            errors.rejectValue("options.compressionType", null, "must be one of " + COMPRESSION_TYPES);
+        }
+
+        final Long lingerTime = options.getLingerTime();
+        if (lingerTime != null) {
+            if (lingerTime > maxLingerMs) {
+                errors.rejectValue("options.lingerTime", null, "can not be more than " + maxLingerMs);
+            } else if (lingerTime < 0) {
+                errors.rejectValue("options.lingerTime", null, "can not be less than 0");
+            }
+        }
+    }
+
     private void createError(final Errors errors, final String message) {
         errors.rejectValue("options.retentionTime", null, message);
     }
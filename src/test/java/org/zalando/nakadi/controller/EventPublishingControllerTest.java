@@ -5,8 +5,10 @@ import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.zalando.nakadi.config.SecuritySettings;
@@ -28,6 +30,7 @@ import org.zalando.nakadi.utils.TestUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -36,8 +39,10 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 import static org.zalando.nakadi.config.SecuritySettings.AuthMode.OFF;
@@ -79,7 +84,8 @@ public class EventPublishingControllerTest {
                 new EventPublishingController(publisher, eventTypeMetricRegistry, blacklistService);
 
         mockMvc = standaloneSetup(controller)
-                .setMessageConverters(new StringHttpMessageConverter(), TestUtils.JACKSON_2_HTTP_MESSAGE_CONVERTER)
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new StringHttpMessageConverter(),
+                        TestUtils.JACKSON_2_HTTP_MESSAGE_CONVERTER)
                 .setCustomArgumentResolvers(new ClientResolver(settings, featureToggleService))
                 .build();
     }
@@ -89,9 +95,9 @@ public class EventPublishingControllerTest {
         final EventPublishResult result = new EventPublishResult(SUBMITTED, null, submittedResponses(1));
 
         Mockito
-                .doReturn(result)
+                .doReturn(CompletableFuture.completedFuture(result))
                 .when(publisher)
-                .publish(any(String.class), eq(TOPIC), any(Client.class));
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
 
         postBatch(TOPIC, EVENT_BATCH)
                 .andExpect(status().isOk())
@@ -103,14 +109,14 @@ public class EventPublishingControllerTest {
 
         Mockito.doThrow(new JSONException("Error"))
                 .when(publisher)
-                .publish(any(String.class), eq(TOPIC), any(Client.class));
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
 
         postBatch(TOPIC, "invalid json array").andExpect(status().isBadRequest());
     }
 
     @Test
     public void whenEventPublishTimeoutThen503() throws Exception {
-        when(publisher.publish(any(), any(), any())).thenThrow(new EventTypeTimeoutException(""));
+        when(publisher.publishAsync(any(), any(), any())).thenThrow(new EventTypeTimeoutException(""));
 
         postBatch(TOPIC, EVENT_BATCH)
                 .andExpect(content().contentType("application/problem+json"))
@@ -122,9 +128,9 @@ public class EventPublishingControllerTest {
         final EventPublishResult result = new EventPublishResult(ABORTED, PARTITIONING, responses());
 
         Mockito
-                .doReturn(result)
+                .doReturn(CompletableFuture.completedFuture(result))
                 .when(publisher)
-                .publish(any(String.class), eq(TOPIC), any(Client.class));
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
 
         postBatch(TOPIC, EVENT_BATCH)
                 .andExpect(status().isUnprocessableEntity())
@@ -136,21 +142,41 @@ public class EventPublishingControllerTest {
         final EventPublishResult result = new EventPublishResult(FAILED, PUBLISHING, responses());
 
         Mockito
-                .doReturn(result)
+                .doReturn(CompletableFuture.completedFuture(result))
                 .when(publisher)
-                .publish(any(String.class), eq(TOPIC), any(Client.class));
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
 
         postBatch(TOPIC, EVENT_BATCH)
                 .andExpect(status().isMultiStatus())
                 .andExpect(content().string(TestUtils.JSON_TEST_HELPER.matchesObject(responses())));
     }
 
+    @Test
+    public void whenPublishingIsCompletedLaterThenResponseIsSentAsynchronously() throws Exception {
+        final CompletableFuture<EventPublishResult> publishing = new CompletableFuture<>();
+        Mockito
+                .doReturn(publishing)
+                .when(publisher)
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
+
+        final MvcResult mvcResult = mockMvc.perform(post("/event-types/" + TOPIC + "/events")
+                .contentType(APPLICATION_JSON)
+                .content(EVENT_BATCH))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        publishing.complete(new EventPublishResult(FAILED, PUBLISHING, responses()));
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isMultiStatus())
+                .andExpect(content().string(TestUtils.JSON_TEST_HELPER.matchesObject(responses())));
+    }
+
     @Test
     public void whenEventTypeNotFoundThen404() throws Exception {
         Mockito
                 .doThrow(NoSuchEventTypeException.class)
                 .when(publisher)
-                .publish(any(String.class), eq(TOPIC), any(Client.class));
+                .publishAsync(any(byte[].class), eq(TOPIC), any(Client.class));
 
         postBatch(TOPIC, EVENT_BATCH)
                 .andExpect(content().contentType("application/problem+json"))
@@ -161,11 +187,11 @@ public class EventPublishingControllerTest {
     public void publishedEventsAreReportedPerEventType() throws Exception {
         final EventPublishResult success = new EventPublishResult(SUBMITTED, null, submittedResponses(3));
         Mockito
-                .doReturn(success)
-                .doReturn(success)
+                .doReturn(CompletableFuture.completedFuture(success))
+                .doReturn(CompletableFuture.completedFuture(success))
                 .doThrow(InternalNakadiException.class)
                 .when(publisher)
-                .publish(any(), any(), any(Client.class));
+                .publishAsync(any(), any(), any(Client.class));
 
         postBatch(TOPIC, EVENT_BATCH);
         postBatch(TOPIC, EVENT_BATCH);
@@ -210,6 +236,7 @@ public class EventPublishingControllerTest {
                 .contentType(APPLICATION_JSON)
                 .content(batch);
 
-        return mockMvc.perform(requestBuilder);
+        final MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+        return mockMvc.perform(asyncDispatch(result));
     }
 }
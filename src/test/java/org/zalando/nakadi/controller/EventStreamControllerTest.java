@@ -135,7 +135,7 @@ public class EventStreamControllerTest {
         streamMetrics = new MetricRegistry();
         final EventConsumer.LowLevelConsumer eventConsumerMock = mock(EventConsumer.LowLevelConsumer.class);
         when(topicRepositoryMock.createEventConsumer(
-                eq(KAFKA_CLIENT_ID), any()))
+                eq(KAFKA_CLIENT_ID), any(), any()))
                 .thenReturn(eventConsumerMock);
 
         final ClosedConnectionsCrutch crutch = mock(ClosedConnectionsCrutch.class);
@@ -192,7 +192,7 @@ public class EventStreamControllerTest {
 
         final EventConsumer.LowLevelConsumer eventConsumerMock = mock(EventConsumer.LowLevelConsumer.class);
         when(topicRepositoryMock.createEventConsumer(
-                any(), any()))
+                any(), any(), any()))
                 .thenReturn(eventConsumerMock);
 
         final EventStream eventStreamMock = mock(EventStream.class);
@@ -278,7 +278,7 @@ public class EventStreamControllerTest {
     public void whenInvalidCursorsThenPreconditionFailed() throws Exception {
         final NakadiCursor cursor = new NakadiCursor(fakeTimeline, "0", "000000000000000000");
         when(eventTypeRepository.findByName(TEST_EVENT_TYPE_NAME)).thenReturn(EVENT_TYPE);
-        when(timelineService.createEventConsumer(eq(KAFKA_CLIENT_ID), any()))
+        when(timelineService.createEventConsumer(eq(KAFKA_CLIENT_ID), any(), any()))
                 .thenThrow(new InvalidCursorException(CursorError.UNAVAILABLE, cursor));
 
         final StreamingResponseBody responseBody = createStreamingResponseBody(1, 0, 0, 0, 0,
@@ -318,7 +318,8 @@ public class EventStreamControllerTest {
         final EventConsumer eventConsumerMock = mock(EventConsumer.class);
         when(eventTypeRepository.findByName(TEST_EVENT_TYPE_NAME)).thenReturn(EVENT_TYPE);
         when(timelineService.createEventConsumer(
-                eq(KAFKA_CLIENT_ID), eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "000000000000000000")))))
+                eq(KAFKA_CLIENT_ID), eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "000000000000000000"))),
+                any()))
                 .thenReturn(eventConsumerMock);
         when(timelineService.getTimeline(eq(EVENT_TYPE))).thenReturn(fakeTimeline);
 
@@ -354,7 +355,7 @@ public class EventStreamControllerTest {
         assertThat(contentTypeCaptor.getValue(), equalTo("application/x-json-stream"));
 
         verify(timelineService, times(1)).createEventConsumer(eq(KAFKA_CLIENT_ID),
-                eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "000000000000000000"))));
+                eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "000000000000000000"))), any());
         verify(eventStreamFactoryMock, times(1)).createEventStream(eq(outputStream),
                 eq(eventConsumerMock), eq(streamConfig), any());
         verify(eventStreamMock, times(1)).streamEvents(any(), any());
@@ -483,7 +484,7 @@ public class EventStreamControllerTest {
         final EventConsumer.LowLevelConsumer eventConsumerMock = mock(EventConsumer.LowLevelConsumer.class);
         when(eventTypeRepository.findByName(TEST_EVENT_TYPE_NAME)).thenReturn(EVENT_TYPE);
         when(topicRepositoryMock.createEventConsumer(
-                eq(KAFKA_CLIENT_ID), eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "0")))))
+                eq(KAFKA_CLIENT_ID), eq(ImmutableList.of(new NakadiCursor(fakeTimeline, "0", "0"))), any()))
                 .thenReturn(eventConsumerMock);
     }
 
@@ -906,6 +906,25 @@ public class EventTypeControllerTest extends EventTypeControllerTestCase {
         verify(topicRepository).deleteTopic("test-topic");
     }
 
+    @Test
+    public void whenUpdateWithoutProducerOptionsThenStoredProducerOptionsAreKept() throws Exception {
+        final EventType eventType = EventTypeTestBuilder.builder().build();
+        eventType.getOptions().setCompressionType("lz4");
+        eventType.getOptions().setLingerTime(5L);
+        doReturn(eventType).when(eventTypeRepository).findByName(eventType.getName());
+
+        final EventType eventType2 = EventTypeTestBuilder.builder().name(eventType.getName()).build();
+        eventType2.getOptions().setLingerTime(20L);
+
+        putEventType(eventType2, eventType2.getName(), "nakadi")
+                .andExpect(status().isOk());
+
+        final ArgumentCaptor<EventType> argument = ArgumentCaptor.forClass(EventType.class);
+        verify(eventTypeRepository).update(argument.capture());
+        assertEquals("lz4", argument.getValue().getOptions().getCompressionType());
+        assertEquals(20L, argument.getValue().getOptions().getLingerTime().longValue());
+    }
+
     @Test
     public void whenUpdateRetentionTimeAndKafkaFails() throws Exception {
         final EventType eventType = EventTypeTestBuilder.builder().build();
@@ -58,6 +58,7 @@ public class EventTypeControllerTestCase {
     protected static final long TOPIC_RETENTION_MIN_MS = 86400000;
     protected static final long TOPIC_RETENTION_MAX_MS = 345600000;
     protected static final long TOPIC_RETENTION_TIME_MS = 172800000;
+    protected static final long MAX_LINGER_MS = 1000;
     protected static final int NAKADI_SEND_TIMEOUT = 10000;
     protected static final int NAKADI_POLL_TIMEOUT = 10000;
     protected static final long NAKADI_EVENT_MAX_BYTES = 1000000;
@@ -89,7 +90,7 @@ public class EventTypeControllerTestCase {
 
         final NakadiSettings nakadiSettings = new NakadiSettings(0, 0, 0, TOPIC_RETENTION_TIME_MS, 0, 60,
                 NAKADI_POLL_TIMEOUT, NAKADI_SEND_TIMEOUT, 0, NAKADI_EVENT_MAX_BYTES,
-                NAKADI_SUBSCRIPTION_MAX_PARTITIONS);
+                NAKADI_SUBSCRIPTION_MAX_PARTITIONS, 0, 0);
         final PartitionsCalculator partitionsCalculator = new KafkaConfig().createPartitionsCalculator(
                 "t2.large", TestUtils.OBJECT_MAPPER, nakadiSettings);
         when(timelineService.getDefaultTopicRepository()).thenReturn(topicRepository);
@@ -105,7 +106,7 @@ public class EventTypeControllerTestCase {
                 featureToggleService, authorizationValidator, timelineSync, transactionTemplate, nakadiSettings);
 
         final EventTypeOptionsValidator eventTypeOptionsValidator =
-                new EventTypeOptionsValidator(TOPIC_RETENTION_MIN_MS, TOPIC_RETENTION_MAX_MS);
+                new EventTypeOptionsValidator(TOPIC_RETENTION_MIN_MS, TOPIC_RETENTION_MAX_MS, MAX_LINGER_MS);
         final EventTypeController controller = new EventTypeController(eventTypeService,
                 featureToggleService, eventTypeOptionsValidator, applicationService, nakadiSettings, settings);
         doReturn(randomUUID).when(uuid).randomUUID();
@@ -0,0 +1,79 @@
+package org.zalando.nakadi.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NonBlockingServletOutputStreamTest {
+
+    private final ServletOutputStream servletOutputStream = mock(ServletOutputStream.class);
+    private final AtomicBoolean connectionReady = new AtomicBoolean(true);
+    private final AtomicInteger completions = new AtomicInteger();
+    private NonBlockingServletOutputStream outputStream;
+
+    @Before
+    public void setUp() {
+        outputStream = new NonBlockingServletOutputStream(
+                servletOutputStream, connectionReady, completions::incrementAndGet);
+    }
+
+    @Test
+    public void whenClientIsReadyThenDataIsWrittenDirectly() throws Exception {
+        when(servletOutputStream.isReady()).thenReturn(true);
+        final byte[] data = new byte[]{1, 2, 3};
+
+        outputStream.write(data, 0, 3);
+        outputStream.flush();
+
+        verify(servletOutputStream).write(data, 0, 3);
+        verify(servletOutputStream).flush();
+        assertThat(outputStream.isWritePending(), is(false));
+    }
+
+    @Test
+    public void whenClientIsNotReadyThenDataIsSentWhenWriteIsPossible() throws Exception {
+        when(servletOutputStream.isReady()).thenReturn(false);
+        outputStream.write(new byte[]{1, 2}, 0, 2);
+        outputStream.write(new byte[]{3}, 0, 1);
+        outputStream.flush();
+        outputStream.close();
+
+        verify(servletOutputStream, never()).write(any(byte[].class), anyInt(), anyInt());
+        assertThat(outputStream.isWritePending(), is(true));
+        assertThat(completions.get(), equalTo(0));
+
+        when(servletOutputStream.isReady()).thenReturn(true);
+        outputStream.onWritePossible();
+
+        verify(servletOutputStream).write(new byte[]{1, 2, 3});
+        verify(servletOutputStream).flush();
+        assertThat(outputStream.isWritePending(), is(false));
+        assertThat(completions.get(), equalTo(1));
+    }
+
+    @Test
+    public void whenWriteFailsThenConnectionIsClosed() throws Exception {
+        when(servletOutputStream.isReady()).thenReturn(false);
+        outputStream.write(new byte[]{1}, 0, 1);
+
+        outputStream.onError(new RuntimeException());
+        outputStream.close();
+
+        assertThat(connectionReady.get(), is(false));
+        assertThat(outputStream.isWritePending(), is(false));
+        assertThat(completions.get(), equalTo(1));
+    }
+}
@@ -3,9 +3,12 @@ package org.zalando.nakadi.controller;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.zalando.nakadi.config.JsonConfig;
 import org.zalando.nakadi.config.NakadiSettings;
@@ -19,21 +22,37 @@ import org.zalando.nakadi.service.AuthorizationValidator;
 import org.zalando.nakadi.service.BlacklistService;
 import org.zalando.nakadi.service.ClosedConnectionsCrutch;
 import org.zalando.nakadi.service.EventTypeChangeListener;
+import org.zalando.nakadi.service.subscription.SubscriptionOutput;
+import org.zalando.nakadi.service.subscription.SubscriptionStreamer;
 import org.zalando.nakadi.service.subscription.SubscriptionStreamerFactory;
 import org.zalando.nakadi.util.FeatureToggleService;
 import org.zalando.nakadi.utils.JsonTestHelper;
 import org.zalando.problem.Problem;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zalando.nakadi.util.FeatureToggleService.Feature.HIGH_LEVEL_API;
 import static org.zalando.problem.MoreStatus.UNPROCESSABLE_ENTITY;
@@ -44,6 +63,8 @@ public class SubscriptionStreamControllerTest {
 
     private HttpServletRequest requestMock;
     private HttpServletResponse responseMock;
+    private final FakeServletOutputStream servletOut = new FakeServletOutputStream();
+    private final AtomicBoolean connectionReady = new AtomicBoolean(true);
 
     private SubscriptionStreamController controller;
     private JsonTestHelper jsonHelper;
@@ -67,7 +88,7 @@ public class SubscriptionStreamControllerTest {
         when(metricRegistry.counter(any())).thenReturn(mock(Counter.class));
 
         final ClosedConnectionsCrutch crutch = mock(ClosedConnectionsCrutch.class);
-        when(crutch.listenForConnectionClose(requestMock)).thenReturn(new AtomicBoolean(true));
+        when(crutch.listenForConnectionClose(requestMock)).thenReturn(connectionReady);
 
         final BlacklistService blacklistService = Mockito.mock(BlacklistService.class);
         Mockito.when(blacklistService.isSubscriptionConsumptionBlocked(any(String.class), any(String.class)))
@@ -88,6 +109,11 @@ public class SubscriptionStreamControllerTest {
                 crutch, nakadiSettings, blacklistService, metricRegistry, subscriptionDbRepository);
     }
 
+    @After
+    public void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     public void whenBatchLimitLowerThan1ThenUnprocessableEntity() throws Exception {
         final StreamingResponseBody responseBody = controller.streamEvents("abc", 0, 0, null, 10, null, null,
@@ -97,6 +123,108 @@ public class SubscriptionStreamControllerTest {
         assertThat(responseToString(responseBody), jsonHelper.matchesObject(expectedProblem));
     }
 
+    @Test
+    public void whenStreamIsOnEventLoopThenResponseIsStreamedAndCompleted() throws Exception {
+        final AsyncContext asyncContext = enableEventLoop();
+        final CompletableFuture<Void> streamFinished = new CompletableFuture<>();
+        final Authentication authentication = mock(Authentication.class);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        final List<Authentication> streamAuthentication = new ArrayList<>();
+        final SubscriptionStreamer streamer = mockStreamer(output -> {
+            // security context of the request is captured by the stream when it is started
+            streamAuthentication.add(SecurityContextHolder.getContext().getAuthentication());
+            output.onInitialized("session");
+            output.getOutputStream().write("{\"cursor\":{}}\n".getBytes(UTF_8));
+            output.getOutputStream().flush();
+            return streamFinished;
+        });
+
+        final StreamingResponseBody body = controller.streamEvents("sid", 10, 1, null, 30, null, null,
+                requestMock, responseMock, FULL_ACCESS_CLIENT);
+
+        assertThat(body, nullValue());
+        verify(requestMock).startAsync();
+        verify(streamer).streamAsync();
+        assertThat(streamAuthentication, contains(authentication));
+        verify(responseMock).setStatus(200);
+        verify(responseMock).setHeader("X-Nakadi-StreamId", "session");
+        assertThat(servletOut.toString(), equalTo("{\"cursor\":{}}\n"));
+        verify(asyncContext, never()).complete();
+
+        streamFinished.complete(null);
+
+        verify(asyncContext, times(1)).complete();
+    }
+
+    @Test
+    public void whenClientDisconnectsThenAsyncContextIsReleased() throws Exception {
+        final AsyncContext asyncContext = enableEventLoop();
+        final CompletableFuture<Void> streamFinished = new CompletableFuture<>();
+        final SubscriptionStreamer streamer = mockStreamer(output -> streamFinished);
+
+        controller.streamEvents("sid", 10, 1, null, 30, null, null, requestMock, responseMock, FULL_ACCESS_CLIENT);
+        verify(streamer).streamAsync();
+
+        servletOut.writeListener.onError(new IOException("Connection reset by peer"));
+
+        assertThat(connectionReady.get(), equalTo(false));
+        verify(asyncContext, times(1)).complete();
+        // the stream is finished afterwards, when it notices that connection is closed
+        streamFinished.complete(null);
+        verify(asyncContext, times(1)).complete();
+    }
+
+    private AsyncContext enableEventLoop() throws IOException {
+        when(subscriptionStreamerFactory.isEventLoopEnabled()).thenReturn(true);
+        final AsyncContext asyncContext = mock(AsyncContext.class);
+        when(requestMock.startAsync()).thenReturn(asyncContext);
+        when(responseMock.getOutputStream()).thenReturn(servletOut);
+        return asyncContext;
+    }
+
+    private SubscriptionStreamer mockStreamer(final StreamStarter starter) throws Exception {
+        final SubscriptionStreamer streamer = mock(SubscriptionStreamer.class);
+        final AtomicReference<SubscriptionOutput> output = new AtomicReference<>();
+        when(subscriptionStreamerFactory.build(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            output.set((SubscriptionOutput) invocation.getArguments()[2]);
+            return streamer;
+        });
+        when(streamer.streamAsync()).thenAnswer(invocation -> starter.start(output.get()));
+        return streamer;
+    }
+
+    private interface StreamStarter {
+        CompletableFuture<Void> start(SubscriptionOutput output) throws IOException;
+    }
+
+    /**
+     * Servlet output that is always ready to write, like the one of a fast client.
+     */
+    private static class FakeServletOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private WriteListener writeListener;
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            this.writeListener = writeListener;
+        }
+
+        @Override
+        public void write(final int b) {
+            data.write(b);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data.toByteArray(), UTF_8);
+        }
+    }
+
     protected String responseToString(final StreamingResponseBody responseBody) throws IOException {
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
         responseBody.writeTo(out);
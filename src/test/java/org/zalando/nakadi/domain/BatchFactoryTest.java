@@ -3,6 +3,7 @@ package org.zalando.nakadi.domain;
 import org.json.JSONException;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static junit.framework.TestCase.fail;
@@ -114,4 +115,60 @@ public class BatchFactoryTest {
             fail();
         } catch (JSONException e) {}
     }
+
+    @Test
+    public void testBytesMultipleEvents() {
+        final byte[] events = "[{\"name\":\"MyEvent\"},{\"name\":\"MyOtherEvent\"}]"
+                .getBytes(StandardCharsets.UTF_8);
+        final List<BatchItem> batch = BatchFactory.from(events);
+        assertEquals(2, batch.size());
+        assertEquals(18, batch.get(0).getEventSize());
+        assertEquals(23, batch.get(1).getEventSize());
+        assertEquals("{\"name\":\"MyEvent\"}", batch.get(0).getEvent().toString());
+        assertEquals("{\"name\":\"MyOtherEvent\"}", batch.get(1).getEvent().toString());
+    }
+
+    @Test
+    public void testBytesSameAsString() {
+        final String events = "\t [{\"name\":\"MyEvent\", \"array\":[{\"developer\": \"Ricardo\"}," +
+                "{\"developer\": \"Sergii\"},{\"field\":[\"hello\",\"wor\\\"}ld\"]}]},,  " +
+                "{\"name\":\"\u9999\u6e2f\", \"escaped\":\"\\\\\"}]\n";
+        final List<BatchItem> fromString = BatchFactory.from(events);
+        final List<BatchItem> fromBytes = BatchFactory.from(events.getBytes(StandardCharsets.UTF_8));
+        assertEquals(fromString.size(), fromBytes.size());
+        for (int i = 0; i < fromString.size(); i++) {
+            assertEquals(fromString.get(i).getEventSize(), fromBytes.get(i).getEventSize());
+            assertEquals(fromString.get(i).getEvent().toString(), fromBytes.get(i).getEvent().toString());
+        }
+    }
+
+    @Test
+    public void testBytesNoEvent() {
+        assertEquals(0, BatchFactory.from("[ ]".getBytes(StandardCharsets.UTF_8)).size());
+    }
+
+    @Test
+    public void testBytesMultiByteCharacters() {
+        final byte[] events = "[{\"name\":\"\u9999\u6e2f}\"}]".getBytes(StandardCharsets.UTF_8);
+        final List<BatchItem> batch = BatchFactory.from(events);
+        assertEquals(1, batch.size());
+        assertEquals(18, batch.get(0).getEventSize());
+        assertEquals("\u9999\u6e2f}", batch.get(0).getEvent().getString("name"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void testBytesMalformedJSON() {
+        BatchFactory.from("[{\"hello\":\"world\",]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = JSONException.class)
+    public void testBytesGarbageBetweenEvents() {
+        BatchFactory.from("[{\"name\":\"MyEvent\"},atb#{\"name\":\"MyOtherEvent\"}]"
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = JSONException.class)
+    public void testBytesEmptyInput() {
+        BatchFactory.from(new byte[0]);
+    }
 }
@@ -1,8 +1,17 @@
 package org.zalando.nakadi.domain;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 
 public class BatchItemTest {
 
@@ -11,4 +20,60 @@ public class BatchItemTest {
         final BatchItem item = new BatchItem("{ \"name\": \"香港\"} ");
         assertEquals(20, item.getEventSize());
     }
+
+    @Test
+    public void whenEventIsStrictJsonThenRawEventIsKept() {
+        final BatchItem item = fromBytes("{\"a\":[1,true,null,\"b\"],\"metadata\":{\"eid\":\"x\"}}");
+
+        assertThat(item.getRawEvent(), notNullValue());
+        assertThat(item.dumpEventToString(), equalTo("{\"a\":[1,true,null,\"b\"],\"metadata\":{\"eid\":\"x\"}}"));
+    }
+
+    @Test
+    public void whenEventHasSingleQuotesThenItIsSerialized() throws Exception {
+        assertIsSerialized(fromBytes("{'a':'b'}"));
+    }
+
+    @Test
+    public void whenEventHasUnquotedKeysThenItIsSerialized() throws Exception {
+        assertIsSerialized(fromBytes("{a:\"b\",\"c\":{d:1}}"));
+    }
+
+    @Test
+    public void whenEventHasTrailingGarbageThenItIsSerialized() throws Exception {
+        assertIsSerialized(fromBytes("{\"a\":\"b\"} xyz"));
+    }
+
+    @Test
+    public void whenEventHasUnquotedValuesThenItIsSerialized() throws Exception {
+        assertIsSerialized(fromBytes("{\"a\":b}"));
+    }
+
+    @Test
+    public void whenEventIsStrictJsonThenItIsParsedAsByOrgJson() {
+        final String event = "{\"i\":1,\"l\":12345678901,\"b\":123456789012345678901234567890,\"d\":-1.5e3," +
+                "\"z\":-0,\"s\":\"\\u9999\\n\",\"n\":null,\"a\":[true,false,{}],\"metadata\":{\"eid\":\"x\"}}";
+        final BatchItem item = fromBytes(event);
+
+        assertThat(item.getRawEvent(), notNullValue());
+        assertThat(item.getEvent().similar(new JSONObject(event)), equalTo(true));
+        assertThat(item.getEvent().get("b"), equalTo(new JSONObject(event).get("b")));
+        assertThat(item.getResponse().getEid(), equalTo("x"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void whenEventHasDuplicateKeysThenItIsRejected() {
+        fromBytes("{\"a\":1,\"a\":2}");
+    }
+
+    private static BatchItem fromBytes(final String event) {
+        final byte[] data = ("[" + event + "]").getBytes(StandardCharsets.UTF_8);
+        return new BatchItem(data, 1, data.length - 2);
+    }
+
+    private static void assertIsSerialized(final BatchItem item) throws Exception {
+        assertThat(item.getRawEvent(), nullValue());
+        // strict parser fails on anything that is not valid JSON
+        new ObjectMapper().readTree(item.dumpEventToBytes());
+    }
 }
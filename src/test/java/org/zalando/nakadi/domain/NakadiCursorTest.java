@@ -0,0 +1,66 @@
+package org.zalando.nakadi.domain;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+public class NakadiCursorTest {
+
+    private static final Timeline FAKE = createFakeTimeline("et");
+    private static final Timeline FIRST = new Timeline("et", 1, new Storage(), "topic1", new Date());
+    private static final Timeline SECOND = new Timeline("et", 2, new Storage(), "topic2", new Date());
+
+    @Test
+    public void whenSameTimelineThenOffsetsAreComparedAsNumbers() {
+        assertThat(cursor(FIRST, "000000000000000009").compareTo(cursor(FIRST, "000000000000000010")), lessThan(0));
+        assertThat(cursor(FIRST, "9").compareTo(cursor(FIRST, "000000000000000010")), lessThan(0));
+        assertThat(cursor(FIRST, "-1").compareTo(cursor(FIRST, "000000000000000000")), lessThan(0));
+        assertThat(cursor(FIRST, "000000000000000010").compareTo(cursor(FIRST, "000000000000000010")), equalTo(0));
+    }
+
+    @Test
+    public void whenOffsetsAreNotNumbersThenTheyAreComparedAsStrings() {
+        assertThat(cursor(FIRST, "a").compareTo(cursor(FIRST, "b")), lessThan(0));
+        assertThat(cursor(FIRST, "0000000000000000001").compareTo(cursor(FIRST, "000000000000000002")),
+                lessThan(0));
+    }
+
+    @Test
+    public void whenDifferentTimelinesThenOrderIsCompared() {
+        assertThat(cursor(SECOND, "000000000000000001").compareTo(cursor(FIRST, "000000000000000100")),
+                greaterThan(0));
+        // fake timeline and the first real timeline are sharing offsets
+        assertThat(cursor(FAKE, "000000000000000100").compareTo(cursor(FIRST, "000000000000000001")),
+                greaterThan(0));
+        assertThat(cursor(FIRST, "000000000000000001").compareTo(cursor(FAKE, "000000000000000100")),
+                lessThan(0));
+    }
+
+    @Test
+    public void whenCursorsAreEqualThenHashCodesAreEqual() {
+        assertThat(cursor(FIRST, "000000000000000010"), equalTo(cursor(FIRST, "000000000000000010")));
+        assertThat(cursor(FIRST, "000000000000000010").hashCode(),
+                equalTo(cursor(FIRST, "000000000000000010").hashCode()));
+    }
+
+    @Test
+    public void whenPartitionIsRequestedTwiceThenTheSameObjectIsReturned() {
+        final NakadiCursor cursor = cursor(FIRST, "000000000000000010");
+
+        assertThat(cursor.getEventTypePartition(), sameInstance(cursor.getEventTypePartition()));
+        assertThat(cursor.getEventTypePartition(), equalTo(new EventTypePartition("et", "0")));
+        assertThat(cursor.getTopicPartition(), sameInstance(cursor.getTopicPartition()));
+        assertThat(cursor.getTopicPartition(), equalTo(new TopicPartition("topic1", "0")));
+    }
+
+    private static NakadiCursor cursor(final Timeline timeline, final String offset) {
+        return new NakadiCursor(timeline, "0", offset);
+    }
+}
@@ -1,5 +1,7 @@
 package org.zalando.nakadi.enrichment;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.joda.time.DateTimeUtils;
 import org.json.JSONObject;
 import org.junit.Test;
@@ -9,7 +11,11 @@ import org.zalando.nakadi.exceptions.EnrichmentException;
 import org.zalando.nakadi.util.FlowIdUtils;
 import org.zalando.nakadi.utils.TestUtils;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.junit.Assert.assertThat;
 import static org.zalando.nakadi.utils.TestUtils.buildBusinessEvent;
@@ -143,4 +149,38 @@ public class MetadataEnrichmentStrategyTest {
 
         assertThat(batch.getEvent().getJSONObject("metadata").getString("partition"), equalTo(partition));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void whenCreatedFromBytesThenRawEventIsEnriched() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        final JSONObject event = buildBusinessEvent();
+        event.getJSONObject("metadata").put("partition", "wrong");
+        final byte[] data = event.toString().getBytes(StandardCharsets.UTF_8);
+        final BatchItem batch = new BatchItem(data, 0, data.length);
+        batch.setPartition("1");
+
+        FlowIdUtils.push(randomString());
+        strategy.enrich(batch, eventType);
+
+        assertThat(batch.getRawEvent(), notNullValue());
+        final JSONObject published = new JSONObject(batch.dumpEventToString());
+        assertThat(published.getJSONObject("metadata").getString("partition"), equalTo("1"));
+        assertThat(published.similar(batch.getEvent()), equalTo(true));
+    }
+
+    @Test
+    public void whenEventIsNotStrictJsonThenEnrichedEventIsSerialized() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        final byte[] data = "{metadata:{'eid':'x', occurred_at:'y'}, 'a':b}".getBytes(StandardCharsets.UTF_8);
+        final BatchItem batch = new BatchItem(data, 0, data.length);
+        batch.setPartition("1");
+
+        FlowIdUtils.push(randomString());
+        strategy.enrich(batch, eventType);
+
+        assertThat(batch.getRawEvent(), nullValue());
+        final JsonNode published = new ObjectMapper().readTree(batch.dumpEventToBytes());
+        assertThat(published.get("metadata").get("partition").asText(), equalTo("1"));
+        assertThat(published.get("a").asText(), equalTo("b"));
+    }
+}
@@ -0,0 +1,91 @@
+package org.zalando.nakadi.enrichment;
+
+import com.google.common.collect.ImmutableMap;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MetadataSplicerTest {
+
+    private static final Map<String, String> FIELDS = ImmutableMap.of(
+            "event_type", "my-et",
+            "partition", "0",
+            "received_at", "2017-08-21T00:00:00.000Z");
+
+    @Test
+    public void whenFieldsAreAddedThenExistingFieldsAreKept() {
+        assertThat(splice("{\"metadata\":{\"eid\":\"x\", \"occurred_at\" : \"y\"},\"data\":{\"a\":[1,2]}}", FIELDS),
+                equalTo("{\"metadata\":{\"eid\":\"x\",\"occurred_at\" : \"y\",\"event_type\":\"my-et\"," +
+                        "\"partition\":\"0\",\"received_at\":\"2017-08-21T00:00:00.000Z\"},\"data\":{\"a\":[1,2]}}"));
+    }
+
+    @Test
+    public void whenFieldsArePresentThenTheyAreReplaced() {
+        assertThat(splice("{\"metadata\":{\"event_type\":\"other\",\"eid\":\"x\",\"partition\":{\"a\":1}}}", FIELDS),
+                equalTo("{\"metadata\":{\"eid\":\"x\",\"event_type\":\"my-et\",\"partition\":\"0\"," +
+                        "\"received_at\":\"2017-08-21T00:00:00.000Z\"}}"));
+    }
+
+    @Test
+    public void whenMetadataIsEmptyThenFieldsAreAdded() {
+        assertThat(splice("{\"data\":\"{\\\"metadata\\\":{}}\", \"metadata\" : { } }", ImmutableMap.of("a", "b")),
+                equalTo("{\"data\":\"{\\\"metadata\\\":{}}\", \"metadata\" : {\"a\":\"b\"} }"));
+    }
+
+    @Test
+    public void whenFieldValueIsNullThenFieldIsRemoved() {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("flow_id", null);
+        assertThat(splice("{\"metadata\":{\"flow_id\":null,\"eid\":\"x\"}}", fields),
+                equalTo("{\"metadata\":{\"eid\":\"x\"}}"));
+    }
+
+    @Test
+    public void whenValueNeedsEscapingThenItIsEscaped() {
+        assertThat(splice("{\"metadata\":{}}", ImmutableMap.of("flow_id", "a\"b\\c")),
+                equalTo("{\"metadata\":{\"flow_id\":\"a\\\"b\\\\c\"}}"));
+    }
+
+    @Test
+    public void whenSlicedThenOnlySliceIsUsed() {
+        final byte[] data = "[{\"metadata\":{}},{\"metadata\":{\"eid\":\"香港\"}}]"
+                .getBytes(StandardCharsets.UTF_8);
+        final byte[] result = MetadataSplicer.splice(data, 17, data.length - 18, ImmutableMap.of("a", "b"));
+        assertThat(new String(result, StandardCharsets.UTF_8),
+                equalTo("{\"metadata\":{\"eid\":\"香港\",\"a\":\"b\"}}"));
+    }
+
+    @Test
+    public void whenResultIsParsedThenItIsEqualToEnrichedEvent() {
+        final String event = "{\"b\":[{\"c\":\"}\"}, true, -1.5e3],\"metadata\":{\"eid\":\"x\",\"version\":\"0\"}}";
+        final JSONObject expected = new JSONObject(event);
+        FIELDS.forEach(expected.getJSONObject("metadata")::put);
+
+        assertThat(new JSONObject(splice(event, FIELDS)).similar(expected), equalTo(true));
+    }
+
+    @Test
+    public void whenEventIsNotStrictJsonThenNullIsReturned() {
+        assertThat(splice("{'metadata':{}}", FIELDS), nullValue());
+        assertThat(splice("{\"a\":'b',\"metadata\":{}}", FIELDS), nullValue());
+        assertThat(splice("{\"a\":[{'b':'}'}],\"metadata\":{}}", FIELDS), nullValue());
+        assertThat(splice("{\"metadata\":{\"eid\":abc def}}", FIELDS), nullValue());
+        assertThat(splice("{\"metadata\":{\"ev\\u0065nt_type\":\"x\"}}", FIELDS), nullValue());
+        assertThat(splice("{\"metadata\"=>{}}", FIELDS), nullValue());
+        assertThat(splice("{\"metadata\":{\"eid\":abc}}", FIELDS), nullValue());
+        assertThat(splice("{\"metadata\":{\"eid\":truex}}", FIELDS), nullValue());
+    }
+
+    private static String splice(final String event, final Map<String, String> fields) {
+        final byte[] data = event.getBytes(StandardCharsets.UTF_8);
+        final byte[] result = MetadataSplicer.splice(data, 0, data.length, fields);
+        return null == result ? null : new String(result, StandardCharsets.UTF_8);
+    }
+}
@@ -5,8 +5,11 @@ import org.apache.commons.lang3.StringUtils;
 import org.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.zalando.nakadi.domain.EventCategory;
 import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.exceptions.Try;
+import org.zalando.nakadi.repository.db.EventTypeCache;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -18,6 +21,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.lang.Integer.parseInt;
@@ -36,6 +40,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.zalando.nakadi.partitioning.PartitionStrategy.HASH_STRATEGY;
 import static org.zalando.nakadi.utils.TestUtils.loadEventType;
@@ -52,6 +58,8 @@ public class HashPartitionStrategyTest {
     private static List<JSONObject> eventSamplesB = null;
     private static List<JSONObject> eventSamplesC = null;
 
+    private final HashPartitionStrategyCrutch hashPartitioningCrutch;
+    private final EventTypeCache eventTypeCache;
     private final HashPartitionStrategy strategy;
     private final EventType simpleEventType;
     private final ArrayList<List<JSONObject>> partitions = createEmptyPartitions(PARTITIONS.length);
@@ -60,11 +68,12 @@ public class HashPartitionStrategyTest {
         simpleEventType = new EventType();
         simpleEventType.setPartitionKeyFields(asList("sku", "name"));
 
-        final HashPartitionStrategyCrutch hashPartitioningCrutch = mock(HashPartitionStrategyCrutch.class);
+        hashPartitioningCrutch = mock(HashPartitionStrategyCrutch.class);
         when(hashPartitioningCrutch.adjustPartitionIndex(anyInt(), anyInt()))
                 .thenAnswer(invocation -> invocation.getArguments()[0]); // don't do any adjustments
 
-        strategy = new HashPartitionStrategy(hashPartitioningCrutch, new StringHash());
+        eventTypeCache = mock(EventTypeCache.class);
+        strategy = new HashPartitionStrategy(hashPartitioningCrutch, new StringHash(), eventTypeCache);
     }
 
     @Test
@@ -171,6 +180,62 @@ public class HashPartitionStrategyTest {
         assertThat(strategy.calculatePartition(eventType, event, ImmutableList.of("p0")), equalTo("p0"));
     }
 
+    @Test
+    public void whenPartitioningIsCompiledThenPartitionsAreSameAsBefore() throws Exception {
+        // partition index is the absolute sum of String.hashCode() of the key values modulo partitions count,
+        // adjusted by the crutch and taken from the sorted partitions
+        final HashPartitionStrategyCrutch reversingCrutch = mock(HashPartitionStrategyCrutch.class);
+        when(reversingCrutch.adjustPartitionIndex(anyInt(), anyInt()))
+                .thenAnswer(invocation -> (int) invocation.getArguments()[1] - 1 - (int) invocation.getArguments()[0]);
+        final PartitionStrategy compiled = new HashPartitionStrategy(reversingCrutch, new StringHash(), eventTypeCache);
+        final List<String> unsortedPartitions = asList("3", "1", "0", "2");
+
+        final EventType eventType = new EventType();
+        eventType.setName("et");
+        eventType.setPartitionKeyFields(asList("sku", "name"));
+        final String[][] businessEvents = {
+                {"ABC-123", "shirt", "0"},
+                {"XYZ-999", "trousers", "3"},
+                {"Q-1", "socks", "3"},
+                {"sku-42", "hat", "0"},
+                {"0001", "", "2"}};
+        for (final String[] values : businessEvents) {
+            final JSONObject event = new JSONObject().put("sku", values[0]).put("name", values[1]);
+            assertThat(compiled.calculatePartition(eventType, event, unsortedPartitions), equalTo(values[2]));
+        }
+
+        final EventType dataEventType = new EventType();
+        dataEventType.setName("data-et");
+        dataEventType.setCategory(EventCategory.DATA);
+        dataEventType.setPartitionKeyFields(asList("order.id"));
+        final String[][] dataEvents = {
+                {"order-1", "1"},
+                {"order-2", "2"},
+                {"order-3", "3"},
+                {"order-4", "0"}};
+        for (final String[] values : dataEvents) {
+            final JSONObject event = new JSONObject().put("data", new JSONObject()
+                    .put("order", new JSONObject().put("id", values[0])));
+            assertThat(compiled.calculatePartition(dataEventType, event, unsortedPartitions), equalTo(values[1]));
+        }
+    }
+
+    @Test
+    public void whenEventTypeIsInvalidatedThenPartitioningIsCompiledAgain() throws Exception {
+        final ArgumentCaptor<Consumer> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(eventTypeCache).addInvalidationListener(listener.capture());
+        simpleEventType.setName("et");
+        final JSONObject event = randomArticleEvent();
+
+        strategy.calculatePartition(simpleEventType, event, asList(PARTITIONS));
+        strategy.calculatePartition(simpleEventType, event, asList(PARTITIONS));
+        verify(hashPartitioningCrutch, times(PARTITIONS.length)).adjustPartitionIndex(anyInt(), anyInt());
+
+        listener.getValue().accept("et");
+        strategy.calculatePartition(simpleEventType, event, asList(PARTITIONS));
+        verify(hashPartitioningCrutch, times(2 * PARTITIONS.length)).adjustPartitionIndex(anyInt(), anyInt());
+    }
+
     private double calculateVarianceOfUniformDistribution(final double[] samples) {
         final double xSum = stream(samples).sum();
         final double xPow2Sum = stream(samples).map(d -> pow(d, 2)).sum();
@@ -0,0 +1,57 @@
+package org.zalando.nakadi.repository;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ConsumerTuningTest {
+
+    @Test
+    public void whenSingleEventBatchesThenEventsAreFetchedImmediately() {
+        final Properties properties = new Properties();
+        ConsumerTuning.forLowLevelStream(1, 30000).applyTo(properties);
+
+        assertThat(properties.get("max.poll.records"), equalTo(ConsumerTuning.MIN_POLL_RECORDS));
+        assertThat(properties.get("fetch.min.bytes"), equalTo(1));
+        assertThat(properties.get("fetch.max.wait.ms"), equalTo(500));
+    }
+
+    @Test
+    public void whenBigBatchesThenMoreDataIsFetchedAtOnce() {
+        final Properties properties = new Properties();
+        ConsumerTuning.forLowLevelStream(1000, 1000).applyTo(properties);
+
+        assertThat(properties.get("max.poll.records"), equalTo(4000));
+        assertThat(properties.get("fetch.min.bytes"), equalTo(256000));
+        assertThat(properties.get("fetch.max.wait.ms"), equalTo(100));
+    }
+
+    @Test
+    public void whenSubscriptionStreamThenPollIsLimitedByUncommittedEvents() {
+        final ConsumerTuning tuning = ConsumerTuning.forSubscriptionStream(100, 150, 30000);
+        assertThat(tuning.getMaxPollRecords(0), equalTo(150));
+    }
+
+    @Test
+    public void whenHugeBatchesThenTuningIsCapped() {
+        final Properties properties = new Properties();
+        ConsumerTuning.forLowLevelStream(Integer.MAX_VALUE, Long.MAX_VALUE).applyTo(properties);
+
+        assertThat(properties.get("max.poll.records"), equalTo(ConsumerTuning.MAX_POLL_RECORDS));
+        assertThat(properties.get("fetch.min.bytes"), equalTo(1024 * 1024));
+        assertThat(properties.get("fetch.max.wait.ms"), equalTo(500));
+    }
+
+    @Test
+    public void whenDefaultThenConsumerPropertiesAreNotChanged() {
+        final Properties properties = new Properties();
+        ConsumerTuning.DEFAULT.applyTo(properties);
+
+        assertThat(properties.isEmpty(), is(true));
+        assertThat(ConsumerTuning.DEFAULT.getMaxPollRecords(500), equalTo(500));
+    }
+}
@@ -0,0 +1,93 @@
+package org.zalando.nakadi.repository.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CompressionMetricsTest {
+
+    private static final String TOPIC = "topic";
+    private static final String EVENT_TYPE = "event-type";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics(metricRegistry);
+    private final Producer<String, byte[]> producer = mock(Producer.class);
+    private final Metric compressionRate = mock(Metric.class);
+
+    @Test
+    public void whenBatchIsPublishedThenCompressionIsReported() {
+        mockMetrics(ImmutableMap.of(
+                new MetricName("compression-rate", "producer-topic-metrics", "", ImmutableMap.of("topic", "other")),
+                mock(Metric.class),
+                new MetricName("compression-rate", "producer-topic-metrics", "", ImmutableMap.of("topic", TOPIC)),
+                compressionRate));
+        when(compressionRate.value()).thenReturn(0.25);
+
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+
+        assertThat(metricRegistry.getGauges().get("nakadi.publishing.event-type.compression_ratio").getValue(),
+                equalTo(25L));
+        assertThat(metricRegistry.counter("nakadi.publishing.event-type.compression_bytes_saved").getCount(),
+                equalTo(1500L));
+        verify(producer, times(1)).metrics();
+    }
+
+    @Test
+    public void whenProducerCompressionRateChangesThenGaugeReportsCurrentRate() {
+        mockMetrics(ImmutableMap.of(
+                new MetricName("compression-rate", "producer-topic-metrics", "", ImmutableMap.of("topic", TOPIC)),
+                compressionRate));
+        when(compressionRate.value()).thenReturn(0.25);
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+
+        when(compressionRate.value()).thenReturn(0.5);
+
+        assertThat(metricRegistry.getGauges().get("nakadi.publishing.event-type.compression_ratio").getValue(),
+                equalTo(50L));
+    }
+
+    @Test
+    public void whenProducerIsClosedThenItsRateIsForgotten() {
+        mockMetrics(ImmutableMap.of(
+                new MetricName("compression-rate", "producer-topic-metrics", "", ImmutableMap.of("topic", TOPIC)),
+                compressionRate));
+        when(compressionRate.value()).thenReturn(0.25);
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+
+        compressionMetrics.onProducerClosed(producer);
+
+        assertThat(metricRegistry.getGauges().get("nakadi.publishing.event-type.compression_ratio").getValue(),
+                nullValue());
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+        verify(producer, times(2)).metrics();
+    }
+
+    @Test
+    public void whenCompressionRateIsNotKnownThenNothingIsReported() {
+        mockMetrics(ImmutableMap.of());
+
+        compressionMetrics.record(EVENT_TYPE, TOPIC, producer, 1000);
+
+        assertThat(metricRegistry.getNames().isEmpty(), is(true));
+    }
+
+    private void mockMetrics(final Map<MetricName, Metric> metrics) {
+        doReturn(metrics).when(producer).metrics();
+    }
+}
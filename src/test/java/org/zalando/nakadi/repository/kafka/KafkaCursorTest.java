@@ -34,4 +34,12 @@ public class KafkaCursorTest {
             Assert.assertEquals(ex.getError(), CursorError.INVALID_FORMAT);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testToNakadiOffsetIsZeroPadded() {
+        for (final long offset : new long[]{-1L, 0L, 1L, 123456789L, 999999999999999999L, Long.MAX_VALUE}) {
+            Assert.assertEquals(offset >= 0 ? String.format("%018d", offset) : String.valueOf(offset),
+                    KafkaCursor.toNakadiOffset(offset));
+        }
+    }
+}
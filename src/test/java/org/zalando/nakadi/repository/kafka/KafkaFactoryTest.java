@@ -2,45 +2,62 @@ package org.zalando.nakadi.repository.kafka;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
 import org.apache.kafka.clients.producer.Producer;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.zalando.nakadi.domain.EventTypeOptions;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class KafkaFactoryTest {
+    private static final String TOPIC = "topic";
+
     private static class FakeKafkaFactory extends KafkaFactory {
 
-        FakeKafkaFactory(final MetricRegistry metricRegistry) {
-            super(null, metricRegistry);
+        FakeKafkaFactory(final MetricRegistry metricRegistry, final int producersCount) {
+            super(null, metricRegistry, producersCount);
         }
 
         @Override
-        protected Producer<String, String> createProducerInstance() {
+        protected Producer<String, byte[]> createProducerInstance(final ProducerOptions options) {
             return Mockito.mock(Producer.class);
         }
+
+        @Override
+        protected long currentTimeMillis() {
+            // time is passed to closeIdlePools explicitly
+            return 0;
+        }
     }
 
-    private static KafkaFactory createTestKafkaFactory() {
+    private static FakeKafkaFactory createTestKafkaFactory() {
+        return createTestKafkaFactory(1);
+    }
+
+    private static FakeKafkaFactory createTestKafkaFactory(final int producersCount) {
         final MetricRegistry reg = Mockito.mock(MetricRegistry.class);
         Mockito.when(reg.counter(Mockito.anyString())).thenReturn(Mockito.mock(Counter.class));
-        return new FakeKafkaFactory(reg);
+        return new FakeKafkaFactory(reg, producersCount);
     }
 
     @Test
     public void verifySameProducerUsed() {
         final KafkaFactory factory = createTestKafkaFactory();
-        final Producer<String, String> producer1 = factory.takeProducer();
+        final Producer<String, byte[]> producer1 = factory.takeProducer(TOPIC);
         try {
             Assert.assertNotNull(producer1);
         } finally {
             factory.releaseProducer(producer1);
         }
 
-        final Producer<String, String> producer2 = factory.takeProducer();
+        final Producer<String, byte[]> producer2 = factory.takeProducer(TOPIC);
         try {
             Assert.assertSame(producer1, producer2);
         } finally {
@@ -52,9 +69,9 @@ public class KafkaFactoryTest {
     public void verifyProducerIsClosedAtCorrectTime() {
         final KafkaFactory factory = createTestKafkaFactory();
 
-        final List<Producer<String, String>> producers1 = IntStream.range(0, 10)
-                .mapToObj(ignore -> factory.takeProducer()).collect(Collectors.toList());
-        final Producer<String, String> producer = producers1.get(0);
+        final List<Producer<String, byte[]>> producers1 = IntStream.range(0, 10)
+                .mapToObj(ignore -> factory.takeProducer(TOPIC)).collect(Collectors.toList());
+        final Producer<String, byte[]> producer = producers1.get(0);
         Assert.assertNotNull(producer);
         producers1.forEach(p -> Assert.assertSame(producer, p));
         producers1.forEach(factory::releaseProducer);
@@ -62,9 +79,9 @@ public class KafkaFactoryTest {
         Mockito.verify(producer, Mockito.times(0)).close();
 
 
-        final List<Producer<String, String>> producers2 = IntStream.range(0, 10)
-                .mapToObj(ignore -> factory.takeProducer()).collect(Collectors.toList());
-        final Producer<String, String> additionalProducer = factory.takeProducer();
+        final List<Producer<String, byte[]>> producers2 = IntStream.range(0, 10)
+                .mapToObj(ignore -> factory.takeProducer(TOPIC)).collect(Collectors.toList());
+        final Producer<String, byte[]> additionalProducer = factory.takeProducer(TOPIC);
 
         Assert.assertSame(producer, additionalProducer);
         producers2.forEach(p -> Assert.assertSame(producer, p));
@@ -82,16 +99,165 @@ public class KafkaFactoryTest {
     @Test
     public void verifyNewProducerCreatedAfterClose() {
         final KafkaFactory factory = createTestKafkaFactory();
-        final Producer<String, String> producer1 = factory.takeProducer();
+        final Producer<String, byte[]> producer1 = factory.takeProducer(TOPIC);
         Assert.assertNotNull(producer1);
         factory.terminateProducer(producer1);
         factory.releaseProducer(producer1);
         Mockito.verify(producer1, Mockito.times(1)).close();
 
-        final Producer<String, String> producer2 = factory.takeProducer();
+        final Producer<String, byte[]> producer2 = factory.takeProducer(TOPIC);
         Assert.assertNotNull(producer2);
         Assert.assertNotSame(producer1, producer2);
         factory.releaseProducer(producer2);
         Mockito.verify(producer2, Mockito.times(0)).close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void verifyCloseListenersAreNotifiedWhenProducerIsClosed() {
+        final KafkaFactory factory = createTestKafkaFactory();
+        final List<Producer<String, byte[]>> closed = new ArrayList<>();
+        factory.addProducerCloseListener(closed::add);
+        final Producer<String, byte[]> producer = factory.takeProducer(TOPIC);
+        factory.terminateProducer(producer);
+        Assert.assertTrue(closed.isEmpty());
+
+        factory.releaseProducer(producer);
+        Assert.assertEquals(ImmutableList.of(producer), closed);
+    }
+
+    @Test
+    public void verifyProducersArePooledByTopic() {
+        final KafkaFactory factory = createTestKafkaFactory(4);
+        final Set<Producer<String, byte[]>> producers = new HashSet<>();
+        for (int i = 0; i < 100; ++i) {
+            final String topic = "topic-" + i;
+            final Producer<String, byte[]> producer = factory.takeProducer(topic);
+            final Producer<String, byte[]> sameTopicProducer = factory.takeProducer(topic);
+            factory.releaseProducer(sameTopicProducer);
+            factory.releaseProducer(producer);
+
+            Assert.assertSame(producer, sameTopicProducer);
+            producers.add(producer);
+        }
+        Assert.assertEquals(4, producers.size());
+    }
+
+    @Test
+    public void verifyTerminationReplacesOnlyOneProducer() {
+        final KafkaFactory factory = createTestKafkaFactory(2);
+        final String otherTopic = IntStream.range(0, 100).mapToObj(i -> "topic-" + i)
+                .filter(topic -> {
+                    final Producer<String, byte[]> topicProducer = factory.takeProducer(topic);
+                    final Producer<String, byte[]> defaultProducer = factory.takeProducer(TOPIC);
+                    try {
+                        return topicProducer != defaultProducer;
+                    } finally {
+                        factory.releaseProducer(defaultProducer);
+                        factory.releaseProducer(topicProducer);
+                    }
+                })
+                .findFirst()
+                .get();
+        final Producer<String, byte[]> producer = factory.takeProducer(TOPIC);
+        final Producer<String, byte[]> otherProducer = factory.takeProducer(otherTopic);
+        try {
+            factory.terminateProducer(producer);
+            factory.terminateProducer(producer);
+
+            final Producer<String, byte[]> newProducer = factory.takeProducer(TOPIC);
+            try {
+                Assert.assertNotSame(producer, newProducer);
+            } finally {
+                factory.releaseProducer(newProducer);
+            }
+            final Producer<String, byte[]> sameOtherProducer = factory.takeProducer(otherTopic);
+            try {
+                Assert.assertSame(otherProducer, sameOtherProducer);
+            } finally {
+                factory.releaseProducer(sameOtherProducer);
+            }
+            Mockito.verify(otherProducer, Mockito.times(0)).close();
+        } finally {
+            factory.releaseProducer(otherProducer);
+            factory.releaseProducer(producer);
+        }
+    }
+
+    @Test
+    public void verifyProducersArePooledByOptions() {
+        final KafkaFactory factory = createTestKafkaFactory();
+        final List<Producer<String, byte[]>> taken = new ArrayList<>();
+        try {
+            final Producer<String, byte[]> defaultProducer = take(factory, taken, ProducerOptions.DEFAULT);
+            final Producer<String, byte[]> lz4Producer = take(factory, taken, new ProducerOptions("lz4", 5L));
+            final Producer<String, byte[]> sameLz4Producer = take(factory, taken, new ProducerOptions("lz4", 5L));
+            final Producer<String, byte[]> snappyProducer = take(factory, taken, new ProducerOptions("snappy", 5L));
+
+            Assert.assertSame(lz4Producer, sameLz4Producer);
+            Assert.assertNotSame(defaultProducer, lz4Producer);
+            Assert.assertNotSame(lz4Producer, snappyProducer);
+            Assert.assertSame(defaultProducer, take(factory, taken, ProducerOptions.DEFAULT));
+        } finally {
+            taken.forEach(factory::releaseProducer);
+        }
+    }
+
+    @Test
+    public void verifyLingerTimeIsRoundedToBucket() {
+        Assert.assertEquals(ProducerOptions.of(options("lz4", 7L)), ProducerOptions.of(options("lz4", 9L)));
+        Assert.assertEquals(new ProducerOptions("lz4", 5L), ProducerOptions.of(options("lz4", 7L)));
+        Assert.assertEquals(new ProducerOptions("lz4", 0L), ProducerOptions.of(options("lz4", 0L)));
+        Assert.assertEquals(new ProducerOptions("lz4", 1000L), ProducerOptions.of(options("lz4", 5000L)));
+    }
+
+    @Test
+    public void verifyIdlePoolIsClosed() {
+        final FakeKafkaFactory factory = createTestKafkaFactory();
+        final ProducerOptions options = new ProducerOptions("lz4", 5L);
+        final Producer<String, byte[]> defaultProducer = factory.takeProducer(TOPIC);
+        final Producer<String, byte[]> producer = factory.takeProducer(TOPIC, options);
+        factory.releaseProducer(defaultProducer);
+        factory.releaseProducer(producer);
+
+        factory.closeIdlePools(KafkaFactory.POOL_IDLE_TIMEOUT_MS - 1);
+        Mockito.verify(producer, Mockito.times(0)).close();
+
+        factory.closeIdlePools(KafkaFactory.POOL_IDLE_TIMEOUT_MS);
+        Mockito.verify(producer, Mockito.times(1)).close();
+        Mockito.verify(defaultProducer, Mockito.times(0)).close();
+
+        final Producer<String, byte[]> newProducer = factory.takeProducer(TOPIC, options);
+        Assert.assertNotSame(producer, newProducer);
+        factory.releaseProducer(newProducer);
+    }
+
+    @Test
+    public void verifyPoolInUseIsNotClosed() {
+        final FakeKafkaFactory factory = createTestKafkaFactory();
+        final ProducerOptions options = new ProducerOptions("lz4", 5L);
+        final Producer<String, byte[]> producer = factory.takeProducer(TOPIC, options);
+
+        factory.closeIdlePools(KafkaFactory.POOL_IDLE_TIMEOUT_MS);
+        Mockito.verify(producer, Mockito.times(0)).close();
+
+        final Producer<String, byte[]> sameProducer = factory.takeProducer(TOPIC, options);
+        Assert.assertSame(producer, sameProducer);
+        factory.releaseProducer(sameProducer);
+        factory.releaseProducer(producer);
+    }
+
+    private static Producer<String, byte[]> take(final KafkaFactory factory,
+                                                 final List<Producer<String, byte[]>> taken,
+                                                 final ProducerOptions options) {
+        final Producer<String, byte[]> producer = factory.takeProducer(TOPIC, options);
+        taken.add(producer);
+        return producer;
+    }
+
+    private static EventTypeOptions options(final String compressionType, final Long lingerTime) {
+        final EventTypeOptions options = new EventTypeOptions();
+        options.setCompressionType(compressionType);
+        options.setLingerTime(lingerTime);
+        return options;
+    }
+}
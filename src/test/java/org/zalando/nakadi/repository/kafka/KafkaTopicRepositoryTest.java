@@ -1,5 +1,6 @@
 package org.zalando.nakadi.repository.kafka;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.apache.curator.framework.CuratorFramework;
@@ -20,6 +21,7 @@ import org.zalando.nakadi.config.NakadiSettings;
 import org.zalando.nakadi.domain.BatchItem;
 import org.zalando.nakadi.domain.CursorError;
 import org.zalando.nakadi.domain.EventPublishingStatus;
+import org.zalando.nakadi.domain.EventType;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.PartitionEndStatistics;
 import org.zalando.nakadi.domain.PartitionStatistics;
@@ -27,17 +29,22 @@ import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.EventPublishingException;
 import org.zalando.nakadi.exceptions.InvalidCursorException;
 import org.zalando.nakadi.exceptions.NakadiException;
+import org.zalando.nakadi.repository.ConsumerTuning;
 import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
 import org.zalando.nakadi.repository.zookeeper.ZookeeperSettings;
 import org.zalando.nakadi.util.UUIDGenerator;
 import org.zalando.nakadi.view.Cursor;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Sets.newHashSet;
@@ -46,14 +53,17 @@ import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.zalando.nakadi.utils.TestUtils.buildDefaultEventType;
 import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
 
 public class KafkaTopicRepositoryTest {
@@ -68,6 +78,7 @@ public class KafkaTopicRepositoryTest {
     @SuppressWarnings("unchecked")
     public static final ProducerRecord EXPECTED_PRODUCER_RECORD = new ProducerRecord(MY_TOPIC, 0, "0", "payload");
 
+    private static final EventType EVENT_TYPE = buildDefaultEventType();
     private static final Set<PartitionState> PARTITIONS;
 
     static {
@@ -99,7 +110,7 @@ public class KafkaTopicRepositoryTest {
             cursor("5", "30"), cursor("9", "100"));
 
     private final KafkaTopicRepository kafkaTopicRepository;
-    private final KafkaProducer<String, String> kafkaProducer;
+    private final KafkaProducer<String, byte[]> kafkaProducer;
     private final KafkaFactory kafkaFactory;
 
     @SuppressWarnings("unchecked")
@@ -134,22 +145,38 @@ public class KafkaTopicRepositoryTest {
                 .collect(toList());
     }
 
+    private void postBatch(final String topic, final List<BatchItem> batch) throws Exception {
+        try {
+            kafkaTopicRepository.postBatch(topic, batch, EVENT_TYPE).get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof EventPublishingException) {
+                throw (EventPublishingException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void createEventConsumer(final String clientId, final List<NakadiCursor> positions)
+            throws NakadiException, InvalidCursorException {
+        kafkaTopicRepository.createEventConsumer(clientId, positions, ConsumerTuning.DEFAULT);
+    }
+
     @Test
     @SuppressWarnings("ArraysAsListWithZeroOrOneArgument")
     public void validateValidCursors() throws NakadiException, InvalidCursorException {
         // validate each individual valid cursor
         for (final Cursor cursor : MY_TOPIC_VALID_CURSORS) {
-            kafkaTopicRepository.createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(cursor)));
+            createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(cursor)));
         }
         // validate all valid cursors
-        kafkaTopicRepository.createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, MY_TOPIC_VALID_CURSORS));
+        createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, MY_TOPIC_VALID_CURSORS));
 
         // validate each individual valid cursor
         for (final Cursor cursor : ANOTHER_TOPIC_VALID_CURSORS) {
-            kafkaTopicRepository.createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(ANOTHER_TOPIC, asList(cursor)));
+            createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(ANOTHER_TOPIC, asList(cursor)));
         }
         // validate all valid cursors
-        kafkaTopicRepository.createEventConsumer(
+        createEventConsumer(
                 KAFKA_CLIENT_ID, asTopicPosition(ANOTHER_TOPIC, ANOTHER_TOPIC_VALID_CURSORS));
     }
 
@@ -158,7 +185,7 @@ public class KafkaTopicRepositoryTest {
     public void invalidateInvalidCursors() throws NakadiException {
         final Cursor outOfBoundOffset = cursor("0", "38");
         try {
-            kafkaTopicRepository.createEventConsumer(
+            createEventConsumer(
                     KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(outOfBoundOffset)));
         } catch (final InvalidCursorException e) {
             assertThat(e.getError(), equalTo(CursorError.UNAVAILABLE));
@@ -166,7 +193,7 @@ public class KafkaTopicRepositoryTest {
 
         final Cursor nonExistingPartition = cursor("99", "100");
         try {
-            kafkaTopicRepository.createEventConsumer(
+            createEventConsumer(
                     KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(nonExistingPartition)));
         } catch (final InvalidCursorException e) {
             assertThat(e.getError(), equalTo(CursorError.PARTITION_NOT_FOUND));
@@ -174,7 +201,7 @@ public class KafkaTopicRepositoryTest {
 
         final Cursor wrongOffset = cursor("0", "blah");
         try {
-            kafkaTopicRepository.createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(wrongOffset)));
+            createEventConsumer(KAFKA_CLIENT_ID, asTopicPosition(MY_TOPIC, asList(wrongOffset)));
         } catch (final InvalidCursorException e) {
             assertThat(e.getError(), equalTo(CursorError.INVALID_FORMAT));
         }
@@ -235,7 +262,7 @@ public class KafkaTopicRepositoryTest {
                 .send(any(), any());
 
         try {
-            kafkaTopicRepository.syncPostBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
+            postBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
             fail();
         } catch (final EventPublishingException e) {
             assertThat(item.getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.FAILED));
@@ -259,7 +286,7 @@ public class KafkaTopicRepositoryTest {
                 .send(any(), any());
 
         try {
-            kafkaTopicRepository.syncPostBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
+            postBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
             fail();
         } catch (final EventPublishingException e) {
             assertThat(item.getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.FAILED));
@@ -292,7 +319,7 @@ public class KafkaTopicRepositoryTest {
         });
 
         try {
-            kafkaTopicRepository.syncPostBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
+            postBatch(EXPECTED_PRODUCER_RECORD.topic(), batch);
             fail();
         } catch (final EventPublishingException e) {
             assertThat(firstItem.getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.SUBMITTED));
@@ -302,6 +329,52 @@ public class KafkaTopicRepositoryTest {
         }
     }
 
+    @Test
+    public void whenPostBatchThenItIsCompletedByKafkaCallbacks() throws Exception {
+        final BatchItem item = new BatchItem("{}");
+        item.setPartition("1");
+        final List<BatchItem> batch = ImmutableList.of(item);
+
+        when(kafkaProducer.partitionsFor(EXPECTED_PRODUCER_RECORD.topic())).thenReturn(ImmutableList.of(
+                new PartitionInfo(EXPECTED_PRODUCER_RECORD.topic(), 1, new Node(1, "host", 9091), null, null)));
+        when(nakadiSettings.getKafkaSendTimeoutMs()).thenReturn(10000L);
+        final List<Callback> callbacks = new ArrayList<>();
+        when(kafkaProducer.send(any(), any())).thenAnswer(invocation -> {
+            callbacks.add((Callback) invocation.getArguments()[1]);
+            return null;
+        });
+
+        final CompletableFuture<List<BatchItem>> result =
+                kafkaTopicRepository.postBatch(EXPECTED_PRODUCER_RECORD.topic(), batch, EVENT_TYPE);
+        assertThat(result.isDone(), is(false));
+
+        callbacks.get(0).onCompletion(null, null);
+        assertThat(result.get(5, TimeUnit.SECONDS), equalTo(batch));
+        assertThat(item.getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.SUBMITTED));
+    }
+
+    @Test
+    public void whenPostBatchThenRawEventBytesAreSent() throws Exception {
+        final byte[] rawEvent = "{\"a\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+        final BatchItem item = new BatchItem(rawEvent, 0, rawEvent.length);
+        item.setPartition("1");
+
+        when(kafkaProducer.partitionsFor(EXPECTED_PRODUCER_RECORD.topic())).thenReturn(ImmutableList.of(
+                new PartitionInfo(EXPECTED_PRODUCER_RECORD.topic(), 1, new Node(1, "host", 9091), null, null)));
+        when(nakadiSettings.getKafkaSendTimeoutMs()).thenReturn(10000L);
+        final List<ProducerRecord> records = new ArrayList<>();
+        when(kafkaProducer.send(any(), any())).thenAnswer(invocation -> {
+            records.add((ProducerRecord) invocation.getArguments()[0]);
+            ((Callback) invocation.getArguments()[1]).onCompletion(null, null);
+            return null;
+        });
+
+        postBatch(EXPECTED_PRODUCER_RECORD.topic(), ImmutableList.of(item));
+
+        assertThat(records.get(0).value(), sameInstance(rawEvent));
+        assertThat(records.get(0).key(), equalTo("1"));
+    }
+
     @Test
     public void whenValidateCommitCursorsThenOk() throws InvalidCursorException {
         kafkaTopicRepository.validateCommitCursor(new NakadiCursor(createFakeTimeline(MY_TOPIC), "0", "23"));
@@ -346,7 +419,7 @@ public class KafkaTopicRepositoryTest {
                 final BatchItem batchItem = new BatchItem("{}");
                 batchItem.setPartition("1");
                 batches.add(batchItem);
-                kafkaTopicRepository.syncPostBatch(EXPECTED_PRODUCER_RECORD.topic(), ImmutableList.of(batchItem));
+                postBatch(EXPECTED_PRODUCER_RECORD.topic(), ImmutableList.of(batchItem));
                 fail();
             } catch (final EventPublishingException e) {
             }
@@ -358,6 +431,11 @@ public class KafkaTopicRepositoryTest {
                 .count() >= 1);
     }
 
+    private void createEventConsumer(final String clientId, final List<NakadiCursor> positions)
+            throws ServiceUnavailableException, InvalidCursorException {
+        kafkaTopicRepository.createEventConsumer(clientId, positions, ConsumerTuning.DEFAULT);
+    }
+
     private static Cursor cursor(final String partition, final String offset) {
         return new Cursor(partition, offset);
     }
@@ -369,7 +447,8 @@ public class KafkaTopicRepositoryTest {
                     nakadiSettings,
                     kafkaSettings,
                     zookeeperSettings,
-                    new UUIDGenerator());
+                    new UUIDGenerator(),
+                    new MetricRegistry());
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
@@ -430,9 +509,10 @@ public class KafkaTopicRepositoryTest {
         // KafkaFactory
         final KafkaFactory kafkaFactory = mock(KafkaFactory.class);
 
-        when(kafkaFactory.getConsumer(KAFKA_CLIENT_ID)).thenReturn(consumer);
+        when(kafkaFactory.getConsumer(eq(KAFKA_CLIENT_ID), any())).thenReturn(consumer);
         when(kafkaFactory.getConsumer()).thenReturn(consumer);
-        when(kafkaFactory.takeProducer()).thenReturn(kafkaProducer);
+        when(kafkaFactory.takeProducer(anyString())).thenReturn(kafkaProducer);
+        when(kafkaFactory.takeProducer(anyString(), any())).thenReturn(kafkaProducer);
 
         return kafkaFactory;
     }
@@ -12,6 +12,7 @@ import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.utils.TestUtils;
 
@@ -23,7 +24,7 @@ import static junit.framework.TestCase.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
-import static org.mockito.Matchers.any;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -41,7 +42,7 @@ import static org.zalando.nakadi.utils.TestUtils.randomULong;
 public class NakadiKafkaConsumerTest {
 
     private static final String TOPIC = TestUtils.randomValidEventTypeName();
-    private static final int PARTITION = randomUInt();
+    private static final int PARTITION = randomUInt() % 100;
     private static final long POLL_TIMEOUT = randomULong();
 
     private static KafkaCursor kafkaCursor(final String topic, final int partition, final long offset) {
@@ -49,10 +50,7 @@ public class NakadiKafkaConsumerTest {
     }
 
     private static Map<TopicPartition, Timeline> createTpTimelineMap() {
-        final Timeline timeline = createFakeTimeline(TOPIC);
-        final Map<TopicPartition, Timeline> mockMap = mock(Map.class);
-        when(mockMap.get(any())).thenReturn(timeline);
-        return mockMap;
+        return ImmutableMap.of(new TopicPartition(TOPIC, PARTITION), createFakeTimeline(TOPIC));
     }
 
     @Test
@@ -146,6 +144,60 @@ public class NakadiKafkaConsumerTest {
                 equalTo(POLL_TIMEOUT));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenReadEventsThenTimelineIsResolvedByTopicAndPartition() {
+        final String otherTopic = TestUtils.randomValidEventTypeName();
+        final Timeline timeline = createFakeTimeline(TOPIC);
+        final Timeline otherTimeline = createFakeTimeline(otherTopic);
+        final KafkaConsumer<byte[], byte[]> kafkaConsumerMock = mock(KafkaConsumer.class);
+        when(kafkaConsumerMock.poll(POLL_TIMEOUT)).thenReturn(new ConsumerRecords<>(ImmutableMap.of(
+                new TopicPartition(TOPIC, 2),
+                ImmutableList.of(new ConsumerRecord<>(TOPIC, 2, 5L, null, "e1".getBytes())),
+                new TopicPartition(otherTopic, 0),
+                ImmutableList.of(new ConsumerRecord<>(otherTopic, 0, 7L, null, "e2".getBytes())))));
+
+        final NakadiKafkaConsumer consumer = new NakadiKafkaConsumer(kafkaConsumerMock, ImmutableList.of(),
+                ImmutableMap.of(
+                        new TopicPartition(TOPIC, 2), timeline,
+                        new TopicPartition(otherTopic, 0), otherTimeline),
+                POLL_TIMEOUT);
+        final List<ConsumedEvent> consumedEvents = consumer.readEvents();
+
+        assertThat(consumedEvents, hasSize(2));
+        assertThat(consumedEvents.get(0).getTimeline(), sameInstance(timeline));
+        assertThat(consumedEvents.get(0).getPartition(), equalTo("2"));
+        assertThat(consumedEvents.get(0).getPosition(), equalTo(new NakadiCursor(timeline, "2", toNakadiOffset(5L))));
+        assertThat(consumedEvents.get(1).getTimeline(), sameInstance(otherTimeline));
+        assertThat(consumedEvents.get(1).getPosition(),
+                equalTo(new NakadiCursor(otherTimeline, "0", toNakadiOffset(7L))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenPollIsOverReadLimitThenRestIsReturnedBeforeNextPoll() {
+        final KafkaConsumer<byte[], byte[]> kafkaConsumerMock = mock(KafkaConsumer.class);
+        when(kafkaConsumerMock.poll(POLL_TIMEOUT)).thenReturn(new ConsumerRecords<>(ImmutableMap.of(
+                new TopicPartition(TOPIC, PARTITION),
+                ImmutableList.of(
+                        new ConsumerRecord<>(TOPIC, PARTITION, 1L, null, "e1".getBytes()),
+                        new ConsumerRecord<>(TOPIC, PARTITION, 2L, null, "e2".getBytes()),
+                        new ConsumerRecord<>(TOPIC, PARTITION, 3L, null, "e3".getBytes())))));
+
+        final NakadiKafkaConsumer consumer = new NakadiKafkaConsumer(
+                kafkaConsumerMock, ImmutableList.of(), createTpTimelineMap(), POLL_TIMEOUT);
+        consumer.setReadLimit(2);
+
+        final List<ConsumedEvent> first = consumer.readEvents();
+        final List<ConsumedEvent> second = consumer.readEvents();
+
+        assertThat(first, hasSize(2));
+        assertThat(first.get(1).getPosition().getOffset(), equalTo(toNakadiOffset(2L)));
+        assertThat(second, hasSize(1));
+        assertThat(second.get(0).getPosition().getOffset(), equalTo(toNakadiOffset(3L)));
+        verify(kafkaConsumerMock, times(1)).poll(POLL_TIMEOUT);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void whenReadEventsThenNakadiException() {
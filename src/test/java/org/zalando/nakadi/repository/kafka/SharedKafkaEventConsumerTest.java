@@ -0,0 +1,193 @@
+package org.zalando.nakadi.repository.kafka;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.EventConsumer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+import static org.zalando.nakadi.utils.TestUtils.waitFor;
+
+public class SharedKafkaEventConsumerTest {
+
+    private static final String TOPIC = "topic";
+    private static final TopicPartition TOPIC_PARTITION = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition OTHER_PARTITION = new TopicPartition(TOPIC, 1);
+
+    private final Map<TopicPartition, Timeline> timelineMap =
+            ImmutableMap.of(TOPIC_PARTITION, createFakeTimeline(TOPIC), OTHER_PARTITION, createFakeTimeline(TOPIC));
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicInteger kafkaConsumers = new AtomicInteger();
+    private final List<List<KafkaCursor>> ownConsumers = new ArrayList<>();
+
+    @Test
+    public void whenStreamsReadSamePartitionThenOneKafkaConsumerIsUsed() throws Exception {
+        final SharedKafkaReader reader = new SharedKafkaReader(() -> createKafkaConsumer(3, 10), 1000, 60000, 0, 10,
+                metricRegistry);
+
+        final EventConsumer.LowLevelConsumer first = createConsumer(reader, 0);
+        final EventConsumer.LowLevelConsumer second = createConsumer(reader, 1);
+
+        waitFor(() -> assertThat(readAll(first, 3), hasSize(3)));
+        waitFor(() -> assertThat(readAll(second, 2), hasSize(2)));
+        assertThat(kafkaConsumers.get(), equalTo(1));
+        assertThat(ownConsumers, hasSize(0));
+        assertThat(metricRegistry.meter("nakadi.kafka.tail_cache.hits").getCount(), equalTo(5L));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void whenEventsAreEvictedThenStreamSwitchesToOwnConsumer() throws Exception {
+        final SharedKafkaReader reader = new SharedKafkaReader(() -> createKafkaConsumer(4, 10), 15, 60000, 0, 10,
+                metricRegistry);
+
+        final EventConsumer.LowLevelConsumer first = createConsumer(reader, 0);
+        waitFor(() -> assertThat(reader.getVersion(), not(equalTo(0L))));
+
+        createConsumer(reader, 0);
+        assertThat(ownConsumers, hasSize(1));
+        assertThat(first.readEvents(), hasSize(0));
+        assertThat(first.readEvents(), hasSize(1));
+        assertThat(ownConsumers, hasSize(2));
+        assertThat(ownConsumers.get(1).get(0).getOffset(), equalTo(0L));
+        assertThat(kafkaConsumers.get(), equalTo(1));
+        assertThat(metricRegistry.meter("nakadi.kafka.tail_cache.misses").getCount(), equalTo(1L));
+        first.close();
+    }
+
+    @Test
+    public void whenEventIsPublishedThenItIsReadFromWindow() throws Exception {
+        final SharedKafkaReader reader = new SharedKafkaReader(() -> createKafkaConsumer(0, 10), 1000, 60000, 0,
+                10, metricRegistry);
+        final EventConsumer.LowLevelConsumer consumer = createConsumer(reader, 0);
+
+        reader.onPublished(TOPIC_PARTITION, 0, new byte[10]);
+
+        final List<ConsumedEvent> events = readAll(consumer, 1);
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getPosition().getOffset(), equalTo(KafkaCursor.toNakadiOffset(0)));
+        consumer.close();
+    }
+
+    @Test(timeout = 10000)
+    public void whenWindowIsLockedThenPublishingIsNotBlocked() throws Exception {
+        final SharedKafkaReader reader = new SharedKafkaReader(() -> createKafkaConsumer(0, 10), 1000, 60000, 0,
+                10, metricRegistry);
+        final TailWindow window = reader.acquire(TOPIC_PARTITION, 0);
+
+        final Thread publishing = new Thread(() -> reader.onPublished(TOPIC_PARTITION, 0, new byte[10]));
+        synchronized (window) {
+            publishing.start();
+            publishing.join();
+        }
+        waitFor(() -> assertThat(window.getNextOffset(), equalTo(1L)));
+        reader.release(TOPIC_PARTITION, window);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenReadingOfPartitionFailsThenOnlyItsStreamsSwitchToOwnConsumers() throws Exception {
+        final SharedKafkaReader reader = new SharedKafkaReader(() -> {
+            final Consumer<byte[], byte[]> consumer = createKafkaConsumer(0, 10);
+            final AtomicReference<Collection<TopicPartition>> assignment = new AtomicReference<>();
+            doAnswer(invocation -> {
+                assignment.set(new ArrayList<>((Collection<TopicPartition>) invocation.getArguments()[0]));
+                return null;
+            }).when(consumer).assign(anyCollectionOf(TopicPartition.class));
+            final AtomicBoolean outOfRange = new AtomicBoolean();
+            final AtomicBoolean read = new AtomicBoolean();
+            when(consumer.poll(anyLong())).thenAnswer(invocation -> {
+                if (assignment.get().contains(OTHER_PARTITION) && !outOfRange.getAndSet(true)) {
+                    throw new OffsetOutOfRangeException(ImmutableMap.of(OTHER_PARTITION, 0L));
+                }
+                if (assignment.get().contains(TOPIC_PARTITION) && !read.getAndSet(true)) {
+                    return new ConsumerRecords<>(ImmutableMap.of(TOPIC_PARTITION, createRecords(3, 10)));
+                }
+                Thread.sleep(10);
+                return ConsumerRecords.empty();
+            });
+            return consumer;
+        }, 1000, 60000, 0, 10, metricRegistry);
+
+        final EventConsumer.LowLevelConsumer failed = createConsumer(reader, OTHER_PARTITION, 0);
+        final EventConsumer.LowLevelConsumer first = createConsumer(reader, 0);
+
+        waitFor(() -> assertThat(readAll(first, 3), hasSize(3)));
+        waitFor(() -> assertThat(readAll(failed, 1), hasSize(1)));
+        assertThat(ownConsumers, hasSize(1));
+        assertThat(ownConsumers.get(0).get(0).getPartition(), equalTo(OTHER_PARTITION.partition()));
+        first.close();
+        failed.close();
+    }
+
+    private EventConsumer.LowLevelConsumer createConsumer(final SharedKafkaReader reader, final long offset) {
+        return createConsumer(reader, TOPIC_PARTITION, offset);
+    }
+
+    private EventConsumer.LowLevelConsumer createConsumer(final SharedKafkaReader reader,
+                                                          final TopicPartition topicPartition, final long offset) {
+        return SharedKafkaEventConsumer.create(reader,
+                ImmutableList.of(new KafkaCursor(TOPIC, topicPartition.partition(), offset)),
+                timelineMap, cursors -> {
+                    ownConsumers.add(cursors);
+                    final EventConsumer.LowLevelConsumer own = mock(EventConsumer.LowLevelConsumer.class);
+                    when(own.readEvents()).thenReturn(ImmutableList.of(mock(ConsumedEvent.class)));
+                    return own;
+                }, 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<byte[], byte[]> createKafkaConsumer(final int events, final int eventSize) {
+        kafkaConsumers.incrementAndGet();
+        final Consumer<byte[], byte[]> consumer = mock(Consumer.class);
+        when(consumer.poll(anyLong()))
+                .thenReturn(new ConsumerRecords<>(ImmutableMap.of(TOPIC_PARTITION, createRecords(events, eventSize))))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(10);
+                    return ConsumerRecords.empty();
+                });
+        return consumer;
+    }
+
+    private static List<ConsumerRecord<byte[], byte[]>> createRecords(final int events, final int eventSize) {
+        final List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            records.add(new ConsumerRecord<>(TOPIC, 0, i, null, new byte[eventSize]));
+        }
+        return records;
+    }
+
+    private static List<ConsumedEvent> readAll(final EventConsumer consumer, final int expected) {
+        final List<ConsumedEvent> result = new ArrayList<>();
+        for (int i = 0; i < 10 && result.size() < expected; i++) {
+            result.addAll(consumer.readEvents());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package org.zalando.nakadi.repository.kafka;
+
+import org.junit.Test;
+import org.zalando.nakadi.domain.ConsumedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.zalando.nakadi.repository.kafka.KafkaCursor.toNakadiOffset;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+public class TailWindowTest {
+
+    private final NakadiKafkaConsumer.TimelinePartition partition =
+            new NakadiKafkaConsumer.TimelinePartition(createFakeTimeline("topic"), "0");
+
+    @Test
+    public void whenRecordsAreAppendedThenTheyAreReadFromOffset() {
+        final TailWindow window = window(5, 1000, 1000);
+        for (long offset = 5; offset < 2000; offset++) {
+            window.append(offset, new byte[0], 0);
+        }
+
+        final List<ConsumedEvent> result = new ArrayList<>();
+        assertThat(window.read(7, 3, partition, result), equalTo(10L));
+        assertThat(offsets(result), contains(toNakadiOffset(7), toNakadiOffset(8), toNakadiOffset(9)));
+
+        result.clear();
+        assertThat(window.read(2000, 3, partition, result), equalTo(2000L));
+        assertThat(result, empty());
+    }
+
+    @Test
+    public void whenWindowIsFullThenOldestRecordsAreEvicted() {
+        final TailWindow window = window(0, 25, 1000);
+        for (long offset = 0; offset < 4; offset++) {
+            window.append(offset, new byte[10], 0);
+        }
+
+        final List<ConsumedEvent> result = new ArrayList<>();
+        assertThat(window.read(1, 10, partition, result), equalTo(TailWindow.BEHIND_WINDOW));
+        assertThat(window.covers(1), is(false));
+        assertThat(window.read(2, 10, partition, result), equalTo(4L));
+        assertThat(offsets(result), contains(toNakadiOffset(2), toNakadiOffset(3)));
+    }
+
+    @Test
+    public void whenWindowIsClosedThenReadIsBehind() {
+        final TailWindow window = window(0, 100, 1000);
+        window.append(0, new byte[1], 0);
+        window.close();
+
+        assertThat(window.read(0, 10, partition, new ArrayList<>()), equalTo(TailWindow.BEHIND_WINDOW));
+        assertThat(window.covers(0), is(false));
+    }
+
+    @Test
+    public void whenRecordsAreTooOldThenTheyAreEvicted() {
+        final TailWindow window = window(0, 1000, 100);
+        window.append(0, new byte[1], 0);
+        window.append(1, new byte[1], 50);
+        window.evictExpired(120);
+
+        assertThat(window.covers(0), is(false));
+        assertThat(window.covers(1), is(true));
+        window.evictExpired(200);
+        assertThat(window.covers(1), is(false));
+        assertThat(window.covers(2), is(true));
+    }
+
+    @Test
+    public void whenPublishedRecordIsAfterGapThenItIsNotAppended() {
+        final TailWindow window = window(0, 1000, 1000);
+
+        assertThat(window.appendPublished(1, new byte[1], 0), is(false));
+        assertThat(window.appendPublished(0, new byte[1], 0), is(true));
+        assertThat(window.appendPublished(1, new byte[1], 0), is(true));
+        assertThat(window.append(1, new byte[1], 0), is(false));
+        assertThat(window.getNextOffset(), equalTo(2L));
+    }
+
+    @Test
+    public void whenNodeIsOverLimitThenGrowingWindowEvictsItsOldestRecords() {
+        final AtomicLong nodeBytes = new AtomicLong();
+        final TailWindow first = new TailWindow(0, 1000, 1000, nodeBytes, 25);
+        final TailWindow second = new TailWindow(0, 1000, 1000, nodeBytes, 25);
+        first.append(0, new byte[10], 0);
+        first.append(1, new byte[10], 0);
+        second.append(0, new byte[10], 0);
+        second.append(1, new byte[10], 0);
+
+        assertThat(first.covers(0), is(true));
+        assertThat(second.covers(0), is(false));
+        assertThat(second.covers(1), is(true));
+        assertThat(nodeBytes.get(), equalTo(30L));
+
+        first.close();
+        assertThat(nodeBytes.get(), equalTo(10L));
+    }
+
+    private static TailWindow window(final long startOffset, final long maxBytes, final long maxAgeMs) {
+        return new TailWindow(startOffset, maxBytes, maxAgeMs, new AtomicLong(), Long.MAX_VALUE);
+    }
+
+    private static List<String> offsets(final List<ConsumedEvent> events) {
+        return events.stream().map(e -> e.getPosition().getOffset()).collect(Collectors.toList());
+    }
+}
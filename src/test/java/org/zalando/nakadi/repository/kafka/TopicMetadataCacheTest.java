@@ -0,0 +1,71 @@
+package org.zalando.nakadi.repository.kafka;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TopicMetadataCacheTest {
+
+    private static final String TOPIC = "topic";
+
+    private final HystrixKafkaCircuitBreaker firstBreaker = mock(HystrixKafkaCircuitBreaker.class);
+    private final HystrixKafkaCircuitBreaker secondBreaker = mock(HystrixKafkaCircuitBreaker.class);
+    private final Producer<String, byte[]> producer = mock(Producer.class);
+    private final TopicMetadataCache cache = new TopicMetadataCache(
+            brokerId -> "1".equals(brokerId) ? firstBreaker : secondBreaker, 60000);
+
+    @Test
+    public void whenMetadataIsCachedThenPartitionsAreIndexed() {
+        when(producer.partitionsFor(TOPIC)).thenReturn(ImmutableList.of(partition(1, 2), partition(0, 1)));
+
+        final TopicMetadataCache.TopicMetadata metadata = cache.get(TOPIC, producer);
+
+        assertThat(metadata.getBrokerId(0), equalTo("1"));
+        assertThat(metadata.getBrokerId(1), equalTo("2"));
+        assertThat(metadata.getCircuitBreaker(0), sameInstance(firstBreaker));
+        assertThat(metadata.getCircuitBreaker(1), sameInstance(secondBreaker));
+        assertThat(metadata.hasPartition(2), is(false));
+        assertThat(cache.get(TOPIC, producer), sameInstance(metadata));
+        verify(producer, times(1)).partitionsFor(TOPIC);
+    }
+
+    @Test
+    public void whenPartitionIsUnknownThenMetadataIsReloaded() {
+        when(producer.partitionsFor(TOPIC))
+                .thenReturn(ImmutableList.of(partition(0, 1)))
+                .thenReturn(ImmutableList.of(partition(0, 1), partition(1, 1)));
+        cache.get(TOPIC, producer);
+
+        final TopicMetadataCache.TopicMetadata metadata = cache.get(TOPIC, 1, producer);
+
+        assertThat(metadata.hasPartition(1), is(true));
+        verify(producer, times(2)).partitionsFor(TOPIC);
+    }
+
+    @Test
+    public void whenInvalidatedThenLeadersAreReloaded() {
+        when(producer.partitionsFor(TOPIC))
+                .thenReturn(ImmutableList.of(partition(0, 1)))
+                .thenReturn(ImmutableList.of(partition(0, 2)));
+        cache.get(TOPIC, producer);
+
+        cache.invalidate(TOPIC);
+
+        assertThat(cache.get(TOPIC, producer).getBrokerId(0), equalTo("2"));
+    }
+
+    private static PartitionInfo partition(final int partition, final int leader) {
+        return new PartitionInfo(TOPIC, partition, new Node(leader, "host", 9091), null, null);
+    }
+}
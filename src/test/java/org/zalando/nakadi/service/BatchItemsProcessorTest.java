@@ -0,0 +1,110 @@
+package org.zalando.nakadi.service;
+
+import org.junit.After;
+import org.junit.Test;
+import org.zalando.nakadi.domain.BatchItem;
+import org.zalando.nakadi.domain.BatchItemResponse;
+import org.zalando.nakadi.domain.EventPublishingStatus;
+import org.zalando.nakadi.domain.EventPublishingStep;
+import org.zalando.nakadi.exceptions.PartitioningException;
+import org.zalando.nakadi.util.FlowIdUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.isEmptyString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BatchItemsProcessorTest {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final BatchItemsProcessor processor = new BatchItemsProcessor(4, 100);
+
+    @After
+    public void shutdown() {
+        processor.shutdown();
+    }
+
+    @Test
+    public void whenBatchIsProcessedInParallelThenEveryItemIsProcessed() throws Exception {
+        final List<BatchItem> batch = createBatch(BATCH_SIZE);
+
+        processor.process(batch, EventPublishingStep.PARTITIONING, PartitioningException.class,
+                item -> item.setPartition(String.valueOf(item.getEvent().getInt("id"))));
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertThat(batch.get(i).getPartition(), equalTo(String.valueOf(i)));
+            assertThat(batch.get(i).getResponse().getStep(), equalTo(EventPublishingStep.PARTITIONING));
+        }
+    }
+
+    @Test
+    public void whenItemsFailInParallelThenOnlyFirstFailureIsReported() {
+        final List<BatchItem> batch = createBatch(BATCH_SIZE);
+
+        try {
+            processor.process(batch, EventPublishingStep.PARTITIONING, PartitioningException.class, item -> {
+                final int id = item.getEvent().getInt("id");
+                if (id == 500 || id == 700) {
+                    throw new PartitioningException("error " + id);
+                }
+            });
+            fail("PartitioningException is expected");
+        } catch (final PartitioningException e) {
+            assertThat(e.getMessage(), equalTo("error 500"));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(batch.get(i).getResponse().getStep(), equalTo(EventPublishingStep.PARTITIONING));
+            assertThat(batch.get(i).getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.ABORTED));
+        }
+        final BatchItemResponse failed = batch.get(500).getResponse();
+        assertThat(failed.getStep(), equalTo(EventPublishingStep.PARTITIONING));
+        assertThat(failed.getPublishingStatus(), equalTo(EventPublishingStatus.FAILED));
+        assertThat(failed.getDetail(), equalTo("error 500"));
+        for (int i = 501; i < BATCH_SIZE; i++) {
+            assertThat(batch.get(i).getResponse().getStep(), equalTo(EventPublishingStep.NONE));
+            assertThat(batch.get(i).getResponse().getPublishingStatus(), equalTo(EventPublishingStatus.ABORTED));
+            assertThat(batch.get(i).getResponse().getDetail(), isEmptyString());
+        }
+    }
+
+    @Test
+    public void whenBatchIsProcessedInParallelThenFlowIdIsAvailable() throws Exception {
+        final List<BatchItem> batch = createBatch(BATCH_SIZE);
+        FlowIdUtils.push("flow-id");
+        try {
+            processor.process(batch, EventPublishingStep.ENRICHING, PartitioningException.class,
+                    item -> item.setPartition(FlowIdUtils.peek()));
+        } finally {
+            FlowIdUtils.clear();
+        }
+
+        for (final BatchItem item : batch) {
+            assertThat(item.getPartition(), equalTo("flow-id"));
+        }
+    }
+
+    @Test
+    public void whenBatchIsSmallThenItIsProcessedOnCallingThread() throws Exception {
+        final List<BatchItem> batch = createBatch(10);
+        final Thread caller = Thread.currentThread();
+
+        processor.process(batch, EventPublishingStep.VALIDATING, PartitioningException.class, item -> {
+            if (Thread.currentThread() != caller) {
+                throw new PartitioningException("processed on other thread");
+            }
+        });
+    }
+
+    private static List<BatchItem> createBatch(final int size) {
+        final List<BatchItem> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(new BatchItem("{\"id\":" + i + "}"));
+        }
+        return batch;
+    }
+}
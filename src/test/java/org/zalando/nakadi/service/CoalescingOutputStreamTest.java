@@ -0,0 +1,61 @@
+package org.zalando.nakadi.service;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.lang.System.currentTimeMillis;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CoalescingOutputStreamTest {
+
+    private static final long WINDOW_MS = 60000;
+
+    private final OutputStream out = mock(OutputStream.class);
+    private final CoalescingOutputStream coalescingOutputStream = new CoalescingOutputStream(out, WINDOW_MS);
+
+    @Test
+    public void whenFlushedWithinWindowThenFlushIsPostponed() throws IOException {
+        final byte[] batch = "batch".getBytes();
+        coalescingOutputStream.write(batch);
+        coalescingOutputStream.flush();
+        coalescingOutputStream.write(batch);
+        coalescingOutputStream.flush();
+
+        verify(out, times(2)).write(eq(batch), eq(0), eq(batch.length));
+        verify(out, times(1)).flush();
+
+        coalescingOutputStream.flushIfDue(currentTimeMillis() + WINDOW_MS);
+        verify(out, times(2)).flush();
+    }
+
+    @Test
+    public void whenPendingFlushIsForcedThenStreamIsFlushedAndNotClosed() throws IOException {
+        coalescingOutputStream.flush();
+        coalescingOutputStream.flush();
+        assertThat(coalescingOutputStream.isFlushPending(), is(true));
+
+        coalescingOutputStream.flushPending();
+
+        verify(out, times(2)).flush();
+        verify(out, never()).close();
+        assertThat(coalescingOutputStream.isFlushPending(), is(false));
+    }
+
+    @Test
+    public void whenNothingIsWrittenThenNotFlushed() throws IOException {
+        coalescingOutputStream.flushIfDue(currentTimeMillis() + WINDOW_MS);
+
+        verify(out, never()).flush();
+        verify(out, never()).write(any(byte[].class), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,127 @@
+package org.zalando.nakadi.service;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+public class CommitCoalescerTest {
+
+    private final Timeline timeline = createFakeTimeline("topic");
+    private final List<List<CommitCoalescer.PendingCommit>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private void commitAll(final String subscriptionId, final List<CommitCoalescer.PendingCommit> batch) {
+        batches.add(batch);
+        for (final CommitCoalescer.PendingCommit commit : batch) {
+            commit.complete(commit.getCursors().stream()
+                    .map(cursor -> cursor.getPartition().equals("0"))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void whenCoalescingIsDisabledThenEveryCommitIsSeparate() throws Exception {
+        final CommitCoalescer coalescer = new CommitCoalescer(0, 1000, this::commitAll);
+
+        assertThat(coalescer.commit("s1", "stream", ImmutableList.of(cursor("0"), cursor("1"))),
+                equalTo(ImmutableList.of(true, false)));
+        coalescer.commit("s1", "stream", ImmutableList.of(cursor("0")));
+
+        assertThat(batches, hasSize(2));
+    }
+
+    @Test(timeout = 10000)
+    public void whenCommitsAreConcurrentThenTheyAreCommittedInOneBatch() throws Exception {
+        final CommitCoalescer coalescer = new CommitCoalescer(TimeUnit.SECONDS.toMillis(1), 1000, this::commitAll);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // all the commits are coming within the window opened by the first one
+            final List<Future<List<Boolean>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final String partition = String.valueOf(i % 2);
+                results.add(executor.submit(
+                        () -> coalescer.commit("s1", "stream", ImmutableList.of(cursor(partition)))));
+            }
+            for (int i = 0; i < 4; i++) {
+                assertThat(results.get(i).get(), equalTo(ImmutableList.of(i % 2 == 0)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(batches, hasSize(1));
+        assertThat(batches.get(0), hasSize(4));
+    }
+
+    @Test(timeout = 10000)
+    public void whenBatchIsStuckThenCommitsTimeOut() throws Exception {
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final List<Thread> committingThreads = Collections.synchronizedList(new ArrayList<>());
+        final CommitCoalescer coalescer = new CommitCoalescer(10, 100, (subscriptionId, batch) -> {
+            committingThreads.add(Thread.currentThread());
+            try {
+                unblock.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            coalescer.commit("s1", "stream", ImmutableList.of(cursor("0")));
+            fail("Commit is expected to time out");
+        } catch (final TimeoutException ex) {
+            assertThat(committingThreads, hasSize(1));
+            assertThat(committingThreads.get(0), not(sameInstance(Thread.currentThread())));
+        } finally {
+            unblock.countDown();
+        }
+    }
+
+    @Test
+    public void whenBatchFailsThenAllCommitsFail() throws Exception {
+        final CommitCoalescer coalescer = new CommitCoalescer(0, 1000, (subscriptionId, batch) -> {
+            throw new IllegalArgumentException();
+        });
+        try {
+            coalescer.commit("s1", "stream", ImmutableList.of(cursor("0")));
+            fail("Commit is expected to fail");
+        } catch (final ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void whenCommitIsNotCompletedByBatchThenItFails() throws Exception {
+        final CommitCoalescer coalescer = new CommitCoalescer(0, 1000, (subscriptionId, batch) -> {
+        });
+        try {
+            coalescer.commit("s1", "stream", ImmutableList.of(cursor("0")));
+            fail("Commit is expected to fail");
+        } catch (final ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    private NakadiCursor cursor(final String partition) {
+        return new NakadiCursor(timeline, partition, "000000000000000001");
+    }
+}
@@ -0,0 +1,61 @@
+package org.zalando.nakadi.service;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.domain.NakadiCursor;
+import org.zalando.nakadi.domain.Timeline;
+import org.zalando.nakadi.repository.db.EventTypeCache;
+import org.zalando.nakadi.service.converter.CursorConverterImpl;
+import org.zalando.nakadi.service.timeline.TimelineService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.zalando.nakadi.utils.TestUtils.buildTimeline;
+import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
+
+public class CursorEncoderTest {
+
+    private static final Timeline TIMELINE = buildTimeline("my-et");
+    private static final Timeline FAKE_TIMELINE = createFakeTimeline("my-et");
+    private static final EventTypePartition ETP = new EventTypePartition("my-et", "3");
+
+    private final CursorConverter cursorConverter =
+            new CursorConverterImpl(mock(EventTypeCache.class), mock(TimelineService.class));
+    private final CursorEncoder cursorEncoder = new CursorEncoder(cursorConverter, new CursorTokenService());
+
+    @Test
+    public void whenEncodedThenCursorIsWritten() {
+        final JSONObject cursor = parse(cursorEncoder.encode(ETP,
+                new NakadiCursor(TIMELINE, "3", "000000000000000012")));
+
+        assertThat(cursor.getString("partition"), equalTo("3"));
+        assertThat(cursor.getString("offset"), equalTo("001-0000-000000000000000012"));
+        assertThat(cursor.getString("event_type"), equalTo("my-et"));
+        assertThat(cursor.getString("cursor_token").length(), equalTo(36));
+    }
+
+    @Test
+    public void whenOffsetLengthIsNotChangedThenBytesAreReused() {
+        final EncodedCursor first = cursorEncoder.encode(ETP, new NakadiCursor(TIMELINE, "3", "000000000000000012"));
+        final byte[] firstBytes = first.getBytes();
+        final String firstToken = parse(first).getString("cursor_token");
+
+        final EncodedCursor second = cursorEncoder.encode(ETP, new NakadiCursor(TIMELINE, "3", "000000000000000013"));
+        assertThat(second, sameInstance(first));
+        assertThat(second.getBytes(), sameInstance(firstBytes));
+        assertThat(parse(second).getString("offset"), equalTo("001-0000-000000000000000013"));
+        assertThat(parse(second).getString("cursor_token"), not(equalTo(firstToken)));
+
+        final EncodedCursor third = cursorEncoder.encode(ETP, new NakadiCursor(FAKE_TIMELINE, "3", "-1"));
+        assertThat(parse(third).getString("offset"), equalTo("BEGIN"));
+        assertThat(parse(third).getString("event_type"), equalTo("my-et"));
+    }
+
+    private static JSONObject parse(final EncodedCursor cursor) {
+        return new JSONObject(cursor + "}").getJSONObject("cursor");
+    }
+}
@@ -1,5 +1,6 @@
 package org.zalando.nakadi.service;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.zalando.nakadi.config.NakadiSettings;
@@ -322,7 +323,8 @@ public class CursorOperationsServiceTest {
                 mock(NakadiSettings.class),
                 mock(KafkaSettings.class),
                 mock(ZookeeperSettings.class),
-                mock(UUIDGenerator.class));
+                mock(UUIDGenerator.class),
+                mock(MetricRegistry.class));
         when(timelineService.getTopicRepository(timeline)).thenReturn(repository);
         return timeline;
     }
@@ -39,8 +39,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.isEmptyString;
@@ -80,7 +82,7 @@ public class EventPublisherTest {
     private final AuthorizationValidator authzValidator = mock(AuthorizationValidator.class);
     private final NakadiSettings nakadiSettings = new NakadiSettings(0, 0, 0, TOPIC_RETENTION_TIME_MS, 0, 60,
             NAKADI_POLL_TIMEOUT, NAKADI_SEND_TIMEOUT, TIMELINE_WAIT_TIMEOUT_MS, NAKADI_EVENT_MAX_BYTES,
-            NAKADI_SUBSCRIPTION_MAX_PARTITIONS);
+            NAKADI_SUBSCRIPTION_MAX_PARTITIONS, 0, 0);
     private final EventPublisher publisher;
 
     public EventPublisherTest() {
@@ -89,6 +91,8 @@ public class EventPublisherTest {
         Mockito.when(ts.getTopicRepository((EventTypeBase) any())).thenReturn(topicRepository);
         final Timeline timeline = Mockito.mock(Timeline.class);
         Mockito.when(ts.getTimeline(any())).thenReturn(timeline);
+        Mockito.doAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArguments()[1]))
+                .when(topicRepository).postBatch(any(), any(), any());
 
         publisher = new EventPublisher(ts, cache, partitionResolver, enrichment, nakadiSettings, timelineSync,
                 authzValidator);
@@ -101,10 +105,11 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.SUBMITTED));
-        verify(topicRepository, times(1)).syncPostBatch(any(), any());
+        verify(topicRepository, times(1)).postBatch(any(), any(), any());
     }
 
     @Test(expected = AccessDeniedException.class)
@@ -117,7 +122,7 @@ public class EventPublisherTest {
                 .when(authzValidator)
                 .authorizeEventTypeWrite(Mockito.eq(et));
 
-        publisher.publish(buildDefaultBatch(1).toString(), et.getName(), FULL_ACCESS_CLIENT);
+        publish(buildDefaultBatch(1).toString().getBytes(UTF_8), et.getName(), FULL_ACCESS_CLIENT);
     }
 
     @Test
@@ -128,10 +133,11 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getResponses().get(0).getEid(), equalTo(event.getJSONObject("metadata").optString("eid")));
-        verify(topicRepository, times(1)).syncPostBatch(any(), any());
+        verify(topicRepository, times(1)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -143,7 +149,7 @@ public class EventPublisherTest {
         final Closeable etCloser = mock(Closeable.class);
         Mockito.when(timelineSync.workWithEventType(any(String.class), anyLong())).thenReturn(etCloser);
 
-        publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        publish(batch.toString().getBytes(UTF_8), eventType.getName(), FULL_ACCESS_CLIENT);
 
         verify(timelineSync, times(1)).workWithEventType(eq(eventType.getName()), eq(TIMELINE_WAIT_TIMEOUT_MS));
         verify(etCloser, times(1)).close();
@@ -152,7 +158,7 @@ public class EventPublisherTest {
     @Test(expected = EventTypeTimeoutException.class)
     public void whenPublishAndTimelineLockTimedOutThenException() throws Exception {
         Mockito.when(timelineSync.workWithEventType(any(String.class), anyLong())).thenThrow(new TimeoutException());
-        publisher.publish(buildDefaultBatch(0).toString(), "blahET", FULL_ACCESS_CLIENT);
+        publish(buildDefaultBatch(0).toString().getBytes(UTF_8), "blahET", FULL_ACCESS_CLIENT);
     }
 
     @Test
@@ -163,12 +169,13 @@ public class EventPublisherTest {
 
         mockFaultValidation(eventType, "error");
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
         verify(enrichment, times(0)).enrich(createBatchItem(event), eventType);
         verify(partitionResolver, times(0)).resolvePartition(eventType, event);
-        verify(topicRepository, times(0)).syncPostBatch(any(), any());
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -179,7 +186,8 @@ public class EventPublisherTest {
 
         mockFaultValidation(eventType, "error");
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
 
@@ -203,12 +211,13 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
         verify(enrichment, times(0)).enrich(any(), any());
         verify(partitionResolver, times(0)).resolvePartition(any(), any());
-        verify(topicRepository, times(0)).syncPostBatch(any(), any());
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -224,7 +233,8 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
 
@@ -257,7 +267,8 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
 
@@ -284,12 +295,13 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.SUBMITTED));
         verify(enrichment, times(1)).enrich(any(), any());
         verify(partitionResolver, times(1)).resolvePartition(any(), any());
-        verify(topicRepository, times(1)).syncPostBatch(any(), any());
+        verify(topicRepository, times(1)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -299,12 +311,13 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
         verify(enrichment, times(0)).enrich(any(), any());
         verify(partitionResolver, times(0)).resolvePartition(any(), any());
-        verify(topicRepository, times(0)).syncPostBatch(any(), any());
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -314,12 +327,13 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
         verify(enrichment, times(0)).enrich(any(), any());
         verify(partitionResolver, times(0)).resolvePartition(any(), any());
-        verify(topicRepository, times(0)).syncPostBatch(any(), any());
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -329,12 +343,13 @@ public class EventPublisherTest {
 
         mockSuccessfulValidation(eventType);
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.SUBMITTED));
         verify(enrichment, times(1)).enrich(any(), any());
         verify(partitionResolver, times(1)).resolvePartition(any(), any());
-        verify(topicRepository, times(1)).syncPostBatch(any(), any());
+        verify(topicRepository, times(1)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -347,7 +362,7 @@ public class EventPublisherTest {
         mockSuccessfulValidation(eventType);
         mockFaultPartition();
 
-        final EventPublishResult result = publisher.publish(createStringFromBatchItems(batch),
+        final EventPublishResult result = publish(createBytesFromBatchItems(batch),
                 eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
@@ -364,7 +379,7 @@ public class EventPublisherTest {
         mockSuccessfulValidation(eventType);
         mockFaultPartition();
 
-        final EventPublishResult result = publisher.publish(createStringFromBatchItems(batch),
+        final EventPublishResult result = publish(createBytesFromBatchItems(batch),
                 eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
@@ -379,7 +394,7 @@ public class EventPublisherTest {
         assertThat(second.getStep(), equalTo(EventPublishingStep.VALIDATING));
         assertThat(second.getDetail(), is(isEmptyString()));
 
-        verify(cache, times(2)).getValidator(any());
+        verify(cache, times(1)).getValidator(any());
         verify(partitionResolver, times(1)).resolvePartition(any(), any());
     }
 
@@ -391,10 +406,11 @@ public class EventPublisherTest {
         mockSuccessfulValidation(eventType);
         mockFailedPublishing();
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.FAILED));
-        verify(topicRepository, times(1)).syncPostBatch(any(), any());
+        verify(topicRepository, times(1)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -406,13 +422,14 @@ public class EventPublisherTest {
         mockSuccessfulValidation(eventType);
         mockFaultEnrichment();
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
         verify(cache, times(1)).getValidator(eventType.getName());
         verify(partitionResolver, times(1)).resolvePartition(any(), any());
         verify(enrichment, times(1)).enrich(any(), any());
-        verify(topicRepository, times(0)).syncPostBatch(any(), any());
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
     }
 
     @Test
@@ -423,7 +440,8 @@ public class EventPublisherTest {
         mockSuccessfulValidation(eventType);
         mockFaultEnrichment();
 
-        final EventPublishResult result = publisher.publish(batch.toString(), eventType.getName(), FULL_ACCESS_CLIENT);
+        final EventPublishResult result = publish(batch.toString().getBytes(UTF_8),
+                eventType.getName(), FULL_ACCESS_CLIENT);
 
         assertThat(result.getStatus(), equalTo(EventPublishingStatus.ABORTED));
 
@@ -445,17 +463,57 @@ public class EventPublisherTest {
         final EventType eventType = EventTypeTestBuilder.builder().build();
         Mockito.when(cache.getEventType(eventType.getName())).thenReturn(eventType);
         mockSuccessfulValidation(eventType);
-        final EventPublishResult result = publisher.publish(buildDefaultBatch(0).toString(), eventType.getName(),
+        final EventPublishResult result = publish(buildDefaultBatch(0).toString().getBytes(UTF_8),
+                eventType.getName(),
                 new NakadiClient(CLIENT_ID, null));
 
         Assert.assertEquals(result.getStatus(), EventPublishingStatus.SUBMITTED);
     }
 
+    @Test
+    public void whenAsyncPublishingFailsThenResultIsFailed() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        final JSONArray batch = buildDefaultBatch(1);
+        mockSuccessfulValidation(eventType);
+
+        final CompletableFuture<List<BatchItem>> publishing = new CompletableFuture<>();
+        Mockito.doReturn(publishing).when(topicRepository).postBatch(any(), any(), any());
+
+        final CompletableFuture<EventPublishResult> result = publisher.publishAsync(
+                batch.toString().getBytes(UTF_8), eventType.getName(), FULL_ACCESS_CLIENT);
+        assertThat(result.isDone(), is(false));
+
+        publishing.completeExceptionally(new EventPublishingException("error"));
+        assertThat(result.get().getStatus(), equalTo(EventPublishingStatus.FAILED));
+        assertThat(result.get().getStep(), equalTo(EventPublishingStep.PUBLISHING));
+    }
+
+    @Test
+    public void whenAsyncPublishingIsAbortedThenResultIsCompletedImmediately() throws Exception {
+        final EventType eventType = buildDefaultEventType();
+        final JSONArray batch = buildDefaultBatch(1);
+        mockFaultValidation(eventType, "error");
+
+        final CompletableFuture<EventPublishResult> result = publisher.publishAsync(
+                batch.toString().getBytes(UTF_8), eventType.getName(), FULL_ACCESS_CLIENT);
+
+        assertThat(result.isDone(), is(true));
+        assertThat(result.get().getStatus(), equalTo(EventPublishingStatus.ABORTED));
+        verify(topicRepository, times(0)).postBatch(any(), any(), any());
+    }
+
     private void mockFailedPublishing() throws Exception {
+        final CompletableFuture<List<BatchItem>> publishing = new CompletableFuture<>();
+        publishing.completeExceptionally(new EventPublishingException("error"));
         Mockito
-                .doThrow(EventPublishingException.class)
+                .doReturn(publishing)
                 .when(topicRepository)
-                .syncPostBatch(any(), any());
+                .postBatch(any(), any(), any());
+    }
+
+    private EventPublishResult publish(final byte[] events, final String eventTypeName, final Client client)
+            throws Exception {
+        return publisher.publishAsync(events, eventTypeName, client).get();
     }
 
     private void mockFaultPartition(final EventType eventType, final BatchItem item) throws PartitioningException {
@@ -604,7 +662,7 @@ public class EventPublisherTest {
         return new JSONArray(events);
     }
 
-    private String createStringFromBatchItems(final List<BatchItem> batch) {
+    private byte[] createBytesFromBatchItems(final List<BatchItem> batch) {
         final StringBuilder sb = new StringBuilder();
         sb.append("[");
         for (final BatchItem item : batch) {
@@ -612,6 +670,6 @@ public class EventPublisherTest {
             sb.append(",");
         }
         sb.setCharAt(sb.length() - 1, ']');
-        return sb.toString();
+        return sb.toString().getBytes(UTF_8);
     }
 }
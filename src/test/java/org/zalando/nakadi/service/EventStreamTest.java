@@ -12,6 +12,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.zalando.nakadi.domain.ConsumedEvent;
+import org.zalando.nakadi.domain.EventTypePartition;
 import org.zalando.nakadi.domain.NakadiCursor;
 import org.zalando.nakadi.domain.Timeline;
 import org.zalando.nakadi.exceptions.NakadiException;
@@ -23,7 +24,6 @@ import org.zalando.nakadi.service.converter.CursorConverterImpl;
 import org.zalando.nakadi.service.timeline.TimelineService;
 import org.zalando.nakadi.utils.TestUtils;
 import org.zalando.nakadi.view.Cursor;
-import org.zalando.nakadi.view.SubscriptionCursor;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -52,8 +52,13 @@ import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.zalando.nakadi.service.EventStreamWriter.BATCH_SEPARATOR;
 import static org.zalando.nakadi.utils.TestUtils.createFakeTimeline;
@@ -368,6 +373,46 @@ public class EventStreamTest {
                 Optional.of(nCopies(2, new String(DUMMY))))));
     }
 
+    @Test(timeout = 10000)
+    public void whenBatchesAreFilledInTheMiddleOfPollThenTheyAreSentWithLatestOffsets()
+            throws NakadiException, IOException, InterruptedException {
+        final EventStreamConfig config = EventStreamConfig
+                .builder()
+                .withCursors(ImmutableList.of(
+                        new NakadiCursor(TIMELINE, "0", "000000000000000000"),
+                        new NakadiCursor(TIMELINE, "1", "000000000000000000")))
+                .withBatchLimit(2)
+                .withStreamLimit(6)
+                .withBatchTimeout(30)
+                .build();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final String[] partitions = {"0", "1", "0", "0", "1", "0"};
+        final long[] offsets = {0, 0, 1, 2, 1, 3};
+        final LinkedList<ConsumedEvent> events = new LinkedList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            events.add(new ConsumedEvent(("event" + i).getBytes(UTF_8),
+                    new NakadiCursor(TIMELINE, partitions[i], KafkaCursor.toNakadiOffset(offsets[i]))));
+        }
+
+        final EventStream eventStream =
+                new EventStream(predefinedConsumer(events), out, config, mock(BlacklistService.class), cursorConverter,
+                        BYTES_FLUSHED_METER, writerProvider);
+        eventStream.streamEvents(new AtomicBoolean(true), () -> {
+        });
+
+        final String[] batches = out.toString().split(BATCH_SEPARATOR);
+
+        assertThat(batches, arrayWithSize(3));
+        assertThat(batches[0], sameJSONAs(jsonBatch("0", KafkaCursor.toNakadiOffset(1),
+                Optional.of(ImmutableList.of("event0", "event2")))));
+        assertThat(batches[1], sameJSONAs(jsonBatch("1", KafkaCursor.toNakadiOffset(1),
+                Optional.of(ImmutableList.of("event1", "event4")))));
+        assertThat(batches[2], sameJSONAs(jsonBatch("0", KafkaCursor.toNakadiOffset(3),
+                Optional.of(ImmutableList.of("event3", "event5")))));
+    }
+
     private static NakadiKafkaConsumer emptyConsumer() throws NakadiException {
         final NakadiKafkaConsumer nakadiKafkaConsumer = mock(NakadiKafkaConsumer.class);
         when(nakadiKafkaConsumer.readEvents()).thenReturn(Collections.emptyList());
@@ -503,10 +548,25 @@ public class EventStreamTest {
         }
     }
 
+    @Test
+    public void whenBatchIsWrittenThenStreamIsCalledOnce() throws IOException {
+        final OutputStream out = mock(OutputStream.class);
+        final List<byte[]> events = nCopies(100, DUMMY);
+
+        writerProvider.getWriter().writeBatch(out, new Cursor("0", "000000000000000001"), events);
+
+        verify(out, times(1)).write(any(byte[].class), anyInt(), anyInt());
+        verify(out, times(1)).flush();
+        verifyNoMoreInteractions(out);
+    }
+
     @Test
     public void testWriteStreamInfoWhenPresent() {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        final SubscriptionCursor cursor = new SubscriptionCursor("11", "000000000000000012", "event-type", "token-id");
+        final CursorTokenService tokenService = mock(CursorTokenService.class);
+        when(tokenService.generateToken()).thenReturn("token-id");
+        final EncodedCursor cursor = new CursorEncoder(cursorConverter, tokenService).encode(
+                new EventTypePartition("event-type", "11"), new NakadiCursor(TIMELINE, "11", "000000000000000012"));
         final ArrayList<ConsumedEvent> events = Lists.newArrayList(
                 new ConsumedEvent("{\"a\":\"b\"}".getBytes(), mock(NakadiCursor.class)));
 
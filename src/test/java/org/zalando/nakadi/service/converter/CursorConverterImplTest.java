@@ -9,11 +9,14 @@ import org.zalando.nakadi.repository.TopicRepository;
 import org.zalando.nakadi.repository.db.EventTypeCache;
 import org.zalando.nakadi.service.CursorConverter;
 import org.zalando.nakadi.service.timeline.TimelineService;
+import org.zalando.nakadi.utils.TestUtils;
 import org.zalando.nakadi.view.Cursor;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -63,4 +66,27 @@ public class CursorConverterImplTest {
         Assert.assertEquals(partition, nakadiCursor.getPartition());
         Assert.assertEquals("000001", nakadiCursor.getOffset());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void whenOffsetIsWrittenThenItIsTheSameAsConverted() {
+        final CursorConverter converter =
+                new CursorConverterImpl(mock(EventTypeCache.class), mock(TimelineService.class));
+        final Timeline fake = TestUtils.createFakeTimeline("test-et");
+        final Timeline first = TestUtils.buildTimeline("test-et");
+        final Timeline large = new Timeline("test-et", 0x12345, first.getStorage(), "topic", first.getCreatedAt());
+        for (final NakadiCursor cursor : Arrays.asList(
+                new NakadiCursor(fake, "0", "-1"),
+                new NakadiCursor(fake, "0", "12"),
+                new NakadiCursor(fake, "0", "0000000000000000000012"),
+                new NakadiCursor(first, "0", "-1"),
+                new NakadiCursor(first, "0", "000000000000000012"),
+                new NakadiCursor(large, "0", "12"))) {
+            final String expected = converter.convert(cursor).getOffset();
+            Assert.assertEquals(expected.length(), converter.getOffsetLength(cursor));
+
+            final byte[] target = new byte[expected.length() + 2];
+            converter.writeOffset(cursor, target, 1);
+            Assert.assertEquals(expected, new String(target, 1, expected.length(), UTF_8));
+        }
+    }
+}
@@ -139,4 +139,24 @@ public class ExactWeightRebalancerTest {
         assertEquals("3", changed.getNextSession());
         assertEquals(REASSIGNING, changed.getState());
     }
+
+    @Test
+    public void rebalanceShouldLeaveUnevenPartitionToSessionThatHasIt() {
+        final Partition[] changeset = new ExactWeightRebalancer().apply(
+                new Session[]{new Session("0", 1), new Session("1", 1)},
+                new Partition[]{
+                        new Partition("0", "0", "1", null, ASSIGNED),
+                        new Partition("0", "1", "1", null, ASSIGNED),
+                        new Partition("0", "2", "1", null, ASSIGNED)});
+        assertEquals(1, changeset.length);
+        assertEquals("1", changeset[0].getSession());
+        assertEquals("0", changeset[0].getNextSession());
+        assertEquals(REASSIGNING, changeset[0].getState());
+    }
+
+    @Test
+    public void splitByWeightShouldKeepItemsOfSessionsThatHaveThem() {
+        assertArrayEquals(new int[]{1, 2}, ExactWeightRebalancer.splitByWeight(3, new int[]{1, 1}, new int[]{0, 3}));
+        assertArrayEquals(new int[]{2, 1}, ExactWeightRebalancer.splitByWeight(3, new int[]{1, 1}, new int[]{2, 1}));
+    }
 }
@@ -11,12 +11,32 @@ import org.zalando.nakadi.service.subscription.state.State;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 public class StreamingContextTest {
     private static StreamingContext createTestContext(final Consumer<Exception> onException) {
+        return createTestContext(onException, null, null);
+    }
+
+    private static StreamingContext createTestContext(final Consumer<Exception> onException,
+                                                      final Executor eventLoop) {
+        return createTestContext(onException, eventLoop, eventLoop);
+    }
+
+    private static StreamingContext createTestContext(final Consumer<Exception> onException,
+                                                      final Executor eventLoop,
+                                                      final Executor blockingExecutor) {
         final SubscriptionOutput output = new SubscriptionOutput() {
             @Override
             public void onInitialized(final String ignore) throws IOException {
@@ -47,6 +67,7 @@ public class StreamingContextTest {
                 .setCursorTokenService(null)
                 .setObjectMapper(null)
                 .setBlacklistService(null)
+                .setEventLoop(eventLoop, blockingExecutor, 10)
                 .build();
     }
 
@@ -130,6 +151,92 @@ public class StreamingContextTest {
         Assert.assertArrayEquals(new boolean[]{true, true}, onExitCalls);
     }
 
+    @Test
+    public void streamingContextOnEventLoopShouldStopOnException() throws Exception {
+        final AtomicReference<Exception> caughtException = new AtomicReference<>(null);
+        final RuntimeException killerException = new RuntimeException();
+        final ExecutorService eventLoop = Executors.newSingleThreadExecutor();
+        final StreamingContext ctx = createTestContext(caughtException::set, eventLoop);
+
+        final CompletableFuture<Void> finished = ctx.streamAsyncInternal(new State() {
+            @Override
+            public void onEnter() {
+                throw killerException;
+            }
+        });
+
+        finished.get(1, TimeUnit.SECONDS);
+        Assert.assertSame(killerException, caughtException.get());
+        eventLoop.shutdown();
+    }
+
+    @Test
+    public void streamsShouldShareEventLoopThread() throws Exception {
+        final ExecutorService eventLoop = Executors.newSingleThreadExecutor();
+        final StreamingContext first = createTestContext(null, eventLoop);
+        final StreamingContext second = createTestContext(null, eventLoop);
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        final CompletableFuture<Void> firstFinished = first.streamAsyncInternal(createCountingState("first", calls));
+        final CompletableFuture<Void> secondFinished = second.streamAsyncInternal(createCountingState("second", calls));
+
+        firstFinished.get(1, TimeUnit.SECONDS);
+        secondFinished.get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(200, calls.size());
+        eventLoop.shutdown();
+    }
+
+    @Test
+    public void whenStreamIsBlockedThenOtherStreamsAreProcessed() throws Exception {
+        final ExecutorService eventLoop = Executors.newSingleThreadExecutor();
+        final ExecutorService blockingExecutor = Executors.newCachedThreadPool();
+        final StreamingContext blocked = createTestContext(null, eventLoop, blockingExecutor);
+        final StreamingContext other = createTestContext(null, eventLoop, blockingExecutor);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        // state switch is a blocking task, so waiting in onEnter doesn't occupy the event loop thread
+        final CompletableFuture<Void> blockedFinished = blocked.streamAsyncInternal(new State() {
+            @Override
+            public void onEnter() {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                switchState(StreamingContext.DEAD_STATE);
+            }
+        });
+        other.streamAsyncInternal(createCountingState("other", calls)).get(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals(100, calls.size());
+        Assert.assertFalse(blockedFinished.isDone());
+        release.countDown();
+        blockedFinished.get(1, TimeUnit.SECONDS);
+        eventLoop.shutdown();
+        blockingExecutor.shutdown();
+    }
+
+    private static State createCountingState(final String name, final List<String> calls) {
+        return new State() {
+            private int count;
+
+            @Override
+            public void onEnter() {
+                addTask(this::call);
+            }
+
+            private void call() {
+                calls.add(name);
+                if (++count < 100) {
+                    addTask(this::call);
+                } else {
+                    switchState(StreamingContext.DEAD_STATE);
+                }
+            }
+        };
+    }
+
     @Test
     @Ignore
     public void testOnNodeShutdown() throws Exception {
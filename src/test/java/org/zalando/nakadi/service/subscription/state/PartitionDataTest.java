@@ -63,6 +63,26 @@ public class PartitionDataTest {
         }
     }
 
+    @Test
+    public void commitInFutureShouldSkipEventsThatWereNotSent() {
+        final PartitionData pd = new PartitionData(null, createCursor(100L), System.currentTimeMillis());
+        for (long i = 0; i < 20; ++i) {
+            pd.addEvent(new ConsumedEvent(("test_" + i).getBytes(), createCursor(100L + i + 1)));
+        }
+        pd.takeEventsToStream(currentTimeMillis(), 5, 0L);
+        assertEquals(5L, pd.getUnconfirmed());
+
+        final PartitionData.CommitResult cr = pd.onCommitOffset(createCursor(110L));
+        assertEquals(10L, cr.committedCount);
+        assertEquals(true, cr.seekOnKafka);
+        assertEquals(0L, pd.getUnconfirmed());
+
+        final List<ConsumedEvent> data = pd.takeEventsToStream(currentTimeMillis(), 100, 0L);
+        assertNotNull(data);
+        assertEquals(10, data.size());
+        assertEquals(createCursor(111L), data.get(0).getPosition());
+    }
+
     @Test
     public void keepAliveCountShouldIncreaseOnEachEmptyCall() {
         final PartitionData pd = new PartitionData(null, createCursor(100L), System.currentTimeMillis());
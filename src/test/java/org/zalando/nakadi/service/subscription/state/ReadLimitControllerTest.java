@@ -0,0 +1,46 @@
+package org.zalando.nakadi.service.subscription.state;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReadLimitControllerTest {
+
+    @Test
+    public void whenReadsAreFullThenLimitGrowsUpToMax() {
+        final ReadLimitController controller = new ReadLimitController(10, 50);
+        assertThat(controller.getLimit(), equalTo(10));
+        assertThat(controller.onRead(10), equalTo(20));
+        assertThat(controller.onRead(20), equalTo(40));
+        assertThat(controller.onRead(40), equalTo(50));
+        assertThat(controller.onRead(50), equalTo(50));
+    }
+
+    @Test
+    public void whenReadsAreNotFullThenLimitIsKept() {
+        final ReadLimitController controller = new ReadLimitController(10, 50);
+        controller.onRead(10);
+        assertThat(controller.onRead(5), equalTo(20));
+        assertThat(controller.onRead(0), equalTo(20));
+    }
+
+    @Test
+    public void whenBackpressureThenLimitShrinksDownToMin() {
+        final ReadLimitController controller = new ReadLimitController(10, 80);
+        controller.onRead(10);
+        controller.onRead(20);
+        controller.onRead(40);
+        assertThat(controller.onBackpressure(), equalTo(40));
+        assertThat(controller.onBackpressure(), equalTo(20));
+        assertThat(controller.onBackpressure(), equalTo(10));
+        assertThat(controller.onBackpressure(), equalTo(10));
+    }
+
+    @Test
+    public void whenMinIsOverMaxThenMaxIsUsed() {
+        final ReadLimitController controller = new ReadLimitController(100, 30);
+        assertThat(controller.getLimit(), equalTo(30));
+        assertThat(controller.onRead(30), equalTo(30));
+    }
+}
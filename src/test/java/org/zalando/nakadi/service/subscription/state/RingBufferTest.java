@@ -0,0 +1,57 @@
+package org.zalando.nakadi.service.subscription.state;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RingBufferTest {
+
+    @Test
+    public void whenElementsAreAddedAndRemovedThenOrderIsKept() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>();
+        int next = 0;
+        int expectedFirst = 0;
+        // head is moving around the array and the array is growing in between
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 7 * round + 3; i++) {
+                buffer.add(next++);
+            }
+            final int toRemove = buffer.size() / 2;
+            assertThat(buffer.removeFirst(toRemove), equalTo(IntStream.range(expectedFirst, expectedFirst + toRemove)
+                    .boxed().collect(Collectors.toList())));
+            expectedFirst += toRemove;
+            assertThat(buffer.getFirst(), equalTo(expectedFirst));
+            assertThat(buffer.getLast(), equalTo(next - 1));
+            assertThat(buffer.size(), equalTo(next - expectedFirst));
+        }
+    }
+
+    @Test
+    public void whenCountNotGreaterThenBinarySearchIsUsed() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>();
+        buffer.add(-100);
+        buffer.discardFirst(1);
+        IntStream.of(10, 20, 30, 40).forEach(buffer::add);
+
+        assertThat(buffer.countNotGreaterThan(5, Comparator.naturalOrder()), equalTo(0));
+        assertThat(buffer.countNotGreaterThan(20, Comparator.naturalOrder()), equalTo(2));
+        assertThat(buffer.countNotGreaterThan(25, Comparator.naturalOrder()), equalTo(2));
+        assertThat(buffer.countNotGreaterThan(100, Comparator.naturalOrder()), equalTo(4));
+    }
+
+    @Test
+    public void whenRemovingMoreThanSizeThenAllElementsAreRemoved() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>();
+        buffer.add(1);
+        buffer.add(2);
+
+        assertThat(buffer.removeFirst(10), contains(1, 2));
+        assertThat(buffer.isEmpty(), equalTo(true));
+    }
+}
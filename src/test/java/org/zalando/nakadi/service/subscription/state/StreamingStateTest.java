@@ -86,11 +86,12 @@ public class StreamingStateTest {
     @Test
     public void ensureTopologyEventListenerRegisteredRefreshedClosed() {
         final ZKSubscription topologySubscription = mock(ZKSubscription.class);
-        Mockito.when(zkMock.subscribeForTopologyChanges(Mockito.anyObject())).thenReturn(topologySubscription);
+        Mockito.when(zkMock.subscribeForTopologyChanges(Mockito.anyString(), Mockito.anyObject()))
+                .thenReturn(topologySubscription);
 
         state.onEnter();
 
-        Mockito.verify(zkMock, Mockito.times(1)).subscribeForTopologyChanges(Mockito.any());
+        Mockito.verify(zkMock, Mockito.times(1)).subscribeForTopologyChanges(Mockito.anyString(), Mockito.any());
         Mockito.verify(topologySubscription, Mockito.times(0)).refresh();
 
         state.topologyChanged();
@@ -102,7 +103,7 @@ public class StreamingStateTest {
 
         Mockito.verify(topologySubscription, Mockito.times(1)).cancel();
         // verify that no new locks created.
-        Mockito.verify(zkMock, Mockito.times(1)).subscribeForTopologyChanges(Mockito.any());
+        Mockito.verify(zkMock, Mockito.times(1)).subscribeForTopologyChanges(Mockito.anyString(), Mockito.any());
     }
 
     @Test
@@ -116,7 +117,7 @@ public class StreamingStateTest {
 
         final EventConsumer.ReassignableEventConsumer consumer = mock(EventConsumer.ReassignableEventConsumer.class);
         when(consumer.getAssignment()).thenReturn(Collections.emptySet());
-        when(timelineService.createEventConsumer(any())).thenReturn(consumer);
+        when(timelineService.createEventConsumer(any(), any())).thenReturn(consumer);
         when(subscription.getEventTypes()).thenReturn(Collections.singleton("t"));
 
         final Timeline timeline = new Timeline("t", 0, null, "t", new Date());
@@ -0,0 +1,253 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.GetDataBuilder;
+import org.apache.curator.framework.api.transaction.CuratorTransactionBridge;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.api.transaction.TransactionSetDataBuilder;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.zalando.nakadi.domain.EventTypePartition;
+import org.zalando.nakadi.exceptions.NakadiRuntimeException;
+import org.zalando.nakadi.view.SubscriptionCursorWithoutToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class AbstractZkSubscriptionClientTest {
+
+    private static final EventTypePartition ETP_0 = new EventTypePartition("et", "0");
+    private static final EventTypePartition ETP_1 = new EventTypePartition("et", "1");
+    private static final Comparator<SubscriptionCursorWithoutToken> COMPARATOR =
+            Comparator.comparing(SubscriptionCursorWithoutToken::getOffset);
+
+    private final Map<String, String> offsets = new HashMap<>();
+    private final Map<String, Integer> versions = new HashMap<>();
+    private final Map<String, Integer> concurrentChanges = new HashMap<>();
+    private final Map<String, String> concurrentOffsets = new HashMap<>();
+    private final List<String> reads = new ArrayList<>();
+    private final List<List<String>> transactions = new ArrayList<>();
+    private KeeperException.Code commitError;
+    private BackgroundCallback readCallback;
+    private CuratorFramework curator;
+    private NewZkSubscriptionClient client;
+
+    @Before
+    public void before() throws Exception {
+        curator = mock(CuratorFramework.class);
+        client = new NewZkSubscriptionClient(
+                "sid", curator, "test", new ObjectMapper(), new MetricRegistry(), null, 100);
+
+        // the type of the builder returned by inBackground differs between curator versions, so it is created by
+        // deep stubs and is only passed around as an object
+        final GetDataBuilder backgroundGetData = mock(GetDataBuilder.class, RETURNS_DEEP_STUBS);
+        when(backgroundGetData.inBackground(any(BackgroundCallback.class)).forPath(anyString()))
+                .thenAnswer(this::readInBackground);
+        final Object backgroundPathable = backgroundGetData.inBackground(mock(BackgroundCallback.class));
+        final GetDataBuilder getData = mock(GetDataBuilder.class);
+        when(getData.inBackground(any(BackgroundCallback.class))).thenAnswer(invocation -> {
+            readCallback = (BackgroundCallback) invocation.getArguments()[0];
+            return backgroundPathable;
+        });
+        when(curator.getData()).thenReturn(getData);
+        when(curator.inTransaction()).thenAnswer(invocation -> new FakeTransaction().transaction);
+
+        setOffset(ETP_0, "001");
+        setOffset(ETP_1, "001");
+    }
+
+    @Test
+    public void whenOffsetsAreCommittedThenTheyAreWrittenInOneTransaction() {
+        final List<Boolean> committed = client.commitOffsets(
+                cursors(cursor(ETP_0, "002"), cursor(ETP_1, "003"), cursor(ETP_0, "001")), COMPARATOR);
+
+        assertThat(committed, contains(true, true, false));
+        assertThat(transactions, contains(contains(path(ETP_0), path(ETP_1))));
+        assertThat(offsets.get(path(ETP_0)), equalTo("002"));
+        assertThat(offsets.get(path(ETP_1)), equalTo("003"));
+    }
+
+    @Test
+    public void whenOffsetsAreNotGreaterThenNothingIsWritten() {
+        final List<Boolean> committed = client.commitOffsets(
+                cursors(cursor(ETP_0, "001"), cursor(ETP_1, "000")), COMPARATOR);
+
+        assertThat(committed, contains(false, false));
+        assertThat(transactions.size(), equalTo(0));
+    }
+
+    @Test
+    public void whenOffsetIsChangedConcurrentlyThenOnlyItIsReadAgain() {
+        concurrentChanges.put(path(ETP_0), 1);
+
+        final List<Boolean> committed = client.commitOffsets(
+                cursors(cursor(ETP_0, "002"), cursor(ETP_1, "002")), COMPARATOR);
+
+        assertThat(committed, contains(true, true));
+        assertThat(reads, contains(path(ETP_0), path(ETP_1), path(ETP_0)));
+        assertThat(transactions.size(), equalTo(2));
+        assertThat(offsets.get(path(ETP_0)), equalTo("002"));
+        assertThat(offsets.get(path(ETP_1)), equalTo("002"));
+    }
+
+    @Test
+    public void whenOffsetIsChangedConcurrentlyToGreaterOneThenCursorIsNotCommitted() {
+        concurrentChanges.put(path(ETP_1), 1);
+        concurrentOffsets.put(path(ETP_1), "003");
+
+        final List<Boolean> committed = client.commitOffsets(
+                cursors(cursor(ETP_0, "002"), cursor(ETP_1, "002")), COMPARATOR);
+
+        assertThat(committed, contains(true, false));
+        assertThat(reads, contains(path(ETP_0), path(ETP_1), path(ETP_1)));
+        assertThat(transactions, contains(contains(path(ETP_0), path(ETP_1)), contains(path(ETP_0))));
+        assertThat(offsets.get(path(ETP_0)), equalTo("002"));
+        assertThat(offsets.get(path(ETP_1)), equalTo("003"));
+    }
+
+    @Test
+    public void whenOffsetKeepsChangingConcurrentlyThenItIsNotCommittedAndOtherOffsetsAre() {
+        concurrentChanges.put(path(ETP_0), Integer.MAX_VALUE);
+
+        final List<Boolean> committed = client.commitOffsets(
+                cursors(cursor(ETP_0, "002"), cursor(ETP_1, "002"), cursor(ETP_0, "003")), COMPARATOR);
+
+        assertThat(committed, contains(false, true, false));
+        assertThat(transactions.size(), equalTo(6));
+        assertThat(transactions.get(5), contains(path(ETP_1)));
+        assertThat(offsets.get(path(ETP_0)), equalTo("001"));
+        assertThat(offsets.get(path(ETP_1)), equalTo("002"));
+    }
+
+    @Test(expected = NakadiRuntimeException.class)
+    public void whenTransactionFailsWithoutConflictThenExceptionIsThrown() {
+        commitError = KeeperException.Code.NONODE;
+
+        client.commitOffsets(cursors(cursor(ETP_0, "002"), cursor(ETP_1, "002")), COMPARATOR);
+    }
+
+    private Object readInBackground(final InvocationOnMock invocation) throws Exception {
+        final String path = (String) invocation.getArguments()[0];
+        reads.add(path);
+        final Stat stat = new Stat();
+        stat.setVersion(versions.get(path));
+        final CuratorEvent event = mock(CuratorEvent.class);
+        when(event.getResultCode()).thenReturn(KeeperException.Code.OK.intValue());
+        when(event.getData()).thenReturn(offsets.get(path).getBytes(UTF_8));
+        when(event.getStat()).thenReturn(stat);
+        readCallback.processResult(curator, event);
+        return null;
+    }
+
+    /**
+     * Transaction that is applied to the offsets like zookeeper applies multi operations: it fails on the first
+     * operation with stale version and reports the following operations as not checked.
+     */
+    private class FakeTransaction {
+        private final CuratorTransactionFinal transaction = mock(CuratorTransactionFinal.class, withSettings()
+                .extraInterfaces(CuratorTransactionBridge.class, TransactionSetDataBuilder.class)
+                .defaultAnswer(this::answer));
+        private final List<String> paths = new ArrayList<>();
+        private final List<Integer> opVersions = new ArrayList<>();
+        private final List<String> opOffsets = new ArrayList<>();
+
+        private Object answer(final InvocationOnMock invocation) throws Throwable {
+            switch (invocation.getMethod().getName()) {
+                case "withVersion":
+                    opVersions.add((Integer) invocation.getArguments()[0]);
+                    return transaction;
+                case "forPath":
+                    paths.add((String) invocation.getArguments()[0]);
+                    opOffsets.add(new String((byte[]) invocation.getArguments()[1], UTF_8));
+                    return transaction;
+                case "commit":
+                    commit();
+                    return Collections.emptyList();
+                default:
+                    return invocation.getMethod().getReturnType().isInstance(transaction) ?
+                            transaction : RETURNS_DEFAULTS.answer(invocation);
+            }
+        }
+
+        private void commit() throws KeeperException {
+            transactions.add(paths);
+            for (final String path : paths) {
+                if (concurrentChanges.getOrDefault(path, 0) > 0) {
+                    concurrentChanges.merge(path, -1, Integer::sum);
+                    offsets.put(path, concurrentOffsets.getOrDefault(path, offsets.get(path)));
+                    versions.merge(path, 1, Integer::sum);
+                }
+            }
+            final List<OpResult> results = new ArrayList<>();
+            KeeperException.Code failure = null;
+            for (int i = 0; i < paths.size(); ++i) {
+                if (null != failure) {
+                    results.add(new OpResult.ErrorResult(KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()));
+                } else if (null != commitError) {
+                    failure = commitError;
+                    results.add(new OpResult.ErrorResult(commitError.intValue()));
+                } else if (!versions.get(paths.get(i)).equals(opVersions.get(i))) {
+                    failure = KeeperException.Code.BADVERSION;
+                    results.add(new OpResult.ErrorResult(failure.intValue()));
+                } else {
+                    results.add(new OpResult.ErrorResult(KeeperException.Code.OK.intValue()));
+                }
+            }
+            if (null != failure) {
+                throw new KeeperException.BadVersionException() {
+                    @Override
+                    public List<OpResult> getResults() {
+                        return results;
+                    }
+                };
+            }
+            for (int i = 0; i < paths.size(); ++i) {
+                offsets.put(paths.get(i), opOffsets.get(i));
+                versions.merge(paths.get(i), 1, Integer::sum);
+            }
+        }
+    }
+
+    private void setOffset(final EventTypePartition etp, final String offset) {
+        offsets.put(path(etp), offset);
+        versions.put(path(etp), 0);
+    }
+
+    private String path(final EventTypePartition etp) {
+        return client.getOffsetPath(etp);
+    }
+
+    private static SubscriptionCursorWithoutToken cursor(final EventTypePartition etp, final String offset) {
+        return new SubscriptionCursorWithoutToken(etp.getEventType(), etp.getPartition(), offset);
+    }
+
+    private static List<SubscriptionCursorWithoutToken> cursors(final SubscriptionCursorWithoutToken... cursors) {
+        final List<SubscriptionCursorWithoutToken> result = new ArrayList<>();
+        Collections.addAll(result, cursors);
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.zalando.nakadi.service.subscription.model.Partition;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ShardedTopologyTest {
+
+    @Test
+    public void whenPartitionIsOnShardBoundaryThenItsShardIsFound() {
+        final List<ShardedTopology.Shard> shards = ImmutableList.of(
+                new ShardedTopology.Shard("et_0", 0, 0, 2),
+                new ShardedTopology.Shard("et_1", 0, 2, 4),
+                new ShardedTopology.Shard("et_2", 0, 4, 5));
+
+        assertThat(ShardedTopology.findShard(shards, 0), equalTo(0));
+        assertThat(ShardedTopology.findShard(shards, 1), equalTo(0));
+        assertThat(ShardedTopology.findShard(shards, 2), equalTo(1));
+        assertThat(ShardedTopology.findShard(shards, 3), equalTo(1));
+        assertThat(ShardedTopology.findShard(shards, 4), equalTo(2));
+    }
+
+    @Test
+    public void whenThereIsOneShardThenAllPartitionsAreInIt() {
+        final List<ShardedTopology.Shard> shards = ImmutableList.of(new ShardedTopology.Shard("et_0", 0, 0, 3));
+
+        assertThat(ShardedTopology.findShard(shards, 0), equalTo(0));
+        assertThat(ShardedTopology.findShard(shards, 2), equalTo(0));
+    }
+
+    @Test
+    public void whenTopologyIsCreatedThenPartitionsAreGroupedByEventTypeAndSplitByShardSize() {
+        final NewZkSubscriptionClient.Topology topology = ShardedTopology.create(new Partition[]{
+                unassigned("et1", "0"), unassigned("et2", "0"), unassigned("et1", "1"), unassigned("et1", "2")}, 2);
+
+        assertThat(keys(topology.getPartitions()), contains("et1:0", "et1:1", "et1:2", "et2:0"));
+        assertThat(names(topology.getShards()), contains("et1_0", "et1_1", "et2_0"));
+        assertThat(shardNamesOfPartitions(topology), contains("et1_0", "et1_0", "et1_1", "et2_0"));
+    }
+
+    @Test
+    public void whenPartitionsFitIntoOneShardThenSingleShardIsCreated() {
+        final NewZkSubscriptionClient.Topology topology = ShardedTopology.create(new Partition[]{
+                unassigned("et", "0"), unassigned("et", "1"), unassigned("et", "2")}, 3);
+
+        assertThat(topology.getVersion(), equalTo(0));
+        assertThat(keys(topology.getPartitions()), contains("et:0", "et:1", "et:2"));
+        assertThat(names(topology.getShards()), contains("et_0"));
+        assertThat(shardNamesOfPartitions(topology), contains("et_0", "et_0", "et_0"));
+    }
+
+    @Test
+    public void whenThereAreNoPartitionsThenNoShardsAreCreated() {
+        final NewZkSubscriptionClient.Topology topology = ShardedTopology.create(new Partition[0], 2);
+
+        assertThat(topology.getPartitions().length, equalTo(0));
+        assertThat(topology.getShards(), empty());
+    }
+
+    @Test
+    public void whenSeveralShardsAreChangedThenSessionsOfAllOfThemAreReported() {
+        final NewZkSubscriptionClient.Topology initial = ShardedTopology.create(new Partition[]{
+                assigned("et", "0", "s1"), assigned("et", "1", "s1"), assigned("et", "2", "s2"),
+                assigned("et", "3", "s2"), assigned("et", "4", "s3"), assigned("et", "5", "s4")}, 2);
+
+        final NewZkSubscriptionClient.Topology updated = initial.withUpdatedPartitions(new Partition[]{
+                new Partition("et", "0", "s1", "s5", Partition.State.REASSIGNING),
+                assigned("et", "5", "s6")});
+
+        assertThat(updated.getShards().stream().map(ShardedTopology.Shard::getVersion).collect(Collectors.toList()),
+                contains(1, 0, 1));
+        assertThat(ShardedTopology.getChangedSessions(initial, updated), containsInAnyOrder("s1", "s4", "s6"));
+    }
+
+    @Test
+    public void whenShardVersionIsNotChangedThenItsPartitionsAreNotCompared() {
+        final NewZkSubscriptionClient.Topology initial = ShardedTopology.create(new Partition[]{
+                assigned("et", "0", "s1"), assigned("et", "1", "s2")}, 1);
+        final NewZkSubscriptionClient.Topology current = new NewZkSubscriptionClient.Topology(new Partition[]{
+                assigned("et", "0", "s3"), assigned("et", "1", "s4")}, 1, ImmutableList.of(
+                new ShardedTopology.Shard("et_0", 0, 0, 1),
+                new ShardedTopology.Shard("et_1", 1, 1, 2)));
+
+        assertThat(ShardedTopology.getChangedSessions(initial, current), containsInAnyOrder("s2", "s4"));
+    }
+
+    @Test
+    public void whenTopologiesCanNotBeComparedThenChangedSessionsAreUnknown() {
+        final NewZkSubscriptionClient.Topology topology = ShardedTopology.create(new Partition[]{
+                assigned("et", "0", "s1"), assigned("et", "1", "s2")}, 1);
+        final NewZkSubscriptionClient.Topology smaller = ShardedTopology.create(new Partition[]{
+                assigned("et", "0", "s1")}, 1);
+
+        assertThat(ShardedTopology.getChangedSessions(null, topology), nullValue());
+        assertThat(ShardedTopology.getChangedSessions(smaller, topology), nullValue());
+    }
+
+    private static List<String> shardNamesOfPartitions(final NewZkSubscriptionClient.Topology topology) {
+        final List<ShardedTopology.Shard> shards = topology.getShards();
+        return IntStream.range(0, topology.getPartitions().length)
+                .mapToObj(idx -> shards.get(ShardedTopology.findShard(shards, idx)).getName())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> names(final List<ShardedTopology.Shard> shards) {
+        return shards.stream().map(ShardedTopology.Shard::getName).collect(Collectors.toList());
+    }
+
+    private static List<String> keys(final Partition[] partitions) {
+        return Arrays.stream(partitions)
+                .map(partition -> partition.getEventType() + ":" + partition.getPartition())
+                .collect(Collectors.toList());
+    }
+
+    private static Partition unassigned(final String eventType, final String partition) {
+        return new Partition(eventType, partition, null, null, Partition.State.UNASSIGNED);
+    }
+
+    private static Partition assigned(final String eventType, final String partition, final String session) {
+        return new Partition(eventType, partition, session, null, Partition.State.ASSIGNED);
+    }
+}
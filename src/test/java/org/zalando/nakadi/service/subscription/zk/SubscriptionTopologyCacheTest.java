@@ -0,0 +1,255 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.listen.ListenerContainer;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zalando.nakadi.config.JsonConfig;
+import org.zalando.nakadi.repository.zookeeper.ZooKeeperHolder;
+import org.zalando.nakadi.service.subscription.model.Partition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SubscriptionTopologyCacheTest {
+
+    private static final String SID = "sid";
+    private static final long IDLE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final ObjectMapper MAPPER = new JsonConfig().jacksonObjectMapper();
+
+    private final AtomicReference<ChildData> topologyData = new AtomicReference<>();
+    private final List<NodeCache> nodeCaches = new ArrayList<>();
+    private final List<NodeCacheListener> nodeCacheListeners = new ArrayList<>();
+    private SubscriptionTopologyCache cache;
+
+    @Before
+    public void before() throws Exception {
+        final CuratorFramework curator = mock(CuratorFramework.class, RETURNS_DEEP_STUBS);
+        when(curator.getChildren().storingStatIn(any(Stat.class)).usingWatcher(any(Watcher.class))
+                .forPath(anyString())).thenReturn(Collections.emptyList());
+        final ZooKeeperHolder zkHolder = mock(ZooKeeperHolder.class);
+        when(zkHolder.get()).thenReturn(curator);
+
+        cache = new SubscriptionTopologyCache(zkHolder, MAPPER, IDLE_MS) {
+            @Override
+            NodeCache createTopologyCache(final String topologyPath) {
+                return mockNodeCache();
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        cache.close();
+    }
+
+    @Test
+    public void whenEntryIsNotUsedForIdleTimeThenItIsClosed() throws Exception {
+        setTopology(0, "s1");
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(SID);
+
+        cache.closeIdleEntries(System.currentTimeMillis());
+        assertThat(cache.getEntry(SID), sameInstance(entry));
+
+        cache.closeIdleEntries(System.currentTimeMillis() + IDLE_MS + 1);
+        verify(nodeCaches.get(0), times(1)).close();
+        assertThat(entry.getTopology(), nullValue());
+
+        final SubscriptionTopologyCache.Entry newEntry = cache.getEntry(SID);
+        assertThat(newEntry, not(sameInstance(entry)));
+        assertThat(newEntry.getTopology().getPartitions()[0].getSession(), equalTo("s1"));
+        assertThat(nodeCaches.size(), equalTo(2));
+    }
+
+    @Test
+    public void whenEntryHasListenersThenItIsNotClosedAsIdle() throws Exception {
+        setTopology(0, "s1");
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(SID);
+        final ZKSubscription subscription = entry.addTopologyListener(() -> {
+        });
+
+        cache.closeIdleEntries(System.currentTimeMillis() + IDLE_MS + 1);
+        verify(nodeCaches.get(0), never()).close();
+        assertThat(cache.getEntry(SID), sameInstance(entry));
+
+        subscription.cancel();
+        cache.closeIdleEntries(System.currentTimeMillis() + IDLE_MS + 1);
+        verify(nodeCaches.get(0), times(1)).close();
+    }
+
+    @Test
+    public void whenTopologyWatchFiresThenCachedTopologyIsReplacedAndSessionsAreNotified() throws Exception {
+        setTopology(0, "s1", "s2");
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(SID);
+        final AtomicInteger allNotifications = new AtomicInteger();
+        final AtomicInteger s2Notifications = new AtomicInteger();
+        final AtomicInteger s3Notifications = new AtomicInteger();
+        final AtomicReference<String> seenByS1 = new AtomicReference<>();
+        entry.addTopologyListener(allNotifications::incrementAndGet);
+        entry.addTopologyListener("s1", () -> {
+            final NewZkSubscriptionClient.Topology topology = entry.getTopology();
+            seenByS1.set(null == topology ? null : topology.getPartitions()[0].getSession());
+        });
+        entry.addTopologyListener("s2", s2Notifications::incrementAndGet);
+        entry.addTopologyListener("s3", s3Notifications::incrementAndGet);
+
+        setTopology(1, "s4", "s2");
+        fireTopologyWatch();
+
+        assertThat(entry.getTopology().getVersion(), equalTo(1));
+        assertThat(seenByS1.get(), equalTo("s4"));
+        assertThat(allNotifications.get(), equalTo(1));
+        assertThat(s2Notifications.get(), equalTo(0));
+        assertThat(s3Notifications.get(), equalTo(0));
+
+        topologyData.set(null);
+        fireTopologyWatch();
+
+        assertThat(entry.getTopology(), nullValue());
+        assertThat(allNotifications.get(), equalTo(2));
+        assertThat(s2Notifications.get(), equalTo(1));
+        assertThat(s3Notifications.get(), equalTo(1));
+    }
+
+    @Test
+    public void whenWatchFiresWithStaleTopologyThenNewerTopologyIsKept() throws Exception {
+        setTopology(2, "s2");
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(SID);
+        final AtomicInteger notifications = new AtomicInteger();
+        entry.addTopologyListener("s1", notifications::incrementAndGet);
+
+        topologyData.set(topologyData(1, "s1"));
+        fireTopologyWatch();
+
+        assertThat(entry.getTopology().getVersion(), equalTo(2));
+        assertThat(entry.getTopology().getPartitions()[0].getSession(), equalTo("s2"));
+        assertThat(notifications.get(), equalTo(0));
+    }
+
+    @Test(timeout = 30000)
+    public void whenTopologyIsReadWhileItIsUpdatedThenReadersSeeConsistentAndNotDecreasingVersions()
+            throws Exception {
+        final int updates = 1000;
+        setTopology(0, "s0", "s0");
+        final SubscriptionTopologyCache.Entry entry = cache.getEntry(SID);
+        final AtomicBoolean updating = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                readers.add(executor.submit(() -> {
+                    int lastVersion = 0;
+                    while (updating.get()) {
+                        final NewZkSubscriptionClient.Topology topology = entry.getTopology();
+                        assertThat(topology.getVersion() >= lastVersion, equalTo(true));
+                        for (final Partition partition : topology.getPartitions()) {
+                            assertThat(partition.getSession(), equalTo("s" + topology.getVersion()));
+                        }
+                        lastVersion = topology.getVersion();
+                    }
+                    return null;
+                }));
+            }
+            // the watch may fire from several threads, e.g. while the entry is started
+            final List<Future<?>> watchers = new ArrayList<>();
+            final AtomicInteger nextVersion = new AtomicInteger(1);
+            for (int i = 0; i < 2; i++) {
+                watchers.add(executor.submit(() -> {
+                    for (int version = nextVersion.getAndIncrement(); version <= updates;
+                         version = nextVersion.getAndIncrement()) {
+                        setTopology(version, "s" + version, "s" + version);
+                        fireTopologyWatch();
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> watcher : watchers) {
+                watcher.get();
+            }
+            updating.set(false);
+            for (final Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        fireTopologyWatch();
+        assertThat(entry.getTopology().getVersion(), equalTo(updates));
+    }
+
+    private NodeCache mockNodeCache() {
+        final NodeCache nodeCache = mock(NodeCache.class);
+        final ListenerContainer<NodeCacheListener> listenable = mock(ListenerContainer.class);
+        doAnswer(invocation -> {
+            synchronized (nodeCacheListeners) {
+                nodeCacheListeners.add((NodeCacheListener) invocation.getArguments()[0]);
+            }
+            return null;
+        }).when(listenable).addListener(any(NodeCacheListener.class));
+        when(nodeCache.getListenable()).thenReturn(listenable);
+        when(nodeCache.getCurrentData()).thenAnswer(invocation -> topologyData.get());
+        nodeCaches.add(nodeCache);
+        return nodeCache;
+    }
+
+    private void fireTopologyWatch() throws Exception {
+        final NodeCacheListener listener;
+        synchronized (nodeCacheListeners) {
+            listener = nodeCacheListeners.get(nodeCacheListeners.size() - 1);
+        }
+        listener.nodeChanged();
+    }
+
+    /**
+     * Sets data of topology node unless it already has a newer version, as versions of zookeeper nodes only grow.
+     */
+    private void setTopology(final int version, final String... sessions) throws Exception {
+        final ChildData data = topologyData(version, sessions);
+        topologyData.updateAndGet(current -> null != current && current.getStat().getVersion() > version ?
+                current : data);
+    }
+
+    /**
+     * Data of topology node with one partition per session.
+     */
+    private static ChildData topologyData(final int version, final String... sessions) throws Exception {
+        final Partition[] partitions = new Partition[sessions.length];
+        for (int i = 0; i < sessions.length; i++) {
+            partitions[i] = new Partition("et", String.valueOf(i), sessions[i], null, Partition.State.ASSIGNED);
+        }
+        final Stat stat = new Stat();
+        stat.setVersion(version);
+        return new ChildData("/topology", stat,
+                MAPPER.writeValueAsBytes(new NewZkSubscriptionClient.Topology(partitions, version)));
+    }
+}
@@ -0,0 +1,54 @@
+package org.zalando.nakadi.service.subscription.zk;
+
+import org.junit.Test;
+import org.zalando.nakadi.exceptions.runtime.MyNakadiRuntimeException1;
+import org.zalando.nakadi.service.subscription.model.Partition;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TopologyTest {
+
+    private final Partition[] partitions = new Partition[]{
+            new Partition("et1", "0", "s1", null, Partition.State.ASSIGNED),
+            new Partition("et1", "1", "s1", null, Partition.State.ASSIGNED),
+            new Partition("et2", "0", null, null, Partition.State.UNASSIGNED)};
+
+    @Test
+    public void whenPartitionsAreUpdatedThenTheyAreReplacedByKey() {
+        final NewZkSubscriptionClient.Topology topology = new NewZkSubscriptionClient.Topology(partitions, 3);
+        final Partition reassigning = new Partition("et1", "1", "s1", "s2", Partition.State.REASSIGNING);
+        final Partition assigned = new Partition("et2", "0", "s2", null, Partition.State.ASSIGNED);
+
+        final NewZkSubscriptionClient.Topology updated =
+                topology.withUpdatedPartitions(new Partition[]{assigned, reassigning});
+
+        assertThat(updated.getVersion(), equalTo(4));
+        assertThat(updated.getPartitions()[0], sameInstance(partitions[0]));
+        assertThat(updated.getPartitions()[1], sameInstance(reassigning));
+        assertThat(updated.getPartitions()[2], sameInstance(assigned));
+        assertThat(topology.getPartitions()[2].getSession(), nullValue());
+    }
+
+    @Test
+    public void whenUpdatedTopologyIsUpdatedAgainThenPartitionsAreFoundByKey() {
+        final Partition released = new Partition("et1", "0", null, null, Partition.State.UNASSIGNED);
+        final Partition taken = new Partition("et1", "0", "s3", null, Partition.State.ASSIGNED);
+
+        final NewZkSubscriptionClient.Topology updated = new NewZkSubscriptionClient.Topology(partitions, 0)
+                .withUpdatedPartitions(new Partition[]{released})
+                .withUpdatedPartitions(new Partition[]{taken});
+
+        assertThat(updated.getVersion(), equalTo(2));
+        assertThat(updated.getPartitions()[0], sameInstance(taken));
+        assertThat(updated.getPartitions()[1], sameInstance(partitions[1]));
+    }
+
+    @Test(expected = MyNakadiRuntimeException1.class)
+    public void whenUnknownPartitionIsUpdatedThenExceptionIsThrown() {
+        new NewZkSubscriptionClient.Topology(partitions, 0).withUpdatedPartitions(new Partition[]{
+                new Partition("et2", "1", "s1", null, Partition.State.ASSIGNED)});
+    }
+}
@@ -0,0 +1,105 @@
+package org.zalando.nakadi.validation;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompiledSchemaTest {
+
+    private static final String OBJECT_SCHEMA = "{\"type\":\"object\",\"additionalProperties\":false," +
+            "\"required\":[\"id\",\"status\"],\"properties\":{" +
+            "\"id\":{\"type\":\"string\",\"pattern\":\"^[a-z]+$\",\"maxLength\":5}," +
+            "\"status\":{\"type\":\"string\",\"enum\":[\"A\",\"B\"]}," +
+            "\"count\":{\"type\":\"integer\",\"minimum\":0,\"exclusiveMinimum\":true}," +
+            "\"price\":{\"type\":[\"number\",\"null\"],\"maximum\":10}," +
+            "\"at\":{\"type\":\"string\",\"format\":\"date-time\"}," +
+            "\"tags\":{\"type\":\"array\",\"items\":{\"type\":\"string\"},\"maxItems\":2}," +
+            "\"odd\":{\"type\":\"integer\",\"multipleOf\":2}}}";
+
+    @Test
+    public void whenEventMatchesCommonShapesThenItIsValid() {
+        assertValid(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\"}");
+        assertValid(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"B\",\"count\":1,\"price\":null}");
+        assertValid(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"B\",\"price\":9.5,\"tags\":[\"a\",\"b\"]}");
+        assertValid(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"B\",\"at\":\"2017-08-21T10:00:00.000Z\"}");
+    }
+
+    @Test
+    public void whenEventDoesNotMatchThenItIsLeftToEverit() {
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"C\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abcdef\",\"status\":\"A\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"ABC\",\"status\":\"A\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"count\":0}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"count\":1.5}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"price\":11}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"at\":\"2017-08-21\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"tags\":[\"a\",\"b\",\"c\"]}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"tags\":[1]}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"other\":1}");
+    }
+
+    @Test
+    public void whenKeywordIsNotSupportedThenOnlyEventsUsingItAreLeftToEverit() {
+        assertValid(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\"}");
+        assertNotConfirmed(OBJECT_SCHEMA, "{\"id\":\"abc\",\"status\":\"A\",\"odd\":2}");
+    }
+
+    @Test
+    public void whenRootIsNotSupportedThenSchemaIsNotCompiled() {
+        assertThat(CompiledSchema.compile(new JSONObject("{\"oneOf\":[{\"type\":\"string\"}]}")), nullValue());
+        assertThat(CompiledSchema.compile(new JSONObject("{\"$ref\":\"http://example.com/schema\"}")), nullValue());
+        assertThat(CompiledSchema.compile(new JSONObject(OBJECT_SCHEMA)), notNullValue());
+    }
+
+    @Test
+    public void whenSchemaUsesReferencesThenTheyAreResolved() {
+        final String schema = "{\"definitions\":{\"node\":{\"type\":\"object\",\"properties\":{" +
+                "\"value\":{\"$ref\":\"#/definitions/value\"}}},\"value\":{\"type\":\"string\"}}," +
+                "\"type\":\"object\",\"properties\":{\"head\":{\"$ref\":\"#/definitions/node\"}}}";
+        assertValid(schema, "{\"head\":{\"value\":\"a\"}}");
+        assertNotConfirmed(schema, "{\"head\":{\"value\":1}}");
+    }
+
+    @Test
+    public void whenSchemaIsComposedThenAllOfAndAnyOfAreChecked() {
+        final String schema = "{\"allOf\":[{\"type\":\"object\"},{\"required\":[\"a\"]}]," +
+                "\"anyOf\":[{\"properties\":{\"a\":{\"type\":\"string\"}}}," +
+                "{\"properties\":{\"a\":{\"type\":\"null\"}}}]}";
+        assertValid(schema, "{\"a\":\"x\"}");
+        assertValid(schema, "{\"a\":null}");
+        assertNotConfirmed(schema, "{\"a\":1}");
+        assertNotConfirmed(schema, "{\"b\":\"x\"}");
+    }
+
+    private static void assertValid(final String schema, final String event) {
+        assertThat(CompiledSchema.compile(new JSONObject(schema)).isValid(new JSONObject(event)), equalTo(true));
+        // compiled schema must never be less strict than everit one
+        try {
+            load(schema).validate(new JSONObject(event));
+        } catch (final ValidationException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void assertNotConfirmed(final String schema, final String event) {
+        assertThat(CompiledSchema.compile(new JSONObject(schema)).isValid(new JSONObject(event)), equalTo(false));
+    }
+
+    private static Schema load(final String schema) {
+        return SchemaLoader.builder()
+                .schemaJson(new JSONObject(schema))
+                .addFormatValidator("date-time", new RFC3339DateTimeValidator())
+                .build()
+                .load()
+                .build();
+    }
+}
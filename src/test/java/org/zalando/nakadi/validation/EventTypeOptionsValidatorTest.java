@@ -11,11 +11,13 @@ public class EventTypeOptionsValidatorTest {
 
     private static final Long TOPIC_RETENTION_MIN = 1L;
     private static final Long TOPIC_RETENTION_MAX = 3L;
+    private static final Long MAX_LINGER = 100L;
 
     private final Errors mockedErrors = Mockito.mock(Errors.class);
     private final EventTypeOptionsValidator validator = new EventTypeOptionsValidator(
             TOPIC_RETENTION_MIN,
-            TOPIC_RETENTION_MAX
+            TOPIC_RETENTION_MAX,
+            MAX_LINGER
     );
 
     @Before
@@ -48,6 +50,37 @@ public class EventTypeOptionsValidatorTest {
                 .rejectValue("options.retentionTime", null, "can not be more than " + TOPIC_RETENTION_MAX);
     }
 
+    @Test
+    public void testValidationProducerOptions() {
+        final EventTypeOptions eventTypeOptions = new EventTypeOptions();
+        eventTypeOptions.setCompressionType("lz4");
+        eventTypeOptions.setLingerTime(MAX_LINGER);
+        validator.validate(eventTypeOptions, mockedErrors);
+
+        Mockito.verify(mockedErrors, Mockito.times(0)).rejectValue(Matchers.any(), Matchers.any(),
+                Matchers.any());
+    }
+
+    @Test
+    public void testValidationUnknownCompression() {
+        final EventTypeOptions eventTypeOptions = new EventTypeOptions();
+        eventTypeOptions.setCompressionType("zip");
+        validator.validate(eventTypeOptions, mockedErrors);
+
+        Mockito.verify(mockedErrors, Mockito.times(1)).rejectValue(Matchers.eq("options.compressionType"),
+                Matchers.any(), Matchers.any());
+    }
+
+    @Test
+    public void testValidationLingerMax() {
+        final EventTypeOptions eventTypeOptions = new EventTypeOptions();
+        eventTypeOptions.setLingerTime(MAX_LINGER + 1);
+        validator.validate(eventTypeOptions, mockedErrors);
+
+        Mockito.verify(mockedErrors, Mockito.times(1))
+                .rejectValue("options.lingerTime", null, "can not be more than " + MAX_LINGER);
+    }
+
     private EventTypeOptions createEventTypeOptions(final long retentionTime) {
         final EventTypeOptions eventTypeOptions = new EventTypeOptions();
         eventTypeOptions.setRetentionTime(retentionTime);